@@ -99,6 +99,7 @@ public class LogManager extends AbstractLogManager {
 
     static final long MAX_LOGGABLE_BODY_SIZE = MessageLogProperties.getMaxLoggableBodySize();
     static final boolean TRUNCATED_BODY_ALLOWED = MessageLogProperties.isTruncatedBodyAllowed();
+    static final boolean MESSAGE_COMPRESSION_ENABLED = MessageLogProperties.isMessageCompressionEnabled();
 
     // Date at which a time-stamping first failed.
     private DateTime timestampFailed;
@@ -170,6 +171,11 @@ public class LogManager extends AbstractLogManager {
         } else {
             logRecord = createMessageRecord((RestLogMessage) message);
         }
+
+        if (MESSAGE_COMPRESSION_ENABLED) {
+            logRecord.compress();
+        }
+
         logRecord = saveMessageRecord(logRecord);
 
         if (shouldTimestampImmediately) {
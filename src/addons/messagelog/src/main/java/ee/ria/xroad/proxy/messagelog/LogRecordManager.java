@@ -156,10 +156,11 @@ public final class LogRecordManager {
     static void updateMessageRecordSignature(MessageRecord messageRecord) throws Exception {
         doInTransaction(session -> {
             final Query query = session.createQuery("update MessageRecord m set m.signature = :signature, "
-                    + "m.signatureHash = :hash where id = :id");
+                    + "m.compressedSignature = :compressedSignature, m.signatureHash = :hash where id = :id");
             query.setParameter("id", messageRecord.getId());
             query.setParameter("hash", messageRecord.getSignatureHash());
-            query.setParameter("signature", messageRecord.getSignature());
+            query.setParameter("signature", messageRecord.isCompressed() ? null : messageRecord.getSignature());
+            query.setParameter("compressedSignature", messageRecord.getCompressedSignature());
             query.executeUpdate();
             return null;
         });
@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.proxy.messagelog;
 
+import ee.ria.xroad.common.SystemPropertyRegistry;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
@@ -113,6 +114,7 @@ abstract class AbstractMessageLogTest {
         System.setProperty(MessageLogProperties.TIMESTAMP_IMMEDIATELY, timestampImmediately ? "true" : "false");
 
         System.setProperty(MessageLogProperties.SOAP_BODY_LOGGING_ENABLED, "true");
+        SystemPropertyRegistry.reload();
 
         logManagerRef = TestActorRef.create(actorSystem, Props.create(getLogManagerImpl(), jobManager),
                 MessageLog.LOG_MANAGER);
@@ -26,6 +26,7 @@ package ee.ria.xroad.proxy.messagelog;
 
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.ExpectedCodedException;
+import ee.ria.xroad.common.SystemPropertyRegistry;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
@@ -193,6 +194,7 @@ public class MessageLogTest extends AbstractMessageLogTest {
         int orig = MessageLogProperties.getTimestampRecordsLimit();
         try {
             System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, "2");
+            SystemPropertyRegistry.reload();
             log(createMessage(), createSignature());
             log(createMessage(), createSignature());
             log(createMessage(), createSignature());
@@ -208,6 +210,7 @@ public class MessageLogTest extends AbstractMessageLogTest {
             assertEquals(2, timestamp.getMessageRecords().length);
         } finally {
             System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, String.valueOf(orig));
+            SystemPropertyRegistry.reload();
         }
     }
 
@@ -220,6 +223,7 @@ public class MessageLogTest extends AbstractMessageLogTest {
         log.trace("timestampImmediately()");
 
         System.setProperty(MessageLogProperties.TIMESTAMP_IMMEDIATELY, "true");
+        SystemPropertyRegistry.reload();
 
         log(createMessage(), createSignature());
         assertTaskQueueSize(0);
@@ -234,6 +238,7 @@ public class MessageLogTest extends AbstractMessageLogTest {
         log.trace("timestampImmediatelyFail()");
 
         System.setProperty(MessageLogProperties.TIMESTAMP_IMMEDIATELY, "true");
+        SystemPropertyRegistry.reload();
 
         TestTimestamperWorker.failNextTimestamping(true);
 
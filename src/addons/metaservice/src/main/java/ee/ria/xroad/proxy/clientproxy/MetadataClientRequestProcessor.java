@@ -39,6 +39,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Streams;
+import com.google.common.net.HttpHeaders;
 import com.google.common.net.MediaType;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -57,6 +58,8 @@ import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.metadata.MetadataRequests.LIST_CENTRAL_SERVICES;
 import static ee.ria.xroad.common.metadata.MetadataRequests.LIST_CLIENTS;
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
 
 /**
  * Soap metadata client request processor
@@ -120,6 +123,11 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
         log.trace("handleListClients()");
 
         String instanceIdentifier = getInstanceIdentifierFromRequest();
+        boolean json = acceptsJson();
+
+        if (isNotModified(instanceIdentifier, json)) {
+            return;
+        }
 
         ClientListType list = OBJECT_FACTORY.createClientListType();
         list.getMember().addAll(
@@ -130,7 +138,7 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
                     return client;
                 }).collect(Collectors.toList()));
 
-        if (acceptsJson()) {
+        if (json) {
             writeResponseJson(list);
         } else {
             writeResponseXml(OBJECT_FACTORY.createClientList(list));
@@ -142,6 +150,10 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
 
         String instanceIdentifier = getInstanceIdentifierFromRequest();
 
+        if (isNotModified(instanceIdentifier, false)) {
+            return;
+        }
+
         CentralServiceListType list = OBJECT_FACTORY.createCentralServiceListType();
         list.getCentralService().addAll(GlobalConf.getCentralServices(instanceIdentifier));
 
@@ -164,6 +176,31 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
         MAPPER.writeValue(servletResponse.getOutputStream(), object);
     }
 
+    /**
+     * Sets the entity tag of the response, derived from the shared parameters checksum of the instance and the
+     * requested representation. If the client already has the same representation (If-None-Match contains the
+     * tag), only the status 304 Not Modified is sent and the response must not be rendered.
+     * @return true, if the response was answered with 304 Not Modified
+     */
+    private boolean isNotModified(String instanceIdentifier, boolean json) throws Exception {
+        String checksum = GlobalConf.getSharedParametersChecksum(instanceIdentifier);
+
+        if (checksum == null) {
+            return false;
+        }
+
+        String eTag = "\"" + hexDigest(SHA256_ID, String.join("\n", checksum, instanceIdentifier, target,
+                json ? MimeTypes.JSON : MimeTypes.TEXT_XML)) + "\"";
+        servletResponse.setHeader(HttpHeaders.ETAG, eTag);
+
+        if (matchesETag(servletRequest.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            servletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+
+        return false;
+    }
+
     private String getInstanceIdentifierFromRequest() {
         String instanceIdentifier =
                 servletRequest.getParameter(PARAM_INSTANCE_IDENTIFIER);
@@ -191,6 +228,20 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
                 .isPresent();
     }
 
+    /**
+     * Checks if the value of the HTTP "If-None-Match" header matches the given entity tag. Weak comparison is
+     * used, as the header allows.
+     */
+    static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+
+        return Arrays.stream(ifNoneMatch.split("\\s*,\\s*"))
+                .map(t -> StringUtils.removeStart(t.trim(), "W/"))
+                .anyMatch(t -> "*".equals(t) || eTag.equals(t));
+    }
+
     private static final MediaType APPLICATION_JSON = MediaType.JSON_UTF_8.withoutParameters();
 
     private static void marshal(Object object, OutputStream out)
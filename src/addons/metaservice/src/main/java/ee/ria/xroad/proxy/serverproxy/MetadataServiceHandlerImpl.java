@@ -50,13 +50,7 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.protocol.BasicHttpContext;
-import org.apache.http.protocol.HttpContext;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -83,8 +77,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -111,8 +103,6 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
     private SoapMessageImpl requestMessage;
     private SoapMessageEncoder responseEncoder;
 
-    private HttpClientCreator wsdlHttpClientCreator = new HttpClientCreator();
-
     private static final SAXTransformerFactory TRANSFORMER_FACTORY = createSaxTransformerFactory();
 
     private static SAXTransformerFactory createSaxTransformerFactory() {
@@ -263,8 +253,8 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
                             request.getService().getClientId()));
         }
 
-        log.info("Downloading WSDL from URL: {}", url);
-        try (InputStream in = modifyWsdl(getWsdl(url, serviceId))) {
+        log.debug("Getting WSDL from URL: {}", url);
+        try (InputStream in = modifyWsdl(WsdlCache.getInstance().getWsdl(serviceId, url))) {
             Map<String, String> additionalHeaders = new HashMap<>();
             additionalHeaders.put("Content-Transfer-Encoding", "binary");
             additionalHeaders.put("Content-ID", "<wsdl=" + UUID.randomUUID().toString() + "@x-road.eu>");
@@ -371,26 +361,4 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
     protected OverwriteAttributeFilter getModifyWsdlFilter() {
         return OverwriteAttributeFilter.createOverwriteSoapAddressFilter(WSDL_ENDPOINT_ADDRESS);
     }
-
-    private InputStream getWsdl(String url, ServiceId serviceId)
-            throws HttpClientCreator.HttpClientCreatorException, URISyntaxException, IOException {
-
-        HttpClient client = wsdlHttpClientCreator.getHttpClient();
-
-        HttpContext httpContext = new BasicHttpContext();
-
-        // ServerMessageProcessor uses the same method to pass the ServiceId to CustomSSLSocketFactory
-        httpContext.setAttribute(ServiceId.class.getName(), serviceId);
-
-        HttpResponse response = client.execute(new HttpGet(new URI(url)), httpContext);
-
-        StatusLine statusLine = response.getStatusLine();
-
-        if (HttpStatus.SC_OK != statusLine.getStatusCode()) {
-            throw new RuntimeException("Received HTTP error: "
-                    + statusLine.getStatusCode() + " - " + statusLine.getReasonPhrase());
-        }
-
-        return response.getEntity().getContent();
-    }
 }
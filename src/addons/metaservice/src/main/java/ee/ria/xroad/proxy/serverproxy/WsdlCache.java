@@ -0,0 +1,202 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the WSDL documents downloaded by the metadata service in memory, per service and WSDL URL.
+ *
+ * Once the refresh interval has passed, the next request for a WSDL still gets the cached document while the WSDL
+ * is revalidated in the background with a conditional GET. A WSDL that is not requested for two refresh intervals
+ * expires and is downloaded again by the next request. With a refresh interval of 0 (or less) cached WSDLs are
+ * neither revalidated nor expired, they are only evicted when the cache is full.
+ */
+@Slf4j
+final class WsdlCache {
+
+    private static final HttpClientCreator HTTP_CLIENT_CREATOR = new HttpClientCreator();
+
+    private static final WsdlCache INSTANCE = new WsdlCache(SystemProperties.getMetaserviceWsdlCacheSize(),
+            SystemProperties.getMetaserviceWsdlCacheRefreshInterval(), Ticker.systemTicker(),
+            Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "WsdlCacheRefresh");
+                thread.setDaemon(true);
+                return thread;
+            }));
+
+    private final LoadingCache<Key, Wsdl> cache;
+
+    WsdlCache(long maximumSize, long refreshIntervalSeconds, Ticker ticker, Executor refreshExecutor) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .ticker(ticker);
+
+        if (refreshIntervalSeconds > 0) {
+            builder.refreshAfterWrite(refreshIntervalSeconds, TimeUnit.SECONDS)
+                    .expireAfterWrite(2 * refreshIntervalSeconds, TimeUnit.SECONDS);
+        }
+
+        cache = builder.build(CacheLoader.asyncReloading(new CacheLoader<Key, Wsdl>() {
+            @Override
+            public Wsdl load(Key key) throws Exception {
+                return fetch(key, null);
+            }
+
+            @Override
+            public ListenableFuture<Wsdl> reload(Key key, Wsdl cached) throws Exception {
+                return Futures.immediateFuture(fetch(key, cached));
+            }
+        }, refreshExecutor));
+    }
+
+    /**
+     * @return the cache shared by the metadata service handlers
+     */
+    static WsdlCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the WSDL of the given service, downloading it from the given URL unless it is cached.
+     * @param serviceId the service whose WSDL is requested
+     * @param url the URL of the WSDL
+     * @return the WSDL document
+     * @throws Exception if downloading the WSDL fails
+     */
+    InputStream getWsdl(ServiceId serviceId, String url) throws Exception {
+        try {
+            return new ByteArrayInputStream(cache.get(new Key(serviceId, url)).getContent());
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
+            throw e;
+        }
+    }
+
+    /**
+     * Discards all cached WSDL documents.
+     */
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static Wsdl fetch(Key key, Wsdl cached) throws Exception {
+        HttpGet request = new HttpGet(new URI(key.getUrl()));
+
+        if (cached != null && cached.getETag() != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, cached.getETag());
+        }
+
+        if (cached != null && cached.getLastModified() != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+        }
+
+        HttpContext httpContext = new BasicHttpContext();
+
+        // ServerMessageProcessor uses the same method to pass the ServiceId to CustomSSLSocketFactory
+        httpContext.setAttribute(ServiceId.class.getName(), key.getServiceId());
+
+        HttpResponse response = getHttpClient().execute(request, httpContext);
+
+        try {
+            StatusLine statusLine = response.getStatusLine();
+
+            if (cached != null && statusLine.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                log.trace("WSDL not modified: {}", key.getUrl());
+
+                return cached;
+            }
+
+            if (HttpStatus.SC_OK != statusLine.getStatusCode()) {
+                throw new RuntimeException("Received HTTP error: "
+                        + statusLine.getStatusCode() + " - " + statusLine.getReasonPhrase());
+            }
+
+            log.info("Downloaded WSDL from URL: {}", key.getUrl());
+
+            return new Wsdl(EntityUtils.toByteArray(response.getEntity()),
+                    getHeaderValue(response, HttpHeaders.ETAG),
+                    getHeaderValue(response, HttpHeaders.LAST_MODIFIED));
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    private static synchronized HttpClient getHttpClient() throws HttpClientCreator.HttpClientCreatorException {
+        return HTTP_CLIENT_CREATOR.getHttpClient();
+    }
+
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+
+        return header != null ? header.getValue() : null;
+    }
+
+    @Value
+    private static class Key {
+        private final ServiceId serviceId;
+        private final String url;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class Wsdl {
+        private final byte[] content;
+        private final String eTag;
+        private final String lastModified;
+    }
+}
@@ -65,9 +65,13 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.isIn;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -268,6 +272,79 @@ public class MetadataClientRequestProcessorTest {
         );
     }
 
+    @Test
+    public void shouldRespondNotModifiedWhenETagMatches() throws Exception {
+
+        GlobalConf.reload(new ChecksumGlobalConf("checksum1"));
+
+        MetadataClientRequestProcessor processorToTest =
+                new MetadataClientRequestProcessor(LIST_CENTRAL_SERVICES, mockRequest, mockResponse);
+
+        processorToTest.process();
+
+        ArgumentCaptor<String> eTagCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockResponse).setHeader(eq("ETag"), eTagCaptor.capture());
+        assertTrue("Response content expected", mockServletOutputStream.getAsBytes().length > 0);
+
+        GlobalConf.reload(new ChecksumGlobalConf("checksum1") {
+            @Override
+            public List<CentralServiceId> getCentralServices(String instanceIdentifier) {
+                throw new AssertionError("Response should not be rendered");
+            }
+        });
+
+        HttpServletRequest conditionalRequest = mock(HttpServletRequest.class);
+        when(conditionalRequest.getHeader("If-None-Match")).thenReturn("\"other\", " + eTagCaptor.getValue());
+        HttpServletResponse conditionalResponse = mock(HttpServletResponse.class);
+
+        new MetadataClientRequestProcessor(LIST_CENTRAL_SERVICES, conditionalRequest, conditionalResponse)
+                .process();
+
+        verify(conditionalResponse).setHeader("ETag", eTagCaptor.getValue());
+        verify(conditionalResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(conditionalResponse, never()).getOutputStream();
+    }
+
+    @Test
+    public void shouldChangeETagWithSharedParametersAndRepresentation() throws Exception {
+
+        GlobalConf.reload(new ChecksumGlobalConf("checksum1"));
+        new MetadataClientRequestProcessor(LIST_CLIENTS, mockRequest, mockResponse).process();
+
+        HttpServletResponse jsonResponse = mock(HttpServletResponse.class);
+        when(jsonResponse.getOutputStream()).thenReturn(new MetaserviceTestUtil.StubServletOutputStream());
+        new MetadataClientRequestProcessor(LIST_CLIENTS, mockJsonRequest, jsonResponse).process();
+
+        GlobalConf.reload(new ChecksumGlobalConf("checksum2"));
+        HttpServletResponse changedResponse = mock(HttpServletResponse.class);
+        when(changedResponse.getOutputStream()).thenReturn(new MetaserviceTestUtil.StubServletOutputStream());
+        new MetadataClientRequestProcessor(LIST_CLIENTS, mockRequest, changedResponse).process();
+
+        String eTag = getETag(mockResponse);
+
+        assertNotEquals(eTag, getETag(jsonResponse));
+        assertNotEquals(eTag, getETag(changedResponse));
+    }
+
+    @Test
+    public void shouldNotSetETagWithoutSharedParametersChecksum() throws Exception {
+
+        new MetadataClientRequestProcessor(LIST_CENTRAL_SERVICES, mockRequest, mockResponse).process();
+
+        verify(mockResponse, never()).setHeader(eq("ETag"), anyString());
+        assertTrue("Response content expected", mockServletOutputStream.getAsBytes().length > 0);
+    }
+
+    @Test
+    public void shouldMatchETags() {
+        assertTrue(MetadataClientRequestProcessor.matchesETag("\"a\"", "\"a\""));
+        assertTrue(MetadataClientRequestProcessor.matchesETag("\"b\" , W/\"a\"", "\"a\""));
+        assertTrue(MetadataClientRequestProcessor.matchesETag("*", "\"a\""));
+
+        assertFalse(MetadataClientRequestProcessor.matchesETag(null, "\"a\""));
+        assertFalse(MetadataClientRequestProcessor.matchesETag("\"b\"", "\"a\""));
+    }
+
     // handle WSDL does not have it's own unit test in this class, but WsdlRequestProcessor has it's own test, and it
     // has an integration test. A new test here would test that processor.processor() triggers processor.handleWsdl()
 
@@ -277,6 +354,25 @@ public class MetadataClientRequestProcessorTest {
         assertThat("Wrong content type", contentTypeCaptor.getValue(), isIn(allowedContentTypes));
     }
 
+    private static String getETag(HttpServletResponse response) {
+        ArgumentCaptor<String> eTagCaptor = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), eTagCaptor.capture());
+        return eTagCaptor.getValue();
+    }
+
+    private static class ChecksumGlobalConf extends TestSuiteGlobalConf {
+        private final String checksum;
+
+        ChecksumGlobalConf(String checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public String getSharedParametersChecksum(String instanceIdentifier) {
+            return checksum;
+        }
+    }
+
     private static MemberInfo createMember(String member, String subsystem) {
         return new MemberInfo(ClientId.create(EXPECTED_XR_INSTANCE, "BUSINESS",
                 member, subsystem), member + "-name");
@@ -202,6 +202,7 @@ public class MetadataServiceHandlerTest {
     @After
     public void tearDown() throws Exception {
         this.mockServer.stop();
+        WsdlCache.getInstance().invalidateAll();
         MetaserviceTestUtil.cleanDB();
     }
 
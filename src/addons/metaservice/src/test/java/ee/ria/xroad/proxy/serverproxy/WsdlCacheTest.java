@@ -0,0 +1,197 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.proxy.conf.KeyConf;
+import ee.ria.xroad.proxy.testsuite.TestSuiteGlobalConf;
+import ee.ria.xroad.proxy.testsuite.TestSuiteKeyConf;
+import ee.ria.xroad.proxy.testsuite.TestSuiteServerConf;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link WsdlCache}
+ */
+public class WsdlCacheTest {
+
+    private static final int WSDL_SERVER_PORT = 9859;
+    private static final String WSDL_PATH = "/wsdlMock";
+    private static final String WSDL_URL = "http://localhost:" + WSDL_SERVER_PORT + WSDL_PATH;
+    private static final long REFRESH_INTERVAL_SECONDS = 60;
+
+    private static final ServiceId SERVICE_ID = ServiceId.create(
+            ClientId.create("EE", "GOV", "1234TEST_CLIENT", "SUBCODE5"), "someServiceWithWsdl");
+
+    private static final String WSDL_V1 = "<definitions>v1</definitions>";
+    private static final String WSDL_V2 = "<definitions>v2</definitions>";
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private WireMockServer mockServer;
+    private WsdlCache wsdlCache;
+
+    /**
+     * Init data for tests
+     */
+    @Before
+    public void init() {
+        GlobalConf.reload(new TestSuiteGlobalConf());
+        KeyConf.reload(new TestSuiteKeyConf());
+        ServerConf.reload(new TestSuiteServerConf());
+
+        mockServer = new WireMockServer(options().port(WSDL_SERVER_PORT));
+        mockServer.start();
+
+        wsdlCache = new WsdlCache(100, REFRESH_INTERVAL_SECONDS, new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void shouldServeCachedWsdlWithoutFetching() throws Exception {
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH)).willReturn(aResponse().withBody(WSDL_V1)));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(WSDL_V1, getWsdl());
+        }
+
+        advance(REFRESH_INTERVAL_SECONDS - 1);
+        assertEquals(WSDL_V1, getWsdl());
+
+        mockServer.verify(1, getRequestedFor(urlPathEqualTo(WSDL_PATH)));
+    }
+
+    @Test
+    public void shouldRevalidateWithConditionalGet() throws Exception {
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH))
+                .willReturn(aResponse().withHeader("ETag", "\"v1\"").withBody(WSDL_V1)));
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH)).withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(304)));
+
+        assertEquals(WSDL_V1, getWsdl());
+
+        advance(REFRESH_INTERVAL_SECONDS + 1);
+        assertEquals(WSDL_V1, getWsdl());
+        assertEquals(WSDL_V1, getWsdl());
+
+        mockServer.verify(2, getRequestedFor(urlPathEqualTo(WSDL_PATH)));
+        mockServer.verify(1, getRequestedFor(urlPathEqualTo(WSDL_PATH)).withHeader("If-None-Match", absent()));
+        mockServer.verify(1, getRequestedFor(urlPathEqualTo(WSDL_PATH))
+                .withHeader("If-None-Match", equalTo("\"v1\"")));
+    }
+
+    @Test
+    public void shouldReplaceChangedWsdlOnRefresh() throws Exception {
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH)).willReturn(aResponse().withBody(WSDL_V1)));
+
+        assertEquals(WSDL_V1, getWsdl());
+
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH)).willReturn(aResponse().withBody(WSDL_V2)));
+
+        advance(REFRESH_INTERVAL_SECONDS + 1);
+        assertEquals(WSDL_V2, getWsdl());
+        assertEquals(WSDL_V2, getWsdl());
+
+        mockServer.verify(2, getRequestedFor(urlPathEqualTo(WSDL_PATH)));
+    }
+
+    @Test
+    public void shouldNotCacheFailedFetch() throws Exception {
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH)).willReturn(aResponse().withStatus(500)));
+
+        try {
+            getWsdl();
+            fail("Expected the failed fetch to be rethrown");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getMessage().startsWith("Received HTTP error: 500"));
+        }
+
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH)).willReturn(aResponse().withBody(WSDL_V1)));
+
+        assertEquals(WSDL_V1, getWsdl());
+
+        mockServer.verify(2, getRequestedFor(urlPathEqualTo(WSDL_PATH)));
+    }
+
+    @Test
+    public void shouldKeepCachedWsdlWithoutRefreshInterval() throws Exception {
+        mockServer.stubFor(get(urlPathEqualTo(WSDL_PATH)).willReturn(aResponse().withBody(WSDL_V1)));
+
+        wsdlCache = new WsdlCache(100, 0, new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        }, MoreExecutors.directExecutor());
+
+        assertEquals(WSDL_V1, getWsdl());
+
+        advance(TimeUnit.DAYS.toSeconds(1));
+        assertEquals(WSDL_V1, getWsdl());
+
+        mockServer.verify(1, getRequestedFor(urlPathEqualTo(WSDL_PATH)));
+    }
+
+    private String getWsdl() throws Exception {
+        return IOUtils.toString(wsdlCache.getWsdl(SERVICE_ID, WSDL_URL), StandardCharsets.UTF_8);
+    }
+
+    private void advance(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
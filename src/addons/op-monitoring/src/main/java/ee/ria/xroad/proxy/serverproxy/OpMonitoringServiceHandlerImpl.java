@@ -50,6 +50,7 @@ import static ee.ria.xroad.common.ErrorCodes.X_SERVICE_FAILED_X;
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringRequests.GET_SECURITY_SERVER_HEALTH_DATA;
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringRequests.GET_SECURITY_SERVER_OPERATIONAL_DATA;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringRequests.GET_SECURITY_SERVER_OPERATIONAL_STATISTICS;
 import static ee.ria.xroad.common.util.TimeUtils.getEpochMillisecond;
 
 /**
@@ -88,7 +89,8 @@ public class OpMonitoringServiceHandlerImpl implements ServiceHandler {
             ProxyMessage proxyRequestMessage) {
         switch (requestServiceId.getServiceCode()) {
             case GET_SECURITY_SERVER_HEALTH_DATA: // $FALL-THROUGH$
-            case GET_SECURITY_SERVER_OPERATIONAL_DATA:
+            case GET_SECURITY_SERVER_OPERATIONAL_DATA: // $FALL-THROUGH$
+            case GET_SECURITY_SERVER_OPERATIONAL_STATISTICS:
                 return requestServiceId.getClientId().equals(ServerConf.getIdentifier().getOwner());
             default:
                 return false;
@@ -26,6 +26,7 @@ package ee.ria.xroad.proxy.serverproxy;
 
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.monitoringconf.MonitoringConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.identifier.ClientId;
@@ -36,15 +37,21 @@ import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.message.SoapUtils;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.util.XmlUtils;
+import ee.ria.xroad.monitor.common.dto.HistogramDto;
+import ee.ria.xroad.monitor.common.dto.MetricSetDto;
 import ee.ria.xroad.proxy.ProxyMain;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
 import ee.ria.xroad.proxymonitor.ProxyMonitor;
 import ee.ria.xroad.proxymonitor.message.GetSecurityServerMetricsResponse;
 import ee.ria.xroad.proxymonitor.message.MetricSetType;
 import ee.ria.xroad.proxymonitor.message.ObjectFactory;
 import ee.ria.xroad.proxymonitor.message.StringMetricType;
+import ee.ria.xroad.proxymonitor.util.MetricTypes;
 import ee.ria.xroad.proxymonitor.util.MonitorClient;
 
+import com.codahale.metrics.Snapshot;
+
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.client.HttpClient;
 import org.w3c.dom.Document;
@@ -74,6 +81,9 @@ public class ProxyMonitorServiceHandlerImpl implements ServiceHandler {
     public static final String SERVICE_CODE = "getSecurityServerMetrics";
     public static final String MONITOR_REQ_PARAM_NODE_NAME = "outputField";
     public static final String NS_MONITORING = "http://x-road.eu/xsd/monitoring";
+    public static final String STAGE_METRICS_NAME = "proxyStageLatencies";
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
 
     private ProxyMessage requestMessage;
     private static final JAXBContext JAXB_CTX;
@@ -139,14 +149,55 @@ public class ProxyMonitorServiceHandlerImpl implements ServiceHandler {
         version.setValue(ProxyMain.readProxyVersion());
         root.getMetrics().add(version);
 
+        final List<String> metricNames = getMetricNames(proxyRequestMessage);
+
         if (client != null) {
-            root.getMetrics().add(client.getMetrics(getMetricNames(proxyRequestMessage), isOwner()));
+            root.getMetrics().add(client.getMetrics(metricNames, isOwner()));
+        }
+
+        // stage latencies are histograms, limited to the owner like the histograms of the monitor
+        if (isOwner() || !SystemProperties.getEnvMonitorLimitRemoteDataSet()) {
+            root.getMetrics().add(getStageMetrics(metricNames));
         }
 
         SoapMessageImpl result = createResponse(requestMessage.getSoap(), metricsResponse);
         responseEncoder.soap(result, Collections.emptyMap());
     }
 
+    /**
+     * Collects the latencies of the proxy stages, in milliseconds.
+     *
+     * @param metricNames requested metric names, all stages if empty
+     * @return the stage latencies
+     */
+    private static MetricSetType getStageMetrics(List<String> metricNames) {
+        final MetricSetDto.Builder builder = new MetricSetDto.Builder(STAGE_METRICS_NAME);
+
+        ProxyStageMetrics.getTimers().forEach((stage, timer) -> {
+            if (metricNames.isEmpty() || metricNames.contains(stage.getMetricName())) {
+                builder.withMetric(toHistogramDto(stage.getMetricName(), timer.getSnapshot()));
+            }
+        });
+
+        return MetricTypes.of(builder.build());
+    }
+
+    private static HistogramDto toHistogramDto(String name, Snapshot snapshot) {
+        return new HistogramDto(
+                name,
+                snapshot.get75thPercentile() / NANOS_PER_MILLI,
+                snapshot.get95thPercentile() / NANOS_PER_MILLI,
+                snapshot.get98thPercentile() / NANOS_PER_MILLI,
+                snapshot.get99thPercentile() / NANOS_PER_MILLI,
+                snapshot.get999thPercentile() / NANOS_PER_MILLI,
+                snapshot.getMax() / NANOS_PER_MILLI,
+                snapshot.getMean() / NANOS_PER_MILLI,
+                snapshot.getMedian() / NANOS_PER_MILLI,
+                snapshot.getMin() / NANOS_PER_MILLI,
+                snapshot.getStdDev() / NANOS_PER_MILLI
+        );
+    }
+
     /**
      * Read requested monitoring parameter names from SOAP body. Returns empty list if no explicit metric names defined.
      *
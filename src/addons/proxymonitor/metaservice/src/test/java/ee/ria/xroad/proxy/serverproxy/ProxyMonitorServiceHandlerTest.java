@@ -42,8 +42,10 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.testsuite.TestSuiteGlobalConf;
 import ee.ria.xroad.proxy.testsuite.TestSuiteKeyConf;
 import ee.ria.xroad.proxy.testsuite.TestSuiteServerConf;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
 import ee.ria.xroad.proxymonitor.RestoreMonitorClientAfterTest;
 import ee.ria.xroad.proxymonitor.message.GetSecurityServerMetricsResponse;
+import ee.ria.xroad.proxymonitor.message.HistogramMetricType;
 import ee.ria.xroad.proxymonitor.message.MetricSetType;
 import ee.ria.xroad.proxymonitor.message.MetricType;
 import ee.ria.xroad.proxymonitor.message.StringMetricType;
@@ -80,6 +82,7 @@ import static ee.ria.xroad.proxy.util.MetaserviceTestUtil.CodedExceptionMatcher.
 import static ee.ria.xroad.proxy.util.MetaserviceTestUtil.verifyAndGetSingleBodyElementOfType;
 import static java.util.UUID.randomUUID;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.instanceOf;
@@ -330,6 +333,13 @@ public class ProxyMonitorServiceHandlerTest {
         final StringMetricType responseMetric = (StringMetricType) responseDataMetrics.getMetrics().get(0);
         assertThat("Wrong metric name", responseMetric.getName(), is(expectedMetricName));
         assertThat("Wrong metric value", responseMetric.getValue(), is(expectedMetricValue));
+
+        final MetricSetType stageMetrics = (MetricSetType) responseMetrics.stream()
+                .filter(m -> ProxyMonitorServiceHandlerImpl.STAGE_METRICS_NAME.equals(m.getName()))
+                .findFirst().orElseThrow(() -> new AssertionError("Missing proxy stage latencies"));
+
+        assertThat(stageMetrics.getMetrics().size(), is(ProxyStageMetrics.Stage.values().length));
+        assertThat(stageMetrics.getMetrics(), everyItem(instanceOf(HistogramMetricType.class)));
     }
 
     /**
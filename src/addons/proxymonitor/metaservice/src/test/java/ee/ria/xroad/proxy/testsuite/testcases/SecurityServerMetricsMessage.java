@@ -34,6 +34,7 @@ import ee.ria.xroad.monitor.common.SystemMetricsResponse;
 import ee.ria.xroad.monitor.common.dto.HistogramDto;
 import ee.ria.xroad.monitor.common.dto.MetricSetDto;
 import ee.ria.xroad.proxy.conf.KeyConf;
+import ee.ria.xroad.proxy.serverproxy.ProxyMonitorServiceHandlerImpl;
 import ee.ria.xroad.proxy.testsuite.Message;
 import ee.ria.xroad.proxy.testsuite.MessageTestCase;
 import ee.ria.xroad.proxy.testsuite.TestSuiteGlobalConf;
@@ -123,7 +124,7 @@ public class SecurityServerMetricsMessage extends MessageTestCase {
                         () -> unmarshaller).getMetricSet();
 
         assertThat("Wrong root name", rootSet.getName(), is(DEFAULT_OWNER_SERVER.toString()));
-        assertThat("Wrong amount of received metrics", rootSet.getMetrics().size(), is(2));
+        assertThat("Wrong amount of received metrics", rootSet.getMetrics().size(), is(3));
 
         final MetricType proxyVersionMetric = rootSet.getMetrics().get(0);
 
@@ -141,6 +142,9 @@ public class SecurityServerMetricsMessage extends MessageTestCase {
         HistogramMetricType histogram = (HistogramMetricType) metricSet.getMetrics().get(0);
         assertThat("Wrong min value", histogram.getMin(), is(EXPECTED_RESPONSE_MIN_VALUE));
         assertThat("Wrong max value", histogram.getMax(), is(EXPECTED_RESPONSE_MAX_VALUE));
+
+        assertThat("Missing proxy stage latencies from response", rootSet.getMetrics().get(2).getName(),
+                equalTo(ProxyMonitorServiceHandlerImpl.STAGE_METRICS_NAME));
     }
 
     @Override
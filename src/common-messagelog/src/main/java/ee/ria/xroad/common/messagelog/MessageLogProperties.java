@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.common.messagelog;
 
+import ee.ria.xroad.common.SystemPropertyRegistry;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.util.CryptoUtils;
 
@@ -32,6 +33,7 @@ import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -121,12 +123,35 @@ public final class MessageLogProperties {
     /** is truncating body in logging allowed **/
     private static final String REST_TRUNCATED_BODY_ALLOWED = PREFIX + "truncated-body-allowed";
 
+    /** is storing the messages and signatures compressed enabled **/
+    private static final String MESSAGE_COMPRESSION_ENABLED = PREFIX + "message-compression";
+
     public static final int NUM_COMPONENTS = 4;
     public static final int FIRST_COMPONENT = 0;
     public static final int SECOND_COMPONENT = 1;
     public static final int THIRD_COMPONENT = 2;
     public static final int FOURTH_COMPONENT = 3;
 
+    private static final SystemPropertyRegistry.Property<Boolean> TIMESTAMP_IMMEDIATELY_ENABLED =
+            SystemPropertyRegistry.registerBoolean(TIMESTAMP_IMMEDIATELY, "false");
+
+    private static final SystemPropertyRegistry.Property<Integer> TIMESTAMP_RECORDS_LIMIT_VALUE =
+            SystemPropertyRegistry.register(TIMESTAMP_RECORDS_LIMIT, null,
+                    value -> getInt(value, DEFAULT_TIMESTAMP_RECORDS_LIMIT));
+
+    private static final SystemPropertyRegistry.Property<String> HASH_ALG =
+            SystemPropertyRegistry.register(HASH_ALGO_ID, CryptoUtils.SHA512_ID, value -> value);
+
+    private static final SystemPropertyRegistry.Property<Boolean> MESSAGE_BODY_LOGGING =
+            SystemPropertyRegistry.register(MESSAGE_BODY_LOGGING_ENABLED, null,
+                    ignored -> readMessageBodyLoggingEnabled());
+
+    private static final SystemPropertyRegistry.Property<Collection<ClientId>> LOCAL_PRODUCER_OVERRIDES =
+            registerBodyLoggingOverrides(true);
+
+    private static final SystemPropertyRegistry.Property<Collection<ClientId>> REMOTE_PRODUCER_OVERRIDES =
+            registerBodyLoggingOverrides(false);
+
     private MessageLogProperties() {
     }
 
@@ -162,14 +187,14 @@ public final class MessageLogProperties {
      * guarantee the time-stamp at the time of logging the message.
      */
     public static boolean shouldTimestampImmediately() {
-        return "true".equalsIgnoreCase(System.getProperty(TIMESTAMP_IMMEDIATELY, "false"));
+        return TIMESTAMP_IMMEDIATELY_ENABLED.get();
     }
 
     /**
      * @return the maximum number of records to time-stamp in one batch.
      */
     public static int getTimestampRecordsLimit() {
-        return getInt(System.getProperty(TIMESTAMP_RECORDS_LIMIT), DEFAULT_TIMESTAMP_RECORDS_LIMIT);
+        return TIMESTAMP_RECORDS_LIMIT_VALUE.get();
     }
 
     /**
@@ -227,7 +252,7 @@ public final class MessageLogProperties {
      * @return the hash algorithm that is used for hashing in message log.
      */
     public static String getHashAlg() {
-        return System.getProperty(HASH_ALGO_ID, CryptoUtils.SHA512_ID);
+        return HASH_ALG.get();
     }
 
     /**
@@ -251,6 +276,10 @@ public final class MessageLogProperties {
      * @return true if body logging is enabled.
      */
     public static boolean isMessageBodyLoggingEnabled() {
+        return MESSAGE_BODY_LOGGING.get();
+    }
+
+    private static boolean readMessageBodyLoggingEnabled() {
         // for backwards compatibility
         final String enabled = System.getProperty(SOAP_BODY_LOGGING_ENABLED);
         if (enabled != null) {
@@ -265,7 +294,7 @@ public final class MessageLogProperties {
      * @return list of ClientId.
      */
     public static Collection<ClientId> getMessageBodyLoggingRemoteProducerOverrides() {
-        return getMessageBodyLoggingOverrides(false);
+        return REMOTE_PRODUCER_OVERRIDES.get();
     }
 
     /**
@@ -274,7 +303,7 @@ public final class MessageLogProperties {
      * @return list of ClientId.
      */
     public static Collection<ClientId> getMessageBodyLoggingLocalProducerOverrides() {
-        return getMessageBodyLoggingOverrides(true);
+        return LOCAL_PRODUCER_OVERRIDES.get();
     }
 
 
@@ -294,6 +323,14 @@ public final class MessageLogProperties {
         return Boolean.getBoolean(REST_TRUNCATED_BODY_ALLOWED);
     }
 
+    /**
+     * @return true if new messages and signatures are stored in the database deflate-compressed, 'false' by default.
+     * Records stored earlier are read in the format they were stored in.
+     */
+    public static boolean isMessageCompressionEnabled() {
+        return Boolean.getBoolean(MESSAGE_COMPRESSION_ENABLED);
+    }
+
     public static int getCleanTransactionBatchSize() {
         return Integer.getInteger(CLEAN_TRANSACTION_BATCH, DEFAULT_CLEAN_TRANSACTION_BATCH_SIZE);
     }
@@ -313,7 +350,7 @@ public final class MessageLogProperties {
      * Check that "enableBodyLogging..." parameters are not used if body logging is toggled on, and vice versa.
      */
     private static void validateBodyLoggingOverrideParameters() {
-        boolean checkEnableOverrides = isMessageBodyLoggingEnabled();
+        boolean checkEnableOverrides = readMessageBodyLoggingEnabled();
 
         validateBodyLoggingOverrideParamNotUsed(checkEnableOverrides, true);
         validateBodyLoggingOverrideParamNotUsed(checkEnableOverrides, false);
@@ -329,14 +366,25 @@ public final class MessageLogProperties {
         if (!getMessageBodyLoggingOverrideParameter(enable, local).isEmpty()) {
             throw new IllegalStateException(getMessageBodyLoggingOverrideParameterName(enable, local)
                     + " should not be used when " + MESSAGE_BODY_LOGGING_ENABLED
-                    + " is " + isMessageBodyLoggingEnabled());
+                    + " is " + readMessageBodyLoggingEnabled());
         }
     }
 
     private static Collection<ClientId> getMessageBodyLoggingOverrides(boolean local) {
         validateBodyLoggingOverrideParameters();
 
-        return parseClientIdParameters(getMessageBodyLoggingOverrideParameter(!isMessageBodyLoggingEnabled(), local));
+        String overrides = getMessageBodyLoggingOverrideParameter(!readMessageBodyLoggingEnabled(), local);
+
+        return Collections.unmodifiableCollection(parseClientIdParameters(overrides));
+    }
+
+    /**
+     * The overrides depend on several properties, so the registered property only triggers the parsing, which
+     * reads the system properties directly when the snapshot is created.
+     */
+    private static SystemPropertyRegistry.Property<Collection<ClientId>> registerBodyLoggingOverrides(boolean local) {
+        return SystemPropertyRegistry.register(getMessageBodyLoggingOverrideParameterName(true, local), null,
+                ignored -> getMessageBodyLoggingOverrides(local));
     }
 
     /**
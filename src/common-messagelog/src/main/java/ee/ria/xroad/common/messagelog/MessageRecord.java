@@ -39,17 +39,22 @@ import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Blob;
 
+import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.CryptoUtils.MD5_ID;
 import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
 
 /**
  * A message log record.
+ *
+ * The message and signature are stored either as text or, when compressed, in the compressed storage format of
+ * {@link MessageRecordCompression}. Compressed texts are decompressed lazily on first access.
  */
 @Slf4j
-@ToString(callSuper = true, exclude = {"attachment"})
+@ToString(callSuper = true, exclude = {"attachment", "compressedMessage", "compressedSignature"})
 @EqualsAndHashCode(callSuper = true, exclude = {"attachment"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class MessageRecord extends AbstractLogRecord {
@@ -58,14 +63,19 @@ public class MessageRecord extends AbstractLogRecord {
     @Setter
     private String queryId;
 
-    @Getter
-    @Setter
     private String message;
 
-    @Getter
-    @Setter
     private String signature;
 
+    @Getter
+    private byte[] compressedMessage;
+
+    @Getter
+    private byte[] compressedSignature;
+
+    private transient String decompressedMessage;
+    private transient String decompressedSignature;
+
     @Getter
     @Setter
     private String hashChain;
@@ -151,9 +161,86 @@ public class MessageRecord extends AbstractLogRecord {
         this.xRequestId = xRequestId;
     }
 
+    /**
+     * @return the logged message
+     */
+    public String getMessage() {
+        if (compressedMessage == null) {
+            return message;
+        }
+
+        if (decompressedMessage == null) {
+            decompressedMessage = decompress(compressedMessage);
+        }
+
+        return decompressedMessage;
+    }
+
+    /**
+     * Sets the logged message, keeping the storage format of this record.
+     * @param message the message
+     */
+    public void setMessage(String message) {
+        if (isCompressed()) {
+            this.compressedMessage = MessageRecordCompression.compress(message);
+            this.decompressedMessage = message;
+        } else {
+            this.message = message;
+        }
+    }
+
+    /**
+     * @return the signature of the message
+     */
+    public String getSignature() {
+        if (compressedSignature == null) {
+            return signature;
+        }
+
+        if (decompressedSignature == null) {
+            decompressedSignature = decompress(compressedSignature);
+        }
+
+        return decompressedSignature;
+    }
+
+    /**
+     * Sets the signature of the message, keeping the storage format of this record.
+     * @param signature the signature
+     */
+    public void setSignature(String signature) {
+        if (isCompressed()) {
+            this.compressedSignature = MessageRecordCompression.compress(signature);
+            this.decompressedSignature = signature;
+        } else {
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * @return true if the message and signature are stored compressed
+     */
+    public boolean isCompressed() {
+        return compressedMessage != null || compressedSignature != null;
+    }
+
+    /**
+     * Converts the message and signature to the compressed storage format. Must be called before the record is
+     * saved. The texts are not retained in memory, they are decompressed again when accessed.
+     */
+    public void compress() {
+        if (!isCompressed()) {
+            compressedMessage = MessageRecordCompression.compress(message);
+            compressedSignature = MessageRecordCompression.compress(signature);
+
+            message = null;
+            signature = null;
+        }
+    }
+
     @Override
     public Object[] getLinkingInfoFields() {
-        return new Object[] {getId(), getTime(), queryId, message, signature,
+        return new Object[] {getId(), getTime(), queryId, getMessage(), getSignature(),
                 memberClass, memberCode, subsystemCode};
     }
 
@@ -163,7 +250,7 @@ public class MessageRecord extends AbstractLogRecord {
      */
     public AsicContainer toAsicContainer() throws Exception {
         SignatureData signatureData =
-                new SignatureData(signature, hashChainResult, hashChain);
+                new SignatureData(getSignature(), hashChainResult, hashChain);
 
         TimestampData timestamp = null;
 
@@ -174,7 +261,7 @@ public class MessageRecord extends AbstractLogRecord {
                     timestampHashChain);
         }
 
-        return new AsicContainer(message, signatureData, timestamp,
+        return new AsicContainer(getMessage(), signatureData, timestamp,
                 (attachment != null) ? attachment.getBinaryStream() : null);
     }
 
@@ -192,6 +279,14 @@ public class MessageRecord extends AbstractLogRecord {
         return hexDigest(MD5_ID, queryId);
     }
 
+    private static String decompress(byte[] data) {
+        try {
+            return MessageRecordCompression.decompress(data);
+        } catch (IOException e) {
+            throw translateException(e);
+        }
+    }
+
     static String decodeBase64(String base64Encoded) {
         return (base64Encoded != null && !base64Encoded.isEmpty())
                 ? new String(CryptoUtils.decodeBase64(base64Encoded)) : null;
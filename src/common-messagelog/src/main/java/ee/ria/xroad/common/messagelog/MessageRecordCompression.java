@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes message log texts to and from the compressed storage format. The encoded form starts with a format marker
+ * byte followed by the deflate-compressed UTF-8 bytes of the text.
+ */
+public final class MessageRecordCompression {
+
+    /** Format marker of deflate-compressed UTF-8 text. */
+    static final byte FORMAT_DEFLATE = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Used only for sizing the output buffers, SOAP messages usually compress better than this. */
+    private static final int TYPICAL_COMPRESSION_RATIO = 4;
+
+    private MessageRecordCompression() {
+    }
+
+    /**
+     * @param text the text to compress
+     * @return the compressed text with format marker or null if the text is null
+     */
+    public static byte[] compress(String text) {
+        return text != null ? compress(text.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * @param utf8Text the UTF-8 encoded text to compress
+     * @return the compressed text with format marker or null if the text is null
+     */
+    public static byte[] compress(byte[] utf8Text) {
+        if (utf8Text == null) {
+            return null;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            deflater.setInput(utf8Text);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(utf8Text.length / TYPICAL_COMPRESSION_RATIO + 1);
+            out.write(FORMAT_DEFLATE);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param data the compressed text with format marker
+     * @return the decompressed text or null if the data is null
+     * @throws IOException if the data is not in a known format or is corrupted
+     */
+    public static String decompress(byte[] data) throws IOException {
+        if (data == null) {
+            return null;
+        }
+
+        if (data.length == 0 || data[0] != FORMAT_DEFLATE) {
+            throw new IOException("Unknown message log storage format");
+        }
+
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * TYPICAL_COMPRESSION_RATIO);
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated message log data");
+                }
+
+                out.write(buffer, 0, count);
+            }
+
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted message log data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
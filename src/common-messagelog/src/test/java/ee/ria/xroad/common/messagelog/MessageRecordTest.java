@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.identifier.ClientId;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for storing message records compressed.
+ */
+public class MessageRecordTest {
+
+    private static final String MESSAGE = "<SOAP-ENV:Envelope>\u00f5\u00e4\u00f6\u00fc<body/></SOAP-ENV:Envelope>";
+    private static final String SIGNATURE = "<ds:Signature>signature</ds:Signature>";
+
+    private static final ClientId CLIENT = ClientId.create("EE", "BUSINESS", "consumer", "sub");
+
+    @Test
+    public void compressedRecordReturnsOriginalTexts() {
+        MessageRecord plain = createRecord();
+        MessageRecord compressed = createRecord();
+        compressed.compress();
+
+        assertFalse(plain.isCompressed());
+        assertTrue(compressed.isCompressed());
+        assertNotNull(compressed.getCompressedMessage());
+        assertNotNull(compressed.getCompressedSignature());
+
+        assertEquals(MESSAGE, compressed.getMessage());
+        assertEquals(SIGNATURE, compressed.getSignature());
+        assertArrayEquals(plain.getLinkingInfoFields(), compressed.getLinkingInfoFields());
+    }
+
+    @Test
+    public void setSignatureKeepsStorageFormat() {
+        MessageRecord plain = createRecord();
+        plain.setSignature("plain");
+
+        assertNull(plain.getCompressedSignature());
+        assertEquals("plain", plain.getSignature());
+
+        MessageRecord compressed = createRecord();
+        compressed.compress();
+        compressed.setSignature("compressed");
+
+        assertTrue(compressed.isCompressed());
+        assertEquals("compressed", compressed.getSignature());
+        assertEquals("compressed", decompress(compressed.getCompressedSignature()));
+    }
+
+    @Test
+    public void compressesVerboseMessages() {
+        StringBuilder message = new StringBuilder();
+
+        for (int i = 0; i < 100; i++) {
+            message.append("<ns:element attribute=\"value\">").append(i).append("</ns:element>");
+        }
+
+        byte[] compressed = MessageRecordCompression.compress(message.toString());
+
+        assertEquals(MessageRecordCompression.FORMAT_DEFLATE, compressed[0]);
+        assertTrue(compressed.length * 2 < message.length());
+        assertEquals(message.toString(), decompress(compressed));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownFormat() throws Exception {
+        MessageRecordCompression.decompress("<plain/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = CodedException.class)
+    public void failsOnCorruptedData() throws Exception {
+        MessageRecord record = createRecord();
+        record.compress();
+
+        byte[] corrupted = record.getCompressedMessage();
+        int index = corrupted.length / 2;
+        corrupted[index] = (byte) ~corrupted[index];
+
+        record.getMessage();
+    }
+
+    private static MessageRecord createRecord() {
+        return new MessageRecord("qid", MESSAGE, SIGNATURE, false, CLIENT, "xrid");
+    }
+
+    private static String decompress(byte[] data) {
+        try {
+            return MessageRecordCompression.decompress(data);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -146,6 +146,38 @@ public final class OpMonitoringSystemProperties {
     private static final String OP_MONITOR_CLEAN_INTERVAL =
             PREFIX + "op-monitor.clean-interval";
 
+    /**
+     * Property name of the maximum number of operational data records deleted in a single cleanup transaction.
+     */
+    private static final String OP_MONITOR_CLEAN_BATCH_SIZE =
+            PREFIX + "op-monitor.clean-batch-size";
+
+    /**
+     * Property name of the maximum number of operational data records deleted per second during the cleanup.
+     */
+    private static final String OP_MONITOR_CLEAN_MAX_ROWS_PER_SECOND =
+            PREFIX + "op-monitor.clean-max-rows-per-second";
+
+    /**
+     * Property name of the flag for dropping expired partitions of a partitioned operational data table.
+     */
+    private static final String OP_MONITOR_CLEAN_DROP_PARTITIONS =
+            PREFIX + "op-monitor.clean-drop-partitions";
+
+    /**
+     * Property name of the interval for running the operational monitoring data rollup operation represented as a
+     * Cron expression.
+     */
+    private static final String OP_MONITOR_ROLLUP_INTERVAL =
+            PREFIX + "op-monitor.rollup-interval";
+
+    /**
+     * Property name of the maximum number of minutes summarized by one run of the operational monitoring data
+     * rollup operation.
+     */
+    private static final String OP_MONITOR_ROLLUP_MAX_MINUTES_PER_RUN =
+            PREFIX + "op-monitor.rollup-max-minutes-per-run";
+
     /**
      * Property name of the maximum records in the get operational data response payload.
      */
@@ -266,6 +298,46 @@ public final class OpMonitoringSystemProperties {
         return System.getProperty(OP_MONITOR_CLEAN_INTERVAL, "0 0 0/12 1/1 * ? *");
     }
 
+    /**
+     * @return the maximum number of operational data records deleted in a single cleanup transaction,
+     * 10000 by default.
+     */
+    public static int getOpMonitorCleanBatchSize() {
+        return Math.max(1, Integer.parseInt(System.getProperty(OP_MONITOR_CLEAN_BATCH_SIZE, "10000")));
+    }
+
+    /**
+     * @return the maximum number of operational data records deleted per second during the cleanup, 0 (unlimited)
+     * by default.
+     */
+    public static int getOpMonitorCleanMaxRowsPerSecond() {
+        return Integer.parseInt(System.getProperty(OP_MONITOR_CLEAN_MAX_ROWS_PER_SECOND, "0"));
+    }
+
+    /**
+     * @return whether expired partitions of the operational data table are dropped during the cleanup,
+     * 'false' by default.
+     */
+    public static boolean isOpMonitorCleanDropPartitions() {
+        return Boolean.parseBoolean(System.getProperty(OP_MONITOR_CLEAN_DROP_PARTITIONS, "false"));
+    }
+
+    /**
+     * @return the time interval as a Cron expression for running the operational monitoring data rollup operation,
+     * '0 0/1 * 1/1 * ? *' by default.
+     */
+    public static String getOpMonitorRollupInterval() {
+        return System.getProperty(OP_MONITOR_ROLLUP_INTERVAL, "0 0/1 * 1/1 * ? *");
+    }
+
+    /**
+     * @return the maximum number of minutes summarized by one run of the operational monitoring data rollup
+     * operation, '360' by default.
+     */
+    public static int getOpMonitorRollupMaxMinutesPerRun() {
+        return Integer.parseInt(System.getProperty(OP_MONITOR_ROLLUP_MAX_MINUTES_PER_RUN, "360"));
+    }
+
     /**
      * @return the maximum records in the get operational data response payload, 10000 by default.
      */
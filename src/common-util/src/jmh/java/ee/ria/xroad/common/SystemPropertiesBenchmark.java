@@ -0,0 +1,86 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the properties read for every proxied message, looked up and parsed from the system properties on each
+ * call (the behaviour before the property registry) and read from the parsed snapshot. Runs with several threads,
+ * because the system property lookups synchronize on the same table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class SystemPropertiesBenchmark {
+
+    private static final String CLIENTPROXY_HTTPCLIENT_TIMEOUT =
+            SystemProperties.PREFIX + "proxy.client-httpclient-timeout";
+
+    private static final String PROXY_XROAD_TLS_CIPHERS = SystemProperties.PREFIX + "proxy.xroad-tls-ciphers";
+
+    private static final String DEFAULT_XROAD_SSL_CIPHER_SUITES = "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384,"
+            + "TLS_DHE_RSA_WITH_AES_256_CBC_SHA256";
+
+    /**
+     * Reads and parses the properties from the system properties.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void systemGetProperty(Blackhole bh) {
+        bh.consume("true".equalsIgnoreCase(System.getProperty(SystemProperties.PROXY_SSL_SUPPORT, "true")));
+        bh.consume(Integer.parseInt(System.getProperty(CLIENTPROXY_HTTPCLIENT_TIMEOUT, "0")));
+        bh.consume(System.getProperty(PROXY_XROAD_TLS_CIPHERS, DEFAULT_XROAD_SSL_CIPHER_SUITES).trim()
+                .split("\\s*,\\s*"));
+    }
+
+    /**
+     * Reads the properties through the getters backed by the registry snapshot.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void registry(Blackhole bh) {
+        bh.consume(SystemProperties.isSslEnabled());
+        bh.consume(SystemProperties.getClientProxyHttpClientTimeout());
+        bh.consume(SystemProperties.getXroadTLSCipherSuites());
+    }
+}
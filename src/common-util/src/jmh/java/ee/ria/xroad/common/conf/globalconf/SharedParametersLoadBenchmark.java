@@ -0,0 +1,175 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading synthetic shared parameters of 50 000 members from the XML (schema validation and
+ * unmarshalling) and from the binary snapshot written by the configuration client. Both include building the
+ * lookup indexes. The allocation per load is reported by the gc profiler enabled in the build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@SuppressWarnings("checkstyle:MagicNumber")
+public class SharedParametersLoadBenchmark {
+
+    private static final String INSTANCE = "BENCH";
+
+    private static final int MEMBERS = 50_000;
+    private static final int SERVERS = 5_000;
+    private static final int CLIENTS_PER_SERVER = 10;
+    private static final int GROUPS = 20;
+    private static final int MEMBERS_PER_GROUP = 500;
+
+    private Path xmlOnly;
+    private Path withSnapshot;
+
+    /**
+     * Generates the shared parameters XML and its snapshot.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        xmlOnly = Files.createTempDirectory("sharedparams-xml").resolve(ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+        withSnapshot = Files.createTempDirectory("sharedparams-snapshot")
+                .resolve(ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+
+        generate(xmlOnly);
+        Files.copy(xmlOnly, withSnapshot);
+
+        SharedParametersV2 params = new SharedParametersV2();
+        params.load(withSnapshot.toString());
+        params.saveSnapshot(withSnapshot);
+    }
+
+    /**
+     * Loads the parameters from the XML.
+     * @return the loaded parameters
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public SharedParametersV2 xml() throws Exception {
+        SharedParametersV2 params = new SharedParametersV2();
+        params.load(xmlOnly.toString());
+
+        return params;
+    }
+
+    /**
+     * Loads the parameters from the snapshot.
+     * @return the loaded parameters
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public SharedParametersV2 snapshot() throws Exception {
+        SharedParametersV2 params = new SharedParametersV2();
+        params.load(withSnapshot.toString());
+
+        return params;
+    }
+
+    private static void generate(Path file) throws Exception {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<tns:conf xmlns:id=\"http://x-road.eu/xsd/identifiers\""
+                    + " xmlns:tns=\"http://x-road.eu/xsd/xroad.xsd\">\n");
+            out.write("<instanceIdentifier>" + INSTANCE + "</instanceIdentifier>\n");
+
+            for (int i = 0; i < MEMBERS; i++) {
+                out.write("<member id=\"m" + i + "\"><memberClass><code>" + memberClass(i) + "</code>"
+                        + "<description>Member class " + memberClass(i) + "</description></memberClass>"
+                        + "<memberCode>" + i + "</memberCode><name>Member " + i + "</name>"
+                        + "<subsystem id=\"s" + i + "\"><subsystemCode>SUB" + i + "</subsystemCode></subsystem>"
+                        + "</member>\n");
+            }
+
+            for (int i = 0; i < SERVERS; i++) {
+                out.write("<securityServer><owner>m" + i + "</owner><serverCode>SS" + i + "</serverCode>"
+                        + "<address>ss" + i + ".example.org</address>"
+                        + "<authCertHash>" + Base64.getEncoder().encodeToString(hash(i)) + "</authCertHash>");
+
+                for (int j = 0; j < CLIENTS_PER_SERVER; j++) {
+                    out.write("<client>s" + ((i * CLIENTS_PER_SERVER + j) % MEMBERS) + "</client>");
+                }
+
+                out.write("</securityServer>\n");
+            }
+
+            for (int i = 0; i < GROUPS; i++) {
+                out.write("<globalGroup><groupCode>group" + i + "</groupCode><description>Group " + i
+                        + "</description>");
+
+                for (int j = 0; j < MEMBERS_PER_GROUP; j++) {
+                    int member = (i * MEMBERS_PER_GROUP + j) % MEMBERS;
+                    out.write("<groupMember id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>" + INSTANCE
+                            + "</id:xRoadInstance><id:memberClass>" + memberClass(member) + "</id:memberClass>"
+                            + "<id:memberCode>" + member + "</id:memberCode><id:subsystemCode>SUB" + member
+                            + "</id:subsystemCode></groupMember>");
+                }
+
+                out.write("</globalGroup>\n");
+            }
+
+            out.write("<globalSettings><memberClass><code>GOV</code><description>Member class GOV</description>"
+                    + "</memberClass><memberClass><code>COM</code><description>Member class COM</description>"
+                    + "</memberClass><ocspFreshnessSeconds>600</ocspFreshnessSeconds></globalSettings>\n");
+            out.write("</tns:conf>\n");
+        }
+    }
+
+    private static String memberClass(int member) {
+        return member % 2 == 0 ? "GOV" : "COM";
+    }
+
+    private static byte[] hash(int server) {
+        byte[] hash = new byte[32];
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = (byte) (server >>> (i % 4 * 8));
+        }
+
+        return hash;
+    }
+}
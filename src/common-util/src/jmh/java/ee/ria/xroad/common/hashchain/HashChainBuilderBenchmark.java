@@ -0,0 +1,103 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.hashchain;
+
+import ee.ria.xroad.common.util.MessageFileNames;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+
+/**
+ * Measures building the hash chain of a batch time-stamp request the way the message log does it:
+ * one input hash per logged signature, then the hash chain result and a hash chain for every input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class HashChainBuilderBenchmark {
+
+    @Param({"2", "10", "100"})
+    private int batchSize;
+
+    private byte[][] signatureHashes;
+
+    /**
+     * Creates the signature hashes of the batch.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(1);
+        signatureHashes = new byte[batchSize][];
+
+        for (int i = 0; i < batchSize; i++) {
+            byte[] signature = new byte[random.nextInt(1024) + 1024];
+            random.nextBytes(signature);
+
+            signatureHashes[i] = calculateDigest(SHA512_ID, signature);
+        }
+
+        // JAXB context creation is a one-time cost, not part of the measured work
+        new HashChainBuilder(SHA512_ID);
+    }
+
+    /**
+     * Builds the hash chain for the batch.
+     * @return the hash chains of the inputs
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public String[] build() throws Exception {
+        HashChainBuilder builder = new HashChainBuilder(SHA512_ID);
+
+        for (byte[] hash : signatureHashes) {
+            builder.addInputHash(hash);
+        }
+
+        builder.finishBuilding();
+        builder.getHashChainResult(MessageFileNames.TS_HASH_CHAIN);
+
+        return builder.getHashChains(MessageFileNames.SIGNATURE);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures caching and reading back an attachment of small (2 KiB), medium (128 KiB) and large (4 MiB) size, in
+ * memory and in a temporary file (the behaviour before the memory tier).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class CachingStreamBenchmark {
+
+    private static final int WRITE_SIZE = 4096;
+
+    @Param({"2048", "131072", "4194304"})
+    private int size;
+
+    private byte[] content;
+
+    private CachingStreamBufferPool bufferPool;
+
+    /**
+     * Creates the attachment content and the buffer pool.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty(SystemProperties.TEMP_FILES_PATH,
+                Files.createTempDirectory("cachingstream").toAbsolutePath().toString());
+
+        content = new byte[size];
+        new Random(1).nextBytes(content);
+
+        bufferPool = new CachingStreamBufferPool(64 * 1024 * 1024);
+    }
+
+    /**
+     * Caches the attachment using memory up to the default threshold.
+     * @return number of bytes read back
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public long cache() throws Exception {
+        return cacheAndRead(new CachingStream(SystemProperties.getAttachmentCacheMemoryThreshold(), bufferPool));
+    }
+
+    /**
+     * Caches the attachment in memory regardless of size.
+     * @return number of bytes read back
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public long cacheInMemory() throws Exception {
+        return cacheAndRead(new CachingStream(Long.MAX_VALUE, bufferPool));
+    }
+
+    /**
+     * Caches the attachment in a temporary file.
+     * @return number of bytes read back
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public long cacheInFile() throws Exception {
+        return cacheAndRead(new CachingStream(0, bufferPool));
+    }
+
+    private long cacheAndRead(CachingStream stream) throws Exception {
+        try {
+            for (int offset = 0; offset < content.length; offset += WRITE_SIZE) {
+                stream.write(content, offset, Math.min(WRITE_SIZE, content.length - offset));
+            }
+
+            stream.close();
+
+            return IOUtils.copyLarge(stream.getCachedContents(), NullOutputStream.NULL_OUTPUT_STREAM);
+        } finally {
+            stream.consume();
+        }
+    }
+}
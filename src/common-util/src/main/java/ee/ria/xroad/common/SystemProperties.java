@@ -180,6 +180,44 @@ public final class SystemProperties {
 
     public static final String SERVER_CONF_ACL_CACHE_SIZE = PREFIX + "proxy.server-conf-acl-cache-size";
 
+    /** Property name of the interval at which the proxy checks the server configuration for changes, in seconds */
+    public static final String SERVER_CONF_CHANGE_CHECK_INTERVAL =
+            PREFIX + "proxy.server-conf-change-check-interval";
+
+    /** Property name of the toggle for answering server configuration lookups from an in-memory snapshot */
+    public static final String SERVER_CONF_SNAPSHOT_ENABLED = PREFIX + "proxy.server-conf-snapshot-enabled";
+
+    /** Property name of the number of signature structures that are known to pass the schema validation */
+    public static final String SIGNATURE_SCHEMA_CACHE_SIZE = PREFIX + "proxy.signature-schema-cache-size";
+
+    /** Property name of the size up to which a single attachment or REST body is cached in memory, in bytes */
+    public static final String ATTACHMENT_CACHE_MEMORY_THRESHOLD = PREFIX + "proxy.attachment-cache-memory-threshold";
+
+    /** Property name of the total memory available for caching attachments and REST bodies, in bytes */
+    public static final String ATTACHMENT_CACHE_MEMORY_BUDGET = PREFIX + "proxy.attachment-cache-memory-budget";
+
+    /** Property name of the number of verified authentication certificate chains and OCSP responses to remember */
+    public static final String VERIFIED_AUTH_CERT_CACHE_SIZE = PREFIX + "proxy.verified-auth-cert-cache-size";
+
+    /** Property name of the number of threads calculating the digests of received attachments */
+    public static final String ATTACHMENT_DIGEST_THREADS = PREFIX + "proxy.attachment-digest-threads";
+
+    /** Property name of the maximum number of concurrent requests the server proxy sends to one service backend */
+    public static final String SERVER_BACKEND_MAX_CONCURRENCY = PREFIX + "proxy.server-backend-max-concurrency";
+
+    /** Property name of the time a request waits for a free slot to a busy service backend, in milliseconds */
+    public static final String SERVER_BACKEND_QUEUE_TIMEOUT = PREFIX + "proxy.server-backend-queue-timeout";
+
+    /** Property name of the minimum time pooled client proxy connections are kept alive, in milliseconds */
+    public static final String CLIENTPROXY_MIN_KEEP_ALIVE_TIME = PREFIX + "proxy.client-min-keep-alive-time";
+
+    /** Property name of the number of WSDL documents the metadata service keeps cached */
+    public static final String METASERVICE_WSDL_CACHE_SIZE = PREFIX + "proxy.metaservice-wsdl-cache-size";
+
+    /** Property name of the interval after which a cached WSDL is revalidated with its source, in seconds */
+    public static final String METASERVICE_WSDL_CACHE_REFRESH_INTERVAL =
+            PREFIX + "proxy.metaservice-wsdl-cache-refresh-interval";
+
 
     /** Property name of the idle time that connections to the ServerProxy Connector are allowed, in milliseconds */
     private static final String SERVERPROXY_CONNECTOR_MAX_IDLE_TIME =
@@ -196,7 +234,7 @@ public final class SystemProperties {
     private static final String SERVERPROXY_CONNECTOR_SO_LINGER =
             PREFIX + "proxy.server-connector-so-linger";
 
-    private static final String SERVERPROXY_SUPPORT_CLIENTS_POOLED_CONNECTIONS =
+    public static final String SERVERPROXY_SUPPORT_CLIENTS_POOLED_CONNECTIONS =
             PREFIX + "proxy.server-support-clients-pooled-connections";
 
     /**
@@ -249,7 +287,7 @@ public final class SystemProperties {
     private static final String CLIENTPROXY_POOL_VALIDATE_CONNECTIONS_AFTER_INACTIVITY_OF_MS =
             PREFIX + "proxy.pool-validate-connections-after-inactivity-of-millis";
 
-    private static final String CLIENTPROXY_POOL_REUSE_CONNECTIONS =
+    public static final String CLIENTPROXY_POOL_REUSE_CONNECTIONS =
             PREFIX + "proxy.pool-enable-connection-reuse";
 
     private static final String PROXY_HEALTH_CHECK_INTERFACE = PREFIX + "proxy.health-check-interface";
@@ -366,6 +404,11 @@ public final class SystemProperties {
 
     private static final String DEFAULT_SIGNER_OCSP_RETRY_DELAY = "60";
 
+    public static final String SIGNER_OCSP_FETCH_THREADS =
+            PREFIX + "signer.ocsp-fetch-threads";
+
+    private static final String DEFAULT_SIGNER_OCSP_FETCH_THREADS = "4";
+
     public static final String SIGNER_MODULE_MANAGER_UPDATE_INTERVAL =
             PREFIX + "signer.module-manager-update-interval";
 
@@ -408,6 +451,12 @@ public final class SystemProperties {
     public static final String CONFIGURATION_CLIENT_ALLOWED_FEDERATIONS =
             PREFIX + "configuration-client.allowed-federations";
 
+    public static final String CONFIGURATION_CLIENT_DOWNLOAD_THREADS =
+            PREFIX + "configuration-client.download-threads";
+
+    public static final String CONFIGURATION_CLIENT_SHARED_PARAMETERS_SNAPSHOT =
+            PREFIX + "configuration-client.shared-parameters-snapshot";
+
     /**
      * A constant to describe the X-Road instances this security server federates with.
      * {@link #CUSTOM} means a list of named, comma-separated X-Road instances to allow.
@@ -473,6 +522,22 @@ public final class SystemProperties {
     public static final String WSDL_VALIDATOR_COMMAND =
             PREFIX + "proxy-ui.wsdl-validator-command";
 
+    /** Property name of the flag for validating WSDLs inside the admin API process instead of the command. */
+    public static final String WSDL_VALIDATOR_IN_PROCESS =
+            PREFIX + "proxy-ui.wsdl-validator-in-process";
+
+    /** Property name of the number of in-process WSDL validations that can run concurrently. */
+    public static final String WSDL_VALIDATOR_THREADS =
+            PREFIX + "proxy-ui.wsdl-validator-threads";
+
+    /** Property name of the in-process WSDL validation timeout in seconds. */
+    public static final String WSDL_VALIDATOR_TIMEOUT =
+            PREFIX + "proxy-ui.wsdl-validator-timeout";
+
+    /** Property name of the maximum size in bytes of a WSDL validated in-process. */
+    public static final String WSDL_VALIDATOR_MAX_WSDL_SIZE =
+            PREFIX + "proxy-ui.wsdl-validator-max-wsdl-size";
+
     /**
      * Property name of the signature digest algorithm ID used for generating authentication certificate
      * registration request.
@@ -540,6 +605,10 @@ public final class SystemProperties {
     public static final String CONFIGURATION_PROXY_ADDRESS =
             PREFIX + "configuration-proxy.address";
 
+    /** Property name of the number of confproxy instances generated concurrently. */
+    public static final String CONFIGURATION_PROXY_GENERATION_THREADS =
+            PREFIX + "configuration-proxy.generation-threads";
+
     // Environmental Monitoring  -------------------------- //
 
     /** Property name of environmental monitor port. */
@@ -741,6 +810,36 @@ public final class SystemProperties {
         return System.getProperty(WSDL_VALIDATOR_COMMAND, null);
     }
 
+    /**
+     * @return whether WSDLs are validated inside the admin API process instead of running the WSDL validator
+     * command, 'false' by default. WSDLs are only validated if the WSDL validator command is set.
+     */
+    public static boolean isWsdlValidatorInProcess() {
+        return Boolean.parseBoolean(System.getProperty(WSDL_VALIDATOR_IN_PROCESS, "false"));
+    }
+
+    /**
+     * @return the number of worker threads used for in-process WSDL validation, '2' by default.
+     */
+    public static int getWsdlValidatorThreads() {
+        return Integer.parseInt(System.getProperty(WSDL_VALIDATOR_THREADS, "2"));
+    }
+
+    /**
+     * @return the in-process WSDL validation timeout in seconds, '60' by default.
+     */
+    public static int getWsdlValidatorTimeout() {
+        return Integer.parseInt(System.getProperty(WSDL_VALIDATOR_TIMEOUT, "60"));
+    }
+
+    /**
+     * @return the maximum size in bytes of a WSDL validated in-process, '10485760' (10 MiB) by default. Does not
+     * limit the documents imported or included by the WSDL.
+     */
+    public static int getWsdlValidatorMaxWsdlSize() {
+        return Integer.parseInt(System.getProperty(WSDL_VALIDATOR_MAX_WSDL_SIZE, "10485760"));
+    }
+
 
     /**
      * @return signature digest algorithm ID used for generating authentication certificate registration request,
@@ -881,6 +980,15 @@ public final class SystemProperties {
                 DEFAULT_SIGNER_OCSP_RETRY_DELAY));
     }
 
+    /**
+     * @return the number of OCSP responders that are queried in parallel during the OCSP-response refresh,
+     * 4 by default
+     */
+    public static int getOcspFetchThreads() {
+        return Integer.parseInt(System.getProperty(SIGNER_OCSP_FETCH_THREADS,
+                DEFAULT_SIGNER_OCSP_FETCH_THREADS));
+    }
+
     /**
      * @return the module manager update interval in seconds that should be set for signer, 60 by default
      */
@@ -918,6 +1026,21 @@ public final class SystemProperties {
         return System.getProperty(CONFIGURATION_CLIENT_ALLOWED_FEDERATIONS, AllowedFederationMode.NONE.name());
     }
 
+    /**
+     * @return the number of configuration parts configuration client downloads concurrently, '4' by default.
+     */
+    public static int getConfigurationClientDownloadThreads() {
+        return Integer.parseInt(System.getProperty(CONFIGURATION_CLIENT_DOWNLOAD_THREADS, "4"));
+    }
+
+    /**
+     * @return whether configuration client writes a binary snapshot next to the downloaded shared parameters,
+     * 'true' by default.
+     */
+    public static boolean isConfigurationClientSharedParametersSnapshotEnabled() {
+        return Boolean.parseBoolean(System.getProperty(CONFIGURATION_CLIENT_SHARED_PARAMETERS_SNAPSHOT, "true"));
+    }
+
     /**
      * @return the HTTP port on which the server proxy OCSP responder is listening, '5577' by default.
      */
@@ -947,11 +1070,14 @@ public final class SystemProperties {
                 DEFAULT_OCSP_RESPONDER_CLIENT_READ_TIMEOUT));
     }
 
+    private static final SystemPropertyRegistry.Property<Boolean> SSL_ENABLED =
+            SystemPropertyRegistry.registerBoolean(PROXY_SSL_SUPPORT, "true");
+
     /**
      * @return whether SSL should be used between client and server proxies, 'true' by default.
      */
     public static boolean isSslEnabled() {
-        return "true".equalsIgnoreCase(System.getProperty(PROXY_SSL_SUPPORT, "true"));
+        return SSL_ENABLED.get();
     }
 
     /**
@@ -1099,6 +1225,13 @@ public final class SystemProperties {
         return System.getProperty(CONFIGURATION_PROXY_ADDRESS, DEFAULT_CONNECTOR_HOST);
     }
 
+    /**
+     * @return the number of configuration proxy instances that are generated concurrently, '4' by default.
+     */
+    public static int getConfigurationProxyGenerationThreads() {
+        return Integer.parseInt(System.getProperty(CONFIGURATION_PROXY_GENERATION_THREADS, "4"));
+    }
+
     /**
      * @return the interval in seconds at which proxy monitor agent collects monitoring data, '60' by default.
      */
@@ -1257,13 +1390,17 @@ public final class SystemProperties {
     private static final String DEFAULT_XROAD_SSL_CIPHER_SUITES = "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384,"
             + "TLS_DHE_RSA_WITH_AES_256_CBC_SHA256";
 
+    private static final SystemPropertyRegistry.Property<String[]> XROAD_TLS_CIPHER_SUITES =
+            SystemPropertyRegistry.register(PROXY_XROAD_TLS_CIPHERS, DEFAULT_XROAD_SSL_CIPHER_SUITES,
+                    value -> value.trim().split(COMMA_SPLIT));
+
     /**
      * Get X-Road accepted TLS cipher suites (between ss and ss).
      *
      * @return cipher suites.
      */
     public static String[] getXroadTLSCipherSuites() {
-        return System.getProperty(PROXY_XROAD_TLS_CIPHERS, DEFAULT_XROAD_SSL_CIPHER_SUITES).trim().split(COMMA_SPLIT);
+        return XROAD_TLS_CIPHER_SUITES.get().clone();
     }
 
     /**
@@ -1322,21 +1459,25 @@ public final class SystemProperties {
         return -1;
     }
 
+    private static final SystemPropertyRegistry.Property<Integer> CLIENT_PROXY_HTTPCLIENT_TIMEOUT =
+            SystemPropertyRegistry.registerInt(CLIENTPROXY_HTTPCLIENT_TIMEOUT, DEFAULT_CLIENTPROXY_HTTPCLIENT_TIMEOUT);
+
     /**
      * @return the connection maximum idle time that should be set for client proxy apache HttpClient
      */
     public static int getClientProxyHttpClientTimeout() {
-        return Integer.parseInt(System.getProperty(CLIENTPROXY_HTTPCLIENT_TIMEOUT,
-                DEFAULT_CLIENTPROXY_HTTPCLIENT_TIMEOUT));
-
+        return CLIENT_PROXY_HTTPCLIENT_TIMEOUT.get();
     }
 
+    private static final SystemPropertyRegistry.Property<Integer> CLIENT_PROXY_HTTPCLIENT_SO_LINGER =
+            SystemPropertyRegistry.registerInt(CLIENTPROXY_HTTPCLIENT_SO_LINGER,
+                    DEFAULT_CLIENTPROXY_HTTPCLIENT_SO_LINGER);
+
     /**
      * @return the so_linger value in seconds that should be set for client proxy apache HttpClient, -1 by default
      */
     public static int getClientProxyHttpClientSoLinger() {
-        return Integer.parseInt(System.getProperty(CLIENTPROXY_HTTPCLIENT_SO_LINGER,
-                DEFAULT_CLIENTPROXY_HTTPCLIENT_SO_LINGER));
+        return CLIENT_PROXY_HTTPCLIENT_SO_LINGER.get();
     }
 
     /**
@@ -1380,17 +1521,35 @@ public final class SystemProperties {
                 DEFAULT_CLIENTPROXY_POOL_IDLE_MONITOR_INTERVAL));
     }
 
+    private static final SystemPropertyRegistry.Property<Integer> CLIENT_PROXY_IDLE_CONNECTION_MONITOR_IDLE_TIME =
+            SystemPropertyRegistry.registerInt(CLIENTPROXY_POOL_IDLE_MONITOR_IDLE_TIME,
+                    DEFAULT_CLIENTPROXY_POOL_IDLE_MONITOR_IDLE_TIME);
+
     /**
-     * @return the idle time after which pooled connections should be discarded
+     * @return the idle time after which pooled connections should be discarded, also the maximum time pooled
+     * connections are kept alive
      */
     public static int getClientProxyIdleConnectionMonitorIdleTime() {
-        return Integer.parseInt(System.getProperty(CLIENTPROXY_POOL_IDLE_MONITOR_IDLE_TIME,
-                DEFAULT_CLIENTPROXY_POOL_IDLE_MONITOR_IDLE_TIME));
+        return CLIENT_PROXY_IDLE_CONNECTION_MONITOR_IDLE_TIME.get();
+    }
+
+    private static final SystemPropertyRegistry.Property<Integer> CLIENT_PROXY_MIN_KEEP_ALIVE_TIME =
+            SystemPropertyRegistry.registerInt(CLIENTPROXY_MIN_KEEP_ALIVE_TIME, "5000");
+
+    /**
+     * @return the minimum time in milliseconds pooled connections to a server proxy are kept alive. The actual time
+     * follows the request interval of the server proxy. '5000' by default.
+     */
+    public static int getClientProxyMinKeepAliveTime() {
+        return CLIENT_PROXY_MIN_KEEP_ALIVE_TIME.get();
     }
 
+    private static final SystemPropertyRegistry.Property<Boolean> CLIENT_PROXY_POOL_REUSE_CONNECTIONS =
+            SystemPropertyRegistry.registerBoolean(CLIENTPROXY_POOL_REUSE_CONNECTIONS,
+                    DEFAULT_CLIENTPROXY_POOL_REUSE_CONNECTIONS);
+
     public static boolean isEnableClientProxyPooledConnectionReuse() {
-        return Boolean.parseBoolean(System.getProperty(CLIENTPROXY_POOL_REUSE_CONNECTIONS,
-                DEFAULT_CLIENTPROXY_POOL_REUSE_CONNECTIONS));
+        return CLIENT_PROXY_POOL_REUSE_CONNECTIONS.get();
     }
 
     public static boolean isServerProxySupportClientsPooledConnections() {
@@ -1512,6 +1671,101 @@ public final class SystemProperties {
         return Long.getLong(SERVER_CONF_ACL_CACHE_SIZE, 100_000);
     }
 
+    /**
+     * @return the interval in seconds at which the cached server configuration is checked for changes, '1' by
+     * default. Value of 0 disables the check and cached items are only refreshed after the cache period.
+     */
+    public static int getServerConfChangeCheckInterval() {
+        return Integer.parseInt(System.getProperty(SERVER_CONF_CHANGE_CHECK_INTERVAL, "1"));
+    }
+
+    /**
+     * @return whether the proxy loads the whole server configuration into an in-memory snapshot and answers the
+     * lookups of the message exchange from it, 'false' by default. The snapshot is reloaded when the change check
+     * detects a change, so it is only used if the change check is enabled.
+     */
+    public static boolean isServerConfSnapshotEnabled() {
+        return Boolean.parseBoolean(System.getProperty(SERVER_CONF_SNAPSHOT_ENABLED, "false"));
+    }
+
+    /**
+     * @return the number of validated signature structures to keep cached, '100' by default.
+     * Value of 0 disables the cache and every signature is validated against the schema. Signatures with a cached
+     * structure skip the schema checks of element and attribute values.
+     */
+    public static long getSignatureSchemaCacheSize() {
+        return Long.getLong(SIGNATURE_SCHEMA_CACHE_SIZE, 100);
+    }
+
+    /**
+     * @return the number of WSDL documents the metadata service keeps cached, '100' by default.
+     * Value of 0 disables the cache and every getWsdl request downloads the WSDL.
+     */
+    public static long getMetaserviceWsdlCacheSize() {
+        return Long.getLong(METASERVICE_WSDL_CACHE_SIZE, 100);
+    }
+
+    /**
+     * @return the interval in seconds after which a cached WSDL is revalidated with its source, '60' by default.
+     * Value of 0 keeps cached WSDLs without revalidating them.
+     */
+    public static int getMetaserviceWsdlCacheRefreshInterval() {
+        return Integer.parseInt(System.getProperty(METASERVICE_WSDL_CACHE_REFRESH_INTERVAL, "60"));
+    }
+
+    /**
+     * @return the size in bytes up to which a single attachment or REST body is cached in memory before it is
+     * written to a temporary file, '262144' by default. Value of 0 caches everything in temporary files.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static long getAttachmentCacheMemoryThreshold() {
+        return Long.getLong(ATTACHMENT_CACHE_MEMORY_THRESHOLD, 256 * 1024);
+    }
+
+    /**
+     * @return the total memory in bytes used for caching attachments and REST bodies in memory, '67108864' by
+     * default. Once the budget is used up, new content is cached in temporary files.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static long getAttachmentCacheMemoryBudget() {
+        return Long.getLong(ATTACHMENT_CACHE_MEMORY_BUDGET, 64 * 1024 * 1024);
+    }
+
+    /**
+     * @return the number of verified authentication certificate chains and their OCSP responses to keep cached,
+     * '1000' by default. Value of 0 disables the cache and every chain is verified again.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static long getVerifiedAuthCertCacheSize() {
+        return Long.getLong(VERIFIED_AUTH_CERT_CACHE_SIZE, 1000);
+    }
+
+    /**
+     * @return the number of threads calculating the digests of received attachments in parallel with parsing
+     * the message, '0' by default. Value of 0 calculates the digests on the thread parsing the message.
+     */
+    public static int getAttachmentDigestThreads() {
+        return Integer.getInteger(ATTACHMENT_DIGEST_THREADS, 0);
+    }
+
+    /**
+     * @return the maximum number of requests the server proxy sends concurrently to one service backend host
+     * and port, '0' by default. Value of 0 does not limit the requests.
+     */
+    public static int getServerBackendMaxConcurrency() {
+        return Integer.getInteger(SERVER_BACKEND_MAX_CONCURRENCY, 0);
+    }
+
+    /**
+     * @return the time in milliseconds a request waits for a free slot when its service backend already has the
+     * maximum number of concurrent requests, '5000' by default. The request handling thread is blocked while
+     * waiting. Value of 0 rejects the request at once.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static long getServerBackendQueueTimeout() {
+        return Long.getLong(SERVER_BACKEND_QUEUE_TIMEOUT, 5000);
+    }
+
     private static void checkVersionValidity(int version, int current, String defaultVersion) {
         if (version > current || version < 1) {
             throw new IllegalArgumentException("Illegal minimum global configuration version in system parameters");
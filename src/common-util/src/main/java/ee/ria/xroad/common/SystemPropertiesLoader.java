@@ -297,6 +297,8 @@ public class SystemPropertiesLoader {
             }
         });
 
+        SystemPropertyRegistry.reload();
+
         log.debug("Loaded properties:\n{}", loadedProperties);
     }
 
@@ -0,0 +1,171 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Registry of typed system properties. The registered properties are parsed once into an immutable snapshot, so
+ * that reading them on the message processing path costs an array lookup instead of a synchronized
+ * {@link System#getProperty(String)} call followed by parsing.
+ *
+ * <p>The snapshot is created on first access and is replaced only by {@link #reload()}. Code that changes system
+ * properties at runtime must call {@link #reload()} for the registered properties to see the new values;
+ * {@link SystemPropertiesLoader#load()} does it automatically.</p>
+ */
+public final class SystemPropertyRegistry {
+
+    private static final List<Property<?>> PROPERTIES = new ArrayList<>();
+
+    private static volatile Object[] snapshot;
+
+    private SystemPropertyRegistry() {
+    }
+
+    /**
+     * Registers a property that is parsed with the given parser.
+     * @param name the system property name
+     * @param defaultValue the value used when the property is not set
+     * @param parser converts the string value to the property type
+     * @param <T> the property type
+     * @return the registered property
+     */
+    public static synchronized <T> Property<T> register(String name, String defaultValue,
+            Function<String, T> parser) {
+        Property<T> property = new Property<>(PROPERTIES.size(), name, defaultValue, parser);
+
+        PROPERTIES.add(property);
+        snapshot = null;
+
+        return property;
+    }
+
+    /**
+     * Registers a boolean property. Only the value 'true' (case-insensitively) is considered true.
+     * @param name the system property name
+     * @param defaultValue the value used when the property is not set
+     * @return the registered property
+     */
+    public static Property<Boolean> registerBoolean(String name, String defaultValue) {
+        return register(name, defaultValue, "true"::equalsIgnoreCase);
+    }
+
+    /**
+     * Registers an integer property.
+     * @param name the system property name
+     * @param defaultValue the value used when the property is not set
+     * @return the registered property
+     */
+    public static Property<Integer> registerInt(String name, String defaultValue) {
+        return register(name, defaultValue, Integer::parseInt);
+    }
+
+    /**
+     * Re-reads and re-parses all registered properties from the system properties.
+     */
+    public static synchronized void reload() {
+        Object[] values = new Object[PROPERTIES.size()];
+
+        for (Property<?> property : PROPERTIES) {
+            values[property.index] = property.parse();
+        }
+
+        snapshot = values;
+    }
+
+    private static Object valueOf(Property<?> property) {
+        Object[] values = snapshot;
+
+        if (values == null || property.index >= values.length) {
+            reload();
+
+            values = snapshot;
+        }
+
+        return values[property.index];
+    }
+
+    /**
+     * A registered typed property.
+     * @param <T> the property type
+     */
+    public static final class Property<T> {
+
+        private final int index;
+        private final String name;
+        private final String defaultValue;
+        private final Function<String, T> parser;
+
+        private Property(int index, String name, String defaultValue, Function<String, T> parser) {
+            this.index = index;
+            this.name = name;
+            this.defaultValue = defaultValue;
+            this.parser = parser;
+        }
+
+        /**
+         * @return the property name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the parsed value from the current snapshot. If the value could not be parsed when the snapshot
+         * was created, the parse error is rethrown.
+         * @return the parsed value
+         */
+        @SuppressWarnings("unchecked")
+        public T get() {
+            Object value = valueOf(this);
+
+            if (value instanceof ParseFailure) {
+                throw ((ParseFailure) value).error;
+            }
+
+            return (T) value;
+        }
+
+        private Object parse() {
+            try {
+                return parser.apply(System.getProperty(name, defaultValue));
+            } catch (RuntimeException e) {
+                // Reported to the callers of this property only, like the getters did before
+                return new ParseFailure(e);
+            }
+        }
+    }
+
+    private static final class ParseFailure {
+
+        private final RuntimeException error;
+
+        private ParseFailure(RuntimeException error) {
+            this.error = error;
+        }
+    }
+}
@@ -143,6 +143,14 @@ public abstract class AbstractXmlConf<T> implements ConfProvider {
         }
     }
 
+    /**
+     * @return checksum of the configuration file contents at the time of loading, or null if the configuration
+     * was not loaded from a file
+     */
+    public String getChecksum() {
+        return confFileChecker != null ? confFileChecker.getChecksum() : null;
+    }
+
     @Override
     public void load(String fileName) throws Exception {
         if (fileName == null) {
@@ -152,6 +160,15 @@ public abstract class AbstractXmlConf<T> implements ConfProvider {
         confFileName = fileName;
         confFileChecker = new FileContentChangeChecker(confFileName);
 
+        JAXBElement<T> precompiled = loadPrecompiled(confFileChecker.getChecksum());
+
+        if (precompiled != null) {
+            root = precompiled;
+            confType = precompiled.getValue();
+
+            return;
+        }
+
         doValidateConfFile();
 
         LoadResult<T> result = doLoadConfFile();
@@ -159,6 +176,16 @@ public abstract class AbstractXmlConf<T> implements ConfProvider {
         confType = result.getConfType();
     }
 
+    /**
+     * Returns the configuration from a precompiled form of {@link #confFileName}, skipping the validation and
+     * unmarshalling of the XML. Returns null by default.
+     * @param checksum checksum of the configuration file contents
+     * @return the configuration or null, if the XML file should be loaded
+     */
+    protected JAXBElement<T> loadPrecompiled(String checksum) {
+        return null;
+    }
+
     /**
      * Load the xml configuration to a {@link LoadResult} that can be manipulated further.
      * @return
@@ -0,0 +1,245 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf;
+
+import ee.ria.xroad.common.util.filewatcher.FileWatchListener;
+import ee.ria.xroad.common.util.filewatcher.FileWatcher;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Central notification point for configuration file changes.
+ *
+ * Configuration files are watched with {@link FileWatcher} (inotify on Linux) and subscribers are notified on a
+ * single background thread. Subscribers can therefore load new configuration snapshots off the request path, and
+ * subscribers of the same file are notified in the order they subscribed. A burst of file events that arrives while
+ * a notification is still pending results in a single notification.
+ */
+@Slf4j
+public final class ConfigurationChangeBus {
+
+    private static final long WATCHER_STARTUP_TIMEOUT_SECONDS = 5;
+
+    @SuppressWarnings("unchecked")
+    private static final Set<WatchEvent.Kind<Path>> EVENTS = new HashSet<>(Arrays.asList(
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+
+    private static final Map<Path, WatchedFile> WATCHED_FILES = new HashMap<>();
+
+    private static final ExecutorService WATCHERS = Executors.newCachedThreadPool(
+            daemonThreadFactory("ConfigurationChangeWatcher"));
+
+    private static final ExecutorService NOTIFIER = Executors.newSingleThreadExecutor(
+            daemonThreadFactory("ConfigurationChangeNotifier"));
+
+    private ConfigurationChangeBus() {
+    }
+
+    /**
+     * Subscribes the listener to changes of the given file. The file does not have to exist yet, but its directory
+     * must exist for the file to be watched. The listener stays subscribed even if the file cannot be watched, in
+     * which case it is only notified via {@link #fireChanged(Path)} and the caller should arrange polling.
+     *
+     * @param file the configuration file
+     * @param listener the listener to notify on background thread when the file is created or modified
+     * @return true, if the file is being watched for changes
+     */
+    public static synchronized boolean subscribe(Path file, FileWatchListener listener) {
+        requireNonNull(listener);
+
+        WatchedFile watchedFile = WATCHED_FILES.computeIfAbsent(normalize(file), WatchedFile::new);
+        watchedFile.listeners.add(listener);
+
+        return watchedFile.startWatching();
+    }
+
+    /**
+     * Starts watching the given file again if it could not be watched when it was subscribed, for example because
+     * its directory did not exist yet.
+     *
+     * @param file the configuration file
+     * @return true, if the file has subscribers and is being watched for changes
+     */
+    public static synchronized boolean watch(Path file) {
+        WatchedFile watchedFile = WATCHED_FILES.get(normalize(file));
+
+        return watchedFile != null && watchedFile.startWatching();
+    }
+
+    /**
+     * Unsubscribes the listener from changes of the given file. The file is no longer watched once it has no
+     * subscribers left.
+     *
+     * @param file the configuration file
+     * @param listener the listener to remove
+     */
+    public static synchronized void unsubscribe(Path file, FileWatchListener listener) {
+        Path path = normalize(file);
+        WatchedFile watchedFile = WATCHED_FILES.get(path);
+
+        if (watchedFile != null && watchedFile.listeners.remove(listener) && watchedFile.listeners.isEmpty()) {
+            watchedFile.stopWatching();
+            WATCHED_FILES.remove(path);
+        }
+    }
+
+    /**
+     * Notifies the subscribers of the given file as if the file had changed. Used when the change is detected by
+     * other means, for example when the file could not be watched.
+     *
+     * @param file the configuration file
+     */
+    public static void fireChanged(Path file) {
+        WatchedFile watchedFile;
+
+        synchronized (ConfigurationChangeBus.class) {
+            watchedFile = WATCHED_FILES.get(normalize(file));
+        }
+
+        if (watchedFile != null) {
+            watchedFile.fileModified();
+        }
+    }
+
+    /**
+     * Stops watching all files and removes all subscribers.
+     */
+    public static synchronized void stop() {
+        WATCHED_FILES.values().forEach(WatchedFile::stopWatching);
+        WATCHED_FILES.clear();
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+
+            return thread;
+        };
+    }
+
+    private static final class WatchedFile implements FileWatchListener {
+
+        private final Path path;
+        private final List<FileWatchListener> listeners = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean notificationPending = new AtomicBoolean();
+
+        private FileWatcher watcher;
+        private Future<?> watcherTask;
+
+        WatchedFile(Path path) {
+            this.path = path;
+        }
+
+        boolean startWatching() {
+            if (watcher != null) {
+                return true;
+            }
+
+            if (!Files.isDirectory(path.getParent())) {
+                log.warn("Cannot watch {} for changes, directory does not exist", path);
+
+                return false;
+            }
+
+            CountDownLatch started = new CountDownLatch(1);
+
+            watcher = new FileWatcher(path, this, EVENTS, started::countDown);
+            watcherTask = WATCHERS.submit(watcher);
+
+            boolean watching = false;
+            try {
+                watching = started.await(WATCHER_STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (!watching) {
+                log.warn("Failed to start watching {} for changes", path);
+
+                stopWatching();
+            }
+
+            return watching;
+        }
+
+        void stopWatching() {
+            if (watcher != null) {
+                watcher.stop();
+                watcherTask.cancel(true);
+
+                watcher = null;
+                watcherTask = null;
+            }
+        }
+
+        @Override
+        public void fileModified() {
+            if (notificationPending.compareAndSet(false, true)) {
+                NOTIFIER.execute(this::notifyListeners);
+            }
+        }
+
+        private void notifyListeners() {
+            // Events arriving from now on need a new notification
+            notificationPending.set(false);
+
+            log.debug("Notifying {} subscriber(s) of changes in {}", listeners.size(), path);
+
+            for (FileWatchListener listener : listeners) {
+                try {
+                    listener.fileModified();
+                } catch (Exception e) {
+                    log.error("Error notifying subscriber of changes in {}", path, e);
+                }
+            }
+        }
+    }
+}
@@ -24,24 +24,26 @@
  */
 package ee.ria.xroad.common.conf.globalconf;
 
-import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.CodedException;
 
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+
+import java.nio.file.Path;
+
+import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
 
 /**
- * Caching configuration directory
+ * Caching configuration directory. In addition to the parameters snapshot of the parent class, the expiration
+ * dates of the configuration files are read on reload, so checking whether the configuration is up to date does not
+ * touch the file system.
  */
 @Slf4j
 public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
 
-    public static final String INSTANCE_IDENTIFIER = "instanceIdentifier";
-    public static final String PRIVATE_PARAMS = "privateParams";
-    public static final String SHARED_PARAMS = "sharedParams";
-    public static final String VERIFY_UP_TO_DATE = "verifyUpToDate";
-    public static final String RELOAD_CONF_DIR = "reload";
-
-    private final int expireSeconds;
-    private final TimeBasedObjectCache cache;
+    // The first configuration file to expire, null if the expiration dates could not be read
+    private volatile Expiration expiration;
 
     /**
      * Constructs new caching directory from the given path.
@@ -51,72 +53,19 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      */
     public CachingConfigurationDirectory(String directoryPath) throws Exception {
         super(directoryPath, false);
-        expireSeconds = SystemProperties.getConfigurationClientUpdateIntervalSeconds();
-        cache = new TimeBasedObjectCache(expireSeconds);
-        reload();
     }
 
     /**
      * Constructs new caching directory from the given path.
      *
      * @param directoryPath   the path to the directory.
-     * @param reloadIfChanged if true, automatic reload and detection of
-     *                        parameters is performed.
+     * @param reloadIfChanged if true, parameters of instances missing from
+     *                        the current snapshot are looked up from disk.
      * @throws Exception if loading configuration fails
      */
     public CachingConfigurationDirectory(String directoryPath,
                                          boolean reloadIfChanged) throws Exception {
         super(directoryPath, reloadIfChanged);
-        expireSeconds = SystemProperties.getConfigurationClientUpdateIntervalSeconds();
-        cache = new TimeBasedObjectCache(expireSeconds);
-        reload();
-    }
-
-    /**
-     *
-     */
-    @Override
-    public synchronized String getInstanceIdentifier() {
-        if (!cache.isValid(INSTANCE_IDENTIFIER)) {
-            cache.setValue(INSTANCE_IDENTIFIER, super.getInstanceIdentifier());
-        }
-        return (String) cache.getValue(INSTANCE_IDENTIFIER);
-    }
-
-    /**
-     * Returns private parameters for a given instance identifier.
-     *
-     * @param instanceId the instance identifier
-     * @return private parameters or null, if no private parameters exist for
-     * given instance identifier
-     * @throws Exception if an error occurs while reading parameters
-     */
-    @Override
-    public synchronized PrivateParametersV2 getPrivate(String instanceId)
-            throws Exception {
-        final String key = String.format("%s-%s", PRIVATE_PARAMS, instanceId);
-        if (!cache.isValid(key)) {
-            cache.setValue(key, super.getPrivate(instanceId));
-        }
-        return (PrivateParametersV2) cache.getValue(key);
-    }
-
-    /**
-     * Returns shared parameters for a given instance identifier.
-     *
-     * @param instanceId the instance identifier
-     * @return shared parameters or null, if no shared parameters exist for
-     * given instance identifier
-     * @throws Exception if an error occurs while reading parameters
-     */
-    @Override
-    public synchronized SharedParametersV2 getShared(String instanceId)
-            throws Exception {
-        final String key = String.format("%s-%s", SHARED_PARAMS, instanceId);
-        if (!cache.isValid(key)) {
-            cache.setValue(key, super.getShared(instanceId));
-        }
-        return (SharedParametersV2) cache.getValue(key);
     }
 
     /**
@@ -124,10 +73,16 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * configuration files is too old.
      */
     @Override
-    public synchronized void verifyUpToDate() throws Exception {
-        if (!cache.isValid(VERIFY_UP_TO_DATE)) {
+    public void verifyUpToDate() throws Exception {
+        Expiration current = expiration;
+
+        if (current == null) {
+            // Reports the actual problem with the configuration files
             super.verifyUpToDate();
-            cache.setValue(VERIFY_UP_TO_DATE, 1);
+        } else if (current.getExpiresOn() != null && current.getExpiresOn().isBeforeNow()) {
+            log.info("{} expired on {}", current.getFile(), current.getExpiresOn());
+
+            throw new CodedException(X_OUTDATED_GLOBALCONF, "%s is too old", current.getFile());
         }
     }
 
@@ -139,11 +94,39 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      */
     @Override
     public synchronized void reload() throws Exception {
-        // cache validity indicates whether reloading should be done at this time
-        // cache value is meaningless in this case
-        if (cache != null && !cache.isValid(RELOAD_CONF_DIR)) {
-            cache.setValue(RELOAD_CONF_DIR, 1);
-            super.reload();
+        super.reload();
+
+        expiration = readExpiration();
+    }
+
+    private Expiration readExpiration() {
+        Expiration[] first = new Expiration[1];
+
+        try {
+            eachFile(file -> {
+                try {
+                    DateTime expiresOn = getMetadata(file).getExpirationDate();
+
+                    if (first[0] == null || expiresOn.isBefore(first[0].getExpiresOn())) {
+                        first[0] = new Expiration(file, expiresOn);
+                    }
+                } catch (Exception e) {
+                    // Same as ConfigurationDirectoryV2.isExpired, files without metadata do not expire
+                    log.error("Failed to get expiration date of file " + file, e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to read expiration dates of configuration files", e);
+
+            return null;
         }
+
+        return first[0] != null ? first[0] : new Expiration(null, null);
+    }
+
+    @Value
+    private static class Expiration {
+        private Path file;
+        private DateTime expiresOn;
     }
 }
@@ -41,6 +41,7 @@ import java.nio.file.StandardCopyOption;
  */
 public interface ConfigurationDirectory {
     String FILES = "files";
+    String FILE_HASHES = "files.hashes";
     String METADATA_SUFFIX = ".metadata";
     String INSTANCE_IDENTIFIER_FILE = "instance-identifier";
 
@@ -75,6 +76,23 @@ public interface ConfigurationDirectory {
         saveMetadata(fileName, expirationDate);
     }
 
+    /**
+     * Moves the downloaded content in place of the given file and saves the corresponding expiration date file.
+     * The content must be in the same file system as the file for the move to be atomic.
+     *
+     * @param fileName the name of the file to save
+     * @param content the downloaded content
+     * @param metadata the file metadata
+     * @throws Exception if an error occurs
+     */
+    static void save(Path fileName, Path content, ConfigurationPartMetadata metadata) throws Exception {
+        LOG.info("Saving content to file {}", fileName);
+
+        Files.move(content, fileName, StandardCopyOption.ATOMIC_MOVE);
+
+        saveMetadata(fileName, metadata);
+    }
+
     /**
      * Saves the expiration date for the given file.
      *
@@ -42,6 +42,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,8 +57,9 @@ import static ee.ria.xroad.common.conf.globalconf.ConfigurationUtils.escapeInsta
  * Class for reading global configuration directory. The directory must have sub directory per instance identifier.
  * Each sub directory must contain private and/or shared parameters.
  *
- * When querying the parameters from this class, the parameters XML is checked for modifications and if the XML has
- * been modified, the parameters are reloaded from the XML.
+ * The loaded parameters are published as an immutable snapshot, so querying them does not take any locks or touch
+ * the file system. Changed parameters XML files are detected and loaded into a new snapshot by {@link #reload()},
+ * which is expected to be called when the configuration files change (see GlobalConf).
  */
 @Slf4j
 public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
@@ -67,13 +69,14 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
 
     @Getter
     @Setter
-    private Path path;
+    private volatile Path path;
     private final boolean reloadIfChanged;
 
-    private String instanceIdentifier;
+    private volatile String instanceIdentifier;
 
-    private Map<String, PrivateParametersV2> privateParameters = new HashMap<>();
-    private Map<String, SharedParametersV2> sharedParameters = new HashMap<>();
+    private volatile Map<String, PrivateParametersV2> privateParameters = Collections.emptyMap();
+    private volatile Map<String, SharedParametersV2> sharedParameters = Collections.emptyMap();
+    private volatile List<SharedParametersV2> sharedParametersList = Collections.emptyList();
 
     // ------------------------------------------------------------------------
 
@@ -91,7 +94,8 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      * Constructs new directory from the given path.
      *
      * @param directoryPath the path to the directory.
-     * @param reloadIfChanged if true, automatic reload and detection of parameters is performed.
+     * @param reloadIfChanged if true, parameters of instances missing from the current snapshot are looked up
+     * from disk on access.
      * @throws Exception if loading configuration fails
      */
     public ConfigurationDirectoryV2(String directoryPath, boolean reloadIfChanged) throws Exception {
@@ -104,16 +108,15 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
     /**
      * @return the instance identifier of this configuration. The instance identifier is lazy initialized.
      */
-    public synchronized String getInstanceIdentifier() {
-        if (instanceIdentifier == null) {
-            loadInstanceIdentifier();
-        }
+    public String getInstanceIdentifier() {
+        String identifier = instanceIdentifier;
 
-        return instanceIdentifier;
+        return identifier != null ? identifier : loadInstanceIdentifier();
     }
 
     /**
      * Reloads the configuration directory. Only files that are new or have changed, are actually loaded.
+     * The new parameters are published atomically, readers keep seeing the previous snapshot until then.
      *
      * @throws Exception if an error occurs during reload
      */
@@ -123,8 +126,6 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
 
         log.trace("Reloading configuration from {}", path);
 
-        instanceIdentifier = null;
-
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, Files::isDirectory)) {
             for (Path instanceDir : stream) {
                 log.trace("Loading parameters from {}", instanceDir);
@@ -141,8 +142,9 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
             }
         }
 
-        privateParameters = privateParams;
-        sharedParameters = sharedParams;
+        instanceIdentifier = null;
+        publishPrivateParameters(privateParams);
+        publishSharedParameters(sharedParams);
     }
 
     /**
@@ -152,26 +154,18 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      * @return private parameters or null, if no private parameters exist for given instance identifier
      * @throws Exception if an error occurs while reading parameters
      */
-    public synchronized PrivateParametersV2 getPrivate(String instanceId) throws Exception {
+    public PrivateParametersV2 getPrivate(String instanceId) throws Exception {
         String safeInstanceId = escapeInstanceIdentifier(instanceId);
 
         log.trace("getPrivate(instance = {}, directory = {})", instanceId, safeInstanceId);
 
         PrivateParametersV2 parameters = privateParameters.get(safeInstanceId);
 
-        if (!reloadIfChanged) {
-            return parameters;
+        if (parameters == null && reloadIfChanged) {
+            parameters = loadMissingPrivateParameters(safeInstanceId);
         }
 
-        if (parameters != null && parameters.hasChanged()) {
-            parameters.reload();
-        } else if (parameters == null) {
-            // Parameters not cached, attempt to load it from disk.
-            Path instanceDir = Paths.get(path.toString(), safeInstanceId);
-            loadPrivateParameters(instanceDir, privateParameters);
-        }
-
-        return privateParameters.get(safeInstanceId);
+        return parameters;
     }
 
     /**
@@ -181,33 +175,25 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
      * @return shared parameters or null, if no shared parameters exist for given instance identifier
      * @throws Exception if an error occurs while reading parameters
      */
-    public synchronized SharedParametersV2 getShared(String instanceId) throws Exception {
+    public SharedParametersV2 getShared(String instanceId) throws Exception {
         String safeInstanceId = escapeInstanceIdentifier(instanceId);
 
         log.trace("getShared(instance = {}, directory = {})", instanceId, safeInstanceId);
 
         SharedParametersV2 parameters = sharedParameters.get(safeInstanceId);
 
-        if (!reloadIfChanged) {
-            return parameters;
-        }
-
-        if (parameters != null && parameters.hasChanged()) {
-            parameters.reload();
-        } else if (parameters == null) {
-            // Parameters not cached, attempt to load it from disk.
-            Path instanceDir = Paths.get(path.toString(), safeInstanceId);
-            loadSharedParameters(instanceDir, sharedParameters);
+        if (parameters == null && reloadIfChanged) {
+            parameters = loadMissingSharedParameters(safeInstanceId);
         }
 
-        return sharedParameters.get(safeInstanceId);
+        return parameters;
     }
 
     /**
      * @return all known shared parameters
      */
-    public synchronized List<SharedParametersV2> getShared() {
-        return new ArrayList<>(sharedParameters.values());
+    public List<SharedParametersV2> getShared() {
+        return sharedParametersList;
     }
 
     /**
@@ -328,13 +314,19 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
 
     // ------------------------------------------------------------------------
 
-    private void loadInstanceIdentifier() {
+    private synchronized String loadInstanceIdentifier() {
+        if (instanceIdentifier != null) {
+            return instanceIdentifier;
+        }
+
         Path file = Paths.get(path.toString(), INSTANCE_IDENTIFIER_FILE);
 
         log.trace("Loading instance identifier from {}", file);
 
         try {
             instanceIdentifier = FileUtils.readFileToString(file.toFile()).trim();
+
+            return instanceIdentifier;
         } catch (Exception e) {
             log.error("Failed to read instance identifier from " + file, e);
 
@@ -343,6 +335,51 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
         }
     }
 
+    private synchronized PrivateParametersV2 loadMissingPrivateParameters(String safeInstanceId) throws Exception {
+        PrivateParametersV2 parameters = privateParameters.get(safeInstanceId);
+
+        if (parameters == null) {
+            // Parameters not in the snapshot, attempt to load them from disk.
+            Map<String, PrivateParametersV2> privateParams = new HashMap<>(privateParameters);
+            loadPrivateParameters(Paths.get(path.toString(), safeInstanceId), privateParams);
+
+            parameters = privateParams.get(safeInstanceId);
+
+            if (parameters != null) {
+                publishPrivateParameters(privateParams);
+            }
+        }
+
+        return parameters;
+    }
+
+    private synchronized SharedParametersV2 loadMissingSharedParameters(String safeInstanceId) throws Exception {
+        SharedParametersV2 parameters = sharedParameters.get(safeInstanceId);
+
+        if (parameters == null) {
+            // Parameters not in the snapshot, attempt to load them from disk.
+            Map<String, SharedParametersV2> sharedParams = new HashMap<>(sharedParameters);
+            loadSharedParameters(Paths.get(path.toString(), safeInstanceId), sharedParams);
+
+            parameters = sharedParams.get(safeInstanceId);
+
+            if (parameters != null) {
+                publishSharedParameters(sharedParams);
+            }
+        }
+
+        return parameters;
+    }
+
+    private void publishPrivateParameters(Map<String, PrivateParametersV2> privateParams) {
+        privateParameters = Collections.unmodifiableMap(privateParams);
+    }
+
+    private void publishSharedParameters(Map<String, SharedParametersV2> sharedParams) {
+        sharedParametersList = Collections.unmodifiableList(new ArrayList<>(sharedParams.values()));
+        sharedParameters = Collections.unmodifiableMap(sharedParams);
+    }
+
     private void loadPrivateParameters(Path instanceDir, Map<String, PrivateParametersV2> privateParams)
             throws Exception {
         String instanceId = instanceDir.getFileName().toString();
@@ -373,17 +410,18 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
         }
     }
 
-    // Loads the parameters from file if the file has changed.
-    // Returns the parameters or null if the file does not exist.
+    // Loads the parameters from file if the file has changed. Published parameters are never modified,
+    // a changed file is always loaded into a new instance.
     private static <T extends ConfProvider> T loadParameters(Path path, Class<T> clazz, T existingInstance)
             throws Exception {
-        T params = existingInstance != null ? existingInstance : (T) clazz.newInstance();
+        if (existingInstance != null && !existingInstance.hasChanged()) {
+            return existingInstance;
+        }
 
-        if (params.hasChanged()) {
-            log.trace("Loading {} from {}", clazz.getSimpleName(), path);
+        log.trace("Loading {} from {}", clazz.getSimpleName(), path);
 
-            params.load(path.toString());
-        }
+        T params = clazz.newInstance();
+        params.load(path.toString());
 
         return params;
     }
@@ -0,0 +1,534 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.ApprovedCATypeV2;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.ApprovedTSAType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.CaInfoType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.CentralServiceType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.GlobalGroupType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.GlobalSettingsType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.MemberClassType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.MemberType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.ObjectFactory;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.OcspInfoType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SecurityServerType;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SharedParametersTypeV2;
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SubsystemType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.util.AtomicSave;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.bind.JAXBElement;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of parsed shared parameters. The configuration client writes the snapshot next to the shared
+ * parameters XML, so that other processes can skip the schema validation and unmarshalling of the XML.
+ *
+ * The snapshot is read through a memory mapping and used only if its format version matches, its payload checksum
+ * is correct and it was created from an XML file with the same checksum as the one being loaded. Otherwise the
+ * caller falls back to the XML.
+ *
+ * Strings are stored once in a string table, so repeated values (instance identifiers, member classes) are shared
+ * by the loaded objects.
+ */
+@Slf4j
+final class SharedParametersSnapshot {
+
+    static final String SUFFIX = ".snapshot";
+
+    private static final int MAGIC = 0x58525350; // "XRSP"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int NULL = -1;
+
+    private SharedParametersSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot of the shared parameters atomically to the given file.
+     * @param conf the parsed shared parameters
+     * @param xmlChecksum checksum of the XML file the parameters were loaded from
+     * @param file the snapshot file
+     * @throws Exception if writing the snapshot fails
+     */
+    static void write(SharedParametersTypeV2 conf, String xmlChecksum, Path file) throws Exception {
+        byte[] payload = new Encoder().encode(conf);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        AtomicSave.execute(file.toString(), "tmpsnapshot", out -> {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeInt(FORMAT_VERSION);
+            data.writeUTF(xmlChecksum);
+            data.writeLong(crc.getValue());
+            data.writeInt(payload.length);
+            data.write(payload);
+            data.flush();
+        }, StandardCopyOption.ATOMIC_MOVE);
+
+        log.debug("Saved shared parameters snapshot {} ({} bytes)", file, payload.length);
+    }
+
+    /**
+     * Reads the snapshot from the given file.
+     * @param file the snapshot file
+     * @param xmlChecksum checksum of the XML file being loaded
+     * @return the shared parameters or null, if the snapshot does not exist or does not match the XML file
+     */
+    static JAXBElement<SharedParametersTypeV2> read(Path file, String xmlChecksum) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.info("Ignoring shared parameters snapshot {}, unsupported format", file);
+
+                return null;
+            }
+
+            byte[] checksum = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(checksum);
+
+            if (!new String(checksum, StandardCharsets.UTF_8).equals(xmlChecksum)) {
+                log.info("Ignoring shared parameters snapshot {}, created from a different file", file);
+
+                return null;
+            }
+
+            long expectedCrc = buffer.getLong();
+            int length = buffer.getInt();
+
+            ByteBuffer payload = buffer.slice();
+            payload.limit(length);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+
+            if (crc.getValue() != expectedCrc) {
+                log.warn("Ignoring shared parameters snapshot {}, checksum mismatch", file);
+
+                return null;
+            }
+
+            return new ObjectFactory().createConf(new Decoder(payload).decode());
+        } catch (Exception e) {
+            log.warn("Ignoring shared parameters snapshot {}", file, e);
+
+            return null;
+        }
+    }
+
+    private static final class Encoder {
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<Object, int[]> clientRefs = new IdentityHashMap<>();
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        byte[] encode(SharedParametersTypeV2 conf) throws IOException {
+            str(conf.getInstanceIdentifier());
+
+            count(conf.getApprovedCA());
+            for (ApprovedCATypeV2 ca : conf.getApprovedCA()) {
+                str(ca.getName());
+                bool(ca.isAuthenticationOnly());
+                caInfo(ca.getTopCA());
+                count(ca.getIntermediateCA());
+                for (CaInfoType intermediate : ca.getIntermediateCA()) {
+                    caInfo(intermediate);
+                }
+                str(ca.getCertificateProfileInfo());
+            }
+
+            count(conf.getApprovedTSA());
+            for (ApprovedTSAType tsa : conf.getApprovedTSA()) {
+                str(tsa.getName());
+                str(tsa.getUrl());
+                bytes(tsa.getCert());
+            }
+
+            count(conf.getMember());
+            for (int i = 0; i < conf.getMember().size(); i++) {
+                MemberType member = conf.getMember().get(i);
+                clientRefs.put(member, new int[] {i, NULL});
+
+                str(member.getId());
+                memberClass(member.getMemberClass());
+                str(member.getMemberCode());
+                str(member.getName());
+                count(member.getSubsystem());
+                for (int j = 0; j < member.getSubsystem().size(); j++) {
+                    SubsystemType subsystem = member.getSubsystem().get(j);
+                    clientRefs.put(subsystem, new int[] {i, j});
+
+                    str(subsystem.getId());
+                    str(subsystem.getSubsystemCode());
+                }
+            }
+
+            count(conf.getSecurityServer());
+            for (SecurityServerType server : conf.getSecurityServer()) {
+                clientRef(server.getOwner());
+                str(server.getServerCode());
+                str(server.getAddress());
+                count(server.getAuthCertHash());
+                for (byte[] hash : server.getAuthCertHash()) {
+                    bytes(hash);
+                }
+                count(server.getClient());
+                for (JAXBElement<?> client : server.getClient()) {
+                    clientRef(client.getValue());
+                }
+            }
+
+            count(conf.getGlobalGroup());
+            for (GlobalGroupType group : conf.getGlobalGroup()) {
+                str(group.getGroupCode());
+                str(group.getDescription());
+                count(group.getGroupMember());
+                for (ClientId member : group.getGroupMember()) {
+                    clientId(member);
+                }
+            }
+
+            count(conf.getCentralService());
+            for (CentralServiceType service : conf.getCentralService()) {
+                str(service.getServiceCode());
+                serviceId(service.getImplementingService());
+            }
+
+            GlobalSettingsType settings = conf.getGlobalSettings();
+            out.writeBoolean(settings != null);
+            if (settings != null) {
+                count(settings.getMemberClass());
+                for (MemberClassType memberClass : settings.getMemberClass()) {
+                    memberClass(memberClass);
+                }
+                BigInteger freshness = settings.getOcspFreshnessSeconds();
+                str(freshness != null ? freshness.toString() : null);
+            }
+
+            out.flush();
+
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(bytes.size());
+            DataOutputStream table = new DataOutputStream(payload);
+            table.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                table.writeInt(encoded.length);
+                table.write(encoded);
+            }
+            bytes.writeTo(table);
+            table.flush();
+
+            return payload.toByteArray();
+        }
+
+        private void caInfo(CaInfoType caInfo) throws IOException {
+            out.writeBoolean(caInfo != null);
+            if (caInfo != null) {
+                bytes(caInfo.getCert());
+                count(caInfo.getOcsp());
+                for (OcspInfoType ocsp : caInfo.getOcsp()) {
+                    str(ocsp.getUrl());
+                    bytes(ocsp.getCert());
+                }
+            }
+        }
+
+        private void memberClass(MemberClassType memberClass) throws IOException {
+            out.writeBoolean(memberClass != null);
+            if (memberClass != null) {
+                str(memberClass.getCode());
+                str(memberClass.getDescription());
+            }
+        }
+
+        private void clientRef(Object client) throws IOException {
+            int[] ref = clientRefs.get(client);
+            if (ref == null) {
+                throw new IllegalStateException("Unknown client reference " + client);
+            }
+            out.writeInt(ref[0]);
+            out.writeInt(ref[1]);
+        }
+
+        private void clientId(ClientId clientId) throws IOException {
+            out.writeBoolean(clientId != null);
+            if (clientId != null) {
+                str(clientId.getXRoadInstance());
+                str(clientId.getMemberClass());
+                str(clientId.getMemberCode());
+                str(clientId.getSubsystemCode());
+            }
+        }
+
+        private void serviceId(ServiceId serviceId) throws IOException {
+            out.writeBoolean(serviceId != null);
+            if (serviceId != null) {
+                clientId(serviceId.getClientId());
+                str(serviceId.getServiceCode());
+                str(serviceId.getServiceVersion());
+            }
+        }
+
+        private void str(String value) throws IOException {
+            out.writeInt(value == null ? NULL : strings.computeIfAbsent(value, s -> strings.size()));
+        }
+
+        private void bytes(byte[] value) throws IOException {
+            if (value == null) {
+                out.writeInt(NULL);
+            } else {
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        }
+
+        private void bool(Boolean value) throws IOException {
+            out.writeByte(value == null ? NULL : (value ? 1 : 0));
+        }
+
+        private void count(Collection<?> values) throws IOException {
+            out.writeInt(values.size());
+        }
+    }
+
+    private static final class Decoder {
+        private final ByteBuffer in;
+        private final String[] strings;
+
+        private final List<MemberType> members = new ArrayList<>();
+
+        Decoder(ByteBuffer in) {
+            this.in = in;
+
+            strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] encoded = new byte[in.getInt()];
+                in.get(encoded);
+                strings[i] = new String(encoded, StandardCharsets.UTF_8);
+            }
+        }
+
+        SharedParametersTypeV2 decode() {
+            ObjectFactory factory = new ObjectFactory();
+            SharedParametersTypeV2 conf = new SharedParametersTypeV2();
+
+            conf.setInstanceIdentifier(str());
+
+            for (int i = in.getInt(); i > 0; i--) {
+                ApprovedCATypeV2 ca = new ApprovedCATypeV2();
+                ca.setName(str());
+                ca.setAuthenticationOnly(bool());
+                ca.setTopCA(caInfo());
+                for (int j = in.getInt(); j > 0; j--) {
+                    ca.getIntermediateCA().add(caInfo());
+                }
+                ca.setCertificateProfileInfo(str());
+                conf.getApprovedCA().add(ca);
+            }
+
+            for (int i = in.getInt(); i > 0; i--) {
+                ApprovedTSAType tsa = new ApprovedTSAType();
+                tsa.setName(str());
+                tsa.setUrl(str());
+                tsa.setCert(bytes());
+                conf.getApprovedTSA().add(tsa);
+            }
+
+            for (int i = in.getInt(); i > 0; i--) {
+                MemberType member = new MemberType();
+                member.setId(str());
+                member.setMemberClass(memberClass());
+                member.setMemberCode(str());
+                member.setName(str());
+                for (int j = in.getInt(); j > 0; j--) {
+                    SubsystemType subsystem = new SubsystemType();
+                    subsystem.setId(str());
+                    subsystem.setSubsystemCode(str());
+                    member.getSubsystem().add(subsystem);
+                }
+                members.add(member);
+            }
+            conf.getMember().addAll(members);
+
+            for (int i = in.getInt(); i > 0; i--) {
+                SecurityServerType server = new SecurityServerType();
+                server.setOwner(clientRef());
+                server.setServerCode(str());
+                server.setAddress(str());
+                for (int j = in.getInt(); j > 0; j--) {
+                    server.getAuthCertHash().add(bytes());
+                }
+                for (int j = in.getInt(); j > 0; j--) {
+                    server.getClient().add(factory.createSecurityServerTypeClient(clientRef()));
+                }
+                conf.getSecurityServer().add(server);
+            }
+
+            for (int i = in.getInt(); i > 0; i--) {
+                GlobalGroupType group = new GlobalGroupType();
+                group.setGroupCode(str());
+                group.setDescription(str());
+                for (int j = in.getInt(); j > 0; j--) {
+                    group.getGroupMember().add(clientId());
+                }
+                conf.getGlobalGroup().add(group);
+            }
+
+            for (int i = in.getInt(); i > 0; i--) {
+                CentralServiceType service = new CentralServiceType();
+                service.setServiceCode(str());
+                service.setImplementingService(serviceId());
+                conf.getCentralService().add(service);
+            }
+
+            if (in.get() != 0) {
+                GlobalSettingsType settings = new GlobalSettingsType();
+                for (int i = in.getInt(); i > 0; i--) {
+                    settings.getMemberClass().add(memberClass());
+                }
+                String freshness = str();
+                settings.setOcspFreshnessSeconds(freshness != null ? new BigInteger(freshness) : null);
+                conf.setGlobalSettings(settings);
+            }
+
+            if (in.hasRemaining()) {
+                throw new IllegalStateException("Unexpected data at the end of the snapshot");
+            }
+
+            return conf;
+        }
+
+        private CaInfoType caInfo() {
+            if (in.get() == 0) {
+                return null;
+            }
+
+            CaInfoType caInfo = new CaInfoType();
+            caInfo.setCert(bytes());
+            for (int i = in.getInt(); i > 0; i--) {
+                OcspInfoType ocsp = new OcspInfoType();
+                ocsp.setUrl(str());
+                ocsp.setCert(bytes());
+                caInfo.getOcsp().add(ocsp);
+            }
+
+            return caInfo;
+        }
+
+        private MemberClassType memberClass() {
+            if (in.get() == 0) {
+                return null;
+            }
+
+            MemberClassType memberClass = new MemberClassType();
+            memberClass.setCode(str());
+            memberClass.setDescription(str());
+
+            return memberClass;
+        }
+
+        private Object clientRef() {
+            MemberType member = members.get(in.getInt());
+            int subsystem = in.getInt();
+
+            return subsystem == NULL ? member : member.getSubsystem().get(subsystem);
+        }
+
+        private ClientId clientId() {
+            if (in.get() == 0) {
+                return null;
+            }
+
+            return ClientId.create(str(), str(), str(), str());
+        }
+
+        private ServiceId serviceId() {
+            if (in.get() == 0) {
+                return null;
+            }
+
+            ClientId client = clientId();
+
+            return ServiceId.create(client, str(), str());
+        }
+
+        private String str() {
+            int index = in.getInt();
+
+            return index == NULL ? null : strings[index];
+        }
+
+        private byte[] bytes() {
+            int length = in.getInt();
+
+            if (length == NULL) {
+                return null;
+            }
+
+            byte[] value = new byte[length];
+            in.get(value);
+
+            return value;
+        }
+
+        private Boolean bool() {
+            byte value = in.get();
+
+            return value == NULL ? null : value != 0;
+        }
+    }
+}
@@ -40,6 +40,8 @@ import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SubsystemType;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.GlobalGroupId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.FileContentChangeChecker;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -50,6 +52,8 @@ import org.bouncycastle.cert.X509CertificateHolder;
 import javax.xml.bind.JAXBElement;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -58,6 +62,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -90,6 +95,14 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     private final List<X509Certificate> verificationCaCerts = new ArrayList<>();
     private final Set<String> knownAddresses = new HashSet<>();
     private final Map<SecurityServerId, SecurityServerType> securityServersById = new HashMap<>();
+    private final Map<ClientId, String> memberNames = new HashMap<>();
+    private final Map<GlobalGroupId, GlobalGroupType> globalGroupsById = new HashMap<>();
+    private final Map<GlobalGroupId, Set<ClientId>> globalGroupMembers = new HashMap<>();
+    private final Map<X509Certificate, List<String>> caCertsAndOcspResponderUrls = new HashMap<>();
+    private final Map<X509Certificate, Set<X509Certificate>> caCertsAndOcspResponderCerts = new HashMap<>();
+    private final List<X509Certificate> ocspResponderCerts = new ArrayList<>();
+    private final Map<String, SecurityServerId> serverIdByAuthCert = new HashMap<>();
+    private final Map<SecurityServerId, ClientId> securityServerOwners = new HashMap<>();
 
     SharedParametersV2() {
         super(ObjectFactory.class, SharedParametersSchemaValidatorV2.class);
@@ -144,25 +157,31 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     }
 
     GlobalGroupType findGlobalGroup(GlobalGroupId groupId) {
-        if (!groupId.getXRoadInstance().equals(
-                confType.getInstanceIdentifier())) {
-            return null;
-        }
+        return globalGroupsById.get(groupId);
+    }
+
+    String findMemberName(ClientId clientId) {
+        return memberNames.get(ClientId.create(clientId.getXRoadInstance(),
+                clientId.getMemberClass(), clientId.getMemberCode()));
+    }
 
-        return confType.getGlobalGroup().stream()
-                .filter(g -> g.getGroupCode().equals(groupId.getGroupCode()))
-                .findFirst().orElse(null);
+    boolean isGlobalGroupMember(ClientId subjectId, GlobalGroupId groupId) {
+        Set<ClientId> members = globalGroupMembers.get(groupId);
+
+        return members != null && members.contains(subjectId);
     }
 
-    X509Certificate getCaCertForSubject(X509Certificate subject)
-            throws Exception {
-        X509CertificateHolder certHolder =
-                new X509CertificateHolder(subject.getEncoded());
-        if (certHolder.getSubject().equals(certHolder.getIssuer())) {
+    X509Certificate getCaCertForSubject(X509Certificate subject) {
+        X500Name issuer = getIssuer(subject);
+        if (issuer.equals(getSubject(subject))) {
             return null;
         }
 
-        return subjectsAndCaCerts.get(certHolder.getIssuer());
+        return subjectsAndCaCerts.get(issuer);
+    }
+
+    X509Certificate getCaCertForIssuer(X509Certificate subject) {
+        return subjectsAndCaCerts.get(getIssuer(subject));
     }
 
     @Override
@@ -178,11 +197,30 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             cacheCaCerts();
             cacheKnownAddresses();
             cacheSecurityServers();
+            cacheMembers();
+            cacheGlobalGroups();
         } catch (Exception e) {
             throw translateException(e);
         }
     }
 
+    @Override
+    protected JAXBElement<SharedParametersTypeV2> loadPrecompiled(String checksum) {
+        return SharedParametersSnapshot.read(getSnapshotPath(Paths.get(confFileName)), checksum);
+    }
+
+    /**
+     * Writes the binary snapshot of these parameters next to the given XML file, so that other processes
+     * can load the parameters without parsing the XML.
+     * @param xmlFile the shared parameters XML file these parameters were loaded from
+     * @throws Exception if writing the snapshot fails
+     */
+    void saveSnapshot(Path xmlFile) throws Exception {
+        String checksum = new FileContentChangeChecker(xmlFile.toString()).getChecksum();
+
+        SharedParametersSnapshot.write(confType, checksum, getSnapshotPath(xmlFile));
+    }
+
     static MemberType getOwner(SecurityServerType serverType) {
         if (!(serverType.getOwner() instanceof MemberType)) {
             throw new RuntimeException("Server owner must be member");
@@ -191,6 +229,18 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         return (MemberType) serverType.getOwner();
     }
 
+    static X500Name getIssuer(X509Certificate cert) {
+        return X500Name.getInstance(cert.getIssuerX500Principal().getEncoded());
+    }
+
+    static X500Name getSubject(X509Certificate cert) {
+        return X500Name.getInstance(cert.getSubjectX500Principal().getEncoded());
+    }
+
+    static Path getSnapshotPath(Path xmlFile) {
+        return Paths.get(xmlFile + SharedParametersSnapshot.SUFFIX);
+    }
+
     // ------------------------------------------------------------------------
 
     private void clearCache() {
@@ -205,6 +255,14 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         verificationCaCerts.clear();
         knownAddresses.clear();
         securityServersById.clear();
+        memberNames.clear();
+        globalGroupsById.clear();
+        globalGroupMembers.clear();
+        caCertsAndOcspResponderUrls.clear();
+        caCertsAndOcspResponderCerts.clear();
+        ocspResponderCerts.clear();
+        serverIdByAuthCert.clear();
+        securityServerOwners.clear();
     }
 
     private void cacheCaCerts() throws CertificateException, IOException {
@@ -241,6 +299,27 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
                     new X509CertificateHolder(cert.getEncoded());
             subjectsAndCaCerts.put(certHolder.getSubject(), cert);
         }
+
+        for (Map.Entry<X509Certificate, List<OcspInfoType>> entry : caCertsAndOcspData.entrySet()) {
+            cacheOcspResponders(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void cacheOcspResponders(X509Certificate caCert, List<OcspInfoType> caOcspTypes) {
+        caCertsAndOcspResponderUrls.put(caCert, caOcspTypes.stream()
+                .map(OcspInfoType::getUrl)
+                .filter(StringUtils::isNotBlank)
+                .map(String::trim)
+                .collect(Collectors.toList()));
+
+        List<X509Certificate> responderCerts = caOcspTypes.stream()
+                .map(OcspInfoType::getCert)
+                .filter(Objects::nonNull)
+                .map(CryptoUtils::readCertificate)
+                .collect(Collectors.toList());
+
+        caCertsAndOcspResponderCerts.put(caCert, new HashSet<>(responderCerts));
+        ocspResponderCerts.addAll(responderCerts);
     }
 
     private void cacheKnownAddresses() {
@@ -270,6 +349,11 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
                     owner.getMemberClass().getCode(),
                     owner.getMemberCode(), securityServer.getServerCode());
             securityServersById.put(securityServerId, securityServer);
+            securityServerOwners.put(securityServerId, createMemberId(owner));
+
+            for (byte[] certHash: securityServer.getAuthCertHash()) {
+                serverIdByAuthCert.put(encodeBase64(certHash), securityServerId);
+            }
 
             // Add clients of the security server.
             for (JAXBElement<?> client : securityServer.getClient()) {
@@ -287,6 +371,22 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         }
     }
 
+    private void cacheMembers() {
+        for (MemberType member : confType.getMember()) {
+            memberNames.putIfAbsent(createMemberId(member), member.getName());
+        }
+    }
+
+    private void cacheGlobalGroups() {
+        for (GlobalGroupType globalGroup : confType.getGlobalGroup()) {
+            GlobalGroupId groupId = createGlobalGroupId(globalGroup);
+
+            globalGroupsById.putIfAbsent(groupId, globalGroup);
+            globalGroupMembers.computeIfAbsent(groupId, g -> new HashSet<>())
+                    .addAll(globalGroup.getGroupMember());
+        }
+    }
+
     private void addServerClient(ClientId client, SecurityServerType server) {
         // Add the mapping from client to security server address.
         if (isNotBlank(server.getAddress())) {
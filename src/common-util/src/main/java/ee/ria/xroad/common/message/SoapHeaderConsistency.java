@@ -0,0 +1,73 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.message;
+
+import ee.ria.xroad.common.CodedException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static ee.ria.xroad.common.ErrorCodes.X_INCONSISTENT_HEADERS;
+
+/**
+ * Compares the {@link SoapHeader} fields annotated with {@link CheckConsistency} through their getters,
+ * without reflecting over the header on every message. The fields are listed in declaration order, so the
+ * first mismatching field reported is the same as when walking the declared fields.
+ */
+final class SoapHeaderConsistency {
+
+    static final List<HeaderField> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            new HeaderField("client", SoapHeader::getClient),
+            new HeaderField("service", SoapHeader::getService),
+            new HeaderField("userId", SoapHeader::getUserId),
+            new HeaderField("representedParty", SoapHeader::getRepresentedParty),
+            new HeaderField("issue", SoapHeader::getIssue),
+            new HeaderField("queryId", SoapHeader::getQueryId)));
+
+    private SoapHeaderConsistency() {
+    }
+
+    static void check(SoapHeader h1, SoapHeader h2) {
+        for (HeaderField field : FIELDS) {
+            if (!Objects.equals(field.getter.apply(h1), field.getter.apply(h2))) {
+                throw new CodedException(X_INCONSISTENT_HEADERS,
+                        "Field '%s' does not match in request and response", field.name);
+            }
+        }
+    }
+
+    static final class HeaderField {
+        final String name;
+        final Function<SoapHeader, Object> getter;
+
+        HeaderField(String name, Function<SoapHeader, Object> getter) {
+            this.name = name;
+            this.getter = getter;
+        }
+    }
+}
@@ -27,7 +27,6 @@ package ee.ria.xroad.common.message;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.util.CryptoUtils;
 
-import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang3.ArrayUtils;
 
 import javax.xml.bind.annotation.XmlElement;
@@ -53,7 +52,6 @@ import java.util.List;
 import static ee.ria.xroad.common.ErrorCodes.X_INCONSISTENT_HEADERS;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_BODY;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_CONTENT_TYPE;
-import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.MimeTypes.TEXT_XML;
 import static ee.ria.xroad.common.util.MimeTypes.XOP_XML;
 import static ee.ria.xroad.common.util.MimeUtils.contentTypeWithCharset;
@@ -227,17 +225,7 @@ public final class SoapUtils {
      * @param h2 the second SOAP header
      */
     public static void checkConsistency(SoapHeader h1, SoapHeader h2) {
-        for (Field field : SoapHeader.class.getDeclaredFields()) {
-            if (field.isAnnotationPresent(CheckConsistency.class)) {
-                Object value1 = getFieldValue(field, h1);
-                Object value2 = getFieldValue(field, h2);
-                if (ObjectUtils.notEqual(value1, value2)) {
-                    throw new CodedException(X_INCONSISTENT_HEADERS,
-                            "Field '%s' does not match in request and response",
-                            field.getName());
-                }
-            }
-        }
+        SoapHeaderConsistency.check(h1, h2);
     }
 
     /**
@@ -421,15 +409,6 @@ public final class SoapUtils {
         return MESSAGE_FACTORY.createMessage(mimeHeaders, is);
     }
 
-    static Object getFieldValue(Field field, Object object) {
-        field.setAccessible(true);
-        try {
-            return field.get(object);
-        } catch (Exception e) {
-            throw translateException(e);
-        }
-    }
-
     static void validateMimeType(String mimeType) {
         if (!ArrayUtils.contains(ALLOWED_MIMETYPES, mimeType.toLowerCase())) {
             throw new CodedException(X_INVALID_CONTENT_TYPE,
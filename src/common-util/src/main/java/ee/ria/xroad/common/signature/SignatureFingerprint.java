@@ -0,0 +1,168 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static ee.ria.xroad.common.signature.Helper.ID_ATTRIBUTE;
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+
+/**
+ * Calculates the structural fingerprint of a signature XML element. The
+ * fingerprint covers the element and attribute skeleton of the signature
+ * (namespaces, local names, document order and the presence of text content)
+ * but not the actual values, so signatures produced by the same software
+ * have the same fingerprint regardless of the signed data.
+ *
+ * The values of xsi:type attributes are included, since they affect the
+ * schema type used for validation. Signatures containing duplicate Id
+ * attribute values have no fingerprint at all.
+ */
+final class SignatureFingerprint {
+
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    private static final char ELEMENT_START = '<';
+    private static final char ELEMENT_END = '>';
+    private static final char ATTRIBUTE = '@';
+    private static final char TEXT = '#';
+    private static final char SEPARATOR = '}';
+
+    private final MessageDigest digest;
+
+    private final Set<String> ids = new HashSet<>();
+
+    private boolean unique = true;
+
+    private SignatureFingerprint() {
+        try {
+            digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of the given signature element.
+     * @param node the signature node
+     * @return the fingerprint or null, if the node is not an element or the
+     * fingerprint cannot be used to identify the structure of the signature
+     */
+    static String of(Node node) {
+        if (node == null || node.getNodeType() != Node.ELEMENT_NODE) {
+            return null;
+        }
+
+        SignatureFingerprint fingerprint = new SignatureFingerprint();
+        fingerprint.element((Element) node);
+
+        return fingerprint.unique ? encodeBase64(fingerprint.digest.digest()) : null;
+    }
+
+    private void element(Element element) {
+        update(ELEMENT_START);
+        name(element.getNamespaceURI(), element.getLocalName());
+        attributes(element.getAttributes());
+
+        boolean hasText = false;
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    element((Element) child);
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    hasText |= !child.getNodeValue().trim().isEmpty();
+                    break;
+                default: // comments and processing instructions do not matter
+            }
+        }
+
+        if (hasText) {
+            update(TEXT);
+        }
+
+        update(ELEMENT_END);
+    }
+
+    private void attributes(NamedNodeMap attributes) {
+        List<String> names = new ArrayList<>(attributes.getLength());
+
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            String namespace = attr.getNamespaceURI();
+
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespace)) {
+                continue;
+            }
+
+            String name = namespace + SEPARATOR + attr.getLocalName();
+
+            if (XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.equals(namespace)) {
+                name += SEPARATOR + attr.getValue();
+            } else if (namespace == null && ID_ATTRIBUTE.equals(attr.getLocalName())) {
+                unique &= ids.add(attr.getValue());
+            }
+
+            names.add(name);
+        }
+
+        // attribute order is not significant in XML
+        Collections.sort(names);
+
+        for (String name : names) {
+            update(ATTRIBUTE);
+            update(name);
+        }
+    }
+
+    private void name(String namespace, String localName) {
+        update(namespace + SEPARATOR + localName);
+    }
+
+    private void update(char marker) {
+        digest.update((byte) marker);
+    }
+
+    private void update(String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        update(SEPARATOR);
+    }
+}
@@ -25,9 +25,15 @@
 package ee.ria.xroad.common.signature;
 
 import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.util.SchemaValidator;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.w3c.dom.Node;
+
 import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.validation.Schema;
 
 /**
@@ -39,6 +45,11 @@ public class SignatureSchemaValidator extends SchemaValidator {
 
     private static Schema schema;
 
+    /** Fingerprints of signature structures that have passed validation. */
+    private static final Cache<String, Boolean> VALID_FINGERPRINTS = CacheBuilder.newBuilder()
+            .maximumSize(SystemProperties.getSignatureSchemaCacheSize())
+            .build();
+
     static {
         schema = createSchema(FILE);
     }
@@ -51,4 +62,28 @@ public class SignatureSchemaValidator extends SchemaValidator {
     public static void validate(Source source) throws Exception {
         validate(schema, source, ErrorCodes.X_MALFORMED_SIGNATURE);
     }
+
+    /**
+     * Validates the provided XML signature node, skipping the validation if a signature with the same
+     * structural fingerprint has already passed it.
+     *
+     * The fingerprint does not cover the values, so value-level constraints of the schema (for example the lexical
+     * form of dates, digests or integers) are only checked for the first signature of each structure. The values
+     * that matter for the verification are parsed and checked by the signature verification itself.
+     * @param signatureNode the XML signature node to be validated
+     * @throws Exception if validation is unsuccessful
+     */
+    public static void validate(Node signatureNode) throws Exception {
+        String fingerprint = SignatureFingerprint.of(signatureNode);
+
+        if (fingerprint != null && VALID_FINGERPRINTS.getIfPresent(fingerprint) != null) {
+            return;
+        }
+
+        validate(new DOMSource(signatureNode));
+
+        if (fingerprint != null) {
+            VALID_FINGERPRINTS.put(fingerprint, Boolean.TRUE);
+        }
+    }
 }
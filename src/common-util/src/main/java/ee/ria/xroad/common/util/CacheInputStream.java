@@ -26,8 +26,7 @@ package ee.ria.xroad.common.util;
 
 import java.io.FilterInputStream;
 import java.io.IOException;
-import java.nio.channels.Channels;
-import java.nio.channels.SeekableByteChannel;
+import java.io.InputStream;
 
 /**
  * Cache contents as an input stream
@@ -35,9 +34,9 @@ import java.nio.channels.SeekableByteChannel;
 public final class CacheInputStream extends FilterInputStream {
     private final long size;
 
-    CacheInputStream(SeekableByteChannel ch) throws IOException {
-        super(Channels.newInputStream(ch.position(0)));
-        size = ch.size();
+    CacheInputStream(InputStream in, long size) {
+        super(in);
+        this.size = size;
     }
 
     public long size() {
@@ -26,54 +26,155 @@ package ee.ria.xroad.common.util;
 
 import ee.ria.xroad.common.DefaultFilepaths;
 import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.SystemProperties;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Caches stuff in a temporary file.
+ * Caches stuff in memory and, past the memory threshold, in a temporary file.
+ *
+ * Content up to {@link SystemProperties#getAttachmentCacheMemoryThreshold()} bytes is kept in pooled heap buffers,
+ * as long as the total memory budget shared by all caching streams allows. Larger content is written to a temporary
+ * file. The buffers of a stream count against the budget until the stream is consumed, so every stream must be
+ * consumed once its contents are no longer needed. See {@link CachingStreamMetrics} for the number of streams that
+ * had to use temporary files.
  */
 @Slf4j
-public class CachingStream extends FilterOutputStream {
+public class CachingStream extends OutputStream {
+
+    private static final CachingStreamBufferPool BUFFER_POOL =
+            new CachingStreamBufferPool(SystemProperties.getAttachmentCacheMemoryBudget());
+
+    private static final long MEMORY_THRESHOLD = SystemProperties.getAttachmentCacheMemoryThreshold();
+
+    private static final CachingStreamMetrics METRICS = CachingStreamMetrics.getInstance();
+
+    private final long memoryThreshold;
+    private final CachingStreamBufferPool bufferPool;
+
+    private final List<byte[]> buffers = new ArrayList<>();
+    private long size;
+
     private SeekableByteChannel channel;
+    private OutputStream out;
     private Path tempFile;
 
+    private boolean closed;
+    private boolean consumed;
+
     /**
-     * Constructs a new caching stream that caches data in a temporary file.
+     * Constructs a new caching stream that caches data in memory or in a temporary file.
      *
      * @throws IOException if I/O errors occurred
      */
     public CachingStream() throws IOException {
-        // Construct the parent class with null stream and replace it later.
-        super(null);
+        this(MEMORY_THRESHOLD, BUFFER_POOL);
+    }
 
-        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
-        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
-                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
-                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+    CachingStream(long memoryThreshold, CachingStreamBufferPool bufferPool) throws IOException {
+        this.memoryThreshold = memoryThreshold;
+        this.bufferPool = bufferPool;
 
-        // Now that we are set up, we can set the output stream in the
-        // parent class.
-        out = Channels.newOutputStream(channel);
+        if (memoryThreshold <= 0) {
+            spill();
+        }
     }
 
+    /**
+     * @return the memory currently used by all caching streams, in bytes
+     */
+    static long getMemoryInUse() {
+        return BUFFER_POOL.getMemoryInUse();
+    }
+
+    /**
+     * Closes the stream for writing. The cached contents stay readable, and their memory stays reserved, until
+     * {@link #consume()}.
+     *
+     * @throws IOException if flushing the temporary file fails
+     */
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         // we must not close the channel before reading it
         flush();
+
+        closed = true;
     }
 
     @Override
-    public void write(byte[] b, int off, int len) throws IOException {
-        // prevent FilterOutputStream from writing inefficiently
-        out.write(b, off, len);
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        checkWritable();
+
+        if (out == null && !reserveMemory(1)) {
+            spill();
+        }
+
+        if (out != null) {
+            out.write(b);
+            METRICS.bytesSpilled(1);
+
+            return;
+        }
+
+        byte[] buffer = buffers.get((int) (size / CachingStreamBufferPool.BUFFER_SIZE));
+        buffer[(int) (size % CachingStreamBufferPool.BUFFER_SIZE)] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        checkWritable();
+
+        if (out == null && !reserveMemory(len)) {
+            spill();
+        }
+
+        if (out != null) {
+            out.write(b, off, len);
+            METRICS.bytesSpilled(len);
+
+            return;
+        }
+
+        int offset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            int position = (int) (size % CachingStreamBufferPool.BUFFER_SIZE);
+            int count = Math.min(remaining, CachingStreamBufferPool.BUFFER_SIZE - position);
+
+            System.arraycopy(b, offset, buffers.get((int) (size / CachingStreamBufferPool.BUFFER_SIZE)), position,
+                    count);
+
+            size += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * @return true if the contents are cached in a temporary file
+     */
+    public synchronized boolean isSpilled() {
+        return out != null;
     }
 
     /**
@@ -81,23 +182,166 @@ public class CachingStream extends FilterOutputStream {
      * The returned stream does not support mark, and closing the stream has no effect.
      * @see #consume() to free resources used by the cache.
      */
-    public CacheInputStream getCachedContents() {
+    public synchronized CacheInputStream getCachedContents() {
+        if (out == null) {
+            return new CacheInputStream(new BufferInputStream(size), size);
+        }
+
         try {
-            return new CacheInputStream(channel);
+            return new CacheInputStream(Channels.newInputStream(channel.position(0)), channel.size());
         } catch (IOException ex) { // the position shouldn't really throw
             throw ErrorCodes.translateException(ex);
         }
     }
 
     /**
-     * Finalize caching stream. Use to avoid file handle leaks.
+     * Finalize caching stream. Use to avoid file handle leaks and to return the memory to other streams.
      */
-    public void consume() {
-        try {
-            channel.close();
-        } catch (IOException e) {
-            log.warn("Error closing channel of the temporary file '{}'", tempFile.toString(), e);
+    public synchronized void consume() {
+        if (consumed) {
+            return;
         }
+
+        consumed = true;
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing channel of the temporary file '{}'", tempFile.toString(), e);
+            }
+        } else {
+            METRICS.inMemory();
+        }
+
+        releaseBuffers();
+    }
+
+    private void checkWritable() throws IOException {
+        if (consumed) {
+            throw new IOException("Caching stream has been consumed");
+        }
+
+        if (closed) {
+            throw new IOException("Caching stream has been closed");
+        }
+    }
+
+    private boolean reserveMemory(int len) {
+        if (size + len > memoryThreshold) {
+            return false;
+        }
+
+        long required = (size + len + CachingStreamBufferPool.BUFFER_SIZE - 1) / CachingStreamBufferPool.BUFFER_SIZE;
+
+        while (buffers.size() < required) {
+            byte[] buffer = bufferPool.acquire();
+
+            if (buffer == null) {
+                return false;
+            }
+
+            buffers.add(buffer);
+        }
+
+        return true;
+    }
+
+    private void spill() throws IOException {
+        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
+        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        out = Channels.newOutputStream(channel);
+
+        long remaining = size;
+
+        for (byte[] buffer : buffers) {
+            int count = (int) Math.min(remaining, buffer.length);
+
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+
+        METRICS.spilled();
+        METRICS.bytesSpilled(size);
+
+        log.trace("Cached content exceeded memory limits after {} bytes, using temporary file", size);
+
+        releaseBuffers();
     }
 
+    private void releaseBuffers() {
+        buffers.forEach(bufferPool::release);
+        buffers.clear();
+        size = 0;
+    }
+
+    /**
+     * Reads the contents cached in memory. Reading fails after the caching stream has been consumed, because the
+     * buffers have been returned to the pool.
+     */
+    private final class BufferInputStream extends InputStream {
+
+        private final long limit;
+        private long position;
+
+        BufferInputStream(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+
+            return read(b, 0, 1) < 0 ? -1 : Byte.toUnsignedInt(b[0]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            synchronized (CachingStream.this) {
+                if (consumed || out != null) {
+                    throw new IOException("Cached contents are no longer available");
+                }
+
+                if (len == 0) {
+                    return 0;
+                }
+
+                if (position >= limit) {
+                    return -1;
+                }
+
+                int bufferPosition = (int) (position % CachingStreamBufferPool.BUFFER_SIZE);
+                int count = (int) Math.min(Math.min(len, CachingStreamBufferPool.BUFFER_SIZE - bufferPosition),
+                        limit - position);
+
+                System.arraycopy(buffers.get((int) (position / CachingStreamBufferPool.BUFFER_SIZE)), bufferPosition,
+                        b, off, count);
+
+                position += count;
+
+                return count;
+            }
+        }
+
+        @Override
+        public long skip(long n) {
+            synchronized (CachingStream.this) {
+                long count = Math.max(0, Math.min(n, limit - position));
+                position += count;
+
+                return count;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (CachingStream.this) {
+                return (int) Math.min(Integer.MAX_VALUE, limit - position);
+            }
+        }
+    }
 }
@@ -0,0 +1,85 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of fixed-size heap buffers shared by the caching streams. The number of buffers handed out at a time is
+ * limited by the memory budget, and released buffers are reused instead of being garbage collected.
+ */
+final class CachingStreamBufferPool {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    private final long maxBuffers;
+    private final AtomicLong buffersInUse = new AtomicLong();
+    private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param memoryBudget the maximum total size of the buffers in use, in bytes
+     */
+    CachingStreamBufferPool(long memoryBudget) {
+        this.maxBuffers = Math.max(0, memoryBudget / BUFFER_SIZE);
+    }
+
+    /**
+     * @return a buffer or null if the memory budget has been used up
+     */
+    byte[] acquire() {
+        long inUse;
+
+        do {
+            inUse = buffersInUse.get();
+
+            if (inUse >= maxBuffers) {
+                return null;
+            }
+        } while (!buffersInUse.compareAndSet(inUse, inUse + 1));
+
+        byte[] buffer = freeBuffers.poll();
+
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Returns the buffer to the pool. Buffers are only allocated while the budget allows, so the pool never holds
+     * more buffers than the budget.
+     * @param buffer the buffer acquired from this pool
+     */
+    void release(byte[] buffer) {
+        freeBuffers.offer(buffer);
+        buffersInUse.decrementAndGet();
+    }
+
+    /**
+     * @return the total size of the buffers in use, in bytes
+     */
+    long getMemoryInUse() {
+        return buffersInUse.get() * BUFFER_SIZE;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the memory and temporary file usage of the caching streams.
+ */
+@Slf4j
+public final class CachingStreamMetrics implements CachingStreamMetricsMXBean {
+
+    /** JMX name of the metrics. */
+    public static final String OBJECT_NAME = "ee.ria.xroad:type=CachingStream";
+
+    private static final CachingStreamMetrics INSTANCE = new CachingStreamMetrics();
+
+    private final LongAdder inMemoryCount = new LongAdder();
+    private final LongAdder spillCount = new LongAdder();
+    private final LongAdder spilledBytes = new LongAdder();
+
+    private CachingStreamMetrics() {
+    }
+
+    /**
+     * @return the caching stream metrics
+     */
+    public static CachingStreamMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to register caching stream metrics", e);
+        }
+    }
+
+    void inMemory() {
+        inMemoryCount.increment();
+    }
+
+    void spilled() {
+        spillCount.increment();
+    }
+
+    void bytesSpilled(long count) {
+        spilledBytes.add(count);
+    }
+
+    @Override
+    public long getInMemoryCount() {
+        return inMemoryCount.sum();
+    }
+
+    @Override
+    public long getSpillCount() {
+        return spillCount.sum();
+    }
+
+    @Override
+    public long getSpilledBytes() {
+        return spilledBytes.sum();
+    }
+
+    @Override
+    public long getMemoryInUse() {
+        return CachingStream.getMemoryInUse();
+    }
+}
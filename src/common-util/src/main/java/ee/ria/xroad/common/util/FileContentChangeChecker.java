@@ -66,6 +66,13 @@ public class FileContentChangeChecker {
         return !checksum.equals(previousChecksum);
     }
 
+    /**
+     * @return checksum of the file contents at the time of the last check
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
     protected File getFile() {
         return new File(fileName);
     }
@@ -0,0 +1,110 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests to verify the typed system property registry.
+ */
+public class SystemPropertyRegistryTest {
+
+    private static final String INT_PROPERTY = "xroad.test.registry-int";
+    private static final String BOOLEAN_PROPERTY = "xroad.test.registry-boolean";
+
+    private static final SystemPropertyRegistry.Property<Integer> INT_VALUE =
+            SystemPropertyRegistry.registerInt(INT_PROPERTY, "10");
+
+    private static final SystemPropertyRegistry.Property<Boolean> BOOLEAN_VALUE =
+            SystemPropertyRegistry.registerBoolean(BOOLEAN_PROPERTY, "false");
+
+    /**
+     * Clears the test properties.
+     */
+    @After
+    public void tearDown() {
+        System.clearProperty(INT_PROPERTY);
+        System.clearProperty(BOOLEAN_PROPERTY);
+        SystemPropertyRegistry.reload();
+    }
+
+    @Test
+    public void returnsDefaultsWhenNotSet() {
+        SystemPropertyRegistry.reload();
+
+        assertEquals(10, INT_VALUE.get().intValue());
+        assertFalse(BOOLEAN_VALUE.get());
+    }
+
+    @Test
+    public void keepsSnapshotUntilReload() {
+        System.setProperty(INT_PROPERTY, "20");
+        System.setProperty(BOOLEAN_PROPERTY, "TRUE");
+        SystemPropertyRegistry.reload();
+
+        assertEquals(20, INT_VALUE.get().intValue());
+        assertTrue(BOOLEAN_VALUE.get());
+
+        System.setProperty(INT_PROPERTY, "30");
+
+        assertEquals(20, INT_VALUE.get().intValue());
+
+        SystemPropertyRegistry.reload();
+
+        assertEquals(30, INT_VALUE.get().intValue());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rethrowsParseErrorOnlyForInvalidProperty() {
+        System.setProperty(INT_PROPERTY, "not a number");
+        System.setProperty(BOOLEAN_PROPERTY, "true");
+        SystemPropertyRegistry.reload();
+
+        assertTrue(BOOLEAN_VALUE.get());
+
+        INT_VALUE.get();
+    }
+
+    @Test
+    public void propertyRegisteredAfterSnapshotIsParsed() {
+        SystemPropertyRegistry.reload();
+
+        System.setProperty("xroad.test.registry-late", "5");
+
+        SystemPropertyRegistry.Property<Integer> late = SystemPropertyRegistry.registerInt("xroad.test.registry-late",
+                "0");
+
+        try {
+            assertEquals(5, late.get().intValue());
+        } finally {
+            System.clearProperty("xroad.test.registry-late");
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf;
+
+import ee.ria.xroad.common.util.filewatcher.FileWatchListener;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link ConfigurationChangeBus}.
+ *
+ * If the tests fail, check for inotify watch exhaustion, see FileWatcherRunnerTest.
+ */
+public class ConfigurationChangeBusTest {
+
+    private static final int TIMEOUT = 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tear down tests.
+     */
+    @After
+    public void tearDown() {
+        ConfigurationChangeBus.stop();
+    }
+
+    @Test
+    public void shouldNotifySubscribersInOrder() throws Exception {
+        File confFile = temporaryFolder.newFile("conf.xml");
+
+        FileWatchListener first = mock(FileWatchListener.class);
+        FileWatchListener second = mock(FileWatchListener.class);
+
+        assertTrue(ConfigurationChangeBus.subscribe(confFile.toPath(), first));
+        assertTrue(ConfigurationChangeBus.subscribe(confFile.toPath(), second));
+
+        write(confFile.toPath(), "changed");
+
+        verify(second, timeout(TIMEOUT).atLeastOnce()).fileModified();
+
+        InOrder inOrder = inOrder(first, second);
+        inOrder.verify(first).fileModified();
+        inOrder.verify(second).fileModified();
+    }
+
+    @Test
+    public void shouldDetectAtomicReplace() throws Exception {
+        File confFile = temporaryFolder.newFile("conf.xml");
+        File tempFile = temporaryFolder.newFile("conf.xml.tmp");
+
+        FileWatchListener listener = mock(FileWatchListener.class);
+        ConfigurationChangeBus.subscribe(confFile.toPath(), listener);
+
+        Files.move(tempFile.toPath(), confFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        verify(listener, timeout(TIMEOUT).atLeastOnce()).fileModified();
+    }
+
+    @Test
+    public void shouldNotNotifyUnsubscribedOrOtherFileListeners() throws Exception {
+        File confFile = temporaryFolder.newFile("conf.xml");
+        File otherFile = temporaryFolder.newFile("other.xml");
+
+        FileWatchListener unsubscribed = mock(FileWatchListener.class);
+        FileWatchListener other = mock(FileWatchListener.class);
+        FileWatchListener subscribed = mock(FileWatchListener.class);
+
+        ConfigurationChangeBus.subscribe(confFile.toPath(), unsubscribed);
+        ConfigurationChangeBus.subscribe(confFile.toPath(), subscribed);
+        ConfigurationChangeBus.subscribe(otherFile.toPath(), other);
+        ConfigurationChangeBus.unsubscribe(confFile.toPath(), unsubscribed);
+
+        write(confFile.toPath(), "changed");
+
+        verify(subscribed, timeout(TIMEOUT).atLeastOnce()).fileModified();
+        verify(unsubscribed, never()).fileModified();
+        verify(other, never()).fileModified();
+    }
+
+    @Test
+    public void shouldNotifyManuallyWhenDirectoryIsMissing() {
+        Path missing = temporaryFolder.getRoot().toPath().resolve("missing").resolve("conf.xml");
+
+        FileWatchListener listener = mock(FileWatchListener.class);
+
+        assertFalse(ConfigurationChangeBus.subscribe(missing, listener));
+
+        ConfigurationChangeBus.fireChanged(missing);
+
+        verify(listener, timeout(TIMEOUT)).fileModified();
+    }
+
+    @Test
+    public void shouldStartWatchingOnceDirectoryExists() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath().resolve("created");
+        Path confFile = directory.resolve("conf.xml");
+
+        FileWatchListener listener = mock(FileWatchListener.class);
+
+        assertFalse(ConfigurationChangeBus.subscribe(confFile, listener));
+        assertFalse(ConfigurationChangeBus.watch(confFile));
+
+        Files.createDirectory(directory);
+
+        assertTrue(ConfigurationChangeBus.watch(confFile));
+
+        write(confFile, "changed");
+
+        verify(listener, timeout(TIMEOUT).atLeastOnce()).fileModified();
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -26,15 +26,26 @@ package ee.ria.xroad.common.conf.globalconf;
 
 import ee.ria.xroad.common.util.ExpectedCodedException;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests to verify configuration directories are read correctly.
@@ -44,6 +55,9 @@ public class ConfigurationDirectoryTest {
     @Rule
     public ExpectedCodedException thrown = ExpectedCodedException.none();
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     /**
      * Test to ensure a correct configuration directory is read properly.
      *
@@ -72,6 +86,44 @@ public class ConfigurationDirectoryTest {
         assertNull(dir.getShared("xxx"));
     }
 
+    /**
+     * Test to ensure that reloading publishes new parameters only for changed files and leaves the previously
+     * published parameters untouched.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void reloadPublishesNewSnapshot() throws Exception {
+        File confDir = tempFolder.newFolder("globalconf");
+        FileUtils.copyDirectory(new File("src/test/resources/globalconf_good_v2"), confDir);
+
+        ConfigurationDirectoryV2 dir = new ConfigurationDirectoryV2(confDir.getPath());
+
+        SharedParametersV2 foo = dir.getShared("foo");
+        SharedParametersV2 bar = dir.getShared("bar");
+        List<SharedParametersV2> all = dir.getShared();
+
+        dir.reload();
+
+        assertSame(foo, dir.getShared("foo"));
+        assertSame(bar, dir.getShared("bar"));
+
+        Path fooShared = confDir.toPath().resolve("foo").resolve(ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+        Files.write(fooShared, (new String(Files.readAllBytes(fooShared), StandardCharsets.UTF_8) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        dir.reload();
+
+        assertNotSame(foo, dir.getShared("foo"));
+        assertEquals("foo", dir.getShared("foo").getInstanceIdentifier());
+        assertSame(bar, dir.getShared("bar"));
+
+        assertEquals("foo", foo.getInstanceIdentifier());
+        assertEquals(all.size(), dir.getShared().size());
+        assertTrue(all.contains(foo));
+        assertFalse(dir.getShared().contains(foo));
+    }
+
     /**
      * Test to ensure an empty configuration directory is read properly.
      *
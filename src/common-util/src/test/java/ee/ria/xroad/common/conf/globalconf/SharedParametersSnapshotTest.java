@@ -0,0 +1,158 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.util.FileContentChangeChecker;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the binary snapshot of shared parameters.
+ */
+public class SharedParametersSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path xmlFile;
+    private Path snapshotFile;
+
+    /**
+     * Copies the shared parameters under test to a temporary directory.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        xmlFile = tempFolder.getRoot().toPath().resolve(ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+        Files.copy(Paths.get("src/test/resources/globalconf_good_v2/EE/shared-params.xml"), xmlFile);
+
+        snapshotFile = SharedParametersV2.getSnapshotPath(xmlFile);
+    }
+
+    /**
+     * Test to ensure parameters loaded from the snapshot equal the ones loaded from the XML.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void loadsSameParametersFromSnapshot() throws Exception {
+        SharedParametersV2 fromXml = load();
+        fromXml.saveSnapshot(xmlFile);
+
+        assertTrue(Files.isRegularFile(snapshotFile));
+        assertNotNull(SharedParametersSnapshot.read(snapshotFile, checksum()));
+
+        SharedParametersV2 fromSnapshot = load();
+
+        assertEquals(marshal(fromXml), marshal(fromSnapshot));
+        assertEquals(fromXml.getMemberNames(), fromSnapshot.getMemberNames());
+        assertEquals(fromXml.getMemberAddresses(), fromSnapshot.getMemberAddresses());
+        assertEquals(fromXml.getSecurityServerClients(), fromSnapshot.getSecurityServerClients());
+        assertEquals(fromXml.getSecurityServerOwners(), fromSnapshot.getSecurityServerOwners());
+        assertEquals(fromXml.getGlobalGroupMembers(), fromSnapshot.getGlobalGroupMembers());
+        assertEquals(fromXml.getSubjectsAndCaCerts(), fromSnapshot.getSubjectsAndCaCerts());
+        assertEquals(fromXml.getCaCertsAndOcspResponderUrls(), fromSnapshot.getCaCertsAndOcspResponderUrls());
+        assertEquals(fromXml.getKnownAddresses(), fromSnapshot.getKnownAddresses());
+    }
+
+    /**
+     * Test to ensure a snapshot of a different XML file is not used.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void ignoresSnapshotOfChangedXml() throws Exception {
+        load().saveSnapshot(xmlFile);
+
+        String xml = new String(Files.readAllBytes(xmlFile), StandardCharsets.UTF_8);
+        Files.write(xmlFile, xml.replace("producerServerCode", "changedServerCode").getBytes(StandardCharsets.UTF_8));
+
+        assertNull(SharedParametersSnapshot.read(snapshotFile, checksum()));
+        assertTrue(marshal(load()).contains("changedServerCode"));
+    }
+
+    /**
+     * Test to ensure a corrupted snapshot is not used.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void ignoresCorruptedSnapshot() throws Exception {
+        SharedParametersV2 fromXml = load();
+        fromXml.saveSnapshot(xmlFile);
+
+        byte[] snapshot = Files.readAllBytes(snapshotFile);
+        snapshot[snapshot.length - 1] ^= 1;
+        Files.write(snapshotFile, snapshot);
+
+        assertNull(SharedParametersSnapshot.read(snapshotFile, checksum()));
+        assertEquals(marshal(fromXml), marshal(load()));
+    }
+
+    /**
+     * Test to ensure a truncated snapshot is not used.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void ignoresTruncatedSnapshot() throws Exception {
+        load().saveSnapshot(xmlFile);
+
+        Files.write(snapshotFile, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+
+        assertNull(SharedParametersSnapshot.read(snapshotFile, checksum()));
+        assertFalse(load().getMemberNames().isEmpty());
+    }
+
+    private SharedParametersV2 load() throws Exception {
+        SharedParametersV2 params = new SharedParametersV2();
+        params.load(xmlFile.toString());
+
+        return params;
+    }
+
+    private String checksum() throws Exception {
+        return new FileContentChangeChecker(xmlFile.toString()).getChecksum();
+    }
+
+    private static String marshal(SharedParametersV2 params) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        params.save(out);
+
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+}
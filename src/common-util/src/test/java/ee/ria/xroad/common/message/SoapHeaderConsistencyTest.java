@@ -0,0 +1,200 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.message;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.identifier.CentralServiceId;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static ee.ria.xroad.common.ErrorCodes.X_INCONSISTENT_HEADERS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the compiled SOAP header consistency check behaves exactly like walking the annotated fields
+ * reflectively, for randomly generated pairs of headers.
+ */
+public class SoapHeaderConsistencyTest {
+
+    private static final int ITERATIONS = 10_000;
+
+    private static final long SEED = 20201019L;
+
+    /**
+     * Test that the compiled field list matches the annotated fields in declaration order.
+     */
+    @Test
+    public void fieldsMatchAnnotations() {
+        List<String> annotated = new ArrayList<>();
+        for (Field field : SoapHeader.class.getDeclaredFields()) {
+            if (field.isAnnotationPresent(CheckConsistency.class)) {
+                annotated.add(field.getName());
+            }
+        }
+
+        List<String> compiled = new ArrayList<>();
+        for (SoapHeaderConsistency.HeaderField field : SoapHeaderConsistency.FIELDS) {
+            compiled.add(field.name);
+        }
+
+        assertEquals(annotated, compiled);
+    }
+
+    /**
+     * Test that the compiled check gives the same outcome and error as the reflective check.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void equivalentToReflectiveCheck() throws Exception {
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            SoapHeader h1 = randomHeader(random);
+            SoapHeader h2 = random.nextBoolean() ? randomHeader(random) : mutate(h1, random);
+
+            assertEquals("iteration " + i, outcome(() -> checkReflectively(h1, h2)),
+                    outcome(() -> SoapUtils.checkConsistency(h1, h2)));
+        }
+    }
+
+    private static String outcome(Runnable check) {
+        try {
+            check.run();
+            return "consistent";
+        } catch (CodedException e) {
+            return e.getFaultCode() + ": " + e.getFaultString();
+        }
+    }
+
+    // The reflective implementation the compiled check replaced
+    private static void checkReflectively(SoapHeader h1, SoapHeader h2) {
+        try {
+            for (Field field : SoapHeader.class.getDeclaredFields()) {
+                if (field.isAnnotationPresent(CheckConsistency.class)) {
+                    field.setAccessible(true);
+                    if (ObjectUtils.notEqual(field.get(h1), field.get(h2))) {
+                        throw new CodedException(X_INCONSISTENT_HEADERS,
+                                "Field '%s' does not match in request and response", field.getName());
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SoapHeader randomHeader(Random random) {
+        SoapHeader header = new SoapHeader();
+        header.setClient(pick(random, () -> ClientId.create("EE", "BUSINESS", "producer"),
+                () -> ClientId.create("EE", "BUSINESS", "producer", "subsystem")));
+        header.setService(pick(random, () -> ServiceId.create("EE", "BUSINESS", "consumer", null, "getState"),
+                () -> ServiceId.create("EE", "BUSINESS", "consumer", null, "getState", "v1")));
+        header.setCentralService(pick(random, () -> CentralServiceId.create("EE", "central"),
+                () -> CentralServiceId.create("EE", "other")));
+        header.setUserId(pick(random, () -> "EE12345678901", () -> "EE98765432109"));
+        header.setRepresentedParty(pick(random, () -> new RepresentedParty("COM", "12345"),
+                () -> new RepresentedParty(null, "12345")));
+        header.setIssue(pick(random, () -> "issue", () -> ""));
+        header.setQueryId(pick(random, () -> "query-1", () -> "query-2"));
+        header.setProtocolVersion(pick(random, () -> protocolVersion("4.0")));
+
+        return header;
+    }
+
+    // Copies the header with (equal but not identical) values and changes one random field
+    private static SoapHeader mutate(SoapHeader original, Random random) {
+        SoapHeader copy = new SoapHeader();
+        copy.setClient(original.getClient());
+        copy.setService(original.getService());
+        copy.setCentralService(original.getCentralService());
+        copy.setUserId(original.getUserId() == null ? null : new String(original.getUserId()));
+        copy.setRepresentedParty(original.getRepresentedParty() == null ? null
+                : new RepresentedParty(original.getRepresentedParty().getPartyClass(),
+                        original.getRepresentedParty().getPartyCode()));
+        copy.setIssue(original.getIssue());
+        copy.setQueryId(original.getQueryId());
+        copy.setProtocolVersion(original.getProtocolVersion());
+
+        SoapHeader other = randomHeader(random);
+
+        @SuppressWarnings("checkstyle:MagicNumber")
+        int field = random.nextInt(9);
+
+        switch (field) {
+            case 0:
+                copy.setClient(other.getClient());
+                break;
+            case 1:
+                copy.setService(other.getService());
+                break;
+            case 2:
+                copy.setCentralService(other.getCentralService());
+                break;
+            case 3:
+                copy.setUserId(other.getUserId());
+                break;
+            case 4:
+                copy.setRepresentedParty(other.getRepresentedParty());
+                break;
+            case 5:
+                copy.setIssue(other.getIssue());
+                break;
+            case 6:
+                copy.setQueryId(other.getQueryId());
+                break;
+            case 7:
+                copy.setProtocolVersion(other.getProtocolVersion());
+                break;
+            default:
+                // unchanged
+        }
+
+        return copy;
+    }
+
+    private static ProtocolVersion protocolVersion(String version) {
+        try {
+            return new ProtocolVersion(version);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SafeVarargs
+    private static <T> T pick(Random random, Supplier<T>... values) {
+        int index = random.nextInt(values.length + 1);
+
+        return index == values.length ? null : values[index].get();
+    }
+}
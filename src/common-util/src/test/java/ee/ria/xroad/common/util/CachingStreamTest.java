@@ -0,0 +1,223 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CachingStream}.
+ */
+public class CachingStreamTest {
+
+    private static final int THRESHOLD = 4 * CachingStreamBufferPool.BUFFER_SIZE;
+    private static final int BUDGET = 6 * CachingStreamBufferPool.BUFFER_SIZE;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Random random = new Random(1);
+
+    private CachingStreamBufferPool pool;
+    private String originalTempFilesPath;
+
+    /**
+     * Set up tests.
+     */
+    @Before
+    public void setUp() {
+        originalTempFilesPath = System.getProperty(SystemProperties.TEMP_FILES_PATH);
+        System.setProperty(SystemProperties.TEMP_FILES_PATH, tempFolder.getRoot().getAbsolutePath());
+
+        pool = new CachingStreamBufferPool(BUDGET);
+    }
+
+    /**
+     * Tear down tests.
+     */
+    @After
+    public void tearDown() {
+        if (originalTempFilesPath != null) {
+            System.setProperty(SystemProperties.TEMP_FILES_PATH, originalTempFilesPath);
+        } else {
+            System.clearProperty(SystemProperties.TEMP_FILES_PATH);
+        }
+    }
+
+    @Test
+    public void smallContentIsCachedInMemory() throws Exception {
+        byte[] content = randomBytes(CachingStreamBufferPool.BUFFER_SIZE + 1);
+
+        CachingStream stream = write(new CachingStream(THRESHOLD, pool), content);
+
+        assertFalse(stream.isSpilled());
+        assertEquals(0, tempFolder.getRoot().list().length);
+        assertEquals(content.length, stream.getCachedContents().size());
+        assertArrayEquals(content, IOUtils.toByteArray(stream.getCachedContents()));
+        assertArrayEquals(content, IOUtils.toByteArray(stream.getCachedContents()));
+
+        stream.consume();
+
+        assertEquals(0, pool.getMemoryInUse());
+    }
+
+    @Test
+    public void contentOverThresholdIsSpilledToFile() throws Exception {
+        byte[] content = randomBytes(THRESHOLD + 1);
+
+        CachingStream stream = write(new CachingStream(THRESHOLD, pool), content);
+
+        assertTrue(stream.isSpilled());
+        assertEquals(0, pool.getMemoryInUse());
+        assertEquals(content.length, stream.getCachedContents().size());
+        assertArrayEquals(content, IOUtils.toByteArray(stream.getCachedContents()));
+
+        stream.consume();
+    }
+
+    @Test
+    public void contentIsSpilledWhenMemoryBudgetIsUsedUp() throws Exception {
+        byte[] content = randomBytes(THRESHOLD);
+
+        CachingStream first = write(new CachingStream(THRESHOLD, pool), content);
+        CachingStream second = write(new CachingStream(THRESHOLD, pool), content);
+
+        assertFalse(first.isSpilled());
+        assertTrue(second.isSpilled());
+        assertArrayEquals(content, IOUtils.toByteArray(second.getCachedContents()));
+
+        first.consume();
+        second.consume();
+
+        CachingStream third = write(new CachingStream(THRESHOLD, pool), content);
+
+        assertFalse(third.isSpilled());
+
+        third.consume();
+    }
+
+    @Test
+    public void zeroThresholdAlwaysUsesFile() throws Exception {
+        CachingStream stream = write(new CachingStream(0, pool), new byte[] {1, 2});
+
+        assertTrue(stream.isSpilled());
+        assertArrayEquals(new byte[] {1, 2}, IOUtils.toByteArray(stream.getCachedContents()));
+
+        stream.consume();
+    }
+
+    @Test
+    public void singleByteWritesAreCachedInMemory() throws Exception {
+        byte[] content = randomBytes(CachingStreamBufferPool.BUFFER_SIZE + 2);
+        CachingStream stream = new CachingStream(THRESHOLD, pool);
+
+        for (byte b : content) {
+            stream.write(b);
+        }
+
+        assertFalse(stream.isSpilled());
+        assertEquals(2L * CachingStreamBufferPool.BUFFER_SIZE, pool.getMemoryInUse());
+        assertArrayEquals(content, IOUtils.toByteArray(stream.getCachedContents()));
+
+        stream.consume();
+    }
+
+    @Test
+    public void closedStreamKeepsMemoryBudgetUntilConsumed() throws Exception {
+        byte[] content = randomBytes(THRESHOLD);
+
+        CachingStream first = write(new CachingStream(THRESHOLD, pool), content);
+        first.close();
+        first.close();
+
+        assertEquals(THRESHOLD, pool.getMemoryInUse());
+
+        CachingStream second = write(new CachingStream(THRESHOLD, pool), content);
+
+        assertTrue(second.isSpilled());
+        assertArrayEquals(content, IOUtils.toByteArray(first.getCachedContents()));
+
+        first.consume();
+        first.consume();
+        second.consume();
+
+        assertEquals(0, pool.getMemoryInUse());
+    }
+
+    @Test(expected = IOException.class)
+    public void writingFailsAfterClose() throws Exception {
+        CachingStream stream = write(new CachingStream(THRESHOLD, pool), randomBytes(2));
+        stream.close();
+
+        stream.write(1);
+    }
+
+    @Test(expected = IOException.class)
+    public void readingFailsAfterConsume() throws Exception {
+        CachingStream stream = write(new CachingStream(THRESHOLD, pool), randomBytes(2));
+        CacheInputStream contents = stream.getCachedContents();
+
+        stream.consume();
+
+        contents.read();
+    }
+
+    private CachingStream write(CachingStream stream, byte[] content) throws IOException {
+        // write in uneven pieces to cross the buffer boundaries
+        int offset = 0;
+        int piece = 1;
+
+        while (offset < content.length) {
+            int count = Math.min(piece, content.length - offset);
+            stream.write(content, offset, count);
+
+            offset += count;
+            piece = piece * 2 + 1;
+        }
+
+        return stream;
+    }
+
+    private byte[] randomBytes(int count) {
+        byte[] bytes = new byte[count];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.TestGlobalConfImpl;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.util.MessageFileNames;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Node;
+
+import javax.xml.transform.dom.DOMSource;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+
+/**
+ * Measures the per-message cost of verifying a message signature, with the
+ * full schema validation (the behaviour before the schema validation cache)
+ * and with the cached schema validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class SignatureVerifierBenchmark {
+
+    private static final ClientId CONSUMER_ID = ClientId.create("EE", "BUSINESS", "consumer");
+
+    private Date validationDate;
+
+    private String signatureXml;
+
+    private MessagePart messagePart;
+
+    /**
+     * Loads the test signature and sets up the global configuration.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        TestSecurityUtil.initSecurity();
+
+        System.setProperty(SystemProperties.CONFIGURATION_PATH, "../common-util/src/test/resources/globalconf_good_v2");
+        System.setProperty(SystemProperties.CONFIGURATION_ANCHOR_FILE,
+                "../common-util/src/test/resources/configuration-anchor1.xml");
+
+        GlobalConf.reload(new TestGlobalConfImpl(false) {
+            @Override
+            public X509Certificate getCaCert(String instanceIdentifier, X509Certificate memberCert) throws Exception {
+                return TestCertUtil.getCaCert();
+            }
+        });
+
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2014, Calendar.OCTOBER, 30);
+        validationDate = cal.getTime();
+
+        signatureXml = FileUtils.readFileToString(new File("../common-test/src/test/signatures/sign-0.xml"),
+                StandardCharsets.UTF_8);
+
+        byte[] message = FileUtils.readFileToByteArray(new File("../common-test/src/test/signatures/message-0.xml"));
+        messagePart = new MessagePart(MessageFileNames.MESSAGE, SHA512_ID, calculateDigest(SHA512_ID, message),
+                message);
+    }
+
+    /**
+     * Verifies the signature, validating it against the schema every time.
+     * @return the verifier
+     * @throws Exception if verification fails
+     */
+    @Benchmark
+    public SignatureVerifier verifyWithFullSchemaValidation() throws Exception {
+        Signature signature = new Signature(signatureXml);
+
+        Node signatureNode = signature.getDocument().getDocumentElement().getFirstChild();
+        SignatureSchemaValidator.validate(new DOMSource(signatureNode));
+
+        SignatureVerifier verifier = new SignatureVerifier(signature);
+        verifier.setVerifySchema(false);
+        verifier.addPart(messagePart);
+        verifier.verify(CONSUMER_ID, validationDate);
+
+        return verifier;
+    }
+
+    /**
+     * Verifies the signature data the way the proxy does.
+     * @return the verifier
+     * @throws Exception if verification fails
+     */
+    @Benchmark
+    public SignatureVerifier verify() throws Exception {
+        SignatureVerifier verifier = new SignatureVerifier(new SignatureData(signatureXml, null, null));
+        verifier.addPart(messagePart);
+        verifier.verify(CONSUMER_ID, validationDate);
+
+        return verifier;
+    }
+}
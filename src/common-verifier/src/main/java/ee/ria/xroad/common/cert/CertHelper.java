@@ -98,12 +98,19 @@ public final class CertHelper {
                 new Object[] {cert.getSerialNumber(),
                         cert.getSubjectX500Principal().getName(), member });
 
-        // Verify certificate against CAs.
-        try {
-            new CertChainVerifier(chain).verify(ocspResponses, new Date());
-        } catch (CodedException e) {
-            // meaningful errors get SSL auth verification prefix
-            throw e.withPrefix(X_SSL_AUTH_FAILED);
+        // Verify certificate against CAs, unless the same chain and OCSP
+        // responses have already been verified and are still fresh.
+        Date now = new Date();
+        String verifiedKey = VerifiedAuthCertCache.getKey(chain, ocspResponses);
+        if (!VerifiedAuthCertCache.isVerified(verifiedKey, now)) {
+            try {
+                new CertChainVerifier(chain).verify(ocspResponses, now);
+            } catch (CodedException e) {
+                // meaningful errors get SSL auth verification prefix
+                throw e.withPrefix(X_SSL_AUTH_FAILED);
+            }
+
+            VerifiedAuthCertCache.put(verifiedKey, chain, ocspResponses);
         }
 
         // Verify (using GlobalConf) that given certificate can be used
@@ -124,6 +131,16 @@ public final class CertHelper {
         }
     }
 
+    /**
+     * Forgets the authentication certificate chains that have been verified
+     * by {@link #verifyAuthCert(CertChain, List, ClientId)}. Called by
+     * {@link GlobalConf} whenever the global configuration (trusted CAs,
+     * OCSP freshness) is reloaded.
+     */
+    public static void clearVerifiedAuthCerts() {
+        VerifiedAuthCertCache.clear();
+    }
+
     /**
      * Finds the OCSP response from a list of OCSP responses
      * for a given certificate.
@@ -0,0 +1,155 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.cert;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
+import ee.ria.xroad.common.util.CryptoUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers authentication certificate chains that have passed the verification together with the OCSP
+ * responses they were verified with. Entries are keyed by a digest of the encoded certificates and responses,
+ * so a peer sending the same chain and responses again is not verified again until one of the responses is
+ * no longer fresh or a certificate expires. The cache is cleared whenever the global configuration is reloaded.
+ */
+final class VerifiedAuthCertCache {
+
+    private static final long CACHE_SIZE = SystemProperties.getVerifiedAuthCertCacheSize();
+
+    private static final Cache<String, Date> VERIFIED = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build();
+
+    private VerifiedAuthCertCache() {
+    }
+
+    /**
+     * @param chain the certificate chain
+     * @param ocspResponses OCSP responses used to verify the chain
+     * @return digest identifying the chain and the responses, or null if the cache is disabled
+     * @throws Exception if the certificates or responses cannot be encoded
+     */
+    static String getKey(CertChain chain, List<OCSPResp> ocspResponses) throws Exception {
+        if (CACHE_SIZE <= 0 || ocspResponses == null || ocspResponses.isEmpty()) {
+            return null;
+        }
+
+        MessageDigest digest = MessageDigest.getInstance(CryptoUtils.SHA256_ID);
+
+        List<X509Certificate> certs = chain.getAllCerts();
+        updateLength(digest, certs.size());
+
+        for (X509Certificate cert : certs) {
+            updateEncoded(digest, cert.getEncoded());
+        }
+
+        updateLength(digest, ocspResponses.size());
+
+        for (OCSPResp response : ocspResponses) {
+            updateEncoded(digest, response.getEncoded());
+        }
+
+        return CryptoUtils.encodeBase64(digest.digest());
+    }
+
+    // Each encoding is prefixed with its length, so that different chains and responses never digest the same input
+    private static void updateEncoded(MessageDigest digest, byte[] encoded) {
+        updateLength(digest, encoded.length);
+        digest.update(encoded);
+    }
+
+    private static void updateLength(MessageDigest digest, int length) {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(length).array());
+    }
+
+    /**
+     * @param key the key returned by {@link #getKey(CertChain, List)}
+     * @param atDate the date of the verification
+     * @return true if the chain and responses identified by the key have been verified and are still valid
+     */
+    static boolean isVerified(String key, Date atDate) {
+        if (key == null) {
+            return false;
+        }
+
+        Date validUntil = VERIFIED.getIfPresent(key);
+
+        return validUntil != null && atDate.before(validUntil);
+    }
+
+    /**
+     * Remembers a successfully verified chain until the first of its OCSP responses is no longer fresh.
+     * @param key the key returned by {@link #getKey(CertChain, List)}
+     * @param chain the verified certificate chain
+     * @param ocspResponses OCSP responses the chain was verified with
+     * @throws Exception if the responses cannot be parsed
+     */
+    static void put(String key, CertChain chain, List<OCSPResp> ocspResponses) throws Exception {
+        if (key != null) {
+            VERIFIED.put(key, getValidUntil(chain, ocspResponses));
+        }
+    }
+
+    static void clear() {
+        VERIFIED.invalidateAll();
+    }
+
+    private static Date getValidUntil(CertChain chain, List<OCSPResp> ocspResponses) throws Exception {
+        long freshnessMillis = TimeUnit.SECONDS.toMillis(GlobalConf.getOcspFreshnessSeconds(false));
+        boolean verifyNextUpdate = GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate();
+
+        long validUntil = Long.MAX_VALUE;
+
+        for (X509Certificate cert : chain.getAllCerts()) {
+            validUntil = Math.min(validUntil, cert.getNotAfter().getTime());
+        }
+
+        for (OCSPResp response : ocspResponses) {
+            SingleResp singleResp = ((BasicOCSPResp) response.getResponseObject()).getResponses()[0];
+
+            validUntil = Math.min(validUntil, singleResp.getThisUpdate().getTime() + freshnessMillis);
+
+            if (verifyNextUpdate && singleResp.getNextUpdate() != null) {
+                validUntil = Math.min(validUntil, singleResp.getNextUpdate().getTime());
+            }
+        }
+
+        return new Date(validUntil);
+    }
+}
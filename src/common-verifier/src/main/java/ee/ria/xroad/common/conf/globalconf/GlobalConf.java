@@ -27,6 +27,8 @@ package ee.ria.xroad.common.conf.globalconf;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
+import ee.ria.xroad.common.cert.CertHelper;
+import ee.ria.xroad.common.conf.ConfigurationChangeBus;
 import ee.ria.xroad.common.certificateprofile.AuthCertificateProfileInfo;
 import ee.ria.xroad.common.certificateprofile.SignCertificateProfileInfo;
 import ee.ria.xroad.common.identifier.CentralServiceId;
@@ -35,6 +37,7 @@ import ee.ria.xroad.common.identifier.GlobalGroupId;
 import ee.ria.xroad.common.identifier.SecurityCategoryId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.util.filewatcher.FileWatchListener;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -42,8 +45,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.cert.X509Certificate;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
@@ -69,6 +78,16 @@ public final class GlobalConf {
 
     private static volatile GlobalConfProvider instance;
 
+    private static final AtomicBoolean CHANGE_DETECTION_STARTED = new AtomicBoolean();
+
+    private static final List<FileWatchListener> CHANGE_LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static final Set<Path> WATCHED_CONFIGURATION_FILES = new HashSet<>();
+
+    private static volatile GlobalConfChangeChecker changeChecker;
+
+    private static volatile boolean watchingChangeTrigger;
+
     private GlobalConf() {
     }
 
@@ -82,25 +101,154 @@ public final class GlobalConf {
 
         if (instance == null) {
             instance = instanceFactory.createInstance(true);
+            startChangeDetection();
         }
 
         return instance;
     }
 
+    /**
+     * Registers a listener that is notified on a background thread after
+     * the global configuration parameters have changed and the configuration
+     * has been reloaded.
+     * @param listener the listener
+     */
+    public static void addChangeListener(FileWatchListener listener) {
+        startChangeDetection();
+
+        CHANGE_LISTENERS.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addChangeListener(FileWatchListener)}.
+     * @param listener the listener
+     */
+    public static void removeChangeListener(FileWatchListener listener) {
+        CHANGE_LISTENERS.remove(listener);
+    }
+
+    // The configuration client rewrites the list of downloaded files after
+    // each download, after the downloaded files themselves are in place.
+    private static Path getChangeTriggerFile() {
+        return Paths.get(SystemProperties.getConfigurationPath(), ConfigurationDirectory.FILES);
+    }
+
+    private static void startChangeDetection() {
+        if (!CHANGE_DETECTION_STARTED.compareAndSet(false, true)) {
+            return;
+        }
+
+        changeChecker = new GlobalConfChangeChecker(Paths.get(SystemProperties.getConfigurationPath()));
+        changeChecker.parametersChanged();
+
+        watchingChangeTrigger = ConfigurationChangeBus.subscribe(getChangeTriggerFile(),
+                GlobalConf::configurationChanged);
+
+        watchConfigurationFiles();
+
+        if (watchingChangeTrigger) {
+            return;
+        }
+
+        // The configuration directory does not exist yet, poll for changes until it can be watched
+        int interval = SystemProperties.getConfigurationClientUpdateIntervalSeconds();
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GlobalConfChangeChecker");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        executor.scheduleWithFixedDelay(GlobalConf::checkForChanges, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Checks the configuration files of all instances for changes that the file watchers did not announce, for
+     * example because the configuration directory could not be watched yet or a file was written during a partly
+     * failed download. Reloads the configuration, if a file has changed. The listeners registered with
+     * {@link #addChangeListener(FileWatchListener)} are notified only if the parameters have changed.
+     */
+    public static void checkForChanges() {
+        log.trace("checkForChanges called");
+
+        if (changeChecker == null) {
+            return;
+        }
+
+        if (!watchingChangeTrigger && ConfigurationChangeBus.watch(getChangeTriggerFile())) {
+            log.info("Watching global configuration directory for changes");
+
+            watchingChangeTrigger = true;
+        }
+
+        if (watchConfigurationFiles()) {
+            log.debug("Global configuration files have changed");
+
+            ConfigurationChangeBus.fireChanged(getChangeTriggerFile());
+        }
+    }
+
+    private static void configurationChanged() {
+        // Recorded before the reload, a file changed during the reload is picked up by the next check
+        watchConfigurationFiles();
+
+        if (!changeChecker.parametersChanged()) {
+            // Only the expiration dates of the configuration may have changed
+            loadInstance();
+
+            return;
+        }
+
+        log.debug("Global configuration parameters have changed");
+
+        try {
+            reloadIfChanged();
+        } finally {
+            for (FileWatchListener listener : CHANGE_LISTENERS) {
+                try {
+                    listener.fileModified();
+                } catch (Exception e) {
+                    log.error("Error notifying listener of global configuration changes", e);
+                }
+            }
+        }
+    }
+
+    // A failed download may leave new parameter files without rewriting the list of downloaded files, so the
+    // parameter files are watched in addition to it. New instances are watched on discovery.
+    private static boolean watchConfigurationFiles() {
+        synchronized (WATCHED_CONFIGURATION_FILES) {
+            for (Path file : changeChecker.getParameterFiles()) {
+                if (WATCHED_CONFIGURATION_FILES.add(file)) {
+                    ConfigurationChangeBus.subscribe(file, GlobalConf::configurationFileChanged);
+                }
+            }
+
+            return changeChecker.filesChanged();
+        }
+    }
+
+    private static void configurationFileChanged() {
+        ConfigurationChangeBus.fireChanged(getChangeTriggerFile());
+    }
+
     /**
      * Initializes current instance of conf for the calling thread.
      * Example usage: calling this method in RequestProcessor to have
      * a copy of current config for the current message.
+     *
+     * Does not check the configuration files for changes, the configuration
+     * is reloaded in the background when the files change.
      */
     public static void initForCurrentThread() {
         log.trace("initForCurrentThread()");
 
         if (instance == null) {
             instance = instanceFactory.createInstance(false);
+            startChangeDetection();
         }
 
-        reloadIfChanged();
-
         THREAD_LOCAL.set(instance);
     }
 
@@ -114,10 +262,14 @@ public final class GlobalConf {
                 instance.load(null);
             } catch (Exception e) {
                 throw translateException(e);
+            } finally {
+                configurationReloaded();
             }
         } else {
             log.trace("reload called, create new GlobalConfImpl");
             instance = instanceFactory.createInstance(true);
+            configurationReloaded();
+            startChangeDetection();
         }
     }
 
@@ -128,14 +280,24 @@ public final class GlobalConf {
     public static void reload(GlobalConfProvider conf) {
         log.trace("reload called with parameter class {}", conf.getClass());
         instance = conf;
+        configurationReloaded();
     }
 
     /**
      * Reloads the configuration if the underlying configuration
-     * file has changed.
+     * file has changed. Readers keep using the previously loaded
+     * configuration until the reload has completed.
      */
-    public static synchronized void reloadIfChanged() {
+    public static void reloadIfChanged() {
         log.trace("reloadIfChanged called");
+        try {
+            loadInstance();
+        } finally {
+            configurationReloaded();
+        }
+    }
+
+    private static void loadInstance() {
         if (instance != null) {
             try {
                 instance.load(null);
@@ -145,6 +307,12 @@ public final class GlobalConf {
         }
     }
 
+    // Verification results that depend on the previous configuration are forgotten,
+    // also when the reload fails half way
+    private static void configurationReloaded() {
+        CertHelper.clearVerifiedAuthCerts();
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -267,6 +435,16 @@ public final class GlobalConf {
         return getInstance().getCentralServices(instanceIdentifier);
     }
 
+    /**
+     * @param instanceIdentifier the instance identifier
+     * @return checksum of the shared parameters of the given instance, or null if it is not known
+     */
+    public static String getSharedParametersChecksum(String instanceIdentifier) {
+        log.trace("getSharedParametersChecksum({})", instanceIdentifier);
+
+        return getInstance().getSharedParametersChecksum(instanceIdentifier);
+    }
+
     /**
      * @param instanceIdentifiers the optional instance identifiers
      * @return global groups of a given instance or all global groups if no
@@ -0,0 +1,160 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static ee.ria.xroad.common.util.CryptoUtils.MD5_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
+
+/**
+ * Tracks the global configuration files of a configuration directory. The modification times of the list of
+ * downloaded files, the parameter files and their metadata tell whether the directory needs to be reloaded. The
+ * configuration client rewrites the metadata after every download, also when the content has not changed, so a
+ * reload may only refresh the expiration dates. The checksums of the parameter files tell whether the parameters
+ * themselves have changed.
+ */
+@Slf4j
+final class GlobalConfChangeChecker {
+
+    private static final List<String> PARAMETERS_FILES = Arrays.asList(
+            ConfigurationDirectoryV2.PRIVATE_PARAMETERS_XML, ConfigurationDirectoryV2.SHARED_PARAMETERS_XML);
+
+    private final Path configurationPath;
+
+    private Map<Path, FileTime> fileTimes = Collections.emptyMap();
+    private Map<Path, String> parameterChecksums = Collections.emptyMap();
+
+    GlobalConfChangeChecker(Path configurationPath) {
+        this.configurationPath = configurationPath;
+    }
+
+    /**
+     * Compares the modification times of the configuration files with the ones seen by the previous call.
+     * @return true, if a configuration file has been created, modified or removed since the previous call
+     */
+    synchronized boolean filesChanged() {
+        Map<Path, FileTime> times = readFileTimes();
+        boolean changed = !times.equals(fileTimes);
+
+        fileTimes = times;
+
+        return changed;
+    }
+
+    /**
+     * Compares the checksums of the parameter files with the ones seen by the previous call.
+     * @return true, if the contents of a parameter file have changed since the previous call
+     */
+    synchronized boolean parametersChanged() {
+        Map<Path, String> checksums = readParameterChecksums();
+        boolean changed = !checksums.equals(parameterChecksums);
+
+        parameterChecksums = checksums;
+
+        return changed;
+    }
+
+    /**
+     * @return the parameter files of all instances that exist in the configuration directory
+     */
+    Set<Path> getParameterFiles() {
+        return readParameterFiles();
+    }
+
+    private Map<Path, FileTime> readFileTimes() {
+        Map<Path, FileTime> times = new HashMap<>();
+
+        addFileTime(times, configurationPath.resolve(ConfigurationDirectory.FILES));
+
+        for (Path file : readParameterFiles()) {
+            addFileTime(times, file);
+            addFileTime(times, Paths.get(file.toString() + ConfigurationDirectory.METADATA_SUFFIX));
+        }
+
+        return times;
+    }
+
+    private Map<Path, String> readParameterChecksums() {
+        Map<Path, String> checksums = new HashMap<>();
+
+        for (Path file : readParameterFiles()) {
+            try {
+                checksums.put(file, hexDigest(MD5_ID, Files.readAllBytes(file)));
+            } catch (Exception e) {
+                log.error("Failed to calculate checksum of {}", file, e);
+            }
+        }
+
+        return checksums;
+    }
+
+    private Set<Path> readParameterFiles() {
+        Set<Path> files = new HashSet<>();
+
+        if (!Files.isDirectory(configurationPath)) {
+            return files;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(configurationPath, Files::isDirectory)) {
+            for (Path instanceDir : stream) {
+                for (String fileName : PARAMETERS_FILES) {
+                    Path file = instanceDir.resolve(fileName);
+
+                    if (Files.exists(file)) {
+                        files.add(file);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to read global configuration files from {}", configurationPath, e);
+        }
+
+        return files;
+    }
+
+    private static void addFileTime(Map<Path, FileTime> times, Path file) {
+        try {
+            if (Files.exists(file)) {
+                times.put(file, Files.getLastModifiedTime(file));
+            }
+        } catch (Exception e) {
+            log.error("Failed to read modification time of {}", file, e);
+        }
+    }
+}
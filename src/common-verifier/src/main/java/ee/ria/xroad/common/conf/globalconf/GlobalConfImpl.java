@@ -36,7 +36,6 @@ import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.CentralServiceTyp
 import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.GlobalGroupType;
 import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.MemberClassType;
 import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.MemberType;
-import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.OcspInfoType;
 import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SecurityServerType;
 import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SubsystemType;
 import ee.ria.xroad.common.identifier.CentralServiceId;
@@ -51,7 +50,6 @@ import ee.ria.xroad.common.util.CryptoUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.bouncycastle.cert.X509CertificateHolder;
 
 import java.io.OutputStream;
 import java.math.BigInteger;
@@ -193,11 +191,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throw new CodedException(X_INTERNAL_ERROR, e);
         }
 
-        return p == null ? null : p.getMembers().stream()
-                .filter(m -> p.createMemberId(m).memberEquals(clientId))
-                .map(MemberType::getName)
-                .findFirst()
-                .orElse(null);
+        return p == null ? null : p.findMemberName(clientId);
     }
 
     @Override
@@ -211,6 +205,11 @@ public class GlobalConfImpl implements GlobalConfProvider {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public String getSharedParametersChecksum(String instanceIdentifier) {
+        return getSharedParameters(instanceIdentifier).getChecksum();
+    }
+
     @Override
     public List<GlobalGroupInfo> getGlobalGroups(
             String... instanceIdentifiers) {
@@ -236,11 +235,9 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throw new CodedException(X_INTERNAL_ERROR, e);
         }
 
-        return p == null ? null : p.getGlobalGroups().stream()
-                .filter(g -> g.getGroupCode().equals(
-                        globalGroupId.getGroupCode()))
-                .map(GlobalGroupType::getDescription)
-                .findFirst().orElse(null);
+        GlobalGroupType group = p == null ? null : p.findGlobalGroup(globalGroupId);
+
+        return group == null ? null : group.getDescription();
     }
 
     @Override
@@ -285,26 +282,20 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throws Exception {
         List<String> responders = new ArrayList<>();
 
-        for (SharedParametersV2 p : getSharedParameters()) {
-            List<OcspInfoType> caOcspData = null;
-            X509Certificate caCert;
-            try {
-                if (!certificateIsCA) {
-                    caCert = getCaCert(null, certificate);
-                } else {
-                    caCert = certificate;
+        X509Certificate caCert = null;
+        try {
+            caCert = certificateIsCA ? certificate : getCaCert(null, certificate);
+        } catch (CodedException e) {
+            log.error("Unable to determine OCSP responders: {}", e);
+        }
+
+        if (caCert != null) {
+            for (SharedParametersV2 p : getSharedParameters()) {
+                List<String> caResponders = p.getCaCertsAndOcspResponderUrls().get(caCert);
+                if (caResponders != null) {
+                    responders.addAll(caResponders);
                 }
-                caOcspData = p.getCaCertsAndOcspData().get(caCert);
-            } catch (CodedException e) {
-                log.error("Unable to determine OCSP responders: {}", e);
-            }
-            if (caOcspData == null) {
-                continue;
             }
-            caOcspData.stream().map(OcspInfoType::getUrl)
-                    .filter(StringUtils::isNotBlank)
-                    .map(String::trim)
-                    .forEach(responders::add);
         }
 
         String uri = CertUtils.getOcspResponderUriFromCert(certificate);
@@ -326,13 +317,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
         List<X509Certificate> responderCerts = new ArrayList<>();
         try {
             for (SharedParametersV2 p : getSharedParameters()) {
-                for (List<OcspInfoType> ocspTypes
-                        : p.getCaCertsAndOcspData().values()) {
-                    ocspTypes.stream().map(OcspInfoType::getCert)
-                            .filter(Objects::nonNull)
-                            .map(CryptoUtils::readCertificate)
-                            .forEach(responderCerts::add);
-                }
+                responderCerts.addAll(p.getOcspResponderCerts());
             }
         } catch (Exception e) {
             log.error("Error while getting OCSP responder certificates", e);
@@ -350,15 +335,12 @@ public class GlobalConfImpl implements GlobalConfProvider {
                     "Member certificate must be present to find CA cert!");
         }
 
-        X509CertificateHolder ch = new X509CertificateHolder(
-                memberCert.getEncoded());
-
         String[] instances = instanceIdentifier != null
                 ? new String[] {instanceIdentifier} : new String[] {};
 
         return getSharedParameters(instances)
                 .stream()
-                .map(p -> p.getSubjectsAndCaCerts().get(ch.getIssuer()))
+                .map(p -> p.getCaCertForIssuer(memberCert))
                 .filter(Objects::nonNull)
                 .findFirst()
                 .orElseThrow(
@@ -410,12 +392,8 @@ public class GlobalConfImpl implements GlobalConfProvider {
     public boolean isOcspResponderCert(X509Certificate ca,
             X509Certificate ocspCert) {
         return getSharedParameters().stream()
-                .map(p -> p.getCaCertsAndOcspData().get(ca))
-                .filter(Objects::nonNull).flatMap(o -> o.stream())
-                .map(OcspInfoType::getCert).filter(Objects::nonNull)
-                .map(CryptoUtils::readCertificate)
-                .filter(c -> c.equals(ocspCert))
-                .findFirst().isPresent();
+                .map(p -> p.getCaCertsAndOcspResponderCerts().get(ca))
+                .anyMatch(certs -> certs != null && certs.contains(ocspCert));
     }
 
     @Override
@@ -434,13 +412,9 @@ public class GlobalConfImpl implements GlobalConfProvider {
         String b64 = encodeBase64(certHash(cert));
 
         for (SharedParametersV2 p : getSharedParameters()) {
-            SecurityServerType serverType = p.getServerByAuthCert().get(b64);
-            if (serverType != null) {
-                MemberType owner = SharedParametersV2.getOwner(serverType);
-                return SecurityServerId.create(p.getInstanceIdentifier(),
-                        owner.getMemberClass().getCode(),
-                        owner.getMemberCode(),
-                        serverType.getServerCode());
+            SecurityServerId serverId = p.getServerIdByAuthCert().get(b64);
+            if (serverId != null) {
+                return serverId;
             }
         }
 
@@ -450,10 +424,9 @@ public class GlobalConfImpl implements GlobalConfProvider {
     @Override
     public ClientId getServerOwner(SecurityServerId serverId) {
         for (SharedParametersV2 p : getSharedParameters()) {
-            SecurityServerType server = p.getSecurityServersById()
-                    .get(serverId);
-            if (server != null) {
-                return p.createMemberId((MemberType) server.getOwner());
+            ClientId owner = p.getSecurityServerOwners().get(serverId);
+            if (owner != null) {
+                return owner;
             }
         }
 
@@ -567,17 +540,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             log.warn("Got exception while getting shared parameters.", e);
         }
 
-        if (p == null) {
-            return false;
-        }
-
-        GlobalGroupType group = p.findGlobalGroup(groupId);
-        if (group == null) {
-            return false;
-        }
-
-        return group.getGroupMember().stream().filter(m -> m.equals(subjectId))
-                .findFirst().isPresent();
+        return p != null && p.isGlobalGroupMember(subjectId, groupId);
     }
 
     @Override
@@ -585,9 +548,9 @@ public class GlobalConfImpl implements GlobalConfProvider {
             SecurityServerId securityServerId) {
         SharedParametersV2 p = getSharedParameters(securityServerId
                 .getXRoadInstance());
-        return p.getSecurityServerClients().containsKey(securityServerId)
-                && p.getSecurityServerClients().get(securityServerId)
-                        .contains(clientId);
+        Set<ClientId> clients = p.getSecurityServerClients().get(securityServerId);
+
+        return clients != null && clients.contains(clientId);
     }
 
     @Override
@@ -95,6 +95,14 @@ public interface GlobalConfProvider extends ConfProvider {
      */
     List<CentralServiceId> getCentralServices(String instanceIdentifier);
 
+    /**
+     * @param instanceIdentifier the instance identifier
+     * @return checksum of the shared parameters of the given instance, or null if it is not known
+     */
+    default String getSharedParametersChecksum(String instanceIdentifier) {
+        return null;
+    }
+
     /**
      * @param instanceIdentifiers the optional instance identifiers
      * @return global groups of a given instance or all global groups if no
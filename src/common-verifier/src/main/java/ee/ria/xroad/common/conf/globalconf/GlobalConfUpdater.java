@@ -22,9 +22,7 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-package ee.ria.xroad.proxy.util;
-
-import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+package ee.ria.xroad.common.conf.globalconf;
 
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.DisallowConcurrentExecution;
@@ -33,7 +31,7 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
 /**
- * Periodic reload of global configuration
+ * Periodic check of global configuration for changes the file watchers missed
  */
 @Slf4j
 @DisallowConcurrentExecution
@@ -41,10 +39,10 @@ public class GlobalConfUpdater implements Job {
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
         try {
-            log.trace("Reloading globalconf");
-            GlobalConf.reloadIfChanged();
+            log.trace("Checking globalconf for changes");
+            GlobalConf.checkForChanges();
         } catch (Exception e) {
-            log.error("Error reloading globalconf", e);
+            log.error("Error checking globalconf for changes", e);
             throw new JobExecutionException(e);
         }
     }
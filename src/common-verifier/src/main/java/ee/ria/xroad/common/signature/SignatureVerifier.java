@@ -48,8 +48,6 @@ import org.apache.xml.security.utils.resolver.ResourceResolverSpi;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.w3c.dom.Node;
 
-import javax.xml.transform.dom.DOMSource;
-
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -78,6 +76,9 @@ public class SignatureVerifier {
     /** The signature object. */
     private final Signature signature;
 
+    /** The signing certificate, read from the signature key info once. */
+    private X509Certificate signingCertificate;
+
     /** The parts to be verified. */
     private final List<MessagePart> parts = new ArrayList<>();
 
@@ -181,7 +182,7 @@ public class SignatureVerifier {
      * @throws Exception if an error occurs
      */
     public X509Certificate getSigningCertificate() throws Exception {
-        X509Certificate cert = signature.getSigningCertificate();
+        X509Certificate cert = readSigningCertificate();
         if (cert == null) {
             throw new CodedException(X_MALFORMED_SIGNATURE,
                     "Signature does not contain signing certificate");
@@ -204,7 +205,7 @@ public class SignatureVerifier {
      */
     public OCSPResp getSigningOcspResponse(String instanceIdentifier)
             throws Exception {
-        X509Certificate cert = signature.getSigningCertificate();
+        X509Certificate cert = readSigningCertificate();
         List<OCSPResp> responses = signature.getOcspResponses();
         X509Certificate issuer = GlobalConf.getCaCert(instanceIdentifier, cert);
 
@@ -256,7 +257,18 @@ public class SignatureVerifier {
     private void verifySchema() throws Exception {
         Node signatureNode =
                 signature.getDocument().getDocumentElement().getFirstChild();
-        SignatureSchemaValidator.validate(new DOMSource(signatureNode));
+        SignatureSchemaValidator.validate(signatureNode);
+    }
+
+    /**
+     * The certificate is read from the key info of the signature DOM, so that the certificate that is checked
+     * is the same object that the signature value is verified with.
+     */
+    private X509Certificate readSigningCertificate() throws Exception {
+        if (signingCertificate == null) {
+            signingCertificate = signature.getSigningCertificate();
+        }
+        return signingCertificate;
     }
 
     private void verifyHashChain() throws Exception {
@@ -0,0 +1,171 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.cert;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that verified authentication certificate chains are remembered only while their OCSP responses are fresh.
+ */
+public class VerifiedAuthCertCacheTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private X509Certificate rootCa;
+    private X509Certificate userCert;
+    private CertChain chain;
+
+    // Inside the validity period of the test certificates
+    private Date atDate;
+
+    /**
+     * Loads the test certificates.
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        TestSecurityUtil.initSecurity();
+        GlobalConf.reload(new EmptyGlobalConf());
+
+        rootCa = TestCertUtil.getCertChainCert("root_ca.p12");
+        userCert = TestCertUtil.getCertChainCert("user_0.p12");
+        chain = new CertChain("EE", userCert, rootCa, Collections.emptyList());
+        atDate = new Date(userCert.getNotBefore().getTime() + TimeUnit.DAYS.toMillis(1));
+    }
+
+    /**
+     * Clears the verified chains.
+     */
+    @After
+    public void tearDown() {
+        VerifiedAuthCertCache.clear();
+    }
+
+    /**
+     * Tests that the key depends on both the chain and the OCSP responses.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void keyIdentifiesChainAndResponses() throws Exception {
+        List<OCSPResp> responses = ocspResponses(atDate, null);
+
+        assertEquals(VerifiedAuthCertCache.getKey(chain, responses),
+                VerifiedAuthCertCache.getKey(chain, responses));
+        assertNotEquals(VerifiedAuthCertCache.getKey(chain, responses),
+                VerifiedAuthCertCache.getKey(chain, ocspResponses(new Date(atDate.getTime() + MINUTE), null)));
+    }
+
+    /**
+     * Tests that a chain is remembered after it has been verified and forgotten when cleared.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void verifiedUntilCleared() throws Exception {
+        List<OCSPResp> responses = ocspResponses(atDate, null);
+        String key = VerifiedAuthCertCache.getKey(chain, responses);
+
+        assertFalse(VerifiedAuthCertCache.isVerified(key, atDate));
+
+        VerifiedAuthCertCache.put(key, chain, responses);
+        assertTrue(VerifiedAuthCertCache.isVerified(key, atDate));
+
+        CertHelper.clearVerifiedAuthCerts();
+        assertFalse(VerifiedAuthCertCache.isVerified(key, atDate));
+    }
+
+    /**
+     * Tests that the verified chains are forgotten when the global configuration is reloaded.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void clearedOnGlobalConfReload() throws Exception {
+        List<OCSPResp> responses = ocspResponses(atDate, null);
+        String key = VerifiedAuthCertCache.getKey(chain, responses);
+
+        VerifiedAuthCertCache.put(key, chain, responses);
+        assertTrue(VerifiedAuthCertCache.isVerified(key, atDate));
+
+        GlobalConf.reload(new EmptyGlobalConf());
+        assertFalse(VerifiedAuthCertCache.isVerified(key, atDate));
+    }
+
+    /**
+     * Tests that a chain is verified again once the OCSP response is no longer fresh.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void expiresWithOcspFreshness() throws Exception {
+        List<OCSPResp> responses = ocspResponses(atDate, null);
+        String key = VerifiedAuthCertCache.getKey(chain, responses);
+        VerifiedAuthCertCache.put(key, chain, responses);
+
+        long freshness = TimeUnit.SECONDS.toMillis(GlobalConf.getOcspFreshnessSeconds(false));
+
+        assertTrue(VerifiedAuthCertCache.isVerified(key, new Date(atDate.getTime() + freshness - MINUTE)));
+        assertFalse(VerifiedAuthCertCache.isVerified(key, new Date(atDate.getTime() + freshness)));
+    }
+
+    /**
+     * Tests that a chain is verified again after the nextUpdate of the OCSP response.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void expiresAtNextUpdate() throws Exception {
+        Date nextUpdate = new Date(atDate.getTime() + MINUTE);
+        List<OCSPResp> responses = ocspResponses(atDate, nextUpdate);
+        String key = VerifiedAuthCertCache.getKey(chain, responses);
+        VerifiedAuthCertCache.put(key, chain, responses);
+
+        assertTrue(VerifiedAuthCertCache.isVerified(key, atDate));
+        assertFalse(VerifiedAuthCertCache.isVerified(key, nextUpdate));
+    }
+
+    private List<OCSPResp> ocspResponses(Date thisUpdate, Date nextUpdate) throws Exception {
+        return Collections.singletonList(OcspTestUtils.createOCSPResponse(userCert, rootCa,
+                TestCertUtil.getOcspSigner().certChain[0], TestCertUtil.getOcspSigner().key,
+                CertificateStatus.GOOD, thisUpdate, nextUpdate));
+    }
+}
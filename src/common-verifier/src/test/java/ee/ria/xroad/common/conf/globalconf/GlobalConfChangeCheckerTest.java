@@ -0,0 +1,121 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link GlobalConfChangeChecker}.
+ */
+public class GlobalConfChangeCheckerTest {
+
+    private static final File GOOD_CONF_DIR = new File("../common-util/src/test/resources/globalconf_good_v2");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path confDir;
+    private GlobalConfChangeChecker checker;
+
+    /**
+     * Copies the test configuration and records its initial state.
+     * @throws IOException if copying fails
+     */
+    @Before
+    public void setUp() throws IOException {
+        confDir = temporaryFolder.getRoot().toPath();
+        FileUtils.copyDirectory(GOOD_CONF_DIR, confDir.toFile());
+        write(confDir.resolve(ConfigurationDirectory.FILES), "");
+
+        checker = new GlobalConfChangeChecker(confDir);
+        checker.filesChanged();
+        checker.parametersChanged();
+    }
+
+    @Test
+    public void shouldNotDetectChangesInUnchangedFiles() {
+        assertFalse(checker.filesChanged());
+        assertFalse(checker.parametersChanged());
+    }
+
+    @Test
+    public void shouldDetectChangedMetadataWithoutParameterChanges() throws IOException {
+        write(confDir.resolve("EE").resolve("shared-params.xml.metadata"), "{\"contentIdentifier\":"
+                + "\"SHARED-PARAMETERS\",\"instanceIdentifier\":\"EE\",\"expirationDate\":\"2125-05-20T17:42:55Z\"}");
+
+        assertTrue(checker.filesChanged());
+        assertFalse(checker.parametersChanged());
+
+        assertFalse(checker.filesChanged());
+    }
+
+    @Test
+    public void shouldDetectRewrittenListOfDownloadedFiles() throws IOException {
+        write(confDir.resolve(ConfigurationDirectory.FILES), "");
+
+        assertTrue(checker.filesChanged());
+        assertFalse(checker.parametersChanged());
+    }
+
+    @Test
+    public void shouldDetectChangedParameters() throws IOException {
+        Path sharedParams = confDir.resolve("foo").resolve("shared-params.xml");
+        write(sharedParams, new String(Files.readAllBytes(sharedParams), StandardCharsets.UTF_8) + "\n");
+
+        assertTrue(checker.filesChanged());
+        assertTrue(checker.parametersChanged());
+
+        assertFalse(checker.parametersChanged());
+    }
+
+    @Test
+    public void shouldListParameterFilesOfAllInstances() {
+        assertEquals(5, checker.getParameterFiles().size());
+    }
+
+    // Moves the modification time forward, so that the change is seen regardless of the file system resolution
+    private static void write(Path file, String content) throws IOException {
+        FileTime previous = Files.exists(file) ? Files.getLastModifiedTime(file) : FileTime.fromMillis(0);
+
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(previous.toMillis() + TimeUnit.SECONDS.toMillis(2)));
+    }
+}
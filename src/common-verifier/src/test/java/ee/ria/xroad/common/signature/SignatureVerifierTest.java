@@ -207,6 +207,53 @@ public class SignatureVerifierTest {
         verifier.verify(null, null);
     }
 
+    /**
+     * Tests that a signature failing the schema validation is rejected even after
+     * a valid signature has been verified and its structure cached.
+     * @throws Exception if error occurs
+     */
+    @Test
+    public void schemaValidationFailAfterValidSignature() throws Exception {
+        verifyValidSignature("../common-test/src/test/signatures/sign-0.xml");
+
+        thrown.expectError(X_MALFORMED_SIGNATURE);
+
+        SignatureVerifier verifier = createSignatureVerifier("src/test/signatures/sign-0-schema-fail.xml");
+        verifier.verify(null, null);
+    }
+
+    /**
+     * Tests that verifying a valid signature read from signature data succeeds.
+     * @throws Exception if error occurs
+     */
+    @Test
+    public void verifyValidSignatureData() throws Exception {
+        List<MessagePart> hashes = new ArrayList<>();
+        byte[] messageBytes = fileToBytes("../common-test/src/test/signatures/message-0.xml");
+
+        hashes.add(new MessagePart(MessageFileNames.MESSAGE, SHA512_ID, calculateDigest(SHA512_ID, messageBytes),
+                messageBytes));
+
+        SignatureVerifier verifier = new SignatureVerifier(
+                new SignatureData(loadFile("../common-test/src/test/signatures/sign-0.xml"), null, null));
+        verifier.addParts(hashes);
+
+        verifier.verify(CONSUMER_ID, CORRECT_VALIDATION_DATE);
+    }
+
+    /**
+     * Tests that verification fails if signing certificate is not in the signature data.
+     * @throws Exception if error occurs
+     */
+    @Test
+    public void noSigningCertificateInSignatureData() throws Exception {
+        thrown.expectError(X_MALFORMED_SIGNATURE);
+
+        SignatureVerifier verifier = new SignatureVerifier(
+                new SignatureData(loadFile("src/test/signatures/sign-0-no-signing-cert.xml"), null, null));
+        verifier.verify(null, null);
+    }
+
     /**
      * Tests that verification fails if signing certificate is not in the signature.
      * @throws Exception if error occurs
@@ -83,6 +83,13 @@ class ConfigurationClient {
         }
     }
 
+    /**
+     * Stops the download threads, the client cannot be executed afterwards.
+     */
+    void shutdown() {
+        downloader.shutdown();
+    }
+
     private void initConfigurationAnchor() throws Exception {
         log.trace("initConfigurationAnchor()");
 
@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.common.conf.globalconf;
 
+import ee.ria.xroad.common.DefaultFilepaths;
 import ee.ria.xroad.common.DiagnosticsErrorCodes;
 import ee.ria.xroad.common.DiagnosticsStatus;
 import ee.ria.xroad.common.SystemProperties;
@@ -46,6 +47,7 @@ import org.quartz.JobListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.concurrent.CountDownLatch;
@@ -171,7 +173,7 @@ public final class ConfigurationClientMain {
             }
 
             @Override
-            void persistContent(byte[] content, Path destination, ConfigurationFile file) throws Exception {
+            void persistContent(Path content, Path destination, ConfigurationFile file) throws Exception {
                 // empty cause we don't want to persist files to disk
             }
 
@@ -179,6 +181,12 @@ public final class ConfigurationClientMain {
             void updateExpirationDate(Path destination, ConfigurationFile file) throws Exception {
                 // empty cause we don't want to persist files to disk
             }
+
+            @Override
+            Path createContentFile(Path destination) throws IOException {
+                // not next to the destination, the configuration directory must stay untouched
+                return DefaultFilepaths.createTempFile("conf", null);
+            }
         };
 
         client = new ConfigurationClient(getDummyDownloadedFiles(), configuration,
@@ -213,6 +221,8 @@ public final class ConfigurationClientMain {
             log.error("Error when downloading conf", e);
 
             return ConfigurationClientUtils.getErrorCode(e);
+        } finally {
+            client.shutdown();
         }
     }
 
@@ -327,6 +337,10 @@ public final class ConfigurationClientMain {
             adminPort.stop();
             adminPort.join();
         }
+
+        if (client != null) {
+            client.shutdown();
+        }
     }
 
     /**
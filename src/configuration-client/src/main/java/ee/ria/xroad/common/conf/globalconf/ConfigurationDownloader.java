@@ -25,11 +25,15 @@
 package ee.ria.xroad.common.conf.globalconf;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.DefaultFilepaths;
+import ee.ria.xroad.common.SystemProperties;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.bouncycastle.operator.DigestCalculator;
 
@@ -38,6 +42,8 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -45,17 +51,24 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static ee.ria.xroad.common.ErrorCodes.X_IO_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_GLOBALCONF;
+import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.CryptoUtils.createDigestCalculator;
 import static ee.ria.xroad.common.util.CryptoUtils.decodeBase64;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
 import static ee.ria.xroad.common.util.CryptoUtils.getAlgorithmId;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * Downloads configuration directory from a configuration location defined
@@ -76,6 +89,14 @@ class ConfigurationDownloader {
     protected final FileNameProvider fileNameProvider;
     protected final String[] instanceIdentifiers;
     private final int version;
+    private final ContentHashIndex hashIndex;
+    private final ExecutorService downloadExecutor;
+
+    private Map<ConfigurationFile, Path> downloadedContent =
+            Collections.emptyMap();
+
+    private final Map<ConfigurationFile, SharedParametersV2> parsedSharedParameters =
+            new IdentityHashMap<>();
 
     private Map<ConfigurationSource, ConfigurationLocation>
             lastSuccessfulLocation = new HashMap<>();
@@ -89,6 +110,14 @@ class ConfigurationDownloader {
         this.fileNameProvider = fileNameProvider;
         this.version = version;
         this.instanceIdentifiers = instanceIdentifiers;
+        this.hashIndex =
+                new ContentHashIndex(fileNameProvider.getHashIndexFileName());
+        this.downloadExecutor = Executors.newFixedThreadPool(
+                SystemProperties.getConfigurationClientDownloadThreads(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("conf-download-%d")
+                        .setDaemon(true)
+                        .build());
     }
 
     ConfigurationParser getParser() {
@@ -166,23 +195,90 @@ class ConfigurationDownloader {
         Configuration configuration =
                 getParser().parse(location, contentIdentifiers);
 
-        configuration.eachFile(this::handle);
+        downloadedContent = downloadChangedFiles(location, configuration);
+
+        try {
+            configuration.eachFile(this::handle);
+        } finally {
+            for (Path content : downloadedContent.values()) {
+                Files.deleteIfExists(content);
+            }
+
+            downloadedContent = Collections.emptyMap();
+            parsedSharedParameters.clear();
+
+            hashIndex.save();
+        }
 
         return configuration;
     }
 
-    @SneakyThrows
-    void handle(ConfigurationLocation location, ConfigurationFile file) {
-        log.trace("handle({})", file);
+    /**
+     * Downloads the files that differ from the local copies concurrently.
+     * @return the temporary files holding the verified content by
+     * configuration file
+     */
+    private Map<ConfigurationFile, Path> downloadChangedFiles(
+            ConfigurationLocation location, Configuration configuration)
+            throws Exception {
+        Map<ConfigurationFile, Future<Path>> downloads =
+                new IdentityHashMap<>();
 
+        configuration.eachFile((l, file) -> downloads.put(file,
+                downloadExecutor.submit(() -> downloadIfChanged(l, file))));
+
+        Map<ConfigurationFile, Path> result = new IdentityHashMap<>();
+        Throwable failure = null;
+
+        // wait for all downloads, so that no temporary file is left behind
+        for (Map.Entry<ConfigurationFile, Future<Path>> download
+                : downloads.entrySet()) {
+            try {
+                Path content = download.getValue().get();
+
+                if (content != null) {
+                    result.put(download.getKey(), content);
+                }
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        if (failure != null) {
+            for (Path content : result.values()) {
+                Files.deleteIfExists(content);
+            }
+
+            throw translateException(failure);
+        }
+
+        return result;
+    }
+
+    private Path downloadIfChanged(ConfigurationLocation location,
+            ConfigurationFile file) throws Exception {
         verifyInstanceIdentifier(location.getSource().getInstanceIdentifier(),
                 file);
 
         Path contentFileName = getFileName(file);
-        if (shouldDownload(file, contentFileName)) {
-            byte[] content = downloadContent(location, file);
 
-            verifyContent(content, file);
+        if (!shouldDownload(file, contentFileName)) {
+            return null;
+        }
+
+        return downloadContent(location, file, contentFileName);
+    }
+
+    @SneakyThrows
+    void handle(ConfigurationLocation location, ConfigurationFile file) {
+        log.trace("handle({})", file);
+
+        Path contentFileName = getFileName(file);
+        Path content = downloadedContent.get(file);
+
+        if (content != null) {
             handleContent(content, file);
 
             persistContent(content, contentFileName, file);
@@ -201,8 +297,8 @@ class ConfigurationDownloader {
 
         if (Files.exists(file)) {
             String contentHash = configurationFile.getHash();
-            String existingHash = encodeBase64(hash(file,
-                    configurationFile.getHashAlgorithmId()));
+            String existingHash = hashIndex.getHash(file,
+                    configurationFile.getHashAlgorithmId());
             if (!StringUtils.equals(existingHash, contentHash)) {
                 log.trace("Downloading {} because file has changed ({} != {})",
                         new Object[] {configurationFile.getContentLocation(),
@@ -218,24 +314,70 @@ class ConfigurationDownloader {
         return true;
     }
 
-    byte[] downloadContent(ConfigurationLocation location,
+    /**
+     * Streams the content to a temporary file while computing its hash, and
+     * verifies the hash.
+     * @return the temporary file holding the verified content
+     */
+    Path downloadContent(ConfigurationLocation location,
+            ConfigurationFile file, Path destination) throws Exception {
+        Path tempFile = createContentFile(destination);
+
+        try {
+            DigestCalculator dc = createDigestCalculator(
+                    getAlgorithmId(file.getHashAlgorithmId()));
+
+            try (InputStream in = openContent(location, file);
+                    FileChannel channel = FileChannel.open(tempFile, WRITE)) {
+                IOUtils.copy(in, new TeeOutputStream(
+                        Channels.newOutputStream(channel),
+                        dc.getOutputStream()));
+                channel.force(true);
+            }
+
+            verifyContent(dc.getDigest(), file);
+
+            return tempFile;
+        } catch (Exception e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the temporary file the content is downloaded to. It is created
+     * next to the destination, so that persisting the content only needs to
+     * move the file. Downloaders that do not persist the content override
+     * this to keep the configuration directory untouched.
+     * @param destination the file the content is persisted to
+     * @return the created temporary file
+     * @throws IOException if the file cannot be created
+     */
+    Path createContentFile(Path destination) throws IOException {
+        Path parent = destination.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        return DefaultFilepaths.createTempFile(parent, "conf", null);
+    }
+
+    /**
+     * Stops the download threads.
+     */
+    void shutdown() {
+        downloadExecutor.shutdownNow();
+    }
+
+    InputStream openContent(ConfigurationLocation location,
             ConfigurationFile file) throws Exception {
         URLConnection connection = getDownloadURLConnection(getDownloadURL(location, file));
         log.info("Downloading content from {}", connection.getURL());
-        try (InputStream in = connection.getInputStream()) {
-            return IOUtils.toByteArray(in);
-        }
+        return connection.getInputStream();
     }
 
-    void verifyContent(byte[] content, ConfigurationFile file)
-            throws Exception {
-        String algoId = getAlgorithmId(file.getHashAlgorithmId());
-        log.trace("verifyContent({}, {})", file.getHash(), algoId);
-
-        DigestCalculator dc = createDigestCalculator(algoId);
-        dc.getOutputStream().write(content);
+    void verifyContent(byte[] hash, ConfigurationFile file) {
+        log.trace("verifyContent({}, {})", file.getHash(),
+                file.getHashAlgorithmId());
 
-        byte[] hash = dc.getDigest();
         if (!Arrays.equals(hash, decodeBase64(file.getHash()))) {
             log.trace("Content {} hash {} does not match expected hash {}",
                     new Object[] {
@@ -245,17 +387,17 @@ class ConfigurationDownloader {
         }
     }
 
-    void handleContent(byte[] content, ConfigurationFile file)
+    void handleContent(Path content, ConfigurationFile file)
             throws Exception {
         switch (file.getContentIdentifier()) {
             case ConfigurationConstants.CONTENT_ID_PRIVATE_PARAMETERS:
                 PrivateParametersV2 privateParameters = new PrivateParametersV2();
-                privateParameters.load(content);
+                privateParameters.load(Files.readAllBytes(content));
                 handlePrivateParameters(privateParameters, file);
                 break;
             case ConfigurationConstants.CONTENT_ID_SHARED_PARAMETERS:
                 SharedParametersV2 sharedParameters = new SharedParametersV2();
-                sharedParameters.load(content);
+                sharedParameters.load(Files.readAllBytes(content));
                 handleSharedParameters(sharedParameters, file);
                 break;
             default: // do nothing
@@ -292,13 +434,35 @@ class ConfigurationDownloader {
             ConfigurationFile file) throws Exception {
         verifyInstanceIdentifier(sharedParameters.getInstanceIdentifier(),
                 file);
+
+        parsedSharedParameters.put(file, sharedParameters);
     }
 
-    void persistContent(byte[] content, Path destination,
+    void persistContent(Path content, Path destination,
             ConfigurationFile file) throws Exception {
         log.info("Saving {} to {}", file, destination);
 
         ConfigurationDirectory.save(destination, content, file.getMetadata());
+
+        hashIndex.put(destination, file.getHashAlgorithmId(), file.getHash());
+
+        SharedParametersV2 sharedParameters = parsedSharedParameters.remove(file);
+
+        if (sharedParameters != null
+                && SystemProperties.isConfigurationClientSharedParametersSnapshotEnabled()) {
+            saveSnapshot(sharedParameters, destination);
+        }
+    }
+
+    // The snapshot only speeds up loading, readers fall back to the XML if it is missing.
+    private static void saveSnapshot(SharedParametersV2 sharedParameters,
+            Path destination) {
+        try {
+            sharedParameters.saveSnapshot(destination);
+        } catch (Exception e) {
+            log.warn("Failed to save shared parameters snapshot for {}",
+                    destination, e);
+        }
     }
 
     void updateExpirationDate(Path destination, ConfigurationFile file)
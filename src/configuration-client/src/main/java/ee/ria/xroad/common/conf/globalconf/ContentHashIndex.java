@@ -0,0 +1,172 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.util.AtomicSave;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+
+/**
+ * Holds the hashes of the configuration parts saved on disk, so that checking whether a part has changed does not
+ * need to hash the local copy on every download. A hash is trusted only while the size and modification time of
+ * the file match the recorded ones; otherwise the file is hashed again.
+ *
+ * The index is saved to disk only when a downloaded part has been written.
+ */
+@Slf4j
+class ContentHashIndex {
+
+    private static final String SEPARATOR = "\t";
+    private static final int FIELDS = 5;
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile boolean dirty;
+
+    /**
+     * @param indexFile the file the index is loaded from and saved to, or null if the index is kept in memory only
+     */
+    ContentHashIndex(Path indexFile) {
+        this.indexFile = indexFile;
+
+        load();
+    }
+
+    /**
+     * @param file the local file
+     * @param algoId the hash algorithm id
+     * @return the base64 encoded hash of the file
+     * @throws Exception if hashing fails
+     */
+    String getHash(Path file, String algoId) throws Exception {
+        String key = key(file);
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.matches(algoId, attributes)) {
+            return entry.getHash();
+        }
+
+        log.trace("Hashing {}", file);
+
+        String hash = encodeBase64(ConfigurationDownloader.hash(file, algoId));
+        entries.put(key, new Entry(algoId, attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+
+        return hash;
+    }
+
+    /**
+     * Records the hash of a file that has just been written.
+     * @param file the written file
+     * @param algoId the hash algorithm id
+     * @param hash the base64 encoded hash of the file content
+     * @throws IOException if the file attributes cannot be read
+     */
+    void put(Path file, String algoId, String hash) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+        entries.put(key(file), new Entry(algoId, attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+        dirty = true;
+    }
+
+    /**
+     * Saves the index if a file has been written since it was last saved.
+     */
+    void save() {
+        if (!dirty || indexFile == null) {
+            return;
+        }
+
+        dirty = false;
+
+        try {
+            AtomicSave.execute(indexFile.toString(), "hashes", out -> {
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                entries.forEach((file, entry) -> writer.println(String.join(SEPARATOR, file, entry.getAlgoId(),
+                        Long.toString(entry.getSize()), Long.toString(entry.getModified()), entry.getHash())));
+                writer.flush();
+            });
+        } catch (Exception e) {
+            dirty = true;
+            log.warn("Failed to save configuration file hashes to {}", indexFile, e);
+        }
+    }
+
+    private void load() {
+        if (indexFile == null || !Files.exists(indexFile)) {
+            return;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+
+            for (String line : lines) {
+                String[] fields = line.split(SEPARATOR);
+
+                if (fields.length == FIELDS) {
+                    entries.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]),
+                            Long.parseLong(fields[3]), fields[4]));
+                }
+            }
+        } catch (Exception e) {
+            entries.clear();
+            log.warn("Ignoring unreadable configuration file hashes in {}", indexFile, e);
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    @Value
+    private static class Entry {
+        String algoId;
+        long size;
+        long modified;
+        String hash;
+
+        boolean matches(String otherAlgoId, BasicFileAttributes attributes) {
+            return algoId.equals(otherAlgoId)
+                    && size == attributes.size()
+                    && modified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -78,14 +79,22 @@ class DownloadedFiles {
     private static Stream<Path> excludeMetadataAndDirs(Stream<Path> stream) {
         return stream.filter(Files::isRegularFile)
                 .filter(p -> !p.endsWith(ConfigurationDirectory.FILES))
+                .filter(p -> !p.endsWith(ConfigurationDirectory.FILE_HASHES))
                 .filter(p -> !p.endsWith(ConfigurationDirectory.INSTANCE_IDENTIFIER_FILE))
-                .filter(p -> !p.toString().endsWith(ConfigurationDirectory.METADATA_SUFFIX));
+                .filter(p -> !p.toString().endsWith(ConfigurationDirectory.METADATA_SUFFIX))
+                .filter(p -> !p.toString().endsWith(SharedParametersSnapshot.SUFFIX));
     }
 
     void delete(Path path) {
         log.trace("delete({})", path);
 
         ConfigurationDirectory.delete(path.toString());
+
+        try {
+            Files.deleteIfExists(SharedParametersV2.getSnapshotPath(path));
+        } catch (IOException e) {
+            log.error("Failed to delete snapshot of file {}", path, e);
+        }
     }
 
     void save() throws Exception {
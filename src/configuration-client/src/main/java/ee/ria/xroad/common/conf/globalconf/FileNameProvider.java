@@ -39,4 +39,12 @@ public interface FileNameProvider {
      */
     Path getFileName(ConfigurationFile file) throws Exception;
 
+    /**
+     * @return the file where the hashes of the saved configuration parts are kept between runs, or null if the
+     * hashes are only kept in memory
+     */
+    default Path getHashIndexFileName() {
+        return null;
+    }
+
 }
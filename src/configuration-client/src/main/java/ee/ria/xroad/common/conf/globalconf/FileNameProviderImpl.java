@@ -64,4 +64,9 @@ public class FileNameProviderImpl implements FileNameProvider {
                 escapeInstanceIdentifier(file.getInstanceIdentifier()),
                 fileName);
     }
+
+    @Override
+    public Path getHashIndexFileName() {
+        return Paths.get(globalConfigurationDirectory, ConfigurationDirectory.FILE_HASHES);
+    }
 }
@@ -29,7 +29,6 @@ import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.TestCertUtil;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
 import java.io.FileInputStream;
@@ -187,7 +186,7 @@ public class ConfigurationClientTest {
             }
 
             @Override
-            void persistContent(byte[] content, Path destination, ConfigurationFile file) throws Exception {
+            void persistContent(Path content, Path destination, ConfigurationFile file) throws Exception {
                 receivedParts.add(file.getContentIdentifier());
             }
 
@@ -196,11 +195,9 @@ public class ConfigurationClientTest {
             }
 
             @Override
-            byte[] downloadContent(ConfigurationLocation location, ConfigurationFile file) throws Exception {
-                try (InputStream in = Files.newInputStream(
-                        Paths.get(confPath, file.getInstanceIdentifier(), file.getContentLocation()))) {
-                    return IOUtils.toByteArray(in);
-                }
+            InputStream openContent(ConfigurationLocation location, ConfigurationFile file) throws Exception {
+                return Files.newInputStream(
+                        Paths.get(confPath, file.getInstanceIdentifier(), file.getContentLocation()));
             }
         };
 
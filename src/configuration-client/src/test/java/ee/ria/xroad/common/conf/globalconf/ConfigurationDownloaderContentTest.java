@@ -0,0 +1,296 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static ee.ria.xroad.common.util.CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.DEFAULT_DIGEST_ALGORITHM_URI;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_IDENTIFIER;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_LOCATION;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_HASH_ALGORITHM_ID;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests downloading configuration parts from a local HTTP server.
+ */
+public class ConfigurationDownloaderContentTest {
+    private static final int PARTS = 100;
+    private static final String INSTANCE = "EE";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final Map<String, byte[]> served = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private Server server;
+    private String baseUrl;
+    private Path confDir;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty(SystemProperties.CONFIGURATION_CLIENT_DOWNLOAD_THREADS, "4");
+
+        for (int i = 0; i < PARTS; i++) {
+            served.put("/part-" + i + ".xml", ("<part>" + i + "</part>").getBytes(StandardCharsets.UTF_8));
+        }
+
+        server = startServer();
+        baseUrl = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/";
+        confDir = tmp.newFolder("conf").toPath();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        System.clearProperty(SystemProperties.CONFIGURATION_CLIENT_DOWNLOAD_THREADS);
+    }
+
+    @Test
+    public void downloadsPartsConcurrently() throws Exception {
+        ConfigurationDownloader downloader = getDownloader(new ArrayList<>(served.keySet()));
+
+        assertTrue(downloader.download(getSource()).isSuccess());
+
+        assertEquals(PARTS, requests.get());
+        assertTrue("Parts should be downloaded concurrently", maxActive.get() > 1);
+
+        for (Map.Entry<String, byte[]> part : served.entrySet()) {
+            assertArrayEquals(part.getValue(), Files.readAllBytes(confDir.resolve(INSTANCE + part.getKey())));
+        }
+
+        assertEquals(PARTS, Files.readAllLines(confDir.resolve(ConfigurationDirectory.FILE_HASHES)).size());
+        assertEquals(Collections.emptyList(), tempFiles());
+    }
+
+    @Test
+    public void downloadsOnlyChangedParts() throws Exception {
+        assertTrue(getDownloader(new ArrayList<>(served.keySet())).download(getSource()).isSuccess());
+
+        served.put("/part-7.xml", "<part>changed</part>".getBytes(StandardCharsets.UTF_8));
+        requests.set(0);
+
+        // a new downloader starts from the persisted hashes
+        assertTrue(getDownloader(new ArrayList<>(served.keySet())).download(getSource()).isSuccess());
+
+        assertEquals(1, requests.get());
+        assertArrayEquals(served.get("/part-7.xml"), Files.readAllBytes(confDir.resolve(INSTANCE + "/part-7.xml")));
+    }
+
+    @Test
+    public void failsWithoutLeavingFilesWhenHashDoesNotMatch() throws Exception {
+        List<String> parts = new ArrayList<>(served.keySet());
+        ConfigurationDownloader downloader = getDownloader(parts);
+
+        served.put("/part-42.xml", "<part>tampered</part>".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(downloader.download(getSource()).isSuccess());
+
+        try (Stream<Path> files = Files.list(confDir.resolve(INSTANCE))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void leavesConfigurationDirectoryUntouchedWithoutPersisting() throws Exception {
+        Path contentDir = tmp.newFolder("content").toPath();
+
+        assertTrue(getDownloader(new ArrayList<>(served.keySet()), contentDir).download(getSource()).isSuccess());
+
+        assertEquals(PARTS, requests.get());
+
+        try (Stream<Path> files = Files.list(confDir)) {
+            assertEquals(0, files.count());
+        }
+
+        try (Stream<Path> files = Files.list(contentDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private List<Path> tempFiles() throws IOException {
+        List<Path> result = new ArrayList<>();
+
+        try (Stream<Path> files = Files.walk(confDir)) {
+            files.filter(f -> f.getFileName().toString().startsWith("conf")).filter(Files::isRegularFile)
+                    .forEach(result::add);
+        }
+
+        return result;
+    }
+
+    private ConfigurationDownloader getDownloader(List<String> parts) throws Exception {
+        return getDownloader(parts, null);
+    }
+
+    // Like the validating configuration client, does not persist anything if a content directory is given
+    private ConfigurationDownloader getDownloader(List<String> parts, Path contentDir) throws Exception {
+        // the hashes are taken from the content served at the time the directory is created
+        Map<String, String> hashes = new HashMap<>();
+
+        for (String part : parts) {
+            hashes.put(part, encodeBase64(calculateDigest(DEFAULT_DIGEST_ALGORITHM_ID, served.get(part))));
+        }
+
+        return new ConfigurationDownloader(new FileNameProviderImpl(confDir.toString()),
+                SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
+            @Override
+            ConfigurationParser getParser() {
+                return new ConfigurationParser() {
+                    @Override
+                    public Configuration parse(ConfigurationLocation location, String... contentIdentifiers) {
+                        Configuration configuration = new Configuration(location);
+
+                        for (String part : parts) {
+                            Map<String, String> headers = new HashMap<>();
+                            headers.put(HEADER_CONTENT_IDENTIFIER, "PART; instance=" + INSTANCE);
+                            headers.put(HEADER_CONTENT_LOCATION, part.substring(1));
+                            headers.put(HEADER_HASH_ALGORITHM_ID, DEFAULT_DIGEST_ALGORITHM_URI);
+
+                            configuration.getFiles().add(
+                                    ConfigurationFile.of(headers, new DateTime().plusHours(1), hashes.get(part)));
+                        }
+
+                        return configuration;
+                    }
+                };
+            }
+
+            @Override
+            Path createContentFile(Path destination) throws IOException {
+                return contentDir != null
+                        ? Files.createTempFile(contentDir, "conf", null) : super.createContentFile(destination);
+            }
+
+            @Override
+            void persistContent(Path content, Path destination, ConfigurationFile file) throws Exception {
+                if (contentDir == null) {
+                    super.persistContent(content, destination, file);
+                }
+            }
+
+            @Override
+            void updateExpirationDate(Path destination, ConfigurationFile file) throws Exception {
+                if (contentDir == null) {
+                    super.updateExpirationDate(destination, file);
+                }
+            }
+        };
+    }
+
+    private ConfigurationSource getSource() {
+        return new ConfigurationSource() {
+            @Override
+            public String getInstanceIdentifier() {
+                return INSTANCE;
+            }
+
+            @Override
+            public List<ConfigurationLocation> getLocations() {
+                return Collections.singletonList(new ConfigurationLocation(this, baseUrl, new ArrayList<>()));
+            }
+
+            @Override
+            public boolean hasChanged() {
+                return false;
+            }
+        };
+    }
+
+    private Server startServer() throws Exception {
+        Server jetty = new Server();
+
+        ServerConnector connector = new ServerConnector(jetty);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        jetty.addConnector(connector);
+
+        jetty.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+                requests.incrementAndGet();
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+
+                try {
+                    Thread.sleep(10);
+
+                    byte[] content = served.get(target);
+
+                    if (content == null) {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(content);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    active.decrementAndGet();
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+
+        jetty.start();
+
+        return jetty;
+    }
+}
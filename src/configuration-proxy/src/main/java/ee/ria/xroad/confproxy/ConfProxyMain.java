@@ -24,18 +24,27 @@
  */
 package ee.ria.xroad.confproxy;
 
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.SystemPropertiesLoader;
 import ee.ria.xroad.confproxy.util.ConfProxyHelper;
 import ee.ria.xroad.signer.protocol.SignerClient;
 
 import akka.actor.ActorSystem;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.typesafe.config.ConfigFactory;
 import lombok.extern.slf4j.Slf4j;
 import scala.concurrent.Await;
 import scala.concurrent.duration.Duration;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 
 import static ee.ria.xroad.common.SystemProperties.CONF_FILE_CONFPROXY;
@@ -91,7 +100,7 @@ public final class ConfProxyMain {
     }
 
     /**
-     * Executes all configuration proxy instances in sequence.
+     * Executes all configuration proxy instances concurrently.
      * @param args program arguments
      * @throws Exception if not able to get list of available instances
      */
@@ -106,18 +115,63 @@ public final class ConfProxyMain {
             log.debug("Instances from available instances: {}", instances);
         }
 
-        for (String instance: instances) {
-            try {
-                ConfProxy proxy = new ConfProxy(instance);
-                log.info("ConfProxy executing for instance {}", instance);
-                proxy.execute();
-            } catch (Exception ex) {
-                log.error("Error when executing configuration-proxy '{}'",
-                        instance, ex);
+        executeAll(instances, SystemProperties.getConfigurationProxyGenerationThreads(), instance -> {
+            ConfProxy proxy = new ConfProxy(instance);
+            log.info("ConfProxy executing for instance {}", instance);
+            proxy.execute();
+        });
+    }
+
+    /**
+     * Executes the task for all instances using a bounded number of threads. A failing instance is logged
+     * and does not affect the others.
+     * @param instances configuration proxy instances
+     * @param threads maximum number of instances executed concurrently
+     * @param task task to execute for each instance
+     * @return the instances for which the task failed
+     * @throws InterruptedException if interrupted while waiting for the instances to complete
+     */
+    static List<String> executeAll(List<String> instances, int threads, InstanceTask task)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, instances.size())),
+                new ThreadFactoryBuilder().setNameFormat("confproxy-%d").setDaemon(true).build());
+
+        try {
+            Map<String, Future<?>> results = new LinkedHashMap<>();
+
+            for (String instance : instances) {
+                results.put(instance, executor.submit(() -> {
+                    task.execute(instance);
+
+                    return null;
+                }));
             }
+
+            List<String> failed = new ArrayList<>();
+
+            for (Map.Entry<String, Future<?>> result : results.entrySet()) {
+                try {
+                    result.getValue().get();
+                } catch (ExecutionException ex) {
+                    log.error("Error when executing configuration-proxy '{}'", result.getKey(), ex.getCause());
+                    failed.add(result.getKey());
+                }
+            }
+
+            return failed;
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    /**
+     * Configuration proxy work executed for a single instance.
+     */
+    @FunctionalInterface
+    interface InstanceTask {
+        void execute(String instance) throws Exception;
+    }
+
     /**
      * Shutdown configuration proxy components.
      */
@@ -40,21 +40,25 @@ import ee.ria.xroad.signer.protocol.message.SignResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.bouncycastle.operator.DigestCalculator;
 import org.eclipse.jetty.util.MultiPartWriter;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Date;
 
-import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.createDigestCalculator;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_IDENTIFIER;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_LOCATION;
@@ -113,18 +117,30 @@ public class OutputBuilder {
      * @throws Exception if errors occur when reading global configuration files
      */
     public final void buildSignedDirectory() throws Exception {
-        try (ByteArrayOutputStream mimeContent = new ByteArrayOutputStream()) {
-            build(mimeContent);
-
-            log.debug("Generated directory content:\n{}\n", mimeContent.toString());
-
-            byte[] contentBytes = mimeContent.toByteArray();
-            mimeContent.reset();
-            sign(contentBytes, mimeContent);
-            Files.write(tempConfPath, mimeContent.toByteArray());
+        // The directory content is streamed into the envelope and the signature digest at the same time,
+        // so the signed directory is never held in memory as a whole.
+        try (FileOutputStream fileOut = new FileOutputStream(tempConfPath.toFile())) {
+            OutputStream out = new BufferedOutputStream(fileOut);
+            out.write(envelopeHeader.getBytes());
+
+            try (MultipartEncoder envelope = new MultipartEncoder(new CloseShieldOutputStream(out),
+                    envelopeBoundary)) {
+                envelope.startPart(mpMixedContentType(dataBoundary));
+
+                DigestCalculator dc = createDigestCalculator(conf.getSignatureDigestAlgorithmId());
+                build(new TeeOutputStream(new CloseShieldOutputStream(out), dc.getOutputStream()));
+                sign(dc.getDigest(), envelope);
+            }
+
+            out.flush();
+            fileOut.getChannel().force(true);
+        } catch (Exception e) {
+            Files.deleteIfExists(tempConfPath);
 
-            log.debug("Written signed directory to '{}'", tempConfPath);
+            throw e;
         }
+
+        log.debug("Written signed directory to '{}'", tempConfPath);
     }
 
     /**
@@ -177,10 +193,10 @@ public class OutputBuilder {
 
     /**
      * Generates global configuration directory content MIME.
-     * @param mimeContent output stream to write to
+     * @param mimeContent output stream to write to, closed when done
      * @throws Exception if reading global configuration files fails
      */
-    private void build(final ByteArrayOutputStream mimeContent) throws Exception {
+    private void build(final OutputStream mimeContent) throws Exception {
         try (MultipartEncoder encoder = new MultipartEncoder(mimeContent, dataBoundary)) {
             DateTime expireDate = new DateTime().plusSeconds(conf.getValidityIntervalSeconds());
             encoder.startPart(null, new String[] {
@@ -200,44 +216,28 @@ public class OutputBuilder {
     }
 
     /**
-     * Signs the global configuration directory content.
-     * @param contentBytes configuration directory content bytes
-     * @param mimeContent output stream to write to
-     * @throws Exception if errors are encountered while writing
-     * the signed directory content to a temporary location
+     * Appends the signature part of the global configuration directory content to the envelope.
+     * @param digest digest of the configuration directory content
+     * @param envelope encoder of the signed directory envelope
+     * @throws Exception if signing the directory content fails
      */
-    private void sign(final byte[] contentBytes, final ByteArrayOutputStream mimeContent) throws Exception {
+    private void sign(final byte[] digest, final MultipartEncoder envelope) throws Exception {
         String keyId = conf.getActiveSigningKey();
-        String digestAlgorithmId = conf.getSignatureDigestAlgorithmId();
-        String signAlgoId = getSignatureAlgorithmId(keyId, digestAlgorithmId);
-        byte[] digest = calculateDigest(digestAlgorithmId, contentBytes);
+        String signAlgoId = getSignatureAlgorithmId(keyId, conf.getSignatureDigestAlgorithmId());
 
         log.debug("Signing directory with signing key '{}' and signing algorithm '{}'", keyId, signAlgoId);
 
         String signature = getSignature(keyId, signAlgoId, digest);
-
-        mimeContent.write(envelopeHeader.getBytes());
-
-        try (MultipartEncoder encoder = new MultipartEncoder(mimeContent, envelopeBoundary)) {
-            encoder.startPart(mpMixedContentType(dataBoundary));
-            encoder.write(contentBytes);
-            String algURI = CryptoUtils.getSignatureAlgorithmURI(signAlgoId);
-            String hashURI = hashCalculator.getAlgoURI();
-            Path verificationCertPath = conf.getCertPath(keyId);
-
-            encoder.startPart(MimeTypes.BINARY, new String[] {
-                    HEADER_CONTENT_TRANSFER_ENCODING + ": base64",
-                    HEADER_SIG_ALGO_ID + ": " + algURI,
-                    HEADER_VERIFICATION_CERT_HASH + ": " + getVerificationCertHash(verificationCertPath) + "; "
-                            + HEADER_HASH_ALGORITHM_ID + "=" + hashURI});
-            encoder.write(signature.getBytes());
-        }
-
-        log.debug("Generated signed directory:\n{}\n", mimeContent.toString());
-
-        Files.write(tempConfPath, mimeContent.toByteArray());
-
-        log.debug("Written signed directory to '{}'", tempConfPath);
+        String algURI = CryptoUtils.getSignatureAlgorithmURI(signAlgoId);
+        String hashURI = hashCalculator.getAlgoURI();
+        Path verificationCertPath = conf.getCertPath(keyId);
+
+        envelope.startPart(MimeTypes.BINARY, new String[] {
+                HEADER_CONTENT_TRANSFER_ENCODING + ": base64",
+                HEADER_SIG_ALGO_ID + ": " + algURI,
+                HEADER_VERIFICATION_CERT_HASH + ": " + getVerificationCertHash(verificationCertPath) + "; "
+                        + HEADER_HASH_ALGORITHM_ID + "=" + hashURI});
+        envelope.write(signature.getBytes());
     }
 
     /**
@@ -305,7 +305,14 @@ public class OutputBuilder {
         }
     }
 
-    private static String getSignatureAlgorithmId(String keyId, String digestAlgoId) throws Exception {
+    /**
+     * Resolves the signature algorithm for the given signing key.
+     * @param keyId id of the key used for signing
+     * @param digestAlgoId id of the digest algorithm
+     * @return the signature algorithm id
+     * @throws Exception if the signer cannot be queried
+     */
+    protected String getSignatureAlgorithmId(String keyId, String digestAlgoId) throws Exception {
         GetSignMechanismResponse signMechanismResponse = SignerClient.execute(new GetSignMechanism(keyId));
 
         return CryptoUtils.getSignatureAlgorithmId(digestAlgoId, signMechanismResponse.getSignMechanismName());
@@ -319,7 +326,7 @@ public class OutputBuilder {
      * @return the configuration directory signature string (base64)
      * @throws Exception if cryptographic operations fail
      */
-    private String getSignature(final String keyId, final String signatureAlgorithmId, final byte[] digest)
+    protected String getSignature(final String keyId, final String signatureAlgorithmId, final byte[] digest)
             throws Exception {
         SignResponse response = SignerClient.execute(new Sign(keyId, signatureAlgorithmId, digest));
 
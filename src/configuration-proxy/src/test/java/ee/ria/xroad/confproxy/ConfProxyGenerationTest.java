@@ -0,0 +1,221 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.confproxy;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.globalconf.ConfigurationDirectoryV2;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.confproxy.util.OutputBuilder;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.decodeBase64;
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests generating the signed configuration of several configuration proxy instances concurrently.
+ */
+public class ConfProxyGenerationTest {
+
+    private static final int INSTANCES = 20;
+    private static final int VERSION = SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION;
+    private static final String KEY_ID = "TESTKEY";
+    private static final String BROKEN = "BROKEN";
+    private static final Path FIXTURE = Paths.get("src/test/resources/test-conf-simple/PROXY1");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<String> instances = new ArrayList<>();
+
+    private Path publicDir;
+    private Path tempDir;
+
+    /**
+     * Creates the instance configurations and downloaded global configurations from fixtures.
+     * @throws Exception if setting up the fixtures fails
+     */
+    @Before
+    public void setUp() throws Exception {
+        Path confDir = tempFolder.newFolder("confproxy").toPath();
+        Path globalConfDir = tempFolder.newFolder("globalconf").toPath();
+        publicDir = tempFolder.newFolder("public").toPath();
+        tempDir = tempFolder.newFolder("tmp").toPath();
+
+        System.setProperty(SystemProperties.CONFIGURATION_PROXY_CONF_PATH, confDir.toString());
+        System.setProperty(SystemProperties.CONFIGURATION_PATH, globalConfDir.toString());
+        System.setProperty(SystemProperties.CONFIGURATION_PROXY_GENERATED_CONF_PATH, publicDir.toString());
+        System.setProperty(SystemProperties.TEMP_FILES_PATH, tempDir.toString());
+
+        byte[] cert = TestCertUtil.getConsumer().certChain[0].getEncoded();
+
+        for (int i = 0; i < INSTANCES; i++) {
+            String instance = "PROXY" + i;
+            createInstance(confDir, globalConfDir, instance);
+
+            Path certFile = confDir.resolve(instance).resolve("cert_" + KEY_ID + ".pem");
+
+            try (OutputStream out = Files.newOutputStream(certFile)) {
+                CryptoUtils.writeCertificatePem(cert, out);
+            }
+
+            instances.add(instance);
+        }
+
+        // The broken instance has no signing certificate
+        createInstance(confDir, globalConfDir, BROKEN);
+        instances.add(INSTANCES / 2, BROKEN);
+    }
+
+    /**
+     * Clears the system properties set by the test.
+     */
+    @After
+    public void tearDown() {
+        System.clearProperty(SystemProperties.CONFIGURATION_PROXY_CONF_PATH);
+        System.clearProperty(SystemProperties.CONFIGURATION_PATH);
+        System.clearProperty(SystemProperties.CONFIGURATION_PROXY_GENERATED_CONF_PATH);
+        System.clearProperty(SystemProperties.TEMP_FILES_PATH);
+    }
+
+    @Test
+    public void generatesInstancesConcurrently() throws Exception {
+        List<String> failed = ConfProxyMain.executeAll(instances, 4, this::generate);
+
+        assertEquals(Collections.singletonList(BROKEN), failed);
+
+        for (String instance : instances) {
+            if (BROKEN.equals(instance)) {
+                continue;
+            }
+
+            Path target = publicDir.resolve(instance);
+            Path signedDirectory = target.resolve(OutputBuilder.SIGNED_DIRECTORY_NAME + "-v" + VERSION);
+
+            assertTrue(Files.isRegularFile(signedDirectory));
+            assertSignature(Files.readAllBytes(signedDirectory));
+
+            List<Path> generations;
+
+            try (Stream<Path> files = Files.list(target)) {
+                generations = files.filter(Files::isDirectory).collect(Collectors.toList());
+            }
+
+            assertEquals(1, generations.size());
+            assertTrue(FileUtils.contentEquals(FIXTURE.resolve("EE/shared-params.xml").toFile(),
+                    generations.get(0).resolve("EE/shared-params.xml").toFile()));
+        }
+
+        assertFalse(Files.exists(publicDir.resolve(BROKEN)));
+        assertFalse(Files.exists(tempDir.resolve(BROKEN)
+                .resolve(OutputBuilder.SIGNED_DIRECTORY_NAME + "-v" + VERSION)));
+    }
+
+    private void generate(String instance) throws Exception {
+        ConfProxyProperties conf = new ConfProxyProperties(instance);
+        ConfigurationDirectoryV2 confDir = new ConfigurationDirectoryV2(conf.getConfigurationDownloadPath(VERSION));
+
+        OutputBuilder output = new TestOutputBuilder(confDir, conf);
+        output.buildSignedDirectory();
+        output.moveAndCleanup();
+    }
+
+    private static void createInstance(Path confDir, Path globalConfDir, String instance) throws Exception {
+        Path instanceConfDir = Files.createDirectories(confDir.resolve(instance));
+        Files.write(instanceConfDir.resolve("conf.ini"), Arrays.asList(
+                "validity-interval-seconds=600",
+                "active-signing-key-id=" + KEY_ID));
+
+        Path downloadDir = globalConfDir.resolve("V" + VERSION).resolve(instance);
+        FileUtils.copyDirectory(FIXTURE.toFile(), downloadDir.toFile());
+
+        List<String> files = Stream.of("EE/private-params.xml", "EE/shared-params.xml", "AA/shared-params.xml")
+                .map(file -> downloadDir.resolve(file).toAbsolutePath().toString())
+                .collect(Collectors.toList());
+        Files.write(downloadDir.resolve("files"), files);
+    }
+
+    /**
+     * Checks that the signature part of the signed directory holds the digest of the streamed data part.
+     */
+    private static void assertSignature(byte[] signedDirectory) throws Exception {
+        String content = new String(signedDirectory, StandardCharsets.ISO_8859_1);
+
+        int envelopeStart = content.indexOf("\n\n") + 2;
+        String boundary = content.substring(envelopeStart, content.indexOf("\r\n", envelopeStart));
+        int dataStart = content.indexOf("\r\n\r\n", envelopeStart) + 4;
+        int dataEnd = content.indexOf("\r\n" + boundary + "\r\n", dataStart);
+        int signatureStart = content.indexOf("\r\n\r\n", dataEnd) + 4;
+        int signatureEnd = content.indexOf("\r\n" + boundary + "--", signatureStart);
+
+        byte[] data = Arrays.copyOfRange(signedDirectory, dataStart, dataEnd);
+        String signature = content.substring(signatureStart, signatureEnd);
+
+        assertArrayEquals(calculateDigest(CryptoUtils.SHA512_ID, data), decodeBase64(signature));
+    }
+
+    /**
+     * Output builder that uses the content digest as the signature instead of calling the signer.
+     */
+    private static class TestOutputBuilder extends OutputBuilder {
+
+        TestOutputBuilder(ConfigurationDirectoryV2 confDir, ConfProxyProperties conf) throws Exception {
+            super(confDir, conf, VERSION);
+        }
+
+        @Override
+        protected String getSignatureAlgorithmId(String keyId, String digestAlgoId) {
+            return CryptoUtils.SHA512WITHRSA_ID;
+        }
+
+        @Override
+        protected String getSignature(String keyId, String signatureAlgorithmId, byte[] digest) {
+            return encodeBase64(digest);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.SlidingTimeWindowReservoir;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the bucketed sliding time window counter with the sliding time window reservoir that the health
+ * data counters used before, both holding a 60 second window filled at 10 000 requests per second. The
+ * reservoir keeps every request in the window, so reading its count copies 600 000 entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class SlidingTimeWindowCounterBenchmark {
+
+    private static final long WINDOW_SECONDS = 60;
+    private static final int REQUESTS_IN_WINDOW = 10_000 * (int) WINDOW_SECONDS;
+
+    private Reservoir reservoir;
+    private SlidingTimeWindowCounter counter;
+
+    /**
+     * Fills both the reservoir and the counter with a full window of requests.
+     */
+    @Setup
+    public void setUp() {
+        reservoir = new SlidingTimeWindowReservoir(WINDOW_SECONDS, TimeUnit.SECONDS);
+        counter = new SlidingTimeWindowCounter(WINDOW_SECONDS, TimeUnit.SECONDS);
+
+        for (int i = 0; i < REQUESTS_IN_WINDOW; i++) {
+            reservoir.update(1L);
+            counter.inc();
+        }
+    }
+
+    /**
+     * Reads the request count from the reservoir.
+     * @return number of requests in the window
+     */
+    @Benchmark
+    public long reservoirCount() {
+        return reservoir.getSnapshot().size();
+    }
+
+    /**
+     * Reads the request count from the counter.
+     * @return number of requests in the window
+     */
+    @Benchmark
+    public long counterCount() {
+        return counter.getCount();
+    }
+
+    /**
+     * Records a request in the reservoir from several threads.
+     */
+    @Benchmark
+    @Threads(4)
+    public void reservoirIncrement() {
+        reservoir.update(1L);
+    }
+
+    /**
+     * Records a request in the counter from several threads.
+     */
+    @Benchmark
+    @Threads(4)
+    public void counterIncrement() {
+        counter.inc();
+    }
+}
@@ -35,9 +35,9 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SlidingTimeWindowReservoir;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -68,10 +68,11 @@ final class HealthDataMetrics {
     // The timestamps of last successful and unsuccessful requests are stored
     // for each service that is handled for, and are provided when the
     // respective gauge is queried.
-    private static Map<String, Long> requestTimestamps = new HashMap<>();
+    private static Map<String, Long> requestTimestamps =
+            new ConcurrentHashMap<>();
 
     // Stores the service types of the services
-    private static Map<String, String> serviceTypes = new HashMap<>();
+    private static Map<String, String> serviceTypes = new ConcurrentHashMap<>();
 
     private HealthDataMetrics() {
     }
@@ -153,15 +154,12 @@ final class HealthDataMetrics {
             ServiceId serviceId, OperationalDataRecord rec) {
         String expectedCounterName = getRequestCounterName(serviceId,
                 rec.getSucceeded());
-        Counter counter = HealthDataMetricsUtil.findCounter(registry,
-                expectedCounterName);
-
-        if (counter == null) {
-            // Register and increment a new counter.
-            counter = new SlidingTimeWindowCounter(
-                    OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
-            registry.register(expectedCounterName, counter);
-        }
+
+        // Registers a new counter the first time the name is seen.
+        Counter counter = registry.counter(expectedCounterName,
+                () -> new SlidingTimeWindowCounter(
+                        OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS,
+                        TimeUnit.SECONDS));
 
         counter.inc();
     }
@@ -29,18 +29,14 @@ import ee.ria.xroad.common.identifier.ServiceId;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.SortedMap;
-import java.util.regex.Pattern;
-
 /**
  * Helper utilities for preparing and processing health data metrics.
  */
-@Slf4j
 final class HealthDataMetricsUtil {
 
     // The template of the names of the metrics that are registered each time
@@ -156,16 +152,6 @@ final class HealthDataMetricsUtil {
                 .replaceAll("/", "&#47;");
     }
 
-    /**
-     * @param metricName an metric name where the service ID part has been
-     * escaped using escapeServiceId().
-     * @return the quoted metric name suitable for passing to a regular
-     * expression matcher method
-     */
-    static String formatMetricMatchRegexp(String metricName) {
-        return String.format("^%s$", Pattern.quote(metricName));
-    }
-
     /**
      * @param serviceId the service ID as obtained using getServiceIdInRecord()
      * @param parameterKeyTemplate template string of the JMX parameter name
@@ -226,18 +212,7 @@ final class HealthDataMetricsUtil {
      * @return the found gauge or null if it does not exist
      */
     static Gauge findGauge(MetricRegistry registry, String expectedGaugeName) {
-        SortedMap<String, Gauge> gauges = registry.getGauges(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedGaugeName))
-        );
-
-        if (gauges.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple gauges matched the name "
-                    + expectedGaugeName);
-        }
-
-        return gauges.isEmpty() ? null : gauges.values().iterator().next();
+        return findMetric(registry, expectedGaugeName, Gauge.class);
     }
 
     /**
@@ -247,18 +222,7 @@ final class HealthDataMetricsUtil {
      */
     static Counter findCounter(MetricRegistry registry,
             String expectedCounterName) {
-        SortedMap<String, Counter> counters = registry.getCounters(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedCounterName))
-        );
-
-        if (counters.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple counters matched the name "
-                    + expectedCounterName);
-        }
-
-        return counters.isEmpty() ? null : counters.values().iterator().next();
+        return findMetric(registry, expectedCounterName, Counter.class);
     }
 
     /**
@@ -269,18 +233,15 @@ final class HealthDataMetricsUtil {
      */
     static Histogram findHistogram(MetricRegistry registry,
             String expectedHistogramName) {
-        SortedMap<String, Histogram> histograms = registry.getHistograms(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedHistogramName))
-        );
+        return findMetric(registry, expectedHistogramName, Histogram.class);
+    }
 
-        if (histograms.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple histograms matched the name "
-                    + expectedHistogramName);
-        }
+    // Looks the metric up by its exact name, without filtering all the
+    // metrics of the registry.
+    private static <T extends Metric> T findMetric(MetricRegistry registry,
+            String name, Class<T> type) {
+        Metric metric = registry.getMetrics().get(name);
 
-        return histograms.isEmpty() ? null
-                : histograms.values().iterator().next();
+        return type.isInstance(metric) ? type.cast(metric) : null;
     }
 }
@@ -26,6 +26,7 @@ package ee.ria.xroad.opmonitordaemon;
 
 import ee.ria.xroad.common.SystemPropertiesLoader;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConfUpdater;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import ee.ria.xroad.common.util.AdminPort;
 import ee.ria.xroad.common.util.JobManager;
@@ -52,6 +53,8 @@ public final class OpMonitorDaemonMain {
 
     public static final String OP_MONITOR_DAEMON_NAME = "OpMonitorDaemon";
 
+    private static final int GLOBAL_CONF_UPDATE_REPEAT_INTERVAL = 60;
+
     static {
         SystemPropertiesLoader.create().withCommonAndLocal()
             .with(CONF_FILE_OP_MONITOR, "op-monitor")
@@ -129,8 +132,10 @@ public final class OpMonitorDaemonMain {
 
     private static void createServices() throws Exception {
         JobManager jobManager = new JobManager();
+        jobManager.registerRepeatingJob(GlobalConfUpdater.class, GLOBAL_CONF_UPDATE_REPEAT_INTERVAL);
 
         OperationalDataRecordCleaner.init(jobManager, actorSystem);
+        OperationalDataRollupUpdater.init(jobManager, actorSystem);
 
         SERVICES.add(jobManager);
         SERVICES.add(new OpMonitorDaemon());
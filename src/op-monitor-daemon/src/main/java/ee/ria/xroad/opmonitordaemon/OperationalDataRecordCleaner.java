@@ -33,16 +33,22 @@ import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.actor.UntypedAbstractActor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
 import org.joda.time.DateTime;
 import org.quartz.JobDataMap;
 import org.quartz.SchedulerException;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
 
 /**
- * Deletes outdated operational data records from the database.
+ * Deletes outdated operational data records and their rollup records from
+ * the database.
  */
 @Slf4j
 final class OperationalDataRecordCleaner extends UntypedAbstractActor {
@@ -52,6 +58,11 @@ final class OperationalDataRecordCleaner extends UntypedAbstractActor {
     private static final String OPERATIONAL_DATA_RECORD_CLEANER =
             OperationalDataRecordCleaner.class.getSimpleName();
 
+    private static final String OPERATIONAL_DATA_TABLE = "operational_data";
+
+    private static final Pattern PARTITION_UPPER_BOUND =
+            Pattern.compile("TO \\('?(\\d+)'?\\)");
+
     /**
      * Initializes the operational data recorder cleaner creating an operational
      * data records cleaner actor in the given actor system and scheduling a
@@ -89,24 +100,176 @@ final class OperationalDataRecordCleaner extends UntypedAbstractActor {
     }
 
     static int cleanRecords(DateTime before) throws Exception {
-        log.trace("cleanRecords({})", before);
+        if (OpMonitoringSystemProperties.isOpMonitorCleanDropPartitions()) {
+            try {
+                dropPartitions(before);
+            } catch (Exception e) {
+                log.error("Failed to drop outdated operational data"
+                        + " partitions, falling back to deleting records", e);
+            }
+        }
+
+        int removed = cleanRecords(before,
+                OpMonitoringSystemProperties.getOpMonitorCleanBatchSize(),
+                OpMonitoringSystemProperties
+                        .getOpMonitorCleanMaxRowsPerSecond());
+
+        int removedRollups = OperationalDataRollupManager.deleteRollups(
+                TimeUnit.MILLISECONDS.toSeconds(before.getMillis()));
+
+        log.info("Removed {} outdated operational data rollup records from"
+                + " the database", removedRollups);
+
+        return removed;
+    }
+
+    /**
+     * Deletes the records older than the given time in chunks of at most
+     * batchSize records. Each chunk is a contiguous id range and is deleted
+     * in its own transaction, so the locks taken by the cleanup are held only
+     * for the duration of a single chunk.
+     * @param before records with monitoringDataTs before this are deleted
+     * @param batchSize maximum number of records deleted per transaction
+     * @param maxRowsPerSecond deletion rate limit, unlimited if not positive
+     * @return the number of records deleted
+     * @throws Exception if an error occurs
+     */
+    static int cleanRecords(DateTime before, int batchSize,
+            int maxRowsPerSecond) throws Exception {
+        log.trace("cleanRecords({}, {}, {})", before, batchSize,
+                maxRowsPerSecond);
+
+        long beforeSeconds =
+                TimeUnit.MILLISECONDS.toSeconds(before.getMillis());
+        long startNanos = System.nanoTime();
+        long fromId = 0;
+        int removed = 0;
+
+        while (true) {
+            final long chunkFromId = fromId;
+
+            Long toId = doInTransaction(session ->
+                    findChunkUpperId(session, chunkFromId, beforeSeconds,
+                            batchSize));
+
+            removed += doInTransaction(session ->
+                    deleteChunk(session, chunkFromId, toId, beforeSeconds));
+
+            if (toId == null) {
+                break;
+            }
+
+            fromId = toId;
+
+            throttle(removed, maxRowsPerSecond, startNanos);
+        }
+
+        if (removed == 0) {
+            log.info("No outdated operational data records to remove from"
+                    + " the database");
+        } else {
+            log.info("Removed {} outdated operational data records from"
+                    + " the database", removed);
+        }
+
+        return removed;
+    }
+
+    /**
+     * @return the id of the last record in the next chunk or null if fewer
+     * than batchSize outdated records remain after fromId
+     */
+    private static Long findChunkUpperId(Session session, long fromId,
+            long beforeSeconds, int batchSize) {
+        return session.createQuery("select r.id from OperationalDataRecord r"
+                + " where r.id > :fromId and r.monitoringDataTs < :before"
+                + " order by r.id", Long.class)
+                .setParameter("fromId", fromId)
+                .setParameter("before", beforeSeconds)
+                .setFirstResult(batchSize - 1)
+                .setMaxResults(1)
+                .uniqueResult();
+    }
+
+    private static int deleteChunk(Session session, long fromId, Long toId,
+            long beforeSeconds) {
+        Query<?> query = session.createQuery(
+                "delete OperationalDataRecord r where r.id > :fromId"
+                + " and r.monitoringDataTs < :before"
+                + (toId != null ? " and r.id <= :toId" : ""))
+                .setParameter("fromId", fromId)
+                .setParameter("before", beforeSeconds);
+
+        if (toId != null) {
+            query.setParameter("toId", toId);
+        }
+
+        int removed = query.executeUpdate();
+
+        log.debug("Removed {} outdated operational data records with ids"
+                + " in ({}, {}]", removed, fromId, toId);
+
+        return removed;
+    }
+
+    private static void throttle(int removed, int maxRowsPerSecond,
+            long startNanos) throws InterruptedException {
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+
+        long dueMillis = TimeUnit.SECONDS.toMillis(removed) / maxRowsPerSecond;
+        long elapsedMillis =
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        if (dueMillis > elapsedMillis) {
+            Thread.sleep(dueMillis - elapsedMillis);
+        }
+    }
+
+    /**
+     * Drops the partitions of a range partitioned operational_data table
+     * (PostgreSQL 10 or later) that only contain records older than the given
+     * time. The partition bounds are expected to be in monitoringDataTs
+     * seconds.
+     */
+    private static void dropPartitions(DateTime before) throws Exception {
+        long beforeSeconds =
+                TimeUnit.MILLISECONDS.toSeconds(before.getMillis());
+
+        doInTransaction(session -> {
+            @SuppressWarnings("unchecked")
+            List<Object[]> partitions = session.createNativeQuery(
+                    "select c.relname, pg_get_expr(c.relpartbound, c.oid)"
+                    + " from pg_inherits i"
+                    + " join pg_class c on c.oid = i.inhrelid"
+                    + " join pg_class p on p.oid = i.inhparent"
+                    + " where p.relname = '" + OPERATIONAL_DATA_TABLE + "'")
+                    .getResultList();
+
+            for (Object[] partition : partitions) {
+                String name = (String) partition[0];
+                Matcher bound = PARTITION_UPPER_BOUND.matcher(
+                        String.valueOf(partition[1]));
+
+                if (!bound.find()
+                        || Long.parseLong(bound.group(1)) > beforeSeconds) {
+                    continue;
+                }
 
-        return doInTransaction(session -> {
-            String hql =
-                    "delete OperationalDataRecord r where r.monitoringDataTs < "
-                    + TimeUnit.MILLISECONDS.toSeconds(before.getMillis());
+                String quoted = "\"" + name.replace("\"", "\"\"") + "\"";
 
-            int removed = session.createQuery(hql).executeUpdate();
+                session.createNativeQuery("alter table "
+                        + OPERATIONAL_DATA_TABLE + " detach partition "
+                        + quoted).executeUpdate();
+                session.createNativeQuery("drop table " + quoted)
+                        .executeUpdate();
 
-            if (removed == 0) {
-                log.info("No outdated operational data records to remove from"
-                        + " the database");
-            } else {
-                log.info("Removed {} outdated operational data records from"
-                        + " the database", removed);
+                log.info("Dropped outdated operational data partition {}",
+                        name);
             }
 
-            return removed;
+            return null;
         });
     }
 
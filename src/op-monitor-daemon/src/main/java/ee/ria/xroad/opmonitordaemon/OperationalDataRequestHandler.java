@@ -238,7 +238,7 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
                 && clientId.equals(GlobalConf.getServerOwner(serverId));
     }
 
-    private static long getRecordsAvailableBeforeTimestamp() {
+    static long getRecordsAvailableBeforeTimestamp() {
         return TimeUtils.getEpochSecond() - OFFSET_SECONDS;
     }
 }
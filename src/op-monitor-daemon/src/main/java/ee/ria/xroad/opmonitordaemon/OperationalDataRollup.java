@@ -0,0 +1,95 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import static ee.ria.xroad.common.util.JsonUtils.Exclude;
+
+/**
+ * Represents a single database record of pre-aggregated operational
+ * monitoring data. Each such record summarizes the requests of a single
+ * service, as seen by a security server of the given type, that were stored
+ * during a single minute.
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class OperationalDataRollup {
+
+    // The unique ID of the record in the database.
+    @Exclude
+    private Long id;
+
+    // The Unix timestamp (in seconds) of the beginning of the minute the
+    // summarized records were received at the monitoring daemon
+    // (monitoringDataTs).
+    private Long minuteTs;
+
+    private String securityServerType;
+
+    private String serviceXRoadInstance;
+
+    private String serviceMemberClass;
+
+    private String serviceMemberCode;
+
+    private String serviceSubsystemCode;
+
+    private String serviceCode;
+
+    private String serviceVersion;
+
+    private Long requestCount;
+
+    private Long succeededCount;
+
+    private Long failedCount;
+
+    // The duration of a request is responseOutTs - requestInTs in
+    // milliseconds.
+    private Long durationSum;
+
+    private Long durationMin;
+
+    private Long durationMax;
+
+    // The sizes are aggregated over the records that have the size set.
+    private Long requestSizeSum;
+
+    private Long requestSizeMin;
+
+    private Long requestSizeMax;
+
+    private Long responseSizeSum;
+
+    private Long responseSizeMin;
+
+    private Long responseSizeMax;
+}
@@ -0,0 +1,320 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import java.util.List;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+
+/**
+ * This class encapsulates all the database access related to the
+ * operational_data_rollup table, mapped by the OperationalDataRollup class.
+ *
+ * The operational data records of each completed minute are summarized per
+ * service into rollup records, so that per-service statistics can be
+ * queried without reading the raw records. A minute is completed once the
+ * operational data records stored during it are available for querying
+ * (see OpMonitoringSystemProperties
+ * .getOpMonitorRecordsAvailableTimestampOffsetSeconds()).
+ */
+@Slf4j
+final class OperationalDataRollupManager {
+
+    static final long MINUTE_SECONDS = 60;
+
+    // The maximum number of minutes summarized in a single transaction.
+    private static final int MINUTES_PER_TRANSACTION = 60;
+
+    private static final String AGGREGATE_QUERY = "select r.securityServerType,"
+            + " r.serviceXRoadInstance, r.serviceMemberClass, r.serviceMemberCode,"
+            + " r.serviceSubsystemCode, r.serviceCode, r.serviceVersion,"
+            + " count(r), sum(case when r.succeeded = true then 1 else 0 end),"
+            + " sum(r.responseOutTs - r.requestInTs), min(r.responseOutTs - r.requestInTs),"
+            + " max(r.responseOutTs - r.requestInTs),"
+            + " sum(r.requestSize), min(r.requestSize), max(r.requestSize),"
+            + " sum(r.responseSize), min(r.responseSize), max(r.responseSize)"
+            + " from OperationalDataRecord r"
+            + " where r.monitoringDataTs between :fromTs and :toTs"
+            + " group by r.securityServerType, r.serviceXRoadInstance, r.serviceMemberClass,"
+            + " r.serviceMemberCode, r.serviceSubsystemCode, r.serviceCode, r.serviceVersion";
+
+    @Setter
+    private static int maxRecordsInPayload = OpMonitoringSystemProperties.getOpMonitorMaxRecordsInPayload();
+
+    // Bounds the work of a single run, so that summarizing the records
+    // stored before the rollups were introduced is spread over many runs.
+    @Setter(AccessLevel.PACKAGE)
+    private static int maxMinutesPerRun = OpMonitoringSystemProperties.getOpMonitorRollupMaxMinutesPerRun();
+
+    /**
+     * The beginning of the first minute that has not been summarized yet,
+     * null until determined from the database.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private static volatile Long rolledUpBefore;
+
+    private OperationalDataRollupManager() {
+    }
+
+    /**
+     * Summarizes the operational data records of the minutes that have
+     * been completed before the given timestamp and have not been
+     * summarized yet, at most maxMinutesPerRun minutes at a time. The
+     * remaining minutes are summarized by the following runs.
+     * @param recordsAvailableBefore the timestamp in seconds before which
+     * all the operational data records have been stored
+     * @return the number of rollup records created
+     * @throws Exception if an error occurs
+     */
+    static int rollUp(long recordsAvailableBefore) throws Exception {
+        long available = startOfMinute(recordsAvailableBefore);
+        long from = getRollupStart(available);
+        long limit = Math.min(available, from + maxMinutesPerRun * MINUTE_SECONDS);
+        int created = 0;
+
+        while (from < limit) {
+            final long chunkFrom = from;
+            final long chunkTo = Math.min(limit, from + MINUTES_PER_TRANSACTION * MINUTE_SECONDS);
+
+            created += doInTransaction(session -> rollUpInTransaction(session, chunkFrom, chunkTo));
+
+            rolledUpBefore = chunkTo;
+            from = chunkTo;
+        }
+
+        log.debug("Created {} operational data rollup records, rolled up before {}", created, rolledUpBefore);
+
+        if (limit < available) {
+            log.info("Operational data rolled up before {}, {} minutes remaining", limit,
+                    (available - limit) / MINUTE_SECONDS);
+        }
+
+        return created;
+    }
+
+    /**
+     * Queries the rollup records of the minutes beginning between the given
+     * timestamps. The number of returned records is limited by the
+     * configured value maxRecordsInPayload, rounded down to whole minutes.
+     * @param recordsFrom           minutes from timestamp seconds
+     * @param recordsTo             minutes to timestamp seconds
+     * @param serviceProviderFilter filter records by service provider (if not null)
+     * @return operational data rollup records
+     * @throws Exception if an error occurs
+     */
+    static OperationalDataRollups queryRollups(long recordsFrom, long recordsTo, ClientId serviceProviderFilter)
+            throws Exception {
+        return doInTransaction(session -> queryRollupsInTransaction(session, recordsFrom, recordsTo,
+                serviceProviderFilter));
+    }
+
+    /**
+     * Deletes the rollup records of the minutes beginning before the given
+     * timestamp.
+     * @param beforeSeconds the timestamp in seconds
+     * @return the number of rollup records deleted
+     * @throws Exception if an error occurs
+     */
+    static int deleteRollups(long beforeSeconds) throws Exception {
+        return doInTransaction(session -> session.createQuery(
+                "delete OperationalDataRollup r where r.minuteTs < :before")
+                .setParameter("before", beforeSeconds)
+                .executeUpdate());
+    }
+
+    /**
+     * @param recordsAvailableBefore the timestamp in seconds before which
+     * all the operational data records have been stored
+     * @return the beginning of the first minute that has not been summarized
+     * yet
+     * @throws Exception if an error occurs
+     */
+    static long getRolledUpBefore(long recordsAvailableBefore) throws Exception {
+        return getRollupStart(startOfMinute(recordsAvailableBefore));
+    }
+
+    static long startOfMinute(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, MINUTE_SECONDS);
+    }
+
+    private static long getRollupStart(long limit) throws Exception {
+        if (rolledUpBefore == null) {
+            Long start = doInTransaction(OperationalDataRollupManager::findRollupStart);
+
+            rolledUpBefore = start != null ? Math.min(start, limit) : limit;
+
+            log.info("Operational data rolled up before {}", rolledUpBefore);
+        }
+
+        return rolledUpBefore;
+    }
+
+    /**
+     * @return the minute following the last summarized minute, the minute of
+     * the first operational data record if nothing has been summarized yet or
+     * null if there are no records at all
+     */
+    private static Long findRollupStart(Session session) {
+        Long lastMinute = session.createQuery("select max(r.minuteTs) from OperationalDataRollup r", Long.class)
+                .uniqueResult();
+
+        if (lastMinute != null) {
+            return lastMinute + MINUTE_SECONDS;
+        }
+
+        Long firstRecordTs = session.createQuery(
+                "select min(r.monitoringDataTs) from OperationalDataRecord r", Long.class)
+                .uniqueResult();
+
+        return firstRecordTs != null ? startOfMinute(firstRecordTs) : null;
+    }
+
+    private static int rollUpInTransaction(Session session, long fromTs, long toTs) {
+        int created = 0;
+
+        for (long minuteTs = fromTs; minuteTs < toTs; minuteTs += MINUTE_SECONDS) {
+            List<Object[]> rows = session.createQuery(AGGREGATE_QUERY, Object[].class)
+                    .setParameter("fromTs", minuteTs)
+                    .setParameter("toTs", minuteTs + MINUTE_SECONDS - 1)
+                    .setReadOnly(true)
+                    .getResultList();
+
+            for (Object[] row : rows) {
+                session.save(toRollup(minuteTs, row));
+                created++;
+            }
+        }
+
+        return created;
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static OperationalDataRollup toRollup(long minuteTs, Object[] row) {
+        OperationalDataRollup rollup = new OperationalDataRollup();
+
+        rollup.setMinuteTs(minuteTs);
+        rollup.setSecurityServerType((String) row[0]);
+        rollup.setServiceXRoadInstance((String) row[1]);
+        rollup.setServiceMemberClass((String) row[2]);
+        rollup.setServiceMemberCode((String) row[3]);
+        rollup.setServiceSubsystemCode((String) row[4]);
+        rollup.setServiceCode((String) row[5]);
+        rollup.setServiceVersion((String) row[6]);
+        rollup.setRequestCount(toLong(row[7]));
+        rollup.setSucceededCount(toLong(row[8]));
+        rollup.setFailedCount(rollup.getRequestCount() - rollup.getSucceededCount());
+        rollup.setDurationSum(toLong(row[9]));
+        rollup.setDurationMin(toLong(row[10]));
+        rollup.setDurationMax(toLong(row[11]));
+        rollup.setRequestSizeSum(toLong(row[12]));
+        rollup.setRequestSizeMin(toLong(row[13]));
+        rollup.setRequestSizeMax(toLong(row[14]));
+        rollup.setResponseSizeSum(toLong(row[15]));
+        rollup.setResponseSizeMin(toLong(row[16]));
+        rollup.setResponseSizeMax(toLong(row[17]));
+
+        return rollup;
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+
+    private static OperationalDataRollups queryRollupsInTransaction(Session session, long recordsFrom,
+            long recordsTo, ClientId serviceProviderFilter) {
+        List<OperationalDataRollup> rollups = createRollupQuery(session, recordsFrom, recordsTo,
+                serviceProviderFilter)
+                .setMaxResults(maxRecordsInPayload + 1)
+                .getResultList();
+
+        if (rollups.size() <= maxRecordsInPayload) {
+            return new OperationalDataRollups(rollups);
+        }
+
+        // Leave out the minute that did not fit into the payload entirely.
+        long overflowMinuteTs = rollups.get(maxRecordsInPayload).getMinuteTs();
+
+        rollups.removeIf(i -> i.getMinuteTs() == overflowMinuteTs);
+
+        if (rollups.isEmpty()) {
+            // A single minute does not fit, return it as a whole.
+            rollups = createRollupQuery(session, overflowMinuteTs, overflowMinuteTs, serviceProviderFilter)
+                    .getResultList();
+
+            overflowMinuteTs += MINUTE_SECONDS;
+        }
+
+        OperationalDataRollups result = new OperationalDataRollups(rollups);
+
+        if (overflowMinuteTs <= recordsTo) {
+            log.debug("Rollup records overflow, set nextRecordsFrom to {}", overflowMinuteTs);
+
+            result.setNextRecordsFrom(overflowMinuteTs);
+        }
+
+        return result;
+    }
+
+    private static Query<OperationalDataRollup> createRollupQuery(Session session, long recordsFrom,
+            long recordsTo, ClientId serviceProvider) {
+        StringBuilder hql = new StringBuilder("select r from OperationalDataRollup r"
+                + " where r.minuteTs between :fromTs and :toTs");
+
+        if (serviceProvider != null) {
+            hql.append(" and r.serviceXRoadInstance = :instance and r.serviceMemberClass = :memberClass"
+                    + " and r.serviceMemberCode = :memberCode");
+            hql.append(serviceProvider.getSubsystemCode() == null
+                    ? " and r.serviceSubsystemCode is null" : " and r.serviceSubsystemCode = :subsystemCode");
+        }
+
+        hql.append(" order by r.minuteTs, r.id");
+
+        Query<OperationalDataRollup> query = session.createQuery(hql.toString(), OperationalDataRollup.class)
+                .setParameter("fromTs", recordsFrom)
+                .setParameter("toTs", recordsTo)
+                .setReadOnly(true);
+
+        if (serviceProvider != null) {
+            query.setParameter("instance", serviceProvider.getXRoadInstance())
+                    .setParameter("memberClass", serviceProvider.getMemberClass())
+                    .setParameter("memberCode", serviceProvider.getMemberCode());
+
+            if (serviceProvider.getSubsystemCode() != null) {
+                query.setParameter("subsystemCode", serviceProvider.getSubsystemCode());
+            }
+        }
+
+        return query;
+    }
+}
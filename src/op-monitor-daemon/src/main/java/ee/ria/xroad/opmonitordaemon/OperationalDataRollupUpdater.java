@@ -0,0 +1,97 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+import ee.ria.xroad.common.util.JobManager;
+import ee.ria.xroad.common.util.MessageSendingJob;
+
+import akka.actor.ActorSelection;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedAbstractActor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.JobDataMap;
+import org.quartz.SchedulerException;
+
+/**
+ * Periodically summarizes the operational data records of the completed
+ * minutes into rollup records.
+ */
+@Slf4j
+final class OperationalDataRollupUpdater extends UntypedAbstractActor {
+
+    public static final String START_ROLLUP = "doRollUp";
+
+    private static final String OPERATIONAL_DATA_ROLLUP_UPDATER =
+            OperationalDataRollupUpdater.class.getSimpleName();
+
+    /**
+     * Initializes the operational data rollup updater creating an
+     * operational data rollup updater actor in the given actor system and
+     * scheduling a periodic rollup with the provided job manager.
+     * @param jobManager the job manager
+     * @param actorSystem the actor system
+     */
+    public static void init(JobManager jobManager, ActorSystem actorSystem) {
+        actorSystem.actorOf(Props.create(OperationalDataRollupUpdater.class),
+                OPERATIONAL_DATA_ROLLUP_UPDATER);
+
+        registerCronJob(jobManager, actorSystem, START_ROLLUP,
+                OpMonitoringSystemProperties.getOpMonitorRollupInterval());
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+        log.trace("onReceive({})", message);
+
+        if (message.equals(START_ROLLUP)) {
+            try {
+                OperationalDataRollupManager.rollUp(OperationalDataRequestHandler
+                        .getRecordsAvailableBeforeTimestamp());
+            } catch (Exception e) {
+                log.error("Failed to roll up operational data records", e);
+            }
+        } else {
+            unhandled(message);
+        }
+    }
+
+    private static void registerCronJob(JobManager jobManager,
+            ActorSystem actorSystem, Object message, String cronExpression) {
+        ActorSelection actor = actorSystem.actorSelection(
+                "/user/" + OPERATIONAL_DATA_ROLLUP_UPDATER);
+
+        JobDataMap jobData = MessageSendingJob.createJobData(actor, message);
+
+        try {
+            jobManager.registerJob(MessageSendingJob.class,
+                    OPERATIONAL_DATA_ROLLUP_UPDATER + "Job", cronExpression,
+                    jobData);
+        } catch (SchedulerException e) {
+            log.error("Unable to schedule job", e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.message.MultipartSoapMessageEncoder;
+import ee.ria.xroad.common.message.SoapMessageEncoder;
+import ee.ria.xroad.common.message.SoapMessageImpl;
+import ee.ria.xroad.common.util.MimeTypes;
+import ee.ria.xroad.opmonitordaemon.message.GetSecurityServerOperationalDataResponseType;
+import ee.ria.xroad.opmonitordaemon.message.GetSecurityServerOperationalStatisticsType;
+import ee.ria.xroad.opmonitordaemon.message.SearchCriteriaType;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.bind.Marshaller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import static ee.ria.xroad.common.ErrorCodes.CLIENT_X;
+import static ee.ria.xroad.common.ErrorCodes.X_ACCESS_DENIED;
+import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
+
+/**
+ * Query handler for operational statistics requests. The statistics are
+ * read from the per-minute rollup records instead of the operational data
+ * records, and are available only to the security server owner and the
+ * central monitoring client, since the rollup records do not distinguish
+ * between clients.
+ */
+@Slf4j
+class OperationalStatisticsRequestHandler extends OperationalDataRequestHandler {
+
+    private static final String STATISTICS_CID = "operational-monitoring-statistics.json.gz";
+
+    @Override
+    public void handle(SoapMessageImpl requestSoap, OutputStream out,
+            Consumer<String> contentTypeCallback) throws Exception {
+        log.trace("handle()");
+
+        ClientId clientId = requestSoap.getClient();
+
+        if (getClientForFilter(clientId, requestSoap.getSecurityServer()) != null) {
+            throw new CodedException(X_ACCESS_DENIED,
+                    "Operational statistics are available only to the security server owner")
+                    .withPrefix(CLIENT_X);
+        }
+
+        GetSecurityServerOperationalStatisticsType requestData = getRequestData(
+                requestSoap, GetSecurityServerOperationalStatisticsType.class);
+
+        SearchCriteriaType searchCriteria = requestData.getSearchCriteria();
+        long recordsFrom = searchCriteria.getRecordsFrom();
+        long recordsTo = searchCriteria.getRecordsTo();
+        long recordsAvailableBefore = getRollupsAvailableBeforeTimestamp();
+
+        checkTimestamps(recordsFrom, recordsTo, recordsAvailableBefore);
+
+        ClientId serviceProviderId = searchCriteria.getClient();
+
+        log.debug("Handle getSecurityServerOperationalStatistics: clientId: {},"
+                        + " recordsFrom: {}, recordsTo: {}, serviceProviderId: {}",
+                clientId, recordsFrom, recordsTo, serviceProviderId);
+
+        GetSecurityServerOperationalDataResponseType statisticsResponse =
+                buildOperationalStatisticsResponse(recordsFrom, recordsTo,
+                        serviceProviderId, recordsAvailableBefore);
+
+        try (SoapMessageEncoder responseEncoder = new MultipartSoapMessageEncoder(out)) {
+            contentTypeCallback.accept(responseEncoder.getContentType());
+
+            SoapEncoderAttachmentMarshaller attachmentMarshaller =
+                    new SoapEncoderAttachmentMarshaller(responseEncoder);
+            Marshaller marshaller = createMarshaller(attachmentMarshaller);
+
+            SoapMessageImpl response = createResponse(requestSoap, marshaller,
+                    OBJECT_FACTORY.createGetSecurityServerOperationalStatisticsResponse(statisticsResponse));
+            responseEncoder.soap(response, new HashMap<>());
+
+            attachmentMarshaller.encodeAttachments();
+        }
+    }
+
+    protected GetSecurityServerOperationalDataResponseType buildOperationalStatisticsResponse(long recordsFrom,
+            long recordsTo, ClientId filterByServiceProvider, long recordsAvailableBefore) throws IOException {
+        GetSecurityServerOperationalDataResponseType statisticsResponse =
+                OBJECT_FACTORY.createGetSecurityServerOperationalDataResponseType();
+
+        if (recordsTo >= recordsAvailableBefore) {
+            log.debug("recordsTo({}) >= rollupsAvailableBefore({}), set nextRecordsFrom to {}",
+                    recordsTo, recordsAvailableBefore, recordsAvailableBefore);
+
+            recordsTo = recordsAvailableBefore - 1;
+
+            statisticsResponse.setNextRecordsFrom(recordsAvailableBefore);
+        }
+
+        OperationalDataRollups rollups = getOperationalDataRollups(recordsFrom, recordsTo,
+                filterByServiceProvider);
+
+        statisticsResponse.setRecordsCount(rollups.size());
+        statisticsResponse.setRecords(createAttachmentDataSource(compress(rollups.getPayload(GSON)),
+                STATISTICS_CID, MimeTypes.GZIP));
+
+        if (rollups.getNextRecordsFrom() != null) {
+            statisticsResponse.setNextRecordsFrom(rollups.getNextRecordsFrom());
+        }
+
+        return statisticsResponse;
+    }
+
+    protected OperationalDataRollups getOperationalDataRollups(long recordsFrom, long recordsTo,
+            ClientId filterByServiceProvider) {
+        try {
+            return OperationalDataRollupManager.queryRollups(recordsFrom, recordsTo, filterByServiceProvider);
+        } catch (Exception e) {
+            log.error("Failed to get rollup records for response", e);
+
+            throw new CodedException(X_INTERNAL_ERROR,
+                    "Failed to get rollup records for response: " + e.getMessage());
+        }
+    }
+
+    private static long getRollupsAvailableBeforeTimestamp() {
+        try {
+            return OperationalDataRollupManager.getRolledUpBefore(getRecordsAvailableBeforeTimestamp());
+        } catch (Exception e) {
+            log.error("Failed to get the rollup progress", e);
+
+            throw new CodedException(X_INTERNAL_ERROR, "Failed to get the rollup progress: " + e.getMessage());
+        }
+    }
+}
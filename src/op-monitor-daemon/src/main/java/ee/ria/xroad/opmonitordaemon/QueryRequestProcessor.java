@@ -45,10 +45,12 @@ import java.util.function.Consumer;
 
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringRequests.GET_SECURITY_SERVER_HEALTH_DATA;
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringRequests.GET_SECURITY_SERVER_OPERATIONAL_DATA;
+import static ee.ria.xroad.common.opmonitoring.OpMonitoringRequests.GET_SECURITY_SERVER_OPERATIONAL_STATISTICS;
 
 /**
  * The processor class for operational monitoring query requests.
- * Processes getSecurityServerOperationalData and getSecurityServerHealthData
+ * Processes getSecurityServerOperationalData,
+ * getSecurityServerOperationalStatistics and getSecurityServerHealthData
  * SOAP requests.
  */
 @Slf4j
@@ -61,6 +63,8 @@ class QueryRequestProcessor {
     private final HttpServletResponse servletResponse;
 
     private final OperationalDataRequestHandler operationalDataHandler;
+    private final OperationalStatisticsRequestHandler
+            operationalStatisticsHandler;
     private final HealthDataRequestHandler healthDataHandler;
 
     QueryRequestProcessor(HttpServletRequest servletRequest,
@@ -70,6 +74,8 @@ class QueryRequestProcessor {
         this.servletResponse = servletResponse;
 
         this.operationalDataHandler = new OperationalDataRequestHandler();
+        this.operationalStatisticsHandler =
+                new OperationalStatisticsRequestHandler();
         this.healthDataHandler = new HealthDataRequestHandler(
                 healthMetricRegistry);
 
@@ -117,6 +123,11 @@ class QueryRequestProcessor {
                             servletResponse.getOutputStream(),
                             responseContentTypeAssigner());
                     break;
+                case GET_SECURITY_SERVER_OPERATIONAL_STATISTICS:
+                    operationalStatisticsHandler.handle(requestSoap,
+                            servletResponse.getOutputStream(),
+                            responseContentTypeAssigner());
+                    break;
                 case GET_SECURITY_SERVER_HEALTH_DATA:
                     healthDataHandler.handle(requestSoap,
                             servletResponse.getOutputStream(),
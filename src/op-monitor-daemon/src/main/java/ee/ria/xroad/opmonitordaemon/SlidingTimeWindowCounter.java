@@ -24,15 +24,22 @@
  */
 package ee.ria.xroad.opmonitordaemon;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.Counter;
-import com.codahale.metrics.Reservoir;
-import com.codahale.metrics.SlidingTimeWindowReservoir;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * A counter metric that uses the sliding time window reservoir internally to
- * support periodic and configurable resetting.
+ * A counter metric over a sliding window of time, to support periodic and
+ * configurable resetting.
+ * The window is split into a ring of buckets (one second each, or wider for
+ * windows longer than the maximum number of buckets) that are counted with
+ * {@link LongAdder}s. Incrementing is O(1) and reading the count sums the
+ * buckets, so neither depends on the number of requests in the window.
+ * The oldest bucket is dropped as a whole, so the count covers the window
+ * with the precision of one bucket.
  * This counter does not support manually decrementing the count (the dec()
  * methods raise a runtime exception).
  * We extend Counter instead of implementing the Metric and Counting
@@ -41,7 +48,12 @@ import java.util.concurrent.TimeUnit;
  */
 class SlidingTimeWindowCounter extends Counter {
 
-    private final Reservoir reservoir;
+    // Longer windows use buckets wider than a second.
+    private static final int MAX_BUCKETS = 60;
+
+    private final Clock clock;
+    private final long bucketNanos;
+    private final AtomicReferenceArray<Bucket> buckets;
 
     /**
      * Creates a counter with the given window of time.
@@ -50,26 +62,56 @@ class SlidingTimeWindowCounter extends Counter {
      * @param windowUnit the unit of {@code window}
      */
     SlidingTimeWindowCounter(long window, TimeUnit windowUnit) {
-        reservoir = new SlidingTimeWindowReservoir(window, windowUnit);
+        this(window, windowUnit, Clock.defaultClock());
     }
 
     /**
-     * @return the snapshot size of the sliding time window reservoir.
+     * Creates a counter with the given window of time and clock.
+     *
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     * @param clock      the clock providing the time in nanoseconds
+     */
+    SlidingTimeWindowCounter(long window, TimeUnit windowUnit, Clock clock) {
+        long windowNanos = Math.max(1, windowUnit.toNanos(window));
+        int bucketCount = (int) Math.max(1, Math.min(MAX_BUCKETS,
+                windowNanos / TimeUnit.SECONDS.toNanos(1)));
+
+        this.clock = clock;
+        this.bucketNanos = (windowNanos + bucketCount - 1) / bucketCount;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    /**
+     * @return the number of increments within the window.
      */
     @Override
     public long getCount() {
-        return reservoir.getSnapshot().size();
+        long current = currentIndex();
+        long oldest = current - buckets.length() + 1;
+        long count = 0;
+
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+
+            if (bucket != null && bucket.index >= oldest
+                    && bucket.index <= current) {
+                count += bucket.count.sum();
+            }
+        }
+
+        return count;
     }
 
     @Override
     public void inc() {
-        reservoir.update(1L);
+        inc(1);
     }
 
     @Override
     public void inc(long n) {
-        for (int i = 0; i < n; ++i) {
-            inc();
+        if (n > 0) {
+            currentBucket().count.add(n);
         }
     }
 
@@ -83,4 +125,37 @@ class SlidingTimeWindowCounter extends Counter {
         throw new RuntimeException("This counter can be incremented only");
     }
 
+    private long currentIndex() {
+        return Math.floorDiv(clock.getTick(), bucketNanos);
+    }
+
+    private Bucket currentBucket() {
+        long index = currentIndex();
+        int slot = (int) Math.floorMod(index, (long) buckets.length());
+
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+
+            // A bucket newer than the index means the clock was read just
+            // before another thread moved on, count into the newer bucket.
+            if (bucket != null && bucket.index >= index) {
+                return bucket;
+            }
+
+            Bucket fresh = new Bucket(index);
+
+            if (buckets.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private final long index;
+        private final LongAdder count = new LongAdder();
+
+        Bucket(long index) {
+            this.index = index;
+        }
+    }
 }
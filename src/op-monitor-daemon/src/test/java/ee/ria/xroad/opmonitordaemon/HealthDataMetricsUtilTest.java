@@ -34,7 +34,6 @@ import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getRequestDurat
 import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getRequestSizeName;
 import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getServiceTypeName;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
 
 /**
  * Tests against the utility methods in HealthDataMetricsUtil.
@@ -62,34 +61,20 @@ public class HealthDataMetricsUtilTest {
         assertEquals(jmxKey, "lastSuccessfulRequestTimestamp("
                 + serviceId.toShortString() + ")");
 
-        String regex = HealthDataMetricsUtil.formatMetricMatchRegexp(jmxKey);
-        assertTrue(jmxKey.matches(regex));
-
         jmxKey = getLastRequestTimestampGaugeName(serviceId, false);
         assertEquals(jmxKey, "lastUnsuccessfulRequestTimestamp("
                     + serviceId.toShortString() + ")");
 
-        regex = HealthDataMetricsUtil.formatMetricMatchRegexp(jmxKey);
-        assertTrue(jmxKey.matches(regex));
-
         jmxKey = getRequestCounterName(serviceId, true);
         assertEquals(jmxKey, "successfulRequestCount("
                         + serviceId.toShortString() + ")");
 
-        regex = HealthDataMetricsUtil.formatMetricMatchRegexp(jmxKey);
-        assertTrue(jmxKey.matches(regex));
-
         jmxKey = getRequestCounterName(serviceId, false);
         assertEquals(jmxKey, "unsuccessfulRequestCount("
                         + serviceId.toShortString() + ")");
 
-        regex = HealthDataMetricsUtil.formatMetricMatchRegexp(jmxKey);
-        assertTrue(jmxKey.matches(regex));
-
         jmxKey = getServiceTypeName(serviceId);
         assertEquals(jmxKey, "serviceType(" + serviceId.toShortString() + ")");
-        regex = HealthDataMetricsUtil.formatMetricMatchRegexp(jmxKey);
-        assertTrue(jmxKey.matches(regex));
     }
 
     @Test
@@ -139,10 +124,6 @@ public class HealthDataMetricsUtilTest {
                 "lastSuccessfulRequestTimestamp(EE/BÖÖ/testmember"
                         + "/testservice_provider/&#91;&quot;Með_suð_í_"
                         + "eyrum&quot;&#93;/v012)");
-
-        String regex = HealthDataMetricsUtil.formatMetricMatchRegexp(
-                lastSuccessfulRequestTsKey);
-        assertTrue(lastSuccessfulRequestTsKey.matches(regex));
     }
 
     @Test
@@ -164,10 +145,6 @@ public class HealthDataMetricsUtilTest {
                 "requestDuration(EE/foo&#46;bar/testmember"
                         + "/testservice_provider"
                         + "/Закрой&#46;за&#46;мной&#46;дверь&#46;я&#46;ухожу)");
-
-        String regex = HealthDataMetricsUtil.formatMetricMatchRegexp(
-                requestDurationKey);
-        assertTrue(requestDurationKey.matches(regex));
     }
 
     @Test
@@ -189,9 +166,5 @@ public class HealthDataMetricsUtilTest {
                 "requestDuration(EE&#32;TEST/foo&#92;bar"
                         + "/testmember&#44;&#32;simple/testservice_provider"
                         + "/a&#32;service&#32;with&#32;spaces)");
-
-        String regex = HealthDataMetricsUtil.formatMetricMatchRegexp(
-                requestDurationKey);
-        assertTrue(requestDurationKey.matches(regex));
     }
 }
@@ -0,0 +1,124 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.storeFullOperationalDataRecords;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests the chunked cleanup of outdated operational data records.
+ */
+public class OperationalDataRecordCleanerTest extends BaseTestUsingDB {
+
+    private static final long OLD_TS = 1474968970L;
+    private static final long NEW_TS = 1474968980L;
+    private static final DateTime BEFORE = new DateTime(1474968975000L);
+
+    private ExecutorService executor;
+
+    /**
+     * Cleanup the stored records before each test.
+     * @throws Exception if an error occurs.
+     */
+    @Before
+    public void beforeTest() throws Exception {
+        doInTransaction(session -> session.createQuery(
+                "delete OperationalDataRecord").executeUpdate());
+
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Stops the cleanup executor.
+     */
+    @After
+    public void afterTest() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void cleanupRemovesOnlyOutdatedRecordsInChunks() throws Exception {
+        storeFullOperationalDataRecords(10, OLD_TS);
+        storeFullOperationalDataRecords(5, NEW_TS);
+        storeFullOperationalDataRecords(13, OLD_TS);
+
+        assertEquals(23, OperationalDataRecordCleaner.cleanRecords(BEFORE, 7, 0));
+        assertEquals(0, countRecords(OLD_TS));
+        assertEquals(5, countRecords(NEW_TS));
+
+        assertEquals(0, OperationalDataRecordCleaner.cleanRecords(BEFORE, 7, 0));
+    }
+
+    @Test
+    public void cleanupOfExactMultipleOfBatchSize() throws Exception {
+        storeFullOperationalDataRecords(20, OLD_TS);
+
+        assertEquals(20, OperationalDataRecordCleaner.cleanRecords(BEFORE, 10, 0));
+        assertEquals(0, countRecords(OLD_TS));
+    }
+
+    @Test
+    public void insertsContinueWhileCleanupRuns() throws Exception {
+        storeFullOperationalDataRecords(2000, OLD_TS);
+
+        // 2000 records at 4000 rows per second keeps the cleanup busy for at
+        // least half a second in 20 separate transactions.
+        Future<Integer> cleanup = executor.submit(
+                () -> OperationalDataRecordCleaner.cleanRecords(BEFORE, 100, 4000));
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+
+        while (countRecords(OLD_TS) == 2000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        storeFullOperationalDataRecords(10, NEW_TS);
+
+        assertFalse("Insert should complete before the cleanup", cleanup.isDone());
+
+        assertEquals(2000, cleanup.get(10, TimeUnit.SECONDS).intValue());
+        assertEquals(0, countRecords(OLD_TS));
+        assertEquals(10, countRecords(NEW_TS));
+    }
+
+    private static long countRecords(long monitoringDataTs) throws Exception {
+        return doInTransaction(session -> session.createQuery(
+                "select count(r) from OperationalDataRecord r where r.monitoringDataTs = :ts", Long.class)
+                .setParameter("ts", monitoringDataTs)
+                .uniqueResult());
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData.SecurityServerType;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.queryAllRecords;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.storeRecords;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRollupManager.MINUTE_SECONDS;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRollupManager.queryRollups;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRollupManager.rollUp;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.fillMinimalOperationalData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test cases related to summarizing the operational data records into
+ * per-minute rollup records and querying them.
+ */
+public class OperationalDataRollupManagerTest extends BaseTestUsingDB {
+
+    // The beginning of a minute.
+    private static final long START = 1474968960L;
+
+    private static final ClientId PROVIDER_A = ClientId.create("XTEE-CI-XM", "GOV", "00000000", "Center");
+    private static final ClientId PROVIDER_B = ClientId.create("XTEE-CI-XM", "COM", "00000001", null);
+
+    private static final List<ClientId> PROVIDERS = Arrays.asList(PROVIDER_A, PROVIDER_B);
+    private static final List<String> SERVICE_CODES = Arrays.asList("getRandom", "helloService");
+
+    /**
+     * Cleanup the stored records before each test.
+     * @throws Exception if an error occurs.
+     */
+    @Before
+    public void beforeTest() throws Exception {
+        doInTransaction(session -> session.createQuery("delete OperationalDataRecord").executeUpdate());
+        doInTransaction(session -> session.createQuery("delete OperationalDataRollup").executeUpdate());
+
+        OperationalDataRollupManager.setRolledUpBefore(null);
+        OperationalDataRollupManager.setMaxRecordsInPayload(
+                OpMonitoringSystemProperties.getOpMonitorMaxRecordsInPayload());
+        OperationalDataRollupManager.setMaxMinutesPerRun(
+                OpMonitoringSystemProperties.getOpMonitorRollupMaxMinutesPerRun());
+    }
+
+    @Test
+    public void rollupsAreConsistentWithRawRecords() throws Exception {
+        Random random = new Random(1);
+
+        for (int minute = 0; minute < 5; minute++) {
+            for (int batch = 0; batch < 3; batch++) {
+                long monitoringDataTs = START + minute * MINUTE_SECONDS + random.nextInt(60);
+                List<OperationalDataRecord> records = new ArrayList<>();
+
+                for (int i = 0; i < 20; i++) {
+                    records.add(createRandomRecord(random));
+                }
+
+                storeRecords(records, monitoringDataTs);
+            }
+        }
+
+        rollUp(START + 5 * MINUTE_SECONDS + 30);
+
+        OperationalDataRollups rollups = queryRollups(START, START + 5 * MINUTE_SECONDS - 1, null);
+
+        assertNull(rollups.getNextRecordsFrom());
+        assertEquals(aggregate(queryAllRecords().getRecords()), index(rollups.getRecords()));
+    }
+
+    @Test
+    public void rollsUpOnlyCompletedMinutesOnce() throws Exception {
+        storeRecords(createRecords(2, PROVIDER_A), START + 10);
+        storeRecords(createRecords(3, PROVIDER_A), START + 70);
+
+        assertEquals(1, rollUp(START + 90));
+        assertEquals(0, rollUp(START + 90));
+
+        storeRecords(createRecords(1, PROVIDER_A), START + 130);
+
+        assertEquals(2, rollUp(START + 200));
+
+        // Restarting continues from the last rolled up minute.
+        OperationalDataRollupManager.setRolledUpBefore(null);
+
+        assertEquals(0, rollUp(START + 200));
+
+        List<OperationalDataRollup> rollups = queryRollups(START, START + 179, null).getRecords();
+
+        assertEquals(3, rollups.size());
+        assertEquals(2, rollups.get(0).getRequestCount().longValue());
+        assertEquals(3, rollups.get(1).getRequestCount().longValue());
+        assertEquals(1, rollups.get(2).getRequestCount().longValue());
+    }
+
+    @Test
+    public void rollsUpAtMostMaxMinutesPerRun() throws Exception {
+        for (int minute = 0; minute < 5; minute++) {
+            storeRecords(createRecords(1, PROVIDER_A), START + minute * MINUTE_SECONDS);
+        }
+
+        OperationalDataRollupManager.setMaxMinutesPerRun(2);
+
+        assertEquals(2, rollUp(START + 5 * MINUTE_SECONDS));
+        assertEquals(START + 2 * MINUTE_SECONDS, OperationalDataRollupManager.getRolledUpBefore(START));
+
+        assertEquals(2, rollUp(START + 5 * MINUTE_SECONDS));
+        assertEquals(1, rollUp(START + 5 * MINUTE_SECONDS));
+        assertEquals(0, rollUp(START + 5 * MINUTE_SECONDS));
+
+        assertEquals(5, queryRollups(START, START + 5 * MINUTE_SECONDS - 1, null).size());
+    }
+
+    @Test
+    public void queryRollupsByServiceProvider() throws Exception {
+        storeRecords(createRecords(2, PROVIDER_A), START);
+        storeRecords(createRecords(3, PROVIDER_B), START);
+
+        rollUp(START + MINUTE_SECONDS);
+
+        List<OperationalDataRollup> rollups = queryRollups(START, START, PROVIDER_B).getRecords();
+
+        assertEquals(1, rollups.size());
+        assertEquals(PROVIDER_B.getMemberCode(), rollups.get(0).getServiceMemberCode());
+        assertNull(rollups.get(0).getServiceSubsystemCode());
+        assertEquals(3, rollups.get(0).getRequestCount().longValue());
+    }
+
+    @Test
+    public void queryRollupsCausingOverflow() throws Exception {
+        for (int minute = 0; minute < 3; minute++) {
+            storeRecords(createRecords(1, PROVIDER_A), START + minute * MINUTE_SECONDS);
+            storeRecords(createRecords(1, PROVIDER_B), START + minute * MINUTE_SECONDS);
+        }
+
+        rollUp(START + 3 * MINUTE_SECONDS);
+
+        OperationalDataRollupManager.setMaxRecordsInPayload(3);
+
+        // The second minute does not fit into the payload entirely.
+        OperationalDataRollups rollups = queryRollups(START, START + 3 * MINUTE_SECONDS - 1, null);
+
+        assertEquals(2, rollups.size());
+        assertEquals(START + MINUTE_SECONDS, rollups.getNextRecordsFrom().longValue());
+
+        OperationalDataRollupManager.setMaxRecordsInPayload(1);
+
+        // A single minute is returned as a whole.
+        rollups = queryRollups(START + MINUTE_SECONDS, START + 3 * MINUTE_SECONDS - 1, null);
+
+        assertEquals(2, rollups.size());
+        assertEquals(START + 2 * MINUTE_SECONDS, rollups.getNextRecordsFrom().longValue());
+
+        rollups = queryRollups(START + 2 * MINUTE_SECONDS, START + 3 * MINUTE_SECONDS - 1, null);
+
+        assertEquals(2, rollups.size());
+        assertNull(rollups.getNextRecordsFrom());
+    }
+
+    private static List<OperationalDataRecord> createRecords(int count, ClientId serviceProvider) {
+        List<OperationalDataRecord> records = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            OperationalDataRecord record = fillMinimalOperationalData();
+            setServiceProvider(record, serviceProvider);
+            record.setServiceCode(SERVICE_CODES.get(0));
+
+            records.add(record);
+        }
+
+        return records;
+    }
+
+    private static OperationalDataRecord createRandomRecord(Random random) {
+        OperationalDataRecord record = fillMinimalOperationalData();
+
+        setServiceProvider(record, PROVIDERS.get(random.nextInt(PROVIDERS.size())));
+        record.setServiceCode(SERVICE_CODES.get(random.nextInt(SERVICE_CODES.size())));
+        record.setSecurityServerType(random.nextBoolean()
+                ? SecurityServerType.CLIENT.getTypeString() : SecurityServerType.PRODUCER.getTypeString());
+        record.setSucceeded(random.nextInt(4) != 0);
+        record.setResponseOutTs(record.getRequestInTs() + random.nextInt(5000));
+        record.setRequestSize(random.nextInt(3) == 0 ? null : (long) random.nextInt(100000));
+        record.setResponseSize(random.nextInt(3) == 0 ? null : (long) random.nextInt(100000));
+
+        return record;
+    }
+
+    private static void setServiceProvider(OperationalDataRecord record, ClientId serviceProvider) {
+        record.setServiceXRoadInstance(serviceProvider.getXRoadInstance());
+        record.setServiceMemberClass(serviceProvider.getMemberClass());
+        record.setServiceMemberCode(serviceProvider.getMemberCode());
+        record.setServiceSubsystemCode(serviceProvider.getSubsystemCode());
+    }
+
+    private static String key(long minuteTs, String securityServerType, String serviceMemberCode,
+            String serviceCode) {
+        return minuteTs + "/" + securityServerType + "/" + serviceMemberCode + "/" + serviceCode;
+    }
+
+    private static Map<String, OperationalDataRollup> index(List<OperationalDataRollup> rollups) {
+        Map<String, OperationalDataRollup> result = new HashMap<>();
+
+        for (OperationalDataRollup rollup : rollups) {
+            rollup.setId(null);
+            result.put(key(rollup.getMinuteTs(), rollup.getSecurityServerType(), rollup.getServiceMemberCode(),
+                    rollup.getServiceCode()), rollup);
+        }
+
+        return result;
+    }
+
+    /**
+     * Aggregates the raw records the same way the rollup records are
+     * expected to be aggregated.
+     */
+    private static Map<String, OperationalDataRollup> aggregate(List<OperationalDataRecord> records) {
+        Map<String, OperationalDataRollup> result = new HashMap<>();
+
+        for (OperationalDataRecord record : records) {
+            long minuteTs = record.getMonitoringDataTs() - record.getMonitoringDataTs() % MINUTE_SECONDS;
+            String securityServerType = record.getSecurityServerType().getTypeString();
+
+            OperationalDataRollup rollup = result.computeIfAbsent(key(minuteTs, securityServerType,
+                    record.getServiceMemberCode(), record.getServiceCode()), k -> {
+                    OperationalDataRollup r = new OperationalDataRollup();
+                    r.setMinuteTs(minuteTs);
+                    r.setSecurityServerType(securityServerType);
+                    r.setServiceXRoadInstance(record.getServiceXRoadInstance());
+                    r.setServiceMemberClass(record.getServiceMemberClass());
+                    r.setServiceMemberCode(record.getServiceMemberCode());
+                    r.setServiceSubsystemCode(record.getServiceSubsystemCode());
+                    r.setServiceCode(record.getServiceCode());
+                    r.setServiceVersion(record.getServiceVersion());
+                    r.setRequestCount(0L);
+                    r.setSucceededCount(0L);
+                    r.setFailedCount(0L);
+                    return r;
+                });
+
+            long duration = record.getResponseOutTs() - record.getRequestInTs();
+
+            rollup.setRequestCount(rollup.getRequestCount() + 1);
+
+            if (record.getSucceeded()) {
+                rollup.setSucceededCount(rollup.getSucceededCount() + 1);
+            } else {
+                rollup.setFailedCount(rollup.getFailedCount() + 1);
+            }
+
+            rollup.setDurationSum(sum(rollup.getDurationSum(), duration));
+            rollup.setDurationMin(min(rollup.getDurationMin(), duration));
+            rollup.setDurationMax(max(rollup.getDurationMax(), duration));
+            rollup.setRequestSizeSum(sum(rollup.getRequestSizeSum(), record.getRequestSize()));
+            rollup.setRequestSizeMin(min(rollup.getRequestSizeMin(), record.getRequestSize()));
+            rollup.setRequestSizeMax(max(rollup.getRequestSizeMax(), record.getRequestSize()));
+            rollup.setResponseSizeSum(sum(rollup.getResponseSizeSum(), record.getResponseSize()));
+            rollup.setResponseSizeMin(min(rollup.getResponseSizeMin(), record.getResponseSize()));
+            rollup.setResponseSizeMax(max(rollup.getResponseSizeMax(), record.getResponseSize()));
+        }
+
+        return result;
+    }
+
+    private static Long sum(Long current, Long value) {
+        return value == null ? current : current == null ? value : current + value;
+    }
+
+    private static Long min(Long current, Long value) {
+        return value == null ? current : current == null ? value : Math.min(current, value);
+    }
+
+    private static Long max(Long current, Long value) {
+        return value == null ? current : current == null ? value : Math.max(current, value);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Clock;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the bucketed sliding time window counter.
+ */
+public class SlidingTimeWindowCounterTest {
+
+    private final ManualClock clock = new ManualClock();
+
+    @Test
+    public void countsIncrementsWithinWindow() {
+        SlidingTimeWindowCounter counter = new SlidingTimeWindowCounter(60, TimeUnit.SECONDS, clock);
+
+        for (int i = 0; i < 60; i++) {
+            counter.inc();
+            counter.inc(2);
+            clock.advance(1);
+        }
+
+        // The oldest second has just left the window.
+        assertEquals(59 * 3, counter.getCount());
+
+        clock.advance(30);
+        assertEquals(29 * 3, counter.getCount());
+
+        clock.advance(30);
+        assertEquals(0, counter.getCount());
+    }
+
+    @Test
+    public void reusesBucketsAfterWindowHasPassed() {
+        SlidingTimeWindowCounter counter = new SlidingTimeWindowCounter(10, TimeUnit.SECONDS, clock);
+
+        counter.inc(5);
+        clock.advance(10);
+        counter.inc(3);
+
+        assertEquals(3, counter.getCount());
+    }
+
+    @Test
+    public void usesWiderBucketsForLongWindows() {
+        SlidingTimeWindowCounter counter = new SlidingTimeWindowCounter(1, TimeUnit.HOURS, clock);
+
+        counter.inc();
+        clock.advance(3000);
+        counter.inc();
+
+        assertEquals(2, counter.getCount());
+
+        clock.advance(1200);
+        assertEquals(1, counter.getCount());
+    }
+
+    @Test
+    public void countsConcurrentIncrements() throws Exception {
+        SlidingTimeWindowCounter counter = new SlidingTimeWindowCounter(60, TimeUnit.SECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            for (int i = 0; i < 8; i++) {
+                executor.execute(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        counter.inc();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(80_000, counter.getCount());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void doesNotDecrement() {
+        new SlidingTimeWindowCounter(60, TimeUnit.SECONDS, clock).dec();
+    }
+
+    private static final class ManualClock extends Clock {
+        private long tick = TimeUnit.DAYS.toNanos(1);
+
+        void advance(long seconds) {
+            tick += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.wsdl;
+
+import ee.ria.xroad.common.DefaultFilepaths;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.cxf.tools.common.ToolConstants;
+import org.apache.cxf.tools.common.ToolContext;
+import org.apache.cxf.tools.validator.internal.WSDL11Validator;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Validates WSDLs inside the admin API process with the same Apache CXF WSDL11Validator that the wsdlvalidator
+ * addon runs in a separate JVM.
+ *
+ * The WSDL is downloaded once (trusting all server certificates like {@link WsdlParser}), limited to the maximum
+ * WSDL size. A self-contained WSDL, one that does not import or include other documents, is validated from the
+ * downloaded bytes and the verdict is cached by the SHA-256 hash of the content. A WSDL that refers to other
+ * documents is validated from its original location on every request, so that relative references resolve like in
+ * the addon and changes in the referenced documents are noticed. The validator reads the referenced documents, and
+ * the original location of such a WSDL, without a size limit. Failures to read a document are not cached.
+ *
+ * Each validation runs on a thread of its own with a timeout, and a limited number of validations run at a time.
+ * WSDL11Validator does not react to interrupts, so a validation that times out is left running on its thread and
+ * keeps counting against the limit until it ends.
+ */
+@Slf4j
+class InProcessWsdlValidator {
+
+    static final String ERROR_TIMED_OUT = "WSDL validation timed out";
+    static final String ERROR_TOO_LARGE = "WSDL size exceeds %d bytes";
+    static final String ERROR_INVALID = "Invalid WSDL";
+    static final String ERROR_READING = "Error reading WSDL: ";
+
+    private static final int BUF_SIZE = 8192;
+    private static final int MAX_CACHED_RESULTS = 1000;
+
+    // elements that refer to other documents with a location or schemaLocation attribute
+    private static final Set<String> REFERENCE_ELEMENTS = new HashSet<>(Arrays.asList("import", "include",
+            "redefine"));
+
+    private final Semaphore permits;
+    private final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("wsdl-validator-%d")
+            .setDaemon(true)
+            .build();
+    private final Set<Thread> validatorThreads = ConcurrentHashMap.newKeySet();
+    private final long timeoutMillis;
+    private final int maxWsdlSize;
+
+    // validation errors of self-contained WSDLs by content hash, an empty list for a valid WSDL
+    private final Cache<String, List<String>> results = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_RESULTS)
+            .build();
+
+    /**
+     * @param threads the number of validations that can run concurrently
+     * @param timeoutMillis the time a validation may take including the time spent waiting for a free slot
+     * @param maxWsdlSize the maximum size of a WSDL document in bytes, does not limit the documents it refers to
+     */
+    InProcessWsdlValidator(int threads, long timeoutMillis, int maxWsdlSize) {
+        this.permits = new Semaphore(threads);
+        this.timeoutMillis = timeoutMillis;
+        this.maxWsdlSize = maxWsdlSize;
+    }
+
+    /**
+     * Validates the WSDL in the given URL or file path.
+     * @param wsdlUrl the WSDL location
+     * @return an empty list, WSDL11Validator does not produce warnings
+     * @throws WsdlValidator.WsdlValidationFailedException if the WSDL cannot be read, is invalid or the
+     * validation times out
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the validation
+     */
+    List<String> validate(String wsdlUrl) throws WsdlValidator.WsdlValidationFailedException,
+            InterruptedException {
+        byte[] wsdl = read(wsdlUrl);
+        List<String> errors;
+
+        if (isSelfContained(wsdl)) {
+            String hash = Hashing.sha256().hashBytes(wsdl).toString();
+
+            errors = results.getIfPresent(hash);
+
+            if (errors == null) {
+                errors = validateOnThread(() -> validateContent(wsdl), wsdlUrl);
+                results.put(hash, errors);
+            } else {
+                log.debug("Using cached validation result for WSDL {}", wsdlUrl);
+            }
+        } else {
+            String wsdlLocation = toValidatorLocation(wsdlUrl);
+
+            errors = validateOnThread(() -> runValidator(wsdlLocation), wsdlUrl);
+        }
+
+        if (!errors.isEmpty()) {
+            throw new WsdlValidator.WsdlValidationFailedException(errors);
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Interrupts the running validations.
+     */
+    void shutdown() {
+        validatorThreads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Runs WSDL11Validator on the given WSDL.
+     * @param wsdlLocation the WSDL URL, relative references are resolved against it
+     * @return the validation errors, an empty list if the WSDL is valid
+     * @throws IOException if the WSDL or a document it refers to cannot be read
+     */
+    List<String> runValidator(String wsdlLocation) throws IOException {
+        ToolContext env = new ToolContext();
+        env.put(ToolConstants.CFG_WSDLURL, wsdlLocation);
+
+        try {
+            if (new WSDL11Validator(null, env).isValid()) {
+                return Collections.emptyList();
+            }
+
+            return Collections.singletonList(ERROR_INVALID);
+        } catch (Exception e) {
+            if (ExceptionUtils.indexOfType(e, IOException.class) >= 0) {
+                throw new IOException(ERROR_READING + e.getMessage(), e);
+            }
+
+            return Collections.singletonList(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private List<String> validateContent(byte[] wsdl) throws IOException {
+        Path wsdlFile = DefaultFilepaths.createTempFile("wsdl", ".wsdl");
+
+        try {
+            Files.write(wsdlFile, wsdl);
+
+            return runValidator(wsdlFile.toUri().toString());
+        } finally {
+            Files.deleteIfExists(wsdlFile);
+        }
+    }
+
+    private List<String> validateOnThread(Callable<List<String>> validation, String wsdlUrl)
+            throws WsdlValidator.WsdlValidationFailedException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw timedOut();
+        }
+
+        FutureTask<List<String>> result = new FutureTask<>(validation);
+        Thread thread;
+
+        try {
+            // the permit is held until the validation actually ends, also when the caller has given up on it
+            thread = threadFactory.newThread(() -> {
+                try {
+                    result.run();
+                } finally {
+                    validatorThreads.remove(Thread.currentThread());
+                    permits.release();
+                }
+            });
+
+            validatorThreads.add(thread);
+            thread.start();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+
+        try {
+            return result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            log.warn("Validation of WSDL {} timed out, leaving it to finish on thread {}", wsdlUrl,
+                    thread.getName());
+            throw timedOut();
+        } catch (ExecutionException e) {
+            throw new WsdlValidator.WsdlValidationFailedException(
+                    Collections.singletonList(String.valueOf(e.getCause().getMessage())));
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            // retain the interrupted status
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private static WsdlValidator.WsdlValidationFailedException timedOut() {
+        return new WsdlValidator.WsdlValidationFailedException(Collections.singletonList(ERROR_TIMED_OUT));
+    }
+
+    private static String toValidatorLocation(String wsdlUrl) {
+        try {
+            return new URL(wsdlUrl).toString();
+        } catch (MalformedURLException e) {
+            // the external validator accepts plain file paths as well
+            return Paths.get(wsdlUrl).toUri().toString();
+        }
+    }
+
+    /**
+     * Checks that the WSDL does not refer to other documents. A WSDL that cannot be parsed is not considered
+     * self-contained, the validator reports the actual problem.
+     */
+    static boolean isSelfContained(byte[] wsdl) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(wsdl));
+
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && REFERENCE_ELEMENTS.contains(reader.getLocalName())
+                            && (reader.getAttributeValue(null, "location") != null
+                            || reader.getAttributeValue(null, "schemaLocation") != null)) {
+                        return false;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+
+            return true;
+        } catch (XMLStreamException e) {
+            return false;
+        }
+    }
+
+    private byte[] read(String wsdlUrl) throws WsdlValidator.WsdlValidationFailedException {
+        URLConnection conn = null;
+
+        try {
+            InputStream in;
+
+            try {
+                conn = new URL(wsdlUrl).openConnection();
+                if (conn instanceof HttpURLConnection) {
+                    HttpUrlConnectionConfig.apply((HttpURLConnection) conn);
+                }
+                in = conn.getInputStream();
+            } catch (MalformedURLException e) {
+                // the external validator accepts plain file paths as well
+                in = Files.newInputStream(Paths.get(wsdlUrl));
+            }
+
+            try (InputStream wsdl = in) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[BUF_SIZE];
+                int n;
+
+                while ((n = wsdl.read(buf)) != -1) {
+                    if (out.size() + n > maxWsdlSize) {
+                        throw new WsdlValidator.WsdlValidationFailedException(
+                                Collections.singletonList(String.format(ERROR_TOO_LARGE, maxWsdlSize)));
+                    }
+                    out.write(buf, 0, n);
+                }
+
+                return out.toByteArray();
+            }
+        } catch (IOException e) {
+            throw new WsdlValidator.WsdlValidationFailedException(
+                    Collections.singletonList(ERROR_READING + e.getMessage()));
+        } finally {
+            if (conn instanceof HttpURLConnection) {
+                ((HttpURLConnection) conn).disconnect();
+            }
+        }
+    }
+}
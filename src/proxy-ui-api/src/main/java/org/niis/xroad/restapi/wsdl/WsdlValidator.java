@@ -36,8 +36,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PreDestroy;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WsdlValidator as done in X-Road addons: wsdlvalidator
@@ -48,15 +51,32 @@ public class WsdlValidator {
     private final ExternalProcessRunner externalProcessRunner;
     @Getter
     private final String wsdlValidatorCommand;
+    private final InProcessWsdlValidator inProcessWsdlValidator;
 
     @Autowired
     public WsdlValidator(ExternalProcessRunner externalProcessRunner) {
         this.externalProcessRunner = externalProcessRunner;
         this.wsdlValidatorCommand = SystemProperties.getWsdlValidatorCommand();
+        this.inProcessWsdlValidator = SystemProperties.isWsdlValidatorInProcess()
+                ? new InProcessWsdlValidator(SystemProperties.getWsdlValidatorThreads(),
+                        TimeUnit.SECONDS.toMillis(SystemProperties.getWsdlValidatorTimeout()),
+                        SystemProperties.getWsdlValidatorMaxWsdlSize())
+                : null;
+    }
+
+    /**
+     * Stops the in-process validation workers
+     */
+    @PreDestroy
+    public void destroy() {
+        if (inProcessWsdlValidator != null) {
+            inProcessWsdlValidator.shutdown();
+        }
     }
 
     /**
-     * validate WSDL with user selected validator
+     * validate WSDL with user selected validator, or in-process instead of the validator command if
+     * proxy-ui.wsdl-validator-in-process is set. Validation is skipped if no validator command is set.
      * @param wsdlUrl
      * @return List of validation warnings that could be ignored by choice
      * @throws WsdlValidatorNotExecutableException when validator is not found or
@@ -77,6 +97,10 @@ public class WsdlValidator {
             throw new IllegalArgumentException("wsdl url cannot be null or empty");
         }
 
+        if (inProcessWsdlValidator != null) {
+            return inProcessWsdlValidator.validate(wsdlUrl);
+        }
+
         try {
             ExternalProcessRunner.ProcessResult processResult = externalProcessRunner
                     .executeAndThrowOnFailure(getWsdlValidatorCommand(), wsdlUrl);
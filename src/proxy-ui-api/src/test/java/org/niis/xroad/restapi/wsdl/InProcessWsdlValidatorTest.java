@@ -0,0 +1,243 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.wsdl;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.niis.xroad.restapi.wsdl.InvalidWsdlException.ERROR_INVALID_WSDL;
+
+/**
+ * Test InProcessWsdlValidator
+ */
+public class InProcessWsdlValidatorTest {
+    private static final String ERROR_WSDL = "src/test/resources/wsdl/error.wsdl";
+    private static final String VALID_WSDL = "src/test/resources/wsdl/valid.wsdl";
+    private static final String SELF_CONTAINED_WSDL = "src/test/resources/wsdl/valid-self-contained.wsdl";
+    private static final String WARNING_WSDL = "src/test/resources/wsdl/warning.wsdl";
+    private static final int MAX_SIZE = 10 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private InProcessWsdlValidator validator;
+    private String originalTempFilesPath;
+
+    @Before
+    public void setUp() {
+        originalTempFilesPath = System.getProperty(SystemProperties.TEMP_FILES_PATH);
+        System.setProperty(SystemProperties.TEMP_FILES_PATH, tempFolder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        validator.shutdown();
+
+        if (originalTempFilesPath != null) {
+            System.setProperty(SystemProperties.TEMP_FILES_PATH, originalTempFilesPath);
+        } else {
+            System.clearProperty(SystemProperties.TEMP_FILES_PATH);
+        }
+    }
+
+    @Test
+    public void shouldFailValidation() throws Exception {
+        validator = new InProcessWsdlValidator(1, 60000, MAX_SIZE);
+        try {
+            validator.validate(ERROR_WSDL);
+            fail("should have thrown WsdlValidationFailedException");
+        } catch (WsdlValidator.WsdlValidationFailedException expected) {
+            assertEquals(ERROR_INVALID_WSDL, expected.getErrorDeviation().getCode());
+        }
+    }
+
+    @Test
+    public void shouldCacheResultsOfSelfContainedWsdlsByContent() throws Exception {
+        CountingValidator counting = new CountingValidator();
+        validator = counting;
+
+        assertEquals(Collections.emptyList(), validator.validate(SELF_CONTAINED_WSDL));
+        assertEquals(Collections.emptyList(), validator.validate(SELF_CONTAINED_WSDL));
+        assertEquals(1, counting.runs.get());
+
+        Path changed = tempFolder.newFile("changed.wsdl").toPath();
+        Files.write(changed, (new String(Files.readAllBytes(Paths.get(SELF_CONTAINED_WSDL)), StandardCharsets.UTF_8)
+                + "<!-- changed -->").getBytes(StandardCharsets.UTF_8));
+
+        validator.validate(changed.toString());
+        assertEquals(2, counting.runs.get());
+    }
+
+    @Test
+    public void shouldValidateWsdlsReferringToOtherDocumentsEveryTime() throws Exception {
+        CountingValidator counting = new CountingValidator();
+        validator = counting;
+
+        validator.validate(VALID_WSDL);
+        validator.validate(VALID_WSDL);
+        assertEquals(2, counting.runs.get());
+        assertTrue(counting.lastLocation.endsWith(VALID_WSDL));
+    }
+
+    @Test
+    public void shouldValidateDownloadedContentOfSelfContainedWsdl() throws Exception {
+        CountingValidator counting = new CountingValidator();
+        validator = counting;
+
+        validator.validate(SELF_CONTAINED_WSDL);
+        assertFalse(counting.lastLocation.endsWith(SELF_CONTAINED_WSDL));
+        assertEquals(new String(Files.readAllBytes(Paths.get(SELF_CONTAINED_WSDL)), StandardCharsets.UTF_8),
+                counting.lastContent);
+    }
+
+    @Test
+    public void shouldNotCacheReadFailures() throws Exception {
+        CountingValidator counting = new CountingValidator();
+        counting.failures.set(1);
+        validator = counting;
+
+        try {
+            validator.validate(SELF_CONTAINED_WSDL);
+            fail("should have thrown WsdlValidationFailedException");
+        } catch (WsdlValidator.WsdlValidationFailedException expected) {
+            assertEquals(Collections.singletonList(InProcessWsdlValidator.ERROR_READING + "unreachable"),
+                    expected.getErrorDeviation().getMetadata());
+        }
+
+        assertEquals(Collections.emptyList(), validator.validate(SELF_CONTAINED_WSDL));
+        assertEquals(2, counting.runs.get());
+    }
+
+    @Test
+    public void shouldTimeOut() throws Exception {
+        CountingValidator counting = new CountingValidator();
+        counting.blocked = new CountDownLatch(1);
+        validator = counting;
+        try {
+            validator.validate(VALID_WSDL);
+            fail("should have thrown WsdlValidationFailedException");
+        } catch (WsdlValidator.WsdlValidationFailedException expected) {
+            assertEquals(Collections.singletonList(InProcessWsdlValidator.ERROR_TIMED_OUT),
+                    expected.getErrorDeviation().getMetadata());
+        } finally {
+            counting.blocked.countDown();
+        }
+    }
+
+    @Test
+    public void shouldKeepTimedOutValidationCountingAgainstLimit() throws Exception {
+        CountingValidator counting = new CountingValidator();
+        counting.blocked = new CountDownLatch(1);
+        validator = counting;
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    validator.validate(VALID_WSDL);
+                    fail("should have thrown WsdlValidationFailedException");
+                } catch (WsdlValidator.WsdlValidationFailedException expected) {
+                    assertEquals(Collections.singletonList(InProcessWsdlValidator.ERROR_TIMED_OUT),
+                            expected.getErrorDeviation().getMetadata());
+                }
+            }
+
+            // the second validation did not start while the first one was still running
+            assertEquals(1, counting.runs.get());
+        } finally {
+            counting.blocked.countDown();
+        }
+    }
+
+    @Test
+    public void shouldDetectReferencesToOtherDocuments() throws Exception {
+        assertFalse(InProcessWsdlValidator.isSelfContained(Files.readAllBytes(Paths.get(VALID_WSDL))));
+        assertFalse(InProcessWsdlValidator.isSelfContained(Files.readAllBytes(Paths.get(ERROR_WSDL))));
+        assertTrue(InProcessWsdlValidator.isSelfContained(Files.readAllBytes(Paths.get(SELF_CONTAINED_WSDL))));
+    }
+
+    @Test
+    public void shouldRejectTooLargeWsdl() throws Exception {
+        validator = new InProcessWsdlValidator(1, 60000, 16);
+        try {
+            validator.validate(VALID_WSDL);
+            fail("should have thrown WsdlValidationFailedException");
+        } catch (WsdlValidator.WsdlValidationFailedException expected) {
+            assertEquals(Collections.singletonList(String.format(InProcessWsdlValidator.ERROR_TOO_LARGE, 16)),
+                    expected.getErrorDeviation().getMetadata());
+        }
+    }
+
+    private static class CountingValidator extends InProcessWsdlValidator {
+        private final AtomicInteger runs = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile CountDownLatch blocked;
+        private volatile String lastLocation;
+        private volatile String lastContent;
+
+        CountingValidator() {
+            super(1, 500, MAX_SIZE);
+        }
+
+        @Override
+        List<String> runValidator(String wsdlLocation) throws IOException {
+            runs.incrementAndGet();
+            lastLocation = wsdlLocation;
+            lastContent = new String(Files.readAllBytes(Paths.get(URI.create(wsdlLocation))),
+                    StandardCharsets.UTF_8);
+
+            if (blocked != null) {
+                // like WSDL11Validator, does not react to interrupts
+                Uninterruptibles.awaitUninterruptibly(blocked);
+            }
+
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException(InProcessWsdlValidator.ERROR_READING + "unreachable");
+            }
+
+            return Collections.emptyList();
+        }
+    }
+}
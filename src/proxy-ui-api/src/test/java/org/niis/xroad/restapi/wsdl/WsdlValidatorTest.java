@@ -83,6 +83,15 @@ public class WsdlValidatorTest {
         }
     }
 
+    @Test
+    public void shouldSkipInProcessValidationWithoutValidatorCommand() throws Exception {
+        ReflectionTestUtils.setField(wsdlValidator, "wsdlValidatorCommand", null);
+        ReflectionTestUtils.setField(wsdlValidator, "inProcessWsdlValidator",
+                new InProcessWsdlValidator(1, 60000, 1024 * 1024));
+
+        assertEquals(Collections.emptyList(), wsdlValidator.executeValidator("src/test/resources/wsdl/invalid.wsdl"));
+    }
+
     @Test
     public void shouldPassValidation() throws Exception {
         List<String> warnings = wsdlValidator.executeValidator("src/test/resources/wsdl/testservice.wsdl");
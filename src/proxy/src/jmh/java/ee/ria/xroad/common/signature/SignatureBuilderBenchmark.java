@@ -0,0 +1,156 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MessageFileNames;
+import ee.ria.xroad.proxy.signedmessage.SigningKey;
+
+import org.apache.commons.io.FileUtils;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+
+/**
+ * Measures signing a message with 0 or 10 attachments with a software RSA key, the way the proxy signs
+ * a message it sends, without the signer round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class SignatureBuilderBenchmark {
+
+    @Param({"0", "10"})
+    private int attachments;
+
+    private final List<MessagePart> parts = new ArrayList<>();
+
+    private X509Certificate signingCert;
+
+    private OCSPResp ocspResponse;
+
+    private SigningKey signingKey;
+
+    /**
+     * Loads the test certificates and the query, and creates the OCSP response of the signing certificate.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        TestSecurityUtil.initSecurity();
+
+        signingCert = TestCertUtil.getConsumer().certChain[0];
+        signingKey = new SoftwareSigningKey(TestCertUtil.getConsumer().key);
+
+        TestCertUtil.PKCS12 ocspSigner = TestCertUtil.getOcspSigner();
+        ocspResponse = OcspTestUtils.createOCSPResponse(signingCert, TestCertUtil.getCaCert(),
+                ocspSigner.certChain[0], ocspSigner.key, CertificateStatus.GOOD, new Date(), null);
+
+        byte[] message = FileUtils.readFileToByteArray(new File("src/test/queries/simple.query"));
+        parts.add(new MessagePart(MessageFileNames.MESSAGE, SHA512_ID, calculateDigest(SHA512_ID, message),
+                message));
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < attachments; i++) {
+            byte[] attachment = new byte[64 * 1024];
+            random.nextBytes(attachment);
+
+            parts.add(new MessagePart(MessageFileNames.attachment(i + 1), SHA512_ID,
+                    calculateDigest(SHA512_ID, attachment), null));
+        }
+    }
+
+    /**
+     * Builds the signature.
+     * @return the signature data
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public SignatureData sign() throws Exception {
+        SignatureBuilder builder = new SignatureBuilder();
+        parts.forEach(builder::addPart);
+
+        builder.setSigningCert(signingCert);
+        builder.addOcspResponses(Collections.singletonList(ocspResponse));
+
+        return builder.build(signingKey, SHA512_ID);
+    }
+
+    /**
+     * Signs with a private key held in memory.
+     */
+    private static final class SoftwareSigningKey implements SigningKey {
+        private final PrivateKey key;
+
+        SoftwareSigningKey(PrivateKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public SignatureData calculateSignature(SigningRequest request, String digestAlgoId) throws Exception {
+            SignatureCtx ctx = new SignatureCtx(CryptoUtils.getSignatureAlgorithmId(digestAlgoId,
+                    CryptoUtils.CKM_RSA_PKCS_NAME));
+            ctx.add(request);
+
+            Signature signature = Signature.getInstance(ctx.getSignatureAlgorithmId());
+            signature.initSign(key);
+            signature.update(ctx.getDataToBeSigned());
+
+            return ctx.createSignatureData(ctx.createSignatureXml(signature.sign()), 0);
+        }
+    }
+}
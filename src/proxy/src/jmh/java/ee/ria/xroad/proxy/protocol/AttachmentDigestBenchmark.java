@@ -0,0 +1,246 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.message.SoapFault;
+import ee.ria.xroad.common.message.SoapMessageImpl;
+import ee.ria.xroad.common.signature.SignatureData;
+import ee.ria.xroad.common.util.CachingStream;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MimeTypes;
+import ee.ria.xroad.common.util.MimeUtils;
+
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures decoding a proxy message with 1 to 50 attachments of 1 to 100 MB, storing the attachments in
+ * temporary files and waiting for their digests, with the digests calculated on the parser thread
+ * (digestThreads = 0) or on the hashing pool. Every parameter combination runs in its own fork, so the
+ * digest thread count is read once per combination.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class AttachmentDigestBenchmark {
+
+    private static final String TOP_BOUNDARY = "xtopbenchmark";
+    private static final String ATTACHMENT_BOUNDARY = "xattbenchmark";
+
+    private static final String SOAP = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\""
+            + " xmlns:xroad=\"http://x-road.eu/xsd/xroad.xsd\" xmlns:id=\"http://x-road.eu/xsd/identifiers\">"
+            + "<SOAP-ENV:Header>"
+            + "<xroad:client id:objectType=\"MEMBER\"><id:xRoadInstance>EE</id:xRoadInstance>"
+            + "<id:memberClass>BUSINESS</id:memberClass><id:memberCode>consumer</id:memberCode></xroad:client>"
+            + "<xroad:service id:objectType=\"SERVICE\"><id:xRoadInstance>EE</id:xRoadInstance>"
+            + "<id:memberClass>BUSINESS</id:memberClass><id:memberCode>producer</id:memberCode>"
+            + "<id:serviceCode>getState</id:serviceCode></xroad:service>"
+            + "<xroad:id>benchmark</xroad:id><xroad:protocolVersion>4.0</xroad:protocolVersion>"
+            + "</SOAP-ENV:Header><SOAP-ENV:Body><xroad:getState/></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    @Param({"1", "10", "50"})
+    private int attachments;
+
+    @Param({"1", "10", "100"})
+    private int megabytes;
+
+    @Param({"0", "4"})
+    private int digestThreads;
+
+    // Repeated to make up the attachment content
+    private byte[] block;
+
+    /**
+     * Configures the digest threads and the temporary file location, and creates the attachment content.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty(SystemProperties.ATTACHMENT_DIGEST_THREADS, String.valueOf(digestThreads));
+        System.setProperty(SystemProperties.TEMP_FILES_PATH,
+                Files.createTempDirectory("attachmentdigest").toAbsolutePath().toString());
+
+        block = new byte[1024 * 1024];
+        new Random(1).nextBytes(block);
+    }
+
+    /**
+     * Decodes the message and waits until the digests of all the attachments have been calculated.
+     * @return number of decoded attachments
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public int decode() throws Exception {
+        StoringConsumer consumer = new StoringConsumer();
+        DigestAwaitingVerifier verifier = new DigestAwaitingVerifier();
+        ProxyMessageDecoder decoder = new ProxyMessageDecoder(consumer,
+                MimeUtils.mpMixedContentType(TOP_BOUNDARY), false, CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID, verifier);
+
+        try {
+            decoder.parse(createMessage());
+
+            verifier.awaitDigests();
+
+            return decoder.getAttachmentCount();
+        } finally {
+            consumer.consume();
+        }
+    }
+
+    private InputStream createMessage() {
+        List<InputStream> parts = new ArrayList<>();
+
+        parts.add(text("--" + TOP_BOUNDARY + "\r\nContent-Type: " + MimeTypes.TEXT_XML_UTF8 + "\r\n\r\n" + SOAP
+                + "\r\n--" + TOP_BOUNDARY + "\r\nContent-Type: "
+                + MimeUtils.mpMixedContentType(ATTACHMENT_BOUNDARY) + "\r\n\r\n"));
+
+        for (int i = 0; i < attachments; i++) {
+            parts.add(text("\r\n--" + ATTACHMENT_BOUNDARY + "\r\nContent-Type: application/octet-stream\r\n\r\n"));
+            parts.add(new RepeatingInputStream(block, megabytes * (long) block.length));
+        }
+
+        parts.add(text("\r\n--" + ATTACHMENT_BOUNDARY + "--\r\n\r\n--" + TOP_BOUNDARY + "\r\nContent-Type: "
+                + MimeTypes.SIGNATURE_BDOC + "\r\n\r\n<signature/>\r\n--" + TOP_BOUNDARY + "--\r\n"));
+
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    private static InputStream text(String text) {
+        return new ByteArrayInputStream(text.getBytes(UTF_8));
+    }
+
+    /**
+     * Stores the attachments like the server proxy does before passing them on.
+     */
+    private static final class StoringConsumer implements ProxyMessageConsumer {
+        private final List<CachingStream> stored = new ArrayList<>();
+
+        @Override
+        public void soap(SoapMessageImpl message, Map<String, String> additionalHeaders) {
+            // not used
+        }
+
+        @Override
+        public void restBody(InputStream content) {
+            // not used
+        }
+
+        @Override
+        public void attachment(String contentType, InputStream content, Map<String, String> additionalHeaders)
+                throws Exception {
+            CachingStream cache = new CachingStream();
+            stored.add(cache);
+
+            IOUtils.copyLarge(content, cache);
+            cache.close();
+        }
+
+        @Override
+        public void ocspResponse(OCSPResp resp) {
+            // not used
+        }
+
+        @Override
+        public void signature(SignatureData signature) {
+            // not used
+        }
+
+        @Override
+        public void fault(SoapFault fault) {
+            // not used
+        }
+
+        void consume() {
+            stored.forEach(CachingStream::consume);
+        }
+    }
+
+    /**
+     * Produces the given number of bytes by repeating a block.
+     */
+    private static final class RepeatingInputStream extends InputStream {
+        private final byte[] block;
+        private final long size;
+        private long position;
+
+        RepeatingInputStream(byte[] block, long size) {
+            this.block = block;
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if (position >= size) {
+                return -1;
+            }
+
+            return Byte.toUnsignedInt(block[(int) (position++ % block.length)]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= size) {
+                return -1;
+            }
+
+            int offset = (int) (position % block.length);
+            int count = (int) Math.min(Math.min(len, block.length - offset), size - position);
+            System.arraycopy(block, offset, b, off, count);
+            position += count;
+
+            return count;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.proxy.signedmessage.Verifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Verifier that lets the benchmarks wait for the attachment digests calculated on the hashing pool without
+ * verifying a signature. The signature verification waits for the digests itself.
+ */
+class DigestAwaitingVerifier extends Verifier {
+
+    private final List<CompletableFuture<byte[]>> digests = new ArrayList<>();
+
+    @Override
+    public void addPart(String name, String hashMethod, CompletableFuture<byte[]> data) {
+        digests.add(data);
+
+        super.addPart(name, hashMethod, data);
+    }
+
+    /**
+     * Waits until all the digests added so far have been calculated.
+     * @throws Exception if calculating a digest failed
+     */
+    void awaitDigests() throws Exception {
+        for (CompletableFuture<byte[]> digest : digests) {
+            digest.get();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.message.SaxSoapParserImpl;
+import ee.ria.xroad.common.message.SoapFault;
+import ee.ria.xroad.common.message.SoapMessageImpl;
+import ee.ria.xroad.common.signature.SignatureData;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MimeTypes;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a signed proxy message with 0, 1 or 10 attachments of 64 KiB and decoding it again,
+ * including the digests calculated for the signature. The signature itself is canned, signing is measured
+ * by the signature builder benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class ProxyMessageBenchmark {
+
+    private static final String TOP_BOUNDARY = "xtopbenchmark";
+
+    private static final SignatureData SIGNATURE = new SignatureData("<signature/>", null, null);
+
+    @Param({"0", "1", "10"})
+    private int attachments;
+
+    private SoapMessageImpl message;
+
+    private byte[] attachment;
+
+    private String contentType;
+
+    private byte[] encoded;
+
+    /**
+     * Loads the test query and encodes the message that is decoded by the benchmark.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        byte[] query = FileUtils.readFileToByteArray(new File("src/test/queries/simple.query"));
+        message = (SoapMessageImpl) new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8,
+                new ByteArrayInputStream(query));
+
+        attachment = new byte[64 * 1024];
+        new Random(1).nextBytes(attachment);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        contentType = encode(out);
+        encoded = out.toByteArray();
+    }
+
+    /**
+     * Encodes the message.
+     * @return content type of the encoded message
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public String encode() throws Exception {
+        return encode(NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    /**
+     * Decodes the message and waits until the digests of all the attachments have been calculated.
+     * @return number of decoded attachments
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    public int decode() throws Exception {
+        DigestAwaitingVerifier verifier = new DigestAwaitingVerifier();
+        ProxyMessageDecoder decoder = new ProxyMessageDecoder(new DrainingConsumer(), contentType, false,
+                CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID, verifier);
+        decoder.parse(new ByteArrayInputStream(encoded));
+
+        verifier.awaitDigests();
+
+        return decoder.getAttachmentCount();
+    }
+
+    private String encode(OutputStream out) throws Exception {
+        ProxyMessageEncoder encoder = new ProxyMessageEncoder(out, CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID,
+                TOP_BOUNDARY);
+
+        encoder.soap(message, Collections.emptyMap());
+
+        for (int i = 0; i < attachments; i++) {
+            encoder.attachment(MimeTypes.BINARY, new ByteArrayInputStream(attachment), Collections.emptyMap());
+        }
+
+        encoder.signature(SIGNATURE);
+        encoder.close();
+
+        return encoder.getContentType();
+    }
+
+    /**
+     * Reads the attachments and discards everything else.
+     */
+    private static final class DrainingConsumer implements ProxyMessageConsumer {
+        @Override
+        public void soap(SoapMessageImpl soap, Map<String, String> additionalHeaders) {
+            // not used
+        }
+
+        @Override
+        public void restBody(InputStream content) {
+            // not used
+        }
+
+        @Override
+        public void attachment(String type, InputStream content, Map<String, String> additionalHeaders)
+                throws Exception {
+            IOUtils.copy(content, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+
+        @Override
+        public void ocspResponse(OCSPResp resp) {
+            // not used
+        }
+
+        @Override
+        public void signature(SignatureData signature) {
+            // not used
+        }
+
+        @Override
+        public void fault(SoapFault fault) {
+            // not used
+        }
+    }
+}
@@ -33,22 +33,27 @@ import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.SystemPropertiesLoader;
 import ee.ria.xroad.common.Version;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConfUpdater;
 import ee.ria.xroad.common.conf.serverconf.CachingServerConfImpl;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.conf.serverconf.SnapshotServerConfImpl;
 import ee.ria.xroad.common.monitoring.MonitorAgent;
 import ee.ria.xroad.common.signature.BatchSigner;
 import ee.ria.xroad.common.util.AdminPort;
+import ee.ria.xroad.common.util.CachingStreamMetrics;
 import ee.ria.xroad.common.util.JobManager;
 import ee.ria.xroad.common.util.JsonUtils;
 import ee.ria.xroad.common.util.StartStop;
 import ee.ria.xroad.common.util.healthcheck.HealthCheckPort;
 import ee.ria.xroad.proxy.addon.AddOn;
 import ee.ria.xroad.proxy.clientproxy.ClientProxy;
+import ee.ria.xroad.proxy.clientproxy.PeerConnectionMetrics;
 import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.opmonitoring.OpMonitoring;
 import ee.ria.xroad.proxy.serverproxy.ServerProxy;
 import ee.ria.xroad.proxy.util.CertHashBasedOcspResponder;
-import ee.ria.xroad.proxy.util.GlobalConfUpdater;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+import ee.ria.xroad.proxy.util.ServerConfChangeChecker;
 import ee.ria.xroad.proxy.util.ServerConfStatsLogger;
 import ee.ria.xroad.signer.protocol.SignerClient;
 
@@ -186,6 +191,10 @@ public final class ProxyMain {
         MessageLog.init(actorSystem, jobManager);
         OpMonitoring.init(actorSystem);
 
+        CachingStreamMetrics.registerMBean();
+        ProxyStageMetrics.registerMBeans();
+        PeerConnectionMetrics.registerMBeans();
+
         for (AddOn addOn : addOns) {
             addOn.init(actorSystem);
         }
@@ -204,21 +213,47 @@ public final class ProxyMain {
 
         jobManager.registerRepeatingJob(GlobalConfUpdater.class, GLOBAL_CONF_UPDATE_REPEAT_INTERVAL);
         jobManager.registerRepeatingJob(ServerConfStatsLogger.class, STATS_LOG_REPEAT_INTERVAL);
+
+        if (SystemProperties.getServerConfChangeCheckInterval() > 0) {
+            jobManager.registerRepeatingJob(ServerConfChangeChecker.class,
+                    SystemProperties.getServerConfChangeCheckInterval());
+        }
     }
 
     private static void loadConfigurations() {
         log.trace("loadConfigurations()");
 
         try {
+            GlobalConf.reload();
+
             if (SystemProperties.getServerConfCachePeriod() > 0) {
-                ServerConf.reload(new CachingServerConfImpl());
+                CachingServerConfImpl serverConf = createCachingServerConf();
+                ServerConf.reload(serverConf);
+                GlobalConf.addChangeListener(serverConf::globalConfChanged);
+            } else if (SystemProperties.isServerConfSnapshotEnabled()) {
+                log.warn("{} is enabled but {} is not positive, the serverconf snapshot is not used",
+                        SystemProperties.SERVER_CONF_SNAPSHOT_ENABLED, SystemProperties.SERVER_CONF_CACHE_PERIOD);
             }
-            GlobalConf.reload();
         } catch (Exception e) {
             log.error("Failed to initialize configurations", e);
         }
     }
 
+    private static CachingServerConfImpl createCachingServerConf() {
+        if (!SystemProperties.isServerConfSnapshotEnabled()) {
+            return new CachingServerConfImpl();
+        }
+
+        if (SystemProperties.getServerConfChangeCheckInterval() <= 0) {
+            log.warn("{} is enabled but {} is not positive, the serverconf snapshot is not used",
+                    SystemProperties.SERVER_CONF_SNAPSHOT_ENABLED, SystemProperties.SERVER_CONF_CHANGE_CHECK_INTERVAL);
+
+            return new CachingServerConfImpl();
+        }
+
+        return new SnapshotServerConfImpl();
+    }
+
     private static AdminPort createAdminPort() throws Exception {
         AdminPort adminPort = new AdminPort(PortNumbers.ADMIN_PORT);
 
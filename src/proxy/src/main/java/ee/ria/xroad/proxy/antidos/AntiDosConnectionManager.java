@@ -30,41 +30,73 @@ import ee.ria.xroad.common.util.SystemMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages the incoming connections and prevents system resource exhaustion.
+ *
+ * Accepting a connection only looks up the partner by its address and appends the connection to the partner's queue.
+ * The known partner addresses are rebuilt when the global configuration changes, and the system resources are
+ * sampled periodically in the background instead of for every connection.
  */
 @Slf4j
 class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
-    // Tiny wrapper class for active connections of a partner
+    // Tiny wrapper class for active connections of a partner, guarded by the partner ring lock
     private class HostData {
-        final Deque<T> connections = new LinkedBlockingDeque<>();
+        final Deque<T> connections = new ArrayDeque<>();
+
+        // Whether the partner is in the ring of partners with waiting connections
+        boolean active;
     }
 
-    // The IP used for unknown members
-    private static final String UNKNOWN_ORG_IP = "0.0.0.0";
+    // How often the system resources are sampled
+    private static final long RESOURCE_SAMPLING_INTERVAL_MS = 100;
 
     // Holds the configuration
     protected final AntiDosConfiguration configuration;
 
-    // IP to HostData mapping
-    protected Map<String, HostData> database = new HashMap<>();
+    private final int minFreeFileHandles;
+    private final double maxCpuLoad;
+    private final double maxHeapUsage;
+
+    // The host data shared by all unknown members
+    private final HostData unknownPartner = new HostData();
+
+    // IP to HostData mapping of the known members, replaced when the global configuration changes
+    protected volatile Map<String, HostData> database = Collections.emptyMap();
 
-    // Buffer of partners with waiting connections
-    protected LinkedBlockingQueue<HostData> activePartners =
-            new LinkedBlockingQueue<>();
+    // Ring of partners with waiting connections, in the order they are served
+    protected final Deque<HostData> activePartners = new ArrayDeque<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition partnerAvailable = lock.newCondition();
 
     // Holds a cache of previously known member IPs.
     // Used to determine if should sync the database when conf changed.
-    private Set<String> previousKnownOrganizations = new HashSet<>();
+    private Set<String> previousKnownOrganizations = Collections.emptySet();
+
+    // Latest sampled resource usage
+    private volatile long sampledFreeFileHandles;
+    private volatile double sampledCpuLoad;
+    private volatile double sampledHeapUsage;
+
+    // Connections accepted since the resources were sampled, each of them uses a file handle
+    private final LongAdder acceptedSinceSample = new LongAdder();
+
+    private ScheduledExecutorService resourceSampler;
 
     AntiDosConnectionManager(AntiDosConfiguration configuration) {
         if (configuration == null) {
@@ -72,13 +104,30 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
         }
 
         this.configuration = configuration;
-        this.previousKnownOrganizations.add(UNKNOWN_ORG_IP);
-        this.database.put(UNKNOWN_ORG_IP, new HostData());
+        this.minFreeFileHandles = configuration.getMinFreeFileHandles();
+        this.maxCpuLoad = configuration.getMaxCpuLoad();
+        this.maxHeapUsage = configuration.getMaxHeapUsage();
     }
 
     void init() throws Exception {
         // Populate the database based on registered members' IPs.
         syncDatabase();
+
+        startResourceSampling();
+    }
+
+    void stop() {
+        if (resourceSampler != null) {
+            resourceSampler.shutdownNow();
+            resourceSampler = null;
+        }
+    }
+
+    /**
+     * Called on a background thread when the global configuration has changed.
+     */
+    void globalConfChanged() {
+        syncDatabase();
     }
 
     /**
@@ -86,7 +135,7 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
      * we have at least one free file handle.
      */
     boolean canAccept() {
-        long freeFileHandles = getFreeFileDescriptorCount();
+        long freeFileHandles = getFreeFileHandles();
         log.trace("canAccept({})", freeFileHandles);
         return freeFileHandles > 0;
     }
@@ -94,19 +143,27 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     /**
      * Adds the connection into the partner's connection queue.
      */
-    synchronized void accept(T connection) {
-        // We need to synchronize the database with the existing members.
-        syncDatabase();
+    void accept(T connection) {
+        acceptedSinceSample.increment();
 
-        // Find the host data for the incoming connection and register
-        // the new connection to this host data
+        // Find the host data for the incoming connection
         HostData currentPartner = getHostData(connection.getHostAddress());
-        currentPartner.connections.addFirst(connection);
 
-        // If the host data is not for an active partner,
-        // add it to the connection buffer as the newest partner.
-        if (!activePartners.contains(currentPartner)) {
-            activePartners.add(currentPartner);
+        lock.lock();
+        try {
+            // Register the new connection to this host data
+            currentPartner.connections.addFirst(connection);
+
+            // If the host data is not for an active partner,
+            // add it to the connection buffer as the newest partner.
+            if (!currentPartner.active) {
+                currentPartner.active = true;
+                activePartners.addLast(currentPartner);
+
+                partnerAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -132,19 +189,33 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
      * If not, then the connection is closed thus freeing some resources.
      */
     protected T getNextConnection() throws InterruptedException {
-        // Take the oldest partner from the buffer (blocks until available).
-        HostData oldestPartner = activePartners.take();
+        T sock;
 
-        // Take the oldest connection.
-        T sock = oldestPartner.connections.pollLast();
-        if (sock == null) {
-            return null;
+        lock.lockInterruptibly();
+        try {
+            // Take the oldest partner from the buffer (blocks until available).
+            while (activePartners.isEmpty()) {
+                partnerAvailable.await();
+            }
+
+            HostData oldestPartner = activePartners.pollFirst();
+
+            // Take the oldest connection.
+            sock = oldestPartner.connections.pollLast();
+
+            // If there are more connections left for this partner, add the partner
+            // back to the buffer as the newest partner.
+            if (!oldestPartner.connections.isEmpty()) {
+                activePartners.addLast(oldestPartner);
+            } else {
+                oldestPartner.active = false;
+            }
+        } finally {
+            lock.unlock();
         }
 
-        // If there are more connections left for this partner, add the partner
-        // back to the buffer as the first partner.
-        if (!oldestPartner.connections.isEmpty()) {
-            activePartners.add(oldestPartner);
+        if (sock == null) {
+            return null;
         }
 
         // Processing a connection consumes file handles and other resources
@@ -162,6 +233,36 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
         return null;
     }
 
+    /**
+     * Samples the system resource usage. Called periodically on a background thread.
+     */
+    protected void sampleResources() {
+        sampledFreeFileHandles = getFreeFileDescriptorCount();
+        sampledCpuLoad = getCpuLoad();
+        sampledHeapUsage = getHeapUsage();
+
+        acceptedSinceSample.reset();
+    }
+
+    protected void startResourceSampling() {
+        sampleResources();
+
+        resourceSampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AntiDosResourceSampler");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        resourceSampler.scheduleWithFixedDelay(() -> {
+            try {
+                sampleResources();
+            } catch (Exception e) {
+                log.error("Error sampling system resources", e);
+            }
+        }, RESOURCE_SAMPLING_INTERVAL_MS, RESOURCE_SAMPLING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
     protected long getFreeFileDescriptorCount() {
         return SystemMetrics.getFreeFileDescriptorCount();
     }
@@ -180,32 +281,36 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
         return SystemMetrics.getHeapUsage();
     }
 
+    private long getFreeFileHandles() {
+        // Assume every connection accepted since the last sample still holds its file handle
+        return sampledFreeFileHandles - acceptedSinceSample.sum();
+    }
+
     private HostData getHostData(String ip) {
-        return database.containsKey(ip)
-                ? database.get(ip) : database.get(UNKNOWN_ORG_IP);
+        return database.getOrDefault(ip, unknownPartner);
     }
 
-    private void syncDatabase() {
+    private synchronized void syncDatabase() {
         Set<String> knownAddresses = getAllAddresses();
 
-        if (previousKnownOrganizations.equals(knownAddresses)) {
+        if (knownAddresses == null || previousKnownOrganizations.equals(knownAddresses)) {
             // Nothing has changed, do not sync.
             return;
         }
 
+        Map<String, HostData> currentDatabase = database;
         Map<String, HostData> newDatabase = new HashMap<>();
 
-        // Retain existing members connections
-        database.keySet().stream()
-                .filter(knownAddresses::contains)
-                .forEach(existingAddress -> newDatabase.put(
-                        existingAddress, database.get(existingAddress)));
+        // Retain existing members connections and add new members
+        knownAddresses.forEach(knownAddress -> {
+            HostData existing = currentDatabase.get(knownAddress);
 
-        // Add new members
-        knownAddresses.stream()
-                .filter(knownAddress -> !database.containsKey(knownAddress))
-                .forEach(knownAddress ->
-                        registerHostData(newDatabase, knownAddress));
+            if (existing != null) {
+                newDatabase.put(knownAddress, existing);
+            } else {
+                registerHostData(newDatabase, knownAddress);
+            }
+        });
 
         previousKnownOrganizations = knownAddresses;
         database = newDatabase;
@@ -218,12 +323,9 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     }
 
     private boolean hasSufficientResources() {
-        long freeFileDescriptorCount = getFreeFileDescriptorCount();
-        int minFreeFileHandles = configuration.getMinFreeFileHandles();
-        double cpuLoad = getCpuLoad();
-        double maxCpuLoad = configuration.getMaxCpuLoad();
-        double heapUsage = getHeapUsage();
-        double maxHeapUsage = configuration.getMaxHeapUsage();
+        long freeFileDescriptorCount = getFreeFileHandles();
+        double cpuLoad = sampledCpuLoad;
+        double heapUsage = sampledHeapUsage;
 
         log.trace("Resource usage when considering connection:\n"
                 + "freeFileDescriptorCount: {} ( >= {})\n"
@@ -238,18 +340,15 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     }
 
     private static Set<String> getAllAddresses() {
-        Set<String> addresses = new HashSet<>();
         try {
-            addresses.addAll(GlobalConf.getKnownAddresses());
-        } catch (Exception ignored) {
-            // In case the conf was invalid, we do not sync. We should not
-            // log this exception, since this method might be
-            // called very frequently.
-            ignored.getClass(); //dummy code
-        }
+            return new HashSet<>(GlobalConf.getKnownAddresses());
+        } catch (Exception e) {
+            // In case the conf was invalid, we do not sync. This is called
+            // only when the global configuration changes.
+            log.warn("Could not read known addresses from global configuration", e);
 
-        addresses.add(UNKNOWN_ORG_IP);
-        return addresses;
+            return null;
+        }
     }
 
 }
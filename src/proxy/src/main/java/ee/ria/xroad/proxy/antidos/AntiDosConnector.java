@@ -24,7 +24,9 @@
  */
 package ee.ria.xroad.proxy.antidos;
 
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.util.SystemMetrics;
+import ee.ria.xroad.common.util.filewatcher.FileWatchListener;
 
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jetty.io.EndPoint;
@@ -73,6 +75,8 @@ public class AntiDosConnector extends ServerConnector {
         }
     };
 
+    private final FileWatchListener globalConfChangeListener = manager::globalConfChanged;
+
     /**
      * Construct a new AntiDos connector.
      * @param server the server
@@ -98,9 +102,19 @@ public class AntiDosConnector extends ServerConnector {
 
         manager.init();
 
+        GlobalConf.addChangeListener(globalConfChangeListener);
+
         getExecutor().execute(new QueueManager());
     }
 
+    @Override
+    protected void doStop() throws Exception {
+        GlobalConf.removeChangeListener(globalConfChangeListener);
+        manager.stop();
+
+        super.doStop();
+    }
+
     @Override
     public void accept(int acceptorID) throws IOException {
         if (manager.canAccept()) {
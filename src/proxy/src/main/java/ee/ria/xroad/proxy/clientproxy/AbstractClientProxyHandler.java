@@ -35,6 +35,8 @@ import ee.ria.xroad.common.util.HandlerBase;
 import ee.ria.xroad.common.util.PerformanceLogger;
 import ee.ria.xroad.proxy.opmonitoring.OpMonitoring;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics.Stage;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -142,7 +144,9 @@ abstract class AbstractClientProxyHandler extends HandlerBase {
                 if (storeOpMonitoringData) {
                     updateOpMonitoringResponseOutTs(opMonitoringData);
 
+                    long storeStart = System.nanoTime();
                     OpMonitoring.store(opMonitoringData);
+                    ProxyStageMetrics.record(Stage.CLIENT_OP_MONITORING, storeStart);
                 }
 
                 logPerformanceEnd(start);
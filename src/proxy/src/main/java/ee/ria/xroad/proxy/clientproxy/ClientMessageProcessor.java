@@ -25,7 +25,6 @@
 package ee.ria.xroad.proxy.clientproxy;
 
 import ee.ria.xroad.common.CodedException;
-import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.IsAuthenticationData;
 import ee.ria.xroad.common.identifier.CentralServiceId;
@@ -50,12 +49,13 @@ import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics.Stage;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.HttpClient;
-import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.util.Arrays;
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.AttributesImpl;
@@ -69,7 +69,6 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.Writer;
 import java.net.URI;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
@@ -251,7 +250,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
             try {
                 opMonitoringData.setRequestOutTs(getEpochMillisecond());
+                long start = System.nanoTime();
                 httpSender.doPost(getServiceAddress(addresses), reqIns, CHUNKED_LENGTH, outputContentType);
+                ProxyStageMetrics.record(Stage.CLIENT_SERVER_PROXY, start);
                 opMonitoringData.setResponseInTs(getEpochMillisecond());
             } catch (Exception e) {
                 // Failed to connect to server proxy
@@ -275,7 +276,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         ProxyMessageDecoder decoder = new ProxyMessageDecoder(response, httpSender.getResponseContentType(),
                 getHashAlgoId(httpSender));
         try {
+            long start = System.nanoTime();
             decoder.parse(httpSender.getResponseContent());
+            ProxyStageMetrics.record(Stage.CLIENT_RESPONSE_PARSE, start);
         } catch (CodedException ex) {
             throw ex.withPrefix(X_SERVICE_FAILED_X);
         }
@@ -285,7 +288,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         // Ensure we have the required parts.
         checkResponse();
 
+        long start = System.nanoTime();
         decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        ProxyStageMetrics.record(Stage.CLIENT_VERIFY, start);
     }
 
     private void updateOpMonitoringDataByResponse(ProxyMessageDecoder decoder) {
@@ -358,7 +363,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
     private void logResponseMessage() throws Exception {
         log.trace("logResponseMessage()");
 
+        long start = System.nanoTime();
         MessageLog.log(response.getSoap(), response.getSignature(), true, xRequestId);
+        ProxyStageMetrics.record(Stage.CLIENT_MESSAGE_LOG, start);
     }
 
     private void sendResponse() throws Exception {
@@ -460,8 +467,12 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
     private class SoapMessageHandler implements SoapMessageDecoder.Callback {
 
+        private final long parseStart = System.nanoTime();
+
         @Override
         public void soap(SoapMessage message, Map<String, String> headers) throws Exception {
+            ProxyStageMetrics.record(Stage.CLIENT_REQUEST_PARSE, parseStart);
+
             if (log.isTraceEnabled()) {
                 log.trace("soap({})", message.getXml());
             }
@@ -514,7 +525,10 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             updateOpMonitoringData();
 
             try {
+                long start = System.nanoTime();
                 request.sign(KeyConf.getSigningCtx(requestSoap.getClient()));
+                ProxyStageMetrics.record(Stage.CLIENT_SIGN, start);
+
                 logRequestMessage();
                 request.writeSignature();
             } catch (Exception ex) {
@@ -533,7 +547,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         private void logRequestMessage() throws Exception {
             log.trace("logRequestMessage()");
 
+            long start = System.nanoTime();
             MessageLog.log(requestSoap, request.getSignature(), true, xRequestId);
+            ProxyStageMetrics.record(Stage.CLIENT_MESSAGE_LOG, start);
         }
 
         @Override
@@ -545,11 +561,8 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         }
 
         private void writeOcspResponses() throws Exception {
-            CertChain chain = KeyConf.getAuthKey().getCertChain();
-            // exclude TopCA
-            List<OCSPResp> ocspResponses = KeyConf.getAllOcspResponses(chain.getAllCertsWithoutTrustedRoot());
-
-            for (OCSPResp ocsp : ocspResponses) {
+            // excludes TopCA, encoded once per OCSP refresh
+            for (byte[] ocsp : KeyConf.getEncodedAuthOcspResponses()) {
                 request.ocspResponse(ocsp);
             }
         }
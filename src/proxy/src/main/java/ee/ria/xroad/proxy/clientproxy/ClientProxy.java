@@ -145,6 +145,10 @@ public class ClientProxy implements StartStop {
 
         cb.setDefaultRequestConfig(rb.build());
 
+        // Keep pooled connections alive according to the traffic to each server proxy
+        cb.setKeepAliveStrategy(PeerConnectionMetrics.keepAliveStrategy());
+        cb.addInterceptorLast(PeerConnectionMetrics.requestCounter());
+
         // Disable request retry
         cb.setRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
 
@@ -25,7 +25,6 @@
 package ee.ria.xroad.proxy.clientproxy;
 
 import ee.ria.xroad.common.CodedException;
-import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.IsAuthenticationData;
 import ee.ria.xroad.common.identifier.ClientId;
@@ -35,6 +34,7 @@ import ee.ria.xroad.common.message.RestResponse;
 import ee.ria.xroad.common.monitoring.MessageInfo;
 import ee.ria.xroad.common.monitoring.MonitorAgent;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.CacheInputStream;
 import ee.ria.xroad.common.util.CachingStream;
 import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.common.util.HttpSender;
@@ -44,6 +44,8 @@ import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics.Stage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
@@ -180,7 +182,9 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         try {
             final String contentType = MimeUtils.mpMixedContentType("xtop" + RandomStringUtils.randomAlphabetic(30));
             opMonitoringData.setRequestOutTs(getEpochMillisecond());
+            long start = System.nanoTime();
             httpSender.doPost(getServiceAddress(addresses), new ProxyMessageEntity(contentType));
+            ProxyStageMetrics.record(Stage.CLIENT_SERVER_PROXY, start);
             opMonitoringData.setResponseInTs(getEpochMillisecond());
         } catch (Exception e) {
             MonitorAgent.serverProxyFailed(createRequestMessageInfo());
@@ -193,7 +197,9 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         ProxyMessageDecoder decoder = new ProxyMessageDecoder(response, httpSender.getResponseContentType(),
                 getHashAlgoId(httpSender));
         try {
+            long start = System.nanoTime();
             decoder.parse(httpSender.getResponseContent());
+            ProxyStageMetrics.record(Stage.CLIENT_RESPONSE_PARSE, start);
         } catch (CodedException ex) {
             throw ex.withPrefix(X_SERVICE_FAILED_X);
         }
@@ -201,7 +207,9 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         // Ensure we have the required parts.
         checkResponse();
         opMonitoringData.setRestResponseStatusCode(response.getRestResponse().getResponseCode());
+        long start = System.nanoTime();
         decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        ProxyStageMetrics.record(Stage.CLIENT_VERIFY, start);
     }
 
     @Override
@@ -257,10 +265,12 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
     }
 
     private void logResponseMessage() {
+        long start = System.nanoTime();
         MessageLog.log(restRequest,
                 response.getRestResponse(),
                 response.getSignature(),
                 response.getRestBody(), true, xRequestId);
+        ProxyStageMetrics.record(Stage.CLIENT_MESSAGE_LOG, start);
     }
 
     private void sendResponse() throws Exception {
@@ -323,9 +333,7 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
                 final ProxyMessageEncoder enc = new ProxyMessageEncoder(outstream,
                         CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID, getBoundary(contentType.getValue()));
 
-                final CertChain chain = KeyConf.getAuthKey().getCertChain();
-                KeyConf.getAllOcspResponses(chain.getAllCertsWithoutTrustedRoot())
-                        .forEach(resp -> enc.ocspResponse(resp));
+                KeyConf.getEncodedAuthOcspResponses().forEach(enc::ocspResponse);
 
                 enc.restRequest(restRequest);
 
@@ -340,15 +348,12 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
                         try (TeeInputStream tee = new TeeInputStream(in, cache)) {
                             cache.write(buf, 0, count);
                             enc.restBody(buf, count, tee);
-                            enc.sign(KeyConf.getSigningCtx(senderId));
-                            MessageLog.log(restRequest, enc.getSignature(), cache.getCachedContents(), true,
-                                    xRequestId);
+                            signAndLog(enc, cache.getCachedContents());
                         } finally {
                             cache.consume();
                         }
                     } else {
-                        enc.sign(KeyConf.getSigningCtx(senderId));
-                        MessageLog.log(restRequest, enc.getSignature(), null, true, xRequestId);
+                        signAndLog(enc, null);
                     }
                 }
 
@@ -365,6 +370,16 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
             }
         }
 
+        private void signAndLog(ProxyMessageEncoder enc, CacheInputStream body) throws Exception {
+            long start = System.nanoTime();
+            enc.sign(KeyConf.getSigningCtx(senderId));
+            ProxyStageMetrics.record(Stage.CLIENT_SIGN, start);
+
+            start = System.nanoTime();
+            MessageLog.log(restRequest, enc.getSignature(), body, true, xRequestId);
+            ProxyStageMetrics.record(Stage.CLIENT_MESSAGE_LOG, start);
+        }
+
         @Override
         public boolean isStreaming() {
             return true;
@@ -144,9 +144,15 @@ class FastestConnectionSelectingSSLSocketFactory
             try {
                 // Select the fastest address if more than one address is provided.
                 // see also FastestSocketSelector
+                long connectStart = System.nanoTime();
                 selectedSocket = selector.select(connectTimeout);
+
+                PeerConnectionMetrics.Peer peer =
+                        PeerConnectionMetrics.getPeer(PeerConnectionMetrics.peerOf(selectedSocket.getSocket()));
+                peer.connected(connectStart);
+
                 sslSocket = wrapToSSLSocket(selectedSocket.getSocket(), connectTimeout);
-                prepareAndVerify(sslSocket, selectedSocket.getUri(), context);
+                prepareAndVerify(sslSocket, peer, selectedSocket.getUri(), context);
                 configureSocket(sslSocket);
                 log.trace("Connected to {}", selectedSocket.getUri());
                 updateOpMonitoringData(context, selectedSocket);
@@ -237,10 +243,10 @@ class FastestConnectionSelectingSSLSocketFactory
         socket.setKeepAlive(true);
     }
 
-    private void prepareAndVerify(SSLSocket sslSocket, URI selectedAddress,
+    private void prepareAndVerify(SSLSocket sslSocket, PeerConnectionMetrics.Peer peer, URI selectedAddress,
             HttpContext context) throws IOException {
         prepareSocket(sslSocket);
-        verify(context, sslSocket.getSession(), selectedAddress);
+        verify(context, peer.handshake(sslSocket), selectedAddress);
     }
 
     private SSLSocket wrapToSSLSocket(Socket socket, int connectTimeout) throws IOException {
@@ -250,8 +256,10 @@ class FastestConnectionSelectingSSLSocketFactory
         //XRDDEV-248: use connection timeout as read timeout during SSL handshake
         socket.setSoTimeout(connectTimeout);
         socket.setSoLinger(false, 0);
+        // The host and port identify the cached TLS session to resume. Use the host the socket was connected to
+        // instead of getHostName(), which does a reverse lookup for every connection to an address.
         Socket sslSocket = socketfactory.createSocket(socket,
-                socket.getInetAddress().getHostName(), socket.getPort(), SystemProperties.isUseSslSocketAutoClose());
+                PeerConnectionMetrics.peerOf(socket), socket.getPort(), SystemProperties.isUseSslSocketAutoClose());
         if (sslSocket instanceof SSLSocket) {
             return (SSLSocket)sslSocket;
         }
@@ -0,0 +1,303 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics of the client proxy connections to each server proxy (peer): new connections and their connect time,
+ * full and resumed TLS handshakes and their duration, and requests sent over reused pooled connections.
+ *
+ * The keep-alive time of a pooled connection is derived from the request interval observed for the peer, so that
+ * connections to busy peers stay open for the next request and connections to rarely used peers are not held for
+ * nothing. The statistics are reported over JMX.
+ */
+@Slf4j
+public final class PeerConnectionMetrics {
+
+    /** Weight of the latest request interval in the smoothed interval of a peer. */
+    private static final double INTERVAL_SMOOTHING = 0.2;
+
+    /** Number of smoothed request intervals a pooled connection is kept alive. */
+    private static final int KEEP_ALIVE_INTERVALS = 2;
+
+    private static final MetricRegistry REGISTRY = new MetricRegistry();
+
+    private static final ConcurrentMap<String, Peer> PEERS = new ConcurrentHashMap<>();
+
+    private static JmxReporter reporter;
+
+    private PeerConnectionMetrics() {
+    }
+
+    /**
+     * @param peer the peer host
+     * @return the statistics of the peer
+     */
+    public static Peer getPeer(String peer) {
+        return PEERS.computeIfAbsent(peer, Peer::new);
+    }
+
+    /**
+     * Starts reporting the statistics over JMX.
+     */
+    public static synchronized void registerMBeans() {
+        if (reporter == null) {
+            reporter = JmxReporter.forRegistry(REGISTRY)
+                    .inDomain(ProxyStageMetrics.JMX_DOMAIN)
+                    .convertDurationsTo(TimeUnit.MILLISECONDS)
+                    .build();
+            reporter.start();
+        }
+    }
+
+    /**
+     * Returns the peer host of a connected socket without a reverse name lookup.
+     * @param socket the socket
+     * @return the host name the socket was connected to, or its address if it was connected to an address
+     */
+    static String peerOf(Socket socket) {
+        SocketAddress address = socket.getRemoteSocketAddress();
+
+        return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getHostString() : "unknown";
+    }
+
+    /**
+     * @return response interceptor that counts the requests sent to each peer and whether the connection was reused
+     */
+    static HttpResponseInterceptor requestCounter() {
+        return (response, context) -> {
+            ManagedHttpClientConnection connection = getConnection(context);
+
+            if (connection != null) {
+                getPeer(peerOf(connection.getSocket()))
+                        .requestSent(connection.getMetrics().getRequestCount() > 1);
+            }
+        };
+    }
+
+    /**
+     * @return keep-alive strategy that keeps pooled connections open according to the request interval of the peer,
+     * but not longer than the server allows
+     */
+    static ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            ManagedHttpClientConnection connection = getConnection(context);
+
+            if (connection == null) {
+                return serverKeepAlive;
+            }
+
+            long keepAlive = getPeer(peerOf(connection.getSocket())).getKeepAliveMillis();
+
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive) : keepAlive;
+        };
+    }
+
+    /**
+     * Calculates the keep-alive time for a smoothed request interval.
+     * @param intervalMillis the smoothed request interval, negative if not known yet
+     * @param minMillis the minimum keep-alive time
+     * @param maxMillis the maximum keep-alive time
+     * @return keep-alive time in milliseconds
+     */
+    static long keepAliveMillis(double intervalMillis, long minMillis, long maxMillis) {
+        if (intervalMillis < 0) {
+            return maxMillis;
+        }
+
+        if (intervalMillis > maxMillis) {
+            // The next request is not expected while a connection could be kept open
+            return minMillis;
+        }
+
+        return Math.max(minMillis, Math.min(maxMillis, (long) (intervalMillis * KEEP_ALIVE_INTERVALS)));
+    }
+
+    private static ManagedHttpClientConnection getConnection(HttpContext context) {
+        try {
+            Object connection = context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+
+            if (connection instanceof ManagedHttpClientConnection && ((ManagedHttpClientConnection) connection)
+                    .isOpen()) {
+                return (ManagedHttpClientConnection) connection;
+            }
+        } catch (RuntimeException e) {
+            // The connection has already been released back to the pool
+            log.trace("Connection not available", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Connection statistics of one peer.
+     */
+    public static final class Peer {
+
+        @Getter
+        private final String name;
+
+        private final Counter connections;
+        private final Timer connectTime;
+        private final Timer fullHandshakes;
+        private final Timer resumedHandshakes;
+        private final Counter requests;
+        private final Counter reusedRequests;
+
+        private long lastRequestNanos;
+        private double requestIntervalMillis = -1;
+
+        private Peer(String name) {
+            this.name = name;
+
+            String prefix = MetricRegistry.name("clientProxyPeer", name);
+
+            connections = REGISTRY.counter(MetricRegistry.name(prefix, "connections"));
+            connectTime = REGISTRY.timer(MetricRegistry.name(prefix, "connectTime"));
+            fullHandshakes = REGISTRY.timer(MetricRegistry.name(prefix, "fullHandshakes"));
+            resumedHandshakes = REGISTRY.timer(MetricRegistry.name(prefix, "resumedHandshakes"));
+            requests = REGISTRY.counter(MetricRegistry.name(prefix, "requests"));
+            reusedRequests = REGISTRY.counter(MetricRegistry.name(prefix, "reusedRequests"));
+
+            REGISTRY.register(MetricRegistry.name(prefix, "keepAliveTime"), (Gauge<Long>) this::getKeepAliveMillis);
+        }
+
+        /**
+         * Records a new connection to the peer.
+         * @param startNanos value of {@link System#nanoTime()} when connecting started
+         */
+        void connected(long startNanos) {
+            connections.inc();
+            connectTime.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Completes the TLS handshake of a new connection and records whether the session was resumed.
+         * @param socket the connected socket
+         * @return the TLS session
+         */
+        SSLSession handshake(SSLSocket socket) {
+            long startMillis = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+
+            SSLSession session = socket.getSession();
+
+            // A resumed session was created by an earlier handshake
+            Timer timer = session.getCreationTime() < startMillis ? resumedHandshakes : fullHandshakes;
+            timer.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+            return session;
+        }
+
+        synchronized void requestSent(boolean reused) {
+            requests.inc();
+
+            if (reused) {
+                reusedRequests.inc();
+            }
+
+            long now = System.nanoTime();
+
+            if (lastRequestNanos != 0) {
+                double interval = TimeUnit.NANOSECONDS.toMillis(now - lastRequestNanos);
+
+                requestIntervalMillis = requestIntervalMillis < 0 ? interval
+                        : requestIntervalMillis + INTERVAL_SMOOTHING * (interval - requestIntervalMillis);
+            }
+
+            lastRequestNanos = now;
+        }
+
+        /**
+         * @return the time pooled connections to the peer are kept alive, in milliseconds
+         */
+        public synchronized long getKeepAliveMillis() {
+            return keepAliveMillis(requestIntervalMillis, SystemProperties.getClientProxyMinKeepAliveTime(),
+                    SystemProperties.getClientProxyIdleConnectionMonitorIdleTime());
+        }
+
+        /**
+         * @return the number of connections opened to the peer
+         */
+        public long getConnections() {
+            return connections.getCount();
+        }
+
+        /**
+         * @return the number of full TLS handshakes with the peer
+         */
+        public long getFullHandshakes() {
+            return fullHandshakes.getCount();
+        }
+
+        /**
+         * @return the number of TLS handshakes with the peer that resumed an earlier session
+         */
+        public long getResumedHandshakes() {
+            return resumedHandshakes.getCount();
+        }
+
+        /**
+         * @return the number of requests sent to the peer
+         */
+        public long getRequests() {
+            return requests.getCount();
+        }
+
+        /**
+         * @return the number of requests sent to the peer over a connection used before
+         */
+        public long getReusedRequests() {
+            return reusedRequests.getCount();
+        }
+    }
+}
@@ -48,6 +48,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CANNOT_CREATE_SIGNATURE;
 import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
@@ -63,6 +65,9 @@ class CachingKeyConfImpl extends KeyConfImpl {
 
     private final FileContentChangeChecker keyConfChangeChecker;
 
+    // Set when the key or global configuration has changed, consumed on the next access
+    private final AtomicBoolean keyConfChanged = new AtomicBoolean();
+
     private static final Cache<ClientId, SigningInfo> SIGNING_INFO_CACHE;
 
     static {
@@ -80,6 +85,9 @@ class CachingKeyConfImpl extends KeyConfImpl {
                 .build();
     }
 
+    // Encoded OCSP responses of the authentication certificate chain, replaced when they may have been refreshed
+    private static final AtomicReference<EncodedOcspResponses> AUTH_OCSP_RESPONSES = new AtomicReference<>();
+
     CachingKeyConfImpl() throws Exception {
         keyConfChangeChecker = getKeyConfChangeChecker();
     }
@@ -113,6 +121,7 @@ class CachingKeyConfImpl extends KeyConfImpl {
     protected static void invalidateCaches() {
         AUTH_KEY_CACHE.invalidateAll();
         SIGNING_INFO_CACHE.invalidateAll();
+        AUTH_OCSP_RESPONSES.set(null);
     }
 
 
@@ -143,13 +152,51 @@ class CachingKeyConfImpl extends KeyConfImpl {
         }
     }
 
-    boolean keyConfHasChanged() {
+    @Override
+    public List<byte[]> getEncodedAuthOcspResponses() throws Exception {
+        CertChain chain = getAuthKey().getCertChain();
+        Date now = new Date();
+
+        EncodedOcspResponses responses = AUTH_OCSP_RESPONSES.get();
+        if (responses == null || responses.getCertChain() != chain || !responses.verifyValidity(now)) {
+            responses = EncodedOcspResponses.create(chain,
+                    KeyConf.getAllOcspResponses(this, chain.getAllCertsWithoutTrustedRoot()), now);
+            AUTH_OCSP_RESPONSES.set(responses);
+        }
+
+        return responses.getEncoded();
+    }
+
+    /**
+     * Called on a background thread when the key configuration file has been modified.
+     * The file contents are compared, so that events not changing the contents do not
+     * invalidate the caches.
+     */
+    void keyConfModified() {
+        boolean changed;
         try {
-            return keyConfChangeChecker.hasChanged();
+            changed = keyConfChangeChecker.hasChanged();
         } catch (Exception e) {
             log.error("Failed to check if key conf has changed", e);
-            return true;
+            changed = true;
         }
+
+        if (changed) {
+            keyConfChanged.set(true);
+        }
+    }
+
+    /**
+     * Called on a background thread when the global configuration has been reloaded.
+     * The caches are invalidated, since the cached certificate chains and OCSP responses
+     * were verified against the previous global configuration.
+     */
+    void globalConfChanged() {
+        keyConfChanged.set(true);
+    }
+
+    boolean keyConfHasChanged() {
+        return keyConfChanged.get() && keyConfChanged.getAndSet(false);
     }
 
     protected AuthKeyInfo getAuthKeyInfo(SecurityServerId serverId) throws Exception {
@@ -0,0 +1,80 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.cert.CertChain;
+import ee.ria.xroad.common.conf.globalconfextension.OcspFetchInterval;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DER encoded OCSP responses of a certificate chain, shared between requests
+ * until the responses may have been refreshed.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+class EncodedOcspResponses extends AbstractDateValidatableInfo {
+
+    // The signer refreshes the responses at most this often
+    private static final long REFRESH_INTERVAL_MILLIS =
+            TimeUnit.SECONDS.toMillis(OcspFetchInterval.OCSP_FETCH_INTERVAL_MIN);
+
+    private final CertChain certChain;
+    private final List<byte[]> encoded;
+    private final Date validUntil;
+
+    static EncodedOcspResponses create(CertChain certChain, List<OCSPResp> responses, Date atDate)
+            throws Exception {
+        Date validUntil = new Date(atDate.getTime() + REFRESH_INTERVAL_MILLIS);
+
+        List<byte[]> encoded = new ArrayList<>(responses.size());
+        for (OCSPResp response : responses) {
+            encoded.add(response.getEncoded());
+
+            BasicOCSPResp basicResp = (BasicOCSPResp) response.getResponseObject();
+            Date nextUpdate = basicResp.getResponses()[0].getNextUpdate();
+            if (nextUpdate != null && nextUpdate.before(validUntil)) {
+                validUntil = nextUpdate;
+            }
+        }
+
+        return new EncodedOcspResponses(certChain, Collections.unmodifiableList(encoded), validUntil);
+    }
+
+    @Override
+    boolean verifyValidity(Date atDate) {
+        return atDate.before(validUntil);
+    }
+}
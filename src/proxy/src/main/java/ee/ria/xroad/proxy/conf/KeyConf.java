@@ -25,16 +25,22 @@
 package ee.ria.xroad.proxy.conf;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.ConfigurationChangeBus;
 import ee.ria.xroad.common.conf.globalconf.AuthKey;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.identifier.ClientId;
 
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CANNOT_CREATE_SIGNATURE;
 import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_KEYCONF;
@@ -58,6 +64,8 @@ public final class KeyConf {
     // If this error is not null, getInstance will throw it.
     private static volatile CodedException initializationError = null;
 
+    private static final AtomicBoolean CHANGE_DETECTION_STARTED = new AtomicBoolean();
+
     private KeyConf() {
     }
 
@@ -170,8 +178,13 @@ public final class KeyConf {
             List<X509Certificate> certs) throws Exception {
         LOG.trace("getAllOcspResponses({} certs)", certs.size());
 
+        return getAllOcspResponses(getInstance(), certs);
+    }
+
+    static List<OCSPResp> getAllOcspResponses(KeyConfProvider provider,
+            List<X509Certificate> certs) throws Exception {
         List<String> missingResponses = new ArrayList<>();
-        List<OCSPResp> responses = getInstance().getOcspResponses(certs);
+        List<OCSPResp> responses = provider.getOcspResponses(certs);
         for (int i = 0; i < certs.size(); i++) {
             if (responses.get(i) == null) {
                 missingResponses.add(calculateCertHexHash(certs.get(i)));
@@ -187,6 +200,18 @@ public final class KeyConf {
         return responses;
     }
 
+    /**
+     * @return the DER encoded OCSP responses of the authentication
+     * certificate chain (excluding the trusted root). The responses are
+     * shared between requests and must not be modified.
+     * @throws Exception if OCSP response could not be found for at least one certificate
+     */
+    public static List<byte[]> getEncodedAuthOcspResponses() throws Exception {
+        LOG.trace("getEncodedAuthOcspResponses()");
+
+        return getInstance().getEncodedAuthOcspResponses();
+    }
+
     /**
      * @param certs list of certificates
      * @return OCSP responses for given certificates. For OCSP responses that
@@ -217,11 +242,44 @@ public final class KeyConf {
 
     // ------------------------------------------------------------------------
 
+    private static void startChangeDetection() {
+        if (!CHANGE_DETECTION_STARTED.compareAndSet(false, true)) {
+            return;
+        }
+
+        Path keyConfFile = Paths.get(SystemProperties.getKeyConfFile());
+
+        if (!ConfigurationChangeBus.subscribe(keyConfFile, KeyConf::keyConfModified)) {
+            LOG.warn("Changes to {} will not be detected until global configuration changes", keyConfFile);
+        }
+
+        // The cached certificate chains are verified against the global configuration
+        GlobalConf.addChangeListener(KeyConf::globalConfChanged);
+    }
+
+    private static void keyConfModified() {
+        KeyConfProvider current = instance;
+
+        if (current instanceof CachingKeyConfImpl) {
+            ((CachingKeyConfImpl) current).keyConfModified();
+        }
+    }
+
+    private static void globalConfChanged() {
+        KeyConfProvider current = instance;
+
+        if (current instanceof CachingKeyConfImpl) {
+            ((CachingKeyConfImpl) current).globalConfChanged();
+        }
+    }
+
     private static void initInstance() {
         instance = null;
         try {
             instance = new CachingKeyConfImpl();
             initializationError = null;
+
+            startChangeDetection();
         } catch (Exception ex) {
             initializationError = translateWithPrefix(X_MALFORMED_KEYCONF, ex);
             throw initializationError;
@@ -24,12 +24,14 @@
  */
 package ee.ria.xroad.proxy.conf;
 
+import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.AuthKey;
 import ee.ria.xroad.common.identifier.ClientId;
 
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -82,4 +84,22 @@ public interface KeyConfProvider {
     void setOcspResponses(List<X509Certificate> certs,
             List<OCSPResp> responses) throws Exception;
 
+    /**
+     * @return DER encoded OCSP responses for the certificates of the
+     * authentication certificate chain, excluding the trusted root.
+     * The returned list and arrays must not be modified.
+     * @throws Exception if OCSP response could not be found for at least one certificate
+     */
+    default List<byte[]> getEncodedAuthOcspResponses() throws Exception {
+        CertChain chain = getAuthKey().getCertChain();
+        List<OCSPResp> responses = KeyConf.getAllOcspResponses(this, chain.getAllCertsWithoutTrustedRoot());
+
+        List<byte[]> encoded = new ArrayList<>(responses.size());
+        for (OCSPResp response : responses) {
+            encoded.add(response.getEncoded());
+        }
+
+        return encoded;
+    }
+
 }
@@ -0,0 +1,255 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.bouncycastle.operator.DigestCalculator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output stream that calculates the digest of the written data on a shared hashing pool, so that the
+ * thread writing the data (the MIME parser) is not held up by the digest calculation.
+ *
+ * Data is handed to the pool in chunks, which are digested in order by at most one pool thread at a time.
+ * The number of chunks waiting to be digested is bounded; the writer blocks only when the pool falls behind.
+ * Content smaller than a single chunk is digested on the writing thread when the stream is closed.
+ */
+class ParallelDigestOutputStream extends OutputStream {
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int MAX_PENDING_CHUNKS = 16;
+
+    private static final int THREADS = SystemProperties.getAttachmentDigestThreads();
+
+    // Marks the end of the data in the chunk queue
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final Executor executor;
+    private final DigestCalculator digestCalculator;
+    private final OutputStream digestStream;
+
+    private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<>();
+    private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final Semaphore pendingChunks = new Semaphore(MAX_PENDING_CHUNKS);
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final CompletableFuture<byte[]> digest = new CompletableFuture<>();
+
+    // Accessed only by the draining thread
+    private IOException failure;
+
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int bufferLength;
+    private boolean dispatched;
+    private boolean closed;
+
+    /**
+     * @return true if received attachments should be digested on the hashing pool
+     */
+    static boolean isEnabled() {
+        return THREADS > 0;
+    }
+
+    /**
+     * Creates a stream digesting on the shared hashing pool.
+     * @param digestCalculator calculator for the digest
+     */
+    ParallelDigestOutputStream(DigestCalculator digestCalculator) {
+        this(PoolHolder.POOL, digestCalculator);
+    }
+
+    ParallelDigestOutputStream(Executor executor, DigestCalculator digestCalculator) {
+        this.executor = executor;
+        this.digestCalculator = digestCalculator;
+        this.digestStream = digestCalculator.getOutputStream();
+    }
+
+    /**
+     * @return the digest of the data, completed after the stream has been closed and all the data digested
+     */
+    CompletableFuture<byte[]> getDigest() {
+        return digest;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        int offset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            int count = Math.min(remaining, CHUNK_SIZE - bufferLength);
+            System.arraycopy(b, offset, buffer, bufferLength, count);
+
+            bufferLength += count;
+            offset += count;
+            remaining -= count;
+
+            if (bufferLength == CHUNK_SIZE) {
+                dispatch();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        if (!dispatched) {
+            // Everything fits into one chunk, not worth handing over to the pool
+            try {
+                digestStream.write(buffer, 0, bufferLength);
+                digestStream.close();
+                digest.complete(digestCalculator.getDigest());
+            } catch (IOException e) {
+                digest.completeExceptionally(e);
+            }
+
+            return;
+        }
+
+        if (bufferLength > 0) {
+            dispatch();
+        }
+
+        chunks.add(END);
+        scheduleDrain();
+    }
+
+    private void dispatch() throws IOException {
+        try {
+            pendingChunks.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while waiting for the digest calculation");
+        }
+
+        chunks.add(ByteBuffer.wrap(buffer, 0, bufferLength));
+        dispatched = true;
+
+        byte[] free = freeBuffers.poll();
+        buffer = free != null ? free : new byte[CHUNK_SIZE];
+        bufferLength = 0;
+
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            ByteBuffer chunk;
+            while ((chunk = chunks.poll()) != null) {
+                if (chunk == END) {
+                    complete();
+
+                    return;
+                }
+
+                digestChunk(chunk);
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // A chunk may have been added after the queue was found empty but before the flag was cleared
+        if (!chunks.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void digestChunk(ByteBuffer chunk) {
+        if (failure == null) {
+            try {
+                digestStream.write(chunk.array(), 0, chunk.limit());
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        freeBuffers.add(chunk.array());
+        pendingChunks.release();
+    }
+
+    private void complete() {
+        try {
+            digestStream.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        if (failure != null) {
+            digest.completeExceptionally(failure);
+        } else {
+            digest.complete(digestCalculator.getDigest());
+        }
+    }
+
+    private static final class PoolHolder {
+        private static final AtomicInteger THREAD_NO = new AtomicInteger();
+
+        private static final ExecutorService POOL = Executors.newFixedThreadPool(Math.max(THREADS, 1), r -> {
+            Thread thread = new Thread(r, "AttachmentDigester-" + THREAD_NO.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+}
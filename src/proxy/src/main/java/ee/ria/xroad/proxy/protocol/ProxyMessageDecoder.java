@@ -87,7 +87,7 @@ public class ProxyMessageDecoder {
     /**
      * The verifier that verifies the signature.
      */
-    private final Verifier verifier = new Verifier();
+    private final Verifier verifier;
 
     /**
      * Holds the content type.
@@ -145,12 +145,18 @@ public class ProxyMessageDecoder {
      */
     public ProxyMessageDecoder(ProxyMessageConsumer callback,
                                String contentType, boolean faultAllowed, String hashAlgoId) {
+        this(callback, contentType, faultAllowed, hashAlgoId, new Verifier());
+    }
+
+    ProxyMessageDecoder(ProxyMessageConsumer callback, String contentType, boolean faultAllowed,
+                        String hashAlgoId, Verifier verifier) {
         LOG.trace("new ProxyMessageDecoder({}, {})", contentType, hashAlgoId);
 
         this.callback = callback;
         this.contentType = contentType;
         this.faultAllowed = faultAllowed;
         this.hashAlgoId = hashAlgoId;
+        this.verifier = verifier;
     }
 
     /**
@@ -451,6 +457,13 @@ public class ProxyMessageDecoder {
                 try {
                     DigestCalculator dc =
                             CryptoUtils.createDigestCalculator(getHashAlgoId());
+
+                    if (ParallelDigestOutputStream.isEnabled()) {
+                        handleAttachmentDigestingInParallel(dc, is, partContentType, headers);
+
+                        return;
+                    }
+
                     CountingOutputStream cos = new CountingOutputStream(
                             dc.getOutputStream());
                     TeeInputStream proxyIs = new TeeInputStream(is, cos, true);
@@ -471,6 +484,24 @@ public class ProxyMessageDecoder {
         attachmentParser.parse(is);
     }
 
+    // The attachment is stored by the callback while the hashing pool calculates its digest;
+    // the signature verification waits for the digest.
+    private void handleAttachmentDigestingInParallel(DigestCalculator dc, InputStream is,
+            String partContentType, Map<String, String> headers) throws Exception {
+        ParallelDigestOutputStream digestStream = new ParallelDigestOutputStream(dc);
+        CountingOutputStream cos = new CountingOutputStream(digestStream);
+
+        try {
+            callback.attachment(partContentType, new TeeInputStream(is, cos, false), headers);
+        } finally {
+            digestStream.close();
+        }
+
+        attachmentsByteCount += cos.getByteCount();
+
+        verifier.addPart(MessageFileNames.attachment(++attachmentNo), getHashAlgoId(), digestStream.getDigest());
+    }
+
     private void handleHashChainResult(InputStream is) throws CodedException {
         try {
             LOG.trace("handleHashChainResult()");
@@ -140,7 +140,19 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
     @Override
     public void ocspResponse(OCSPResp resp) {
         try {
-            byte[] responseEncoded = resp.getEncoded();
+            ocspResponse(resp.getEncoded());
+        } catch (Exception ex) {
+            throw translateException(ex);
+        }
+    }
+
+    /**
+     * Writes an already DER encoded OCSP response. The array is not modified,
+     * so the same encoded responses can be shared between messages.
+     * @param responseEncoded the encoded OCSP response
+     */
+    public void ocspResponse(byte[] responseEncoded) {
+        try {
             log.trace("writeOcspResponse({} bytes)", responseEncoded.length);
             mpEncoder.startPart(MimeTypes.OCSP_RESPONSE);
             mpEncoder.write(responseEncoded);
@@ -0,0 +1,144 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static ee.ria.xroad.common.ErrorCodes.X_NETWORK_ERROR;
+import static ee.ria.xroad.common.ErrorCodes.X_SERVICE_FAILED_X;
+
+/**
+ * Limits the number of requests the server proxy sends concurrently to each service backend, so that a slow
+ * backend can hold only a bounded number of the request handling threads. A request to a backend that is
+ * already at the limit blocks its thread while waiting for a free slot until the queue timeout and then fails.
+ * With a queue timeout of 0 the request fails at once.
+ */
+@Slf4j
+final class BackendConcurrencyLimiter {
+
+    private static final BackendConcurrencyLimiter INSTANCE = new BackendConcurrencyLimiter(
+            SystemProperties.getServerBackendMaxConcurrency(), SystemProperties.getServerBackendQueueTimeout());
+
+    private static final Permit NO_PERMIT = () -> { };
+
+    private final int maxConcurrency;
+    private final long queueTimeout;
+
+    private final ConcurrentMap<String, Semaphore> backends = new ConcurrentHashMap<>();
+
+    BackendConcurrencyLimiter(int maxConcurrency, long queueTimeout) {
+        this.maxConcurrency = maxConcurrency;
+        this.queueTimeout = queueTimeout;
+    }
+
+    static BackendConcurrencyLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Waits until a request can be sent to the backend at the given address, for at most the queue timeout.
+     * @param address address of the service backend
+     * @return the permit that must be closed once the response has been read
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws CodedException if no slot became free before the queue timeout
+     */
+    Permit acquire(String address) throws InterruptedException {
+        if (maxConcurrency <= 0) {
+            return NO_PERMIT;
+        }
+
+        String backend = getBackend(address);
+        Semaphore slots = backends.computeIfAbsent(backend, b -> new Semaphore(maxConcurrency, true));
+
+        if (!tryAcquire(slots)) {
+            log.warn("Service backend {} has {} requests in progress, rejecting request", backend, maxConcurrency);
+
+            throw new CodedException(X_NETWORK_ERROR, "Service backend %s is busy", backend)
+                    .withPrefix(X_SERVICE_FAILED_X);
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                slots.release();
+            }
+        };
+    }
+
+    private boolean tryAcquire(Semaphore slots) throws InterruptedException {
+        if (queueTimeout <= 0) {
+            return slots.tryAcquire();
+        }
+
+        return slots.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param address address of the service backend
+     * @return the backend scheme, host and port the requests are limited by
+     */
+    static String getBackend(String address) {
+        try {
+            URI uri = new URI(address);
+
+            if (uri.getHost() == null) {
+                return address;
+            }
+
+            return uri.getScheme() + "://" + uri.getHost() + ":" + getPort(uri);
+        } catch (URISyntaxException e) {
+            return address;
+        }
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static int getPort(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    /**
+     * A slot to a service backend, released when closed.
+     */
+    interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -52,6 +52,7 @@ public class IdleConnectionMonitorThread extends Thread {
     private int connectionIdleTimeMilliseconds = DEFAULT_IDLE_TIMEOUT;
 
     void closeNow() {
+        connectionManager.closeExpiredConnections();
         connectionManager.closeIdleConnections(connectionIdleTimeMilliseconds, TimeUnit.MILLISECONDS);
     }
 
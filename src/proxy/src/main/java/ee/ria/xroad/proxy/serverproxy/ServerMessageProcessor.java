@@ -56,6 +56,8 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics.Stage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.ArrayUtils;
@@ -291,7 +293,9 @@ class ServerMessageProcessor extends MessageProcessorBase {
         decoder = new ProxyMessageDecoder(requestMessage, servletRequest.getContentType(), false,
                 getHashAlgoId(servletRequest));
         try {
+            long start = System.nanoTime();
             decoder.parse(servletRequest.getInputStream());
+            ProxyStageMetrics.record(Stage.SERVER_REQUEST_PARSE, start);
         } catch (CodedException e) {
             throw e.withPrefix(X_SERVICE_FAILED_X);
         }
@@ -423,20 +427,26 @@ class ServerMessageProcessor extends MessageProcessorBase {
     private void verifySignature() throws Exception {
         log.trace("verifySignature()");
 
+        long start = System.nanoTime();
         decoder.verify(requestMessage.getSoap().getClient(), requestMessage.getSignature());
+        ProxyStageMetrics.record(Stage.SERVER_VERIFY, start);
     }
 
     private void logRequestMessage() throws Exception {
         log.trace("logRequestMessage()");
 
+        long start = System.nanoTime();
         MessageLog.log(requestMessage.getSoap(), requestMessage.getSignature(), false, xRequestId);
+        ProxyStageMetrics.record(Stage.SERVER_MESSAGE_LOG, start);
     }
 
     private void logResponseMessage() throws Exception {
         if (responseSoap != null && encoder != null) {
             log.trace("logResponseMessage()");
 
+            long start = System.nanoTime();
             MessageLog.log(responseSoap, encoder.getSignature(), false, xRequestId);
+            ProxyStageMetrics.record(Stage.SERVER_MESSAGE_LOG, start);
         }
     }
 
@@ -454,7 +464,9 @@ class ServerMessageProcessor extends MessageProcessorBase {
         log.info("Sending request to {}", uri);
         try (InputStream in = requestMessage.getSoapContent()) {
             opMonitoringData.setRequestOutTs(getEpochMillisecond());
+            long start = System.nanoTime();
             httpSender.doPost(uri, in, CHUNKED_LENGTH, servletRequest.getHeader(HEADER_ORIGINAL_CONTENT_TYPE));
+            ProxyStageMetrics.record(Stage.SERVER_BACKEND, start);
             opMonitoringData.setResponseInTs(getEpochMillisecond());
         } catch (Exception ex) {
             if (ex instanceof CodedException) {
@@ -476,7 +488,9 @@ class ServerMessageProcessor extends MessageProcessorBase {
         try (SoapMessageHandler messageHandler = new SoapMessageHandler()) {
             SoapMessageDecoder soapMessageDecoder = new SoapMessageDecoder(handler.getResponseContentType(),
                     messageHandler, new ResponseSoapParserImpl());
+            long start = System.nanoTime();
             soapMessageDecoder.parse(handler.getResponseContent());
+            ProxyStageMetrics.record(Stage.SERVER_RESPONSE_PARSE, start);
         } catch (Exception ex) {
             throw translateException(ex).withPrefix(X_SERVICE_FAILED_X);
         }
@@ -508,7 +522,9 @@ class ServerMessageProcessor extends MessageProcessorBase {
     private void sign() throws Exception {
         log.trace("sign({})", requestServiceId.getClientId());
 
+        long start = System.nanoTime();
         encoder.sign(responseSigningCtx);
+        ProxyStageMetrics.record(Stage.SERVER_SIGN, start);
     }
 
     private void writeSignature() throws Exception {
@@ -590,6 +606,8 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
         private HttpSender sender;
 
+        private BackendConcurrencyLimiter.Permit backendPermit;
+
         @Override
         public boolean shouldVerifyAccess() {
             return true;
@@ -632,13 +650,22 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
             sender.addHeader("accept-encoding", "");
             sender.addHeader("SOAPAction", originalSoapAction);
+
+            backendPermit = BackendConcurrencyLimiter.getInstance().acquire(address);
             sendRequest(address, sender);
         }
 
         @Override
         public void finishHandling() throws Exception {
-            sender.close();
-            sender = null;
+            try {
+                sender.close();
+                sender = null;
+            } finally {
+                if (backendPermit != null) {
+                    backendPermit.close();
+                    backendPermit = null;
+                }
+            }
         }
 
         @Override
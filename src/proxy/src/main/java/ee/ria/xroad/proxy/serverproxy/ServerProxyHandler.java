@@ -36,6 +36,8 @@ import ee.ria.xroad.common.util.PerformanceLogger;
 import ee.ria.xroad.proxy.ProxyMain;
 import ee.ria.xroad.proxy.opmonitoring.OpMonitoring;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics.Stage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
@@ -116,7 +118,10 @@ class ServerProxyHandler extends HandlerBase {
             baseRequest.setHandled(true);
 
             opMonitoringData.setResponseOutTs(getEpochMillisecond(), false);
+
+            long storeStart = System.nanoTime();
             OpMonitoring.store(opMonitoringData);
+            ProxyStageMetrics.record(Stage.SERVER_OP_MONITORING, storeStart);
 
             PerformanceLogger.log(log, start, "Request handled");
         }
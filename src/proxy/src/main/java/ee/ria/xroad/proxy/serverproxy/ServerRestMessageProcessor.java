@@ -52,6 +52,8 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics;
+import ee.ria.xroad.proxy.util.ProxyStageMetrics.Stage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.TeeInputStream;
@@ -274,7 +276,9 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
         decoder = new ProxyMessageDecoder(requestMessage, servletRequest.getContentType(), false,
                 getHashAlgoId(servletRequest));
         try {
+            long start = System.nanoTime();
             decoder.parse(servletRequest.getInputStream());
+            ProxyStageMetrics.record(Stage.SERVER_REQUEST_PARSE, start);
         } catch (CodedException e) {
             throw e.withPrefix(X_SERVICE_FAILED_X);
         }
@@ -368,24 +372,32 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
     private void verifySignature() throws Exception {
         log.trace("verifySignature()");
 
+        long start = System.nanoTime();
         decoder.verify(requestMessage.getRest().getClientId(), requestMessage.getSignature());
+        ProxyStageMetrics.record(Stage.SERVER_VERIFY, start);
     }
 
     private void logRequestMessage() {
         log.trace("logRequestMessage()");
+        long start = System.nanoTime();
         MessageLog.log(requestMessage.getRest(), requestMessage.getSignature(), requestMessage.getRestBody(),
                 false, xRequestId);
+        ProxyStageMetrics.record(Stage.SERVER_MESSAGE_LOG, start);
     }
 
     private void logResponseMessage() {
         log.trace("log response message");
+        long start = System.nanoTime();
         MessageLog.log(requestMessage.getRest(), restResponse, encoder.getSignature(),
                 restResponseBody == null ? null : restResponseBody.getCachedContents(), false, xRequestId);
+        ProxyStageMetrics.record(Stage.SERVER_MESSAGE_LOG, start);
     }
 
     private void sign() throws Exception {
         log.trace("sign({})", requestServiceId.getClientId());
+        long start = System.nanoTime();
         encoder.sign(responseSigningCtx);
+        ProxyStageMetrics.record(Stage.SERVER_SIGN, start);
     }
 
     private void writeSignature() throws Exception {
@@ -461,6 +473,8 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
         private RestResponse restResponse;
         private CachingStream restResponseBody;
 
+        private BackendConcurrencyLimiter.Permit backendPermit;
+
         private String concatPath(String address, String path) {
             if (path == null || path.isEmpty()) return address;
             if (address.endsWith("/") && path.startsWith("/")) {
@@ -553,8 +567,12 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
 
             final HttpContext ctx = new BasicHttpContext();
             ctx.setAttribute(ServiceId.class.getName(), requestProxyMessage.getRest().getServiceId());
+            backendPermit = BackendConcurrencyLimiter.getInstance().acquire(address);
+
             monitoringData.setRequestOutTs(getEpochMillisecond());
+            final long start = System.nanoTime();
             final HttpResponse response = restClient.execute(req, ctx);
+            ProxyStageMetrics.record(Stage.SERVER_BACKEND, start);
             monitoringData.setResponseInTs(getEpochMillisecond());
             final StatusLine statusLine = response.getStatusLine();
 
@@ -607,7 +625,10 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
 
         @Override
         public void finishHandling() throws Exception {
-            // NOP
+            if (backendPermit != null) {
+                backendPermit.close();
+                backendPermit = null;
+            }
         }
     }
 }
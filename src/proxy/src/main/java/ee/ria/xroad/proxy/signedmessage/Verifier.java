@@ -37,9 +37,13 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static ee.ria.xroad.common.ErrorCodes.X_SIGNATURE_VERIFICATION_X;
+import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.ErrorCodes.translateWithPrefix;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
 /**
  * Encapsulates message verification functionality. This class does not
@@ -49,7 +53,7 @@ import static ee.ria.xroad.common.ErrorCodes.translateWithPrefix;
 @Slf4j
 public class Verifier {
 
-    private final List<MessagePart> parts = new ArrayList<>();
+    private final List<CompletableFuture<MessagePart>> parts = new ArrayList<>();
 
     /** Adds new hash to be verified.
      * @param name name of the file in the BDOC container.
@@ -57,17 +61,26 @@ public class Verifier {
      * @param data hash value.
      */
     public void addPart(String name, String hashMethod, byte[] data) {
-        parts.add(new MessagePart(name, hashMethod, data, null));
+        parts.add(completedFuture(new MessagePart(name, hashMethod, data, null)));
 
     }
 
+    /** Adds new hash to be verified, once it has been calculated.
+     * @param name name of the file in the BDOC container.
+     * @param hashMethod identifier of the algorithm used to calculate the hash.
+     * @param data hash value, completed when the hash has been calculated.
+     */
+    public void addPart(String name, String hashMethod, CompletableFuture<byte[]> data) {
+        parts.add(data.thenApply(digest -> new MessagePart(name, hashMethod, digest, null)));
+    }
+
     /** Adds new hash to be verified.
      * @param name name of the file in the BDOC container.
      * @param hashMethod identifier of the algorithm used to calculate the hash.
      * @param data hash value.
      */
     public void addPart(String name, String hashMethod, byte[] data, byte[] message) {
-        parts.add(new MessagePart(name, hashMethod, data, message));
+        parts.add(completedFuture(new MessagePart(name, hashMethod, data, message)));
 
     }
 
@@ -77,8 +90,23 @@ public class Verifier {
      * @param soap the signed message
      */
     public void addMessagePart(String hashMethod, SoapMessageImpl soap) {
-        parts.add(new MessagePart(MessageFileNames.MESSAGE, hashMethod,
-                soap.getHash(), soap.getBytes()));
+        parts.add(completedFuture(new MessagePart(MessageFileNames.MESSAGE, hashMethod,
+                soap.getHash(), soap.getBytes())));
+    }
+
+    // Waits until all the hashes have been calculated
+    private List<MessagePart> getParts() throws Exception {
+        List<MessagePart> result = new ArrayList<>(parts.size());
+
+        try {
+            for (CompletableFuture<MessagePart> part : parts) {
+                result.add(part.get());
+            }
+        } catch (ExecutionException e) {
+            throw translateException(e.getCause());
+        }
+
+        return result;
     }
 
     /**
@@ -99,7 +127,7 @@ public class Verifier {
             SignatureVerifier signatureVerifier =
                     new SignatureVerifier(signature);
 
-            signatureVerifier.addParts(parts);
+            signatureVerifier.addParts(getParts());
 
             signatureVerifier.verify(sender, new Date());
         } catch (Exception ex) {
@@ -0,0 +1,116 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency timers of the stages a request goes through in the client and server proxies. The timers are
+ * reported over JMX and in the security server metrics of the proxy monitor.
+ */
+public final class ProxyStageMetrics {
+
+    /** JMX domain of the timers. */
+    public static final String JMX_DOMAIN = "ee.ria.xroad.proxy";
+
+    /**
+     * The measured stages. A stage is recorded only when it completes successfully.
+     */
+    public enum Stage {
+        CLIENT_REQUEST_PARSE("clientProxyRequestParse"),
+        CLIENT_SIGN("clientProxySign"),
+        CLIENT_MESSAGE_LOG("clientProxyMessageLog"),
+        CLIENT_SERVER_PROXY("clientProxyServerProxyCall"),
+        CLIENT_RESPONSE_PARSE("clientProxyResponseParse"),
+        CLIENT_VERIFY("clientProxyVerify"),
+        CLIENT_OP_MONITORING("clientProxyOpMonitoring"),
+        SERVER_REQUEST_PARSE("serverProxyRequestParse"),
+        SERVER_VERIFY("serverProxyVerify"),
+        SERVER_MESSAGE_LOG("serverProxyMessageLog"),
+        SERVER_BACKEND("serverProxyBackendCall"),
+        SERVER_RESPONSE_PARSE("serverProxyResponseParse"),
+        SERVER_SIGN("serverProxySign"),
+        SERVER_OP_MONITORING("serverProxyOpMonitoring");
+
+        @Getter
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final MetricRegistry REGISTRY = new MetricRegistry();
+
+    private static final Map<Stage, Timer> TIMERS = new EnumMap<>(Stage.class);
+
+    private static JmxReporter reporter;
+
+    static {
+        for (Stage stage : Stage.values()) {
+            TIMERS.put(stage, REGISTRY.timer(stage.getMetricName()));
+        }
+    }
+
+    private ProxyStageMetrics() {
+    }
+
+    /**
+     * Records the duration of a stage.
+     * @param stage the stage
+     * @param startNanos value of {@link System#nanoTime()} when the stage started
+     */
+    public static void record(Stage stage, long startNanos) {
+        TIMERS.get(stage).update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the timers of the stages, durations in nanoseconds
+     */
+    public static Map<Stage, Timer> getTimers() {
+        return Collections.unmodifiableMap(TIMERS);
+    }
+
+    /**
+     * Starts reporting the timers over JMX.
+     */
+    public static synchronized void registerMBeans() {
+        if (reporter == null) {
+            reporter = JmxReporter.forRegistry(REGISTRY)
+                    .inDomain(JMX_DOMAIN)
+                    .convertDurationsTo(TimeUnit.MILLISECONDS)
+                    .build();
+            reporter.start();
+        }
+    }
+}
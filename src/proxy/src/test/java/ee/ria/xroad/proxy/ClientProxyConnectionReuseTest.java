@@ -0,0 +1,99 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.SystemPropertyRegistry;
+import ee.ria.xroad.common.message.RestMessage;
+import ee.ria.xroad.proxy.clientproxy.PeerConnectionMetrics;
+
+import org.junit.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the connections and TLS handshakes between the client and server proxies.
+ */
+public class ClientProxyConnectionReuseTest extends AbstractProxyIntegrationTest {
+
+    private static final String PREFIX = "/r" + RestMessage.PROTOCOL_VERSION;
+
+    private static final int REQUESTS = 5;
+
+    private final PeerConnectionMetrics.Peer serverProxy = PeerConnectionMetrics.getPeer("127.0.0.1");
+
+    @Test
+    public void newConnectionsResumeTlsSession() {
+        long connections = serverProxy.getConnections();
+        long handshakes = serverProxy.getFullHandshakes() + serverProxy.getResumedHandshakes();
+        long resumed = serverProxy.getResumedHandshakes();
+
+        sendRequests();
+
+        // The server proxy closes the connection after each message by default
+        assertEquals(REQUESTS, serverProxy.getConnections() - connections);
+        assertEquals(REQUESTS, serverProxy.getFullHandshakes() + serverProxy.getResumedHandshakes() - handshakes);
+        assertTrue(serverProxy.getResumedHandshakes() - resumed >= REQUESTS - 1);
+    }
+
+    @Test
+    public void pooledConnectionIsReused() {
+        System.setProperty(SystemProperties.CLIENTPROXY_POOL_REUSE_CONNECTIONS, "true");
+        System.setProperty(SystemProperties.SERVERPROXY_SUPPORT_CLIENTS_POOLED_CONNECTIONS, "true");
+        SystemPropertyRegistry.reload();
+
+        try {
+            long connections = serverProxy.getConnections();
+            long handshakes = serverProxy.getFullHandshakes() + serverProxy.getResumedHandshakes();
+            long reused = serverProxy.getReusedRequests();
+
+            sendRequests();
+
+            assertEquals(1, serverProxy.getConnections() - connections);
+            assertEquals(1, serverProxy.getFullHandshakes() + serverProxy.getResumedHandshakes() - handshakes);
+            assertEquals(REQUESTS - 1, serverProxy.getReusedRequests() - reused);
+        } finally {
+            System.clearProperty(SystemProperties.CLIENTPROXY_POOL_REUSE_CONNECTIONS);
+            System.clearProperty(SystemProperties.SERVERPROXY_SUPPORT_CLIENTS_POOLED_CONNECTIONS);
+            SystemPropertyRegistry.reload();
+        }
+    }
+
+    private static void sendRequests() {
+        for (int i = 0; i < REQUESTS; i++) {
+            given()
+                    .baseUri("http://127.0.0.1")
+                    .port(proxyClientPort)
+                    .header("Content-Type", "application/json")
+                    .header("X-Road-Client", "EE/BUSINESS/consumer/sub")
+                    .body("{\"value\" : 42}")
+                    .post(PREFIX + "/EE/BUSINESS/producer/sub/echo")
+                    .then()
+                    .statusCode(200);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.antidos;
+
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.util.SystemMetrics;
+import ee.ria.xroad.proxy.testutil.IntegrationTest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load generator that opens connections from many local addresses and measures how fast the connection manager
+ * accepts and hands them over, compared to the previous implementation that synchronized the known addresses and
+ * queried the system resources for every connection.
+ *
+ * Connections are made from addresses 127.0.0.1-127.0.0.200, which requires the whole 127.0.0.0/8 network to be
+ * routed to the loopback interface (the default on Linux).
+ */
+@Slf4j
+@Category(IntegrationTest.class)
+public class AntiDosConnectionManagerLoadTest {
+
+    private static final int PARTNERS = 200;
+    private static final int KNOWN_ADDRESSES = 1000;
+    private static final int CLIENT_THREADS = 8;
+    private static final int CONNECTIONS_PER_THREAD = 500;
+    private static final int ACCEPTOR_THREADS = 2;
+    private static final int BACKLOG = 1024;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static final Set<String> ADDRESSES = new HashSet<>();
+
+    static {
+        for (int i = 0; i < KNOWN_ADDRESSES; i++) {
+            ADDRESSES.add(partnerAddress(i));
+        }
+    }
+
+    private ExecutorService executor;
+
+    /**
+     * Set up the global configuration.
+     */
+    @Before
+    public void setUp() {
+        GlobalConf.reload(new EmptyGlobalConf() {
+            @Override
+            public Set<String> getKnownAddresses() {
+                return ADDRESSES;
+            }
+        });
+
+        executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Stop the load generator threads.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void acceptThroughput() throws Exception {
+        double legacyRate = measure(new LegacyConnectionManager());
+
+        AntiDosConnectionManager<SocketChannelWrapperImpl> manager =
+                new AntiDosConnectionManager<>(new TestConfiguration(1, 1.1));
+        manager.init();
+
+        double rate;
+
+        try {
+            rate = measure(new ConnectionQueue() {
+                @Override
+                public void accept(SocketChannelWrapperImpl connection) {
+                    manager.accept(connection);
+                }
+
+                @Override
+                public SocketChannelWrapperImpl take() throws InterruptedException {
+                    return manager.takeNextConnection();
+                }
+            });
+        } finally {
+            manager.stop();
+        }
+
+        log.info("Accepted connections per second: before {}, after {}", (long) legacyRate, (long) rate);
+    }
+
+    private double measure(ConnectionQueue queue) throws Exception {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+
+            return measure(queue, serverChannel);
+        }
+    }
+
+    private double measure(ConnectionQueue queue, ServerSocketChannel serverChannel) throws Exception {
+        int total = CLIENT_THREADS * CONNECTIONS_PER_THREAD;
+
+        CountDownLatch done = new CountDownLatch(total);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < ACCEPTOR_THREADS; i++) {
+            tasks.add(executor.submit(() -> acceptConnections(queue, serverChannel)));
+        }
+
+        tasks.add(executor.submit(() -> takeConnections(queue, done)));
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            int clientThread = i;
+            tasks.add(executor.submit(() -> openConnections(serverChannel, clientThread)));
+        }
+
+        assertTrue("Timed out waiting for connections", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        long elapsed = System.nanoTime() - start;
+
+        tasks.forEach(task -> task.cancel(true));
+
+        assertEquals(0, done.getCount());
+
+        return total / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static void acceptConnections(ConnectionQueue queue, ServerSocketChannel serverChannel) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                queue.accept(new SocketChannelWrapperImpl(serverChannel.accept()));
+            }
+        } catch (ClosedChannelException e) {
+            // interrupted or the measurement has finished
+        } catch (IOException e) {
+            log.error("Accept failed", e);
+        }
+    }
+
+    private static void takeConnections(ConnectionQueue queue, CountDownLatch done) {
+        try {
+            while (done.getCount() > 0) {
+                SocketChannelWrapperImpl connection = queue.take();
+                connection.close();
+
+                done.countDown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Closing connection failed", e);
+        }
+    }
+
+    private static Void openConnections(ServerSocketChannel serverChannel, int clientThread) throws IOException {
+        InetSocketAddress server = (InetSocketAddress) serverChannel.getLocalAddress();
+
+        for (int i = 0; i < CONNECTIONS_PER_THREAD; i++) {
+            try (Socket socket = new Socket()) {
+                socket.bind(new InetSocketAddress(partnerAddress((clientThread + i * CLIENT_THREADS) % PARTNERS), 0));
+                socket.connect(server);
+            }
+        }
+
+        return null;
+    }
+
+    private static String partnerAddress(int index) {
+        return "127.0." + (index / PARTNERS) + "." + (index % PARTNERS + 1);
+    }
+
+    private interface ConnectionQueue {
+        void accept(SocketChannelWrapperImpl connection);
+
+        SocketChannelWrapperImpl take() throws InterruptedException;
+    }
+
+    /**
+     * The connection handling of the connection manager before the known addresses were synchronized on global
+     * configuration changes and the resources were sampled in the background.
+     */
+    private static final class LegacyConnectionManager implements ConnectionQueue {
+        private static final String UNKNOWN_ORG_IP = "0.0.0.0";
+
+        private Map<String, Deque<SocketChannelWrapperImpl>> database = new HashMap<>();
+        private final LinkedBlockingQueue<Deque<SocketChannelWrapperImpl>> activePartners =
+                new LinkedBlockingQueue<>();
+        private Set<String> previousKnownOrganizations = new HashSet<>();
+
+        LegacyConnectionManager() {
+            database.put(UNKNOWN_ORG_IP, new LinkedBlockingDeque<>());
+            previousKnownOrganizations.add(UNKNOWN_ORG_IP);
+        }
+
+        @Override
+        public synchronized void accept(SocketChannelWrapperImpl connection) {
+            Set<String> knownAddresses = new HashSet<>(GlobalConf.getKnownAddresses());
+            knownAddresses.add(UNKNOWN_ORG_IP);
+
+            if (!previousKnownOrganizations.equals(knownAddresses)) {
+                Map<String, Deque<SocketChannelWrapperImpl>> newDatabase = new HashMap<>();
+                knownAddresses.forEach(address ->
+                        newDatabase.put(address, database.getOrDefault(address, new LinkedBlockingDeque<>())));
+
+                previousKnownOrganizations = knownAddresses;
+                database = newDatabase;
+            }
+
+            Deque<SocketChannelWrapperImpl> partner =
+                    database.getOrDefault(connection.getHostAddress(), database.get(UNKNOWN_ORG_IP));
+            partner.addFirst(connection);
+
+            if (!activePartners.contains(partner)) {
+                activePartners.add(partner);
+            }
+        }
+
+        @Override
+        public SocketChannelWrapperImpl take() throws InterruptedException {
+            while (true) {
+                Deque<SocketChannelWrapperImpl> partner = activePartners.take();
+                SocketChannelWrapperImpl connection = partner.pollLast();
+
+                if (!partner.isEmpty()) {
+                    activePartners.add(partner);
+                }
+
+                if (connection != null) {
+                    // the resources were queried for every connection
+                    SystemMetrics.getFreeFileDescriptorCount();
+                    SystemMetrics.getStats().getSystemCpuLoad();
+                    SystemMetrics.getHeapUsage();
+
+                    return connection;
+                }
+            }
+        }
+    }
+}
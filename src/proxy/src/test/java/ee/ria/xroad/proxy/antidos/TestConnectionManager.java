@@ -41,10 +41,16 @@ class TestConnectionManager
     protected TestSocketChannel getNextConnection()
             throws InterruptedException {
         systemMetrics.next();
+        sampleResources();
 
         return super.getNextConnection();
     }
 
+    @Override
+    protected void startResourceSampling() {
+        // resources are sampled before taking each connection
+    }
+
     @Override
     protected long getFreeFileDescriptorCount() {
         return systemMetrics.get().getMinFreeFileHandles();
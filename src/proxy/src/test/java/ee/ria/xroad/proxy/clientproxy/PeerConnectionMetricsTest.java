@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the adaptive keep-alive time of pooled connections.
+ */
+public class PeerConnectionMetricsTest {
+
+    private static final long MIN = 5000;
+    private static final long MAX = 60000;
+
+    @Test
+    public void unknownIntervalKeepsMaximum() {
+        assertEquals(MAX, PeerConnectionMetrics.keepAliveMillis(-1, MIN, MAX));
+    }
+
+    @Test
+    public void frequentRequestsKeepMinimum() {
+        assertEquals(MIN, PeerConnectionMetrics.keepAliveMillis(100, MIN, MAX));
+    }
+
+    @Test
+    public void keepAliveFollowsInterval() {
+        assertEquals(20000, PeerConnectionMetrics.keepAliveMillis(10000, MIN, MAX));
+        assertEquals(MAX, PeerConnectionMetrics.keepAliveMillis(45000, MIN, MAX));
+    }
+
+    @Test
+    public void rareRequestsKeepMinimum() {
+        assertEquals(MIN, PeerConnectionMetrics.keepAliveMillis(120000, MIN, MAX));
+    }
+
+    @Test
+    public void countsReusedRequests() {
+        PeerConnectionMetrics.Peer peer = PeerConnectionMetrics.getPeer("peer.example.org");
+
+        peer.requestSent(false);
+        peer.requestSent(true);
+
+        assertEquals(2, peer.getRequests());
+        assertEquals(1, peer.getReusedRequests());
+    }
+}
@@ -389,6 +389,14 @@ public class CachingKeyConfImplTest {
             };
         }
 
+        @Override
+        boolean keyConfHasChanged() {
+            // simulate a change notification arriving before each access
+            keyConfModified();
+
+            return super.keyConfHasChanged();
+        }
+
         private void delay(long delayMs) throws Exception {
             if (cacheReadDelayMs > 0) {
                 log.debug("simulating a slow read");
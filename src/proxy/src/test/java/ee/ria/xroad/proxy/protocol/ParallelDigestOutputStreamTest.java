@@ -0,0 +1,151 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.util.CryptoUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ee.ria.xroad.proxy.protocol.ParallelDigestOutputStream.CHUNK_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests that digests calculated on the hashing pool match the digests calculated inline.
+ */
+public class ParallelDigestOutputStreamTest {
+
+    private ExecutorService executor;
+
+    /**
+     * Starts the hashing pool.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    /**
+     * Stops the hashing pool.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test that content of various sizes around the chunk boundaries is digested correctly.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void digestMatchesInlineDigest() throws Exception {
+        int[] sizes = {0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 20 * CHUNK_SIZE + 17};
+
+        for (int size : sizes) {
+            byte[] data = randomData(size);
+
+            ParallelDigestOutputStream out = createStream();
+            writeInPieces(out, data);
+            out.close();
+
+            assertArrayEquals("size " + size, expectedDigest(data), out.getDigest().get());
+        }
+    }
+
+    /**
+     * Test that the digest is completed only after the stream has been closed.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void completedOnClose() throws Exception {
+        byte[] data = randomData(3 * CHUNK_SIZE);
+
+        ParallelDigestOutputStream out = createStream();
+        out.write(data);
+
+        Thread.sleep(100);
+        assertFalse(out.getDigest().isDone());
+
+        out.close();
+        assertArrayEquals(expectedDigest(data), out.getDigest().get());
+    }
+
+    /**
+     * Test that several streams share the pool without mixing up their content.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void concurrentStreams() throws Exception {
+        byte[][] data = new byte[8][];
+        ParallelDigestOutputStream[] streams = new ParallelDigestOutputStream[data.length];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = randomData((i + 1) * CHUNK_SIZE + i);
+            streams[i] = createStream();
+            writeInPieces(streams[i], data[i]);
+            streams[i].close();
+        }
+
+        for (int i = 0; i < data.length; i++) {
+            assertArrayEquals(expectedDigest(data[i]), streams[i].getDigest().get());
+        }
+    }
+
+    private ParallelDigestOutputStream createStream() throws Exception {
+        return new ParallelDigestOutputStream(executor,
+                CryptoUtils.createDigestCalculator(CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID));
+    }
+
+    private static byte[] expectedDigest(byte[] data) throws Exception {
+        return CryptoUtils.calculateDigest(CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID, data);
+    }
+
+    // Writes in uneven pieces, like a MIME parser reading from the network would
+    private static void writeInPieces(ParallelDigestOutputStream out, byte[] data) throws Exception {
+        int offset = 0;
+        int piece = 1;
+
+        while (offset < data.length) {
+            int count = Math.min(piece, data.length - offset);
+            out.write(data, offset, count);
+
+            offset += count;
+            piece = piece * 3 % 10_007 + 1;
+        }
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+
+        return data;
+    }
+}
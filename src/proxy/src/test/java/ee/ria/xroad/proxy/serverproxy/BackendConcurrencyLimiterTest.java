@@ -0,0 +1,224 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.CodedException;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.ErrorCodes.X_NETWORK_ERROR;
+import static ee.ria.xroad.common.ErrorCodes.X_SERVICE_FAILED_X;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that a slow service backend cannot hold more than its share of the request handling threads.
+ */
+public class BackendConcurrencyLimiterTest {
+
+    private static final long SLOW_RESPONSE_MILLIS = 2000;
+
+    private static final int MAX_CONCURRENCY = 2;
+
+    private final CountDownLatch slowRequestsReceived = new CountDownLatch(MAX_CONCURRENCY);
+
+    private Server slowBackend;
+    private Server fastBackend;
+
+    private CloseableHttpClient client;
+    private ExecutorService executor;
+
+    /**
+     * Starts the stub backends.
+     * @throws Exception if the backends cannot be started
+     */
+    @Before
+    public void setUp() throws Exception {
+        slowBackend = startBackend(SLOW_RESPONSE_MILLIS);
+        fastBackend = startBackend(0);
+
+        client = HttpClients.custom().setMaxConnPerRoute(MAX_CONCURRENCY * 2).build();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Stops the stub backends.
+     * @throws Exception if the backends cannot be stopped
+     */
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        client.close();
+        slowBackend.stop();
+        fastBackend.stop();
+    }
+
+    @Test
+    public void slowBackendDoesNotDelayOtherBackends() throws Exception {
+        BackendConcurrencyLimiter limiter = new BackendConcurrencyLimiter(MAX_CONCURRENCY, 100);
+
+        List<Future<Integer>> slowCalls = new ArrayList<>();
+
+        for (int i = 0; i < MAX_CONCURRENCY; i++) {
+            slowCalls.add(executor.submit(() -> call(limiter, slowBackend)));
+        }
+
+        assertTrue(slowRequestsReceived.await(SLOW_RESPONSE_MILLIS, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+
+        try {
+            call(limiter, slowBackend);
+            fail("Request to a busy backend should have been rejected");
+        } catch (CodedException expected) {
+            assertEquals(X_SERVICE_FAILED_X + "." + X_NETWORK_ERROR, expected.getFaultCode());
+        }
+
+        assertEquals(HttpServletResponse.SC_OK, call(limiter, fastBackend));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < SLOW_RESPONSE_MILLIS);
+
+        for (Future<Integer> slowCall : slowCalls) {
+            assertEquals(HttpServletResponse.SC_OK, slowCall.get().intValue());
+        }
+    }
+
+    @Test
+    public void queuedRequestGetsFreedSlot() throws Exception {
+        BackendConcurrencyLimiter limiter = new BackendConcurrencyLimiter(MAX_CONCURRENCY, SLOW_RESPONSE_MILLIS * 2);
+
+        List<Future<Integer>> slowCalls = new ArrayList<>();
+
+        for (int i = 0; i < MAX_CONCURRENCY; i++) {
+            slowCalls.add(executor.submit(() -> call(limiter, slowBackend)));
+        }
+
+        assertTrue(slowRequestsReceived.await(SLOW_RESPONSE_MILLIS, TimeUnit.MILLISECONDS));
+
+        assertEquals(HttpServletResponse.SC_OK, call(limiter, slowBackend));
+
+        for (Future<Integer> slowCall : slowCalls) {
+            assertEquals(HttpServletResponse.SC_OK, slowCall.get().intValue());
+        }
+    }
+
+    @Test
+    public void zeroQueueTimeoutRejectsAtOnce() throws Exception {
+        BackendConcurrencyLimiter limiter = new BackendConcurrencyLimiter(MAX_CONCURRENCY, 0);
+        String address = "http://127.0.0.1:1/service";
+
+        for (int i = 0; i < MAX_CONCURRENCY; i++) {
+            limiter.acquire(address);
+        }
+
+        try {
+            limiter.acquire(address);
+            fail("Request to a busy backend should have been rejected");
+        } catch (CodedException expected) {
+            assertEquals(X_SERVICE_FAILED_X + "." + X_NETWORK_ERROR, expected.getFaultCode());
+        }
+    }
+
+    @Test
+    public void zeroDisablesLimit() throws Exception {
+        BackendConcurrencyLimiter limiter = new BackendConcurrencyLimiter(0, 0);
+
+        for (int i = 0; i < MAX_CONCURRENCY * 2; i++) {
+            limiter.acquire("http://127.0.0.1:1/service");
+        }
+    }
+
+    @Test
+    public void backendIsSchemeHostAndPort() {
+        assertEquals("http://localhost:80", BackendConcurrencyLimiter.getBackend("http://localhost/service?x=1"));
+        assertEquals("https://localhost:443", BackendConcurrencyLimiter.getBackend("https://localhost/a"));
+        assertEquals("http://localhost:8080", BackendConcurrencyLimiter.getBackend("http://localhost:8080/b"));
+    }
+
+    private int call(BackendConcurrencyLimiter limiter, Server backend) throws Exception {
+        String address = "http://127.0.0.1:" + ((ServerConnector) backend.getConnectors()[0]).getLocalPort() + "/";
+
+        try (BackendConcurrencyLimiter.Permit permit = limiter.acquire(address);
+                CloseableHttpResponse response = client.execute(new HttpGet(address))) {
+            EntityUtils.consume(response.getEntity());
+
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+
+    private Server startBackend(long delayMillis) throws Exception {
+        Server server = new Server();
+
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) {
+                if (delayMillis > 0) {
+                    slowRequestsReceived.countDown();
+
+                    try {
+                        Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                response.setStatus(HttpServletResponse.SC_OK);
+                baseRequest.setHandled(true);
+            }
+        });
+
+        server.start();
+
+        return server;
+    }
+}
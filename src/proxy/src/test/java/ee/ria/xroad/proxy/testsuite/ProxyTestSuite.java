@@ -25,6 +25,7 @@
 package ee.ria.xroad.proxy.testsuite;
 
 import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.SystemPropertyRegistry;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.util.JobManager;
@@ -185,6 +186,7 @@ public final class ProxyTestSuite {
 
         // Make sure SSL is disabled
         System.setProperty(SystemProperties.PROXY_SSL_SUPPORT, "false");
+        SystemPropertyRegistry.reload();
 
         runTestSuite(getDefaultServices(), tc);
     }
@@ -200,6 +202,7 @@ public final class ProxyTestSuite {
 
         // Make sure SSL is enabled
         System.setProperty(SystemProperties.PROXY_SSL_SUPPORT, "true");
+        SystemPropertyRegistry.reload();
 
         List<StartStop> services = getDefaultServices();
         services.add(new DummySslServerProxy());
@@ -218,6 +221,7 @@ public final class ProxyTestSuite {
 
         // Make sure SSL is enabled
         System.setProperty(SystemProperties.PROXY_SSL_SUPPORT, "true");
+        SystemPropertyRegistry.reload();
 
         for (MessageTestCase c : tc) {
             List<StartStop> services = getDefaultServices();
@@ -25,6 +25,7 @@
 package ee.ria.xroad.proxy.testsuite.testcases;
 
 import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.SystemPropertyRegistry;
 import ee.ria.xroad.proxy.testsuite.Message;
 import ee.ria.xroad.proxy.testsuite.SslMessageTestCase;
 import ee.ria.xroad.proxy.util.SSLContextUtil;
@@ -61,11 +62,13 @@ public class SslClientCipherSuiteSetupError extends SslMessageTestCase {
         try {
             // Set not accepted cipher in use
             System.setProperty(propertyName, getNotAcceptedCipher(origCipherSuites));
+            SystemPropertyRegistry.reload();
             // execute test
             super.execute();
         } finally {
             // Restore cipher suite setup for rest of the tests
             System.setProperty(propertyName, String.join(",", origCipherSuites));
+            SystemPropertyRegistry.reload();
         }
     }
 
@@ -0,0 +1,247 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
+import ee.ria.xroad.common.conf.serverconf.model.ClientType;
+import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
+import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
+import ee.ria.xroad.common.conf.serverconf.model.GroupMemberType;
+import ee.ria.xroad.common.conf.serverconf.model.LocalGroupType;
+import ee.ria.xroad.common.conf.serverconf.model.ServerConfType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceDescriptionType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.LocalGroupId;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.identifier.XRoadId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.conf.serverconf.ServerConfDatabaseCtx.doInTransaction;
+
+/**
+ * Compares the uncached database lookups of {@link ServerConfImpl} with the lookups of
+ * {@link SnapshotServerConfImpl}, and measures loading the snapshot. The in-memory HSQLDB database holds 10 000
+ * services of 100 providers. Every service has access rights for 5 consumers and a local group.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("checkstyle:MagicNumber")
+public class ServerConfSnapshotBenchmark {
+
+    private static final String INSTANCE = "BENCH";
+    private static final String MEMBER_CLASS = "GOV";
+
+    private static final int PROVIDERS = 100;
+    private static final int SERVICES_PER_PROVIDER = 100;
+    private static final int CONSUMERS = 5;
+    private static final String LOCAL_GROUP = "group";
+
+    private final ServiceId[] services = new ServiceId[PROVIDERS * SERVICES_PER_PROVIDER];
+    private final ClientId[] consumers = new ClientId[CONSUMERS + 1];
+    private int next;
+
+    private ServerConfImpl database;
+    private SnapshotServerConfImpl snapshot;
+
+    /**
+     * Creates the database and loads the snapshot.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        final Path properties = Files.createTempFile("serverconf-benchmark", ".properties");
+        Files.write(properties, Arrays.asList(
+                "serverconf.hibernate.dialect=org.hibernate.dialect.HSQLDialect",
+                "serverconf.hibernate.connection.driver_class=org.hsqldb.jdbcDriver",
+                "serverconf.hibernate.connection.url=jdbc:hsqldb:mem:serverconf",
+                "serverconf.hibernate.connection.username=serverconf",
+                "serverconf.hibernate.connection.password=serverconf",
+                "serverconf.hibernate.hbm2ddl.auto=create-drop"));
+        properties.toFile().deleteOnExit();
+        System.setProperty(SystemProperties.DATABASE_PROPERTIES, properties.toString());
+
+        for (int i = 0; i < CONSUMERS; i++) {
+            consumers[i] = ClientId.create(INSTANCE, MEMBER_CLASS, "consumer-" + i);
+        }
+        // member of the local groups only
+        consumers[CONSUMERS] = ClientId.create(INSTANCE, MEMBER_CLASS, "group-member");
+
+        doInTransaction(session -> {
+            session.save(createServerConf());
+            return null;
+        });
+
+        database = new ServerConfImpl();
+        snapshot = new SnapshotServerConfImpl(Runnable::run);
+        snapshot.checkForChanges();
+    }
+
+    private ServerConfType createServerConf() {
+        final ServerConfType conf = new ServerConfType();
+        conf.setServerCode("server");
+
+        final LocalGroupId localGroup = LocalGroupId.create(LOCAL_GROUP);
+
+        for (int i = 0; i < PROVIDERS; i++) {
+            final ClientType provider = new ClientType();
+            provider.setConf(conf);
+            provider.setIdentifier(ClientId.create(INSTANCE, MEMBER_CLASS, "provider-" + i));
+            provider.setClientStatus(ClientType.STATUS_REGISTERED);
+            provider.setIsAuthentication(IsAuthentication.NOSSL.name());
+            provider.getLocalGroup().add(createLocalGroup());
+            conf.getClient().add(provider);
+
+            final ServiceDescriptionType description = new ServiceDescriptionType();
+            description.setClient(provider);
+            description.setUrl("http://provider-" + i + "/wsdl");
+            description.setType(DescriptionType.WSDL);
+            provider.getServiceDescription().add(description);
+
+            for (int j = 0; j < SERVICES_PER_PROVIDER; j++) {
+                final ServiceType service = new ServiceType();
+                service.setServiceDescription(description);
+                service.setServiceCode("service-" + j);
+                service.setServiceVersion("v1");
+                service.setUrl("http://provider-" + i + "/service-" + j);
+                service.setTimeout(60);
+                description.getService().add(service);
+
+                services[i * SERVICES_PER_PROVIDER + j] = ServiceId.create(provider.getIdentifier(),
+                        service.getServiceCode(), service.getServiceVersion());
+
+                final EndpointType endpoint = new EndpointType(service.getServiceCode(), EndpointType.ANY_METHOD,
+                        EndpointType.ANY_PATH, true);
+                provider.getEndpoint().add(endpoint);
+
+                for (int k = 0; k < CONSUMERS; k++) {
+                    provider.getAcl().add(createAccessRight(endpoint, consumers[k]));
+                }
+                provider.getAcl().add(createAccessRight(endpoint, localGroup));
+            }
+        }
+
+        conf.setOwner(conf.getClient().get(0));
+        return conf;
+    }
+
+    private LocalGroupType createLocalGroup() {
+        final GroupMemberType member = new GroupMemberType();
+        member.setGroupMemberId(consumers[CONSUMERS]);
+        member.setAdded(new Date());
+
+        final LocalGroupType group = new LocalGroupType();
+        group.setGroupCode(LOCAL_GROUP);
+        group.setDescription(LOCAL_GROUP);
+        group.setUpdated(new Date());
+        group.getGroupMember().add(member);
+        return group;
+    }
+
+    private static AccessRightType createAccessRight(EndpointType endpoint, XRoadId subject) {
+        final AccessRightType accessRight = new AccessRightType();
+        accessRight.setEndpoint(endpoint);
+        accessRight.setSubjectId(subject);
+        accessRight.setRightsGiven(new Date());
+        return accessRight;
+    }
+
+    private ServiceId nextService() {
+        next = (next + 1) % services.length;
+        return services[next];
+    }
+
+    private ClientId nextConsumer() {
+        return consumers[next % consumers.length];
+    }
+
+    /**
+     * Checks the access rights from the database.
+     * @return true, if the query is allowed
+     */
+    @Benchmark
+    public boolean databaseIsQueryAllowed() {
+        return database.isQueryAllowed(nextConsumer(), nextService(), null, null);
+    }
+
+    /**
+     * Checks the access rights from the snapshot.
+     * @return true, if the query is allowed
+     */
+    @Benchmark
+    public boolean snapshotIsQueryAllowed() {
+        return snapshot.isQueryAllowed(nextConsumer(), nextService(), null, null);
+    }
+
+    /**
+     * Reads the service address from the database.
+     * @return the service address
+     */
+    @Benchmark
+    public String databaseGetServiceAddress() {
+        return database.getServiceAddress(nextService());
+    }
+
+    /**
+     * Reads the service address from the snapshot.
+     * @return the service address
+     */
+    @Benchmark
+    public String snapshotGetServiceAddress() {
+        return snapshot.getServiceAddress(nextService());
+    }
+
+    /**
+     * Loads the whole configuration into a snapshot.
+     * @return the snapshot
+     * @throws Exception if an error occurs
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object loadSnapshot() throws Exception {
+        return doInTransaction(ServerConfSnapshot::load);
+    }
+}
@@ -28,6 +28,7 @@ import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.InternalSSLKey;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.dao.ChangeVersionDAOImpl;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
 import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
 import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
@@ -39,73 +40,118 @@ import ee.ria.xroad.common.identifier.ServiceId;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
 
 /**
  * Caching implementation for ServerConf
  * The long lasting and frequently used operations are cached
+ *
+ * Cached items are reloaded in the background after the cache period, so that only the first load of an item
+ * blocks the requesting thread. {@link #checkForChanges()} compares the change counters of the serverconf tables
+ * with the previous check and marks the items depending on the changed tables for a background reload.
  */
 @Slf4j
 public class CachingServerConfImpl extends ServerConfImpl {
 
     public static final String TSP_URL = "tsp_url";
 
+    private static final Set<String> CLIENT_TABLES = tables("client", "identifier");
+    private static final Set<String> SERVICE_TABLES = tables("client", "identifier", "service",
+            "service_securitycategories", "servicedescription");
+    private static final Set<String> ACL_TABLES = tables("accessright", "client", "endpoint", "groupmember",
+            "identifier", "localgroup");
+    private static final Set<String> TSP_TABLES = tables("serverconf", "tsp");
+    private static final Set<String> SERVER_ID_TABLES = tables("client", "identifier", "serverconf");
+
     private final int expireSeconds;
     private volatile SecurityServerId serverId;
-    private final Cache<Object, List<String>> tspCache;
-    private final Cache<ServiceId, Optional<ServiceType>> serviceCache;
-    private final Cache<AclCacheKey, List<EndpointType>> aclCache;
-    private final Cache<ClientId, Optional<ClientType>> clientCache;
+    private final Executor refreshExecutor;
+    private final ChangeVersionDAOImpl changeVersionDao = new ChangeVersionDAOImpl();
+    private Map<String, Long> changeVersions;
+    private final RefreshingCache<String, List<String>> tspCache;
+    private final RefreshingCache<ServiceId, Optional<ServiceType>> serviceCache;
+    private final RefreshingCache<AclCacheKey, List<EndpointType>> aclCache;
+    private final RefreshingCache<ClientId, Optional<ClientType>> clientCache;
     private final Cache<String, InternalSSLKey> internalKeyCache;
 
     /**
      * Constructor, creates time based object cache with expireSeconds (or internalKeyExpireSeconds
      * with internal key cache)
      */
-    @SuppressWarnings("checkstyle:MagicNumber")
     public CachingServerConfImpl() {
+        this(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ServerConfCacheRefresh");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Constructor, uses the given executor for reloading cached items in the background
+     * @param refreshExecutor executor of the background reloads
+     */
+    protected CachingServerConfImpl(Executor refreshExecutor) {
         super();
         expireSeconds = SystemProperties.getServerConfCachePeriod();
+        this.refreshExecutor = refreshExecutor;
 
         internalKeyCache = CacheBuilder.newBuilder()
                 .maximumSize(1)
                 .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
                 .build();
 
-        tspCache = CacheBuilder.newBuilder()
-                .maximumSize(1)
-                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
-                .build();
+        tspCache = new RefreshingCache<>(refreshing(CacheBuilder.newBuilder()
+                .maximumSize(1)),
+                key -> super.getTspUrl(), refreshExecutor);
 
-        clientCache = CacheBuilder.newBuilder()
+        clientCache = new RefreshingCache<>(refreshing(CacheBuilder.newBuilder()
                 .maximumSize(SystemProperties.getServerConfClientCacheSize())
-                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
-                .recordStats()
-                .build();
+                .recordStats()),
+                clientId -> tx(session -> Optional.ofNullable(super.getClient(session, clientId))), refreshExecutor);
 
-        serviceCache = CacheBuilder.newBuilder()
+        serviceCache = new RefreshingCache<>(refreshing(CacheBuilder.newBuilder()
                 .maximumSize(SystemProperties.getServerConfServiceCacheSize())
-                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
-                .recordStats()
-                .build();
+                .recordStats()),
+                serviceId -> tx(session -> Optional.ofNullable(getService(session, serviceId))), refreshExecutor);
 
-        aclCache = CacheBuilder.newBuilder()
-                .weigher((AclCacheKey k, List<EndpointType> v) -> v.size() + 1)
+        aclCache = new RefreshingCache<>(refreshing(CacheBuilder.newBuilder()
+                .weigher((AclCacheKey k, Generational<List<EndpointType>> v) -> v.getValue().size() + 1)
                 .maximumWeight(SystemProperties.getServerConfAclCacheSize())
-                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
-                .recordStats()
-                .build();
+                .recordStats()),
+                key -> tx(session -> super.getEndpoints(session, key.getClient(), key.getServiceId())),
+                refreshExecutor);
+    }
 
+    /**
+     * Items are reloaded in the background when used after the cache period. Items not used for two
+     * cache periods are removed.
+     */
+    private <K, V> CacheBuilder<K, V> refreshing(CacheBuilder<K, V> builder) {
+        return builder
+                .refreshAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .expireAfterWrite(2L * expireSeconds, TimeUnit.SECONDS);
     }
 
     @Override
@@ -136,6 +182,17 @@ public class CachingServerConfImpl extends ServerConfImpl {
         }
     }
 
+    /**
+     * Re-validates the cached security server identifier after a global configuration change,
+     * so that the first request after an owner change does not have to query the database.
+     */
+    public void globalConfChanged() {
+        SecurityServerId id = serverId;
+        if (id != null && GlobalConf.getServerOwner(id) == null) {
+            getAndCacheServerId(id);
+        }
+    }
+
     @SuppressWarnings("checkstyle:innerassignment")
     private synchronized SecurityServerId getAndCacheServerId(final SecurityServerId current) {
         SecurityServerId id = serverId;
@@ -148,7 +205,7 @@ public class CachingServerConfImpl extends ServerConfImpl {
     @Override
     public List<String> getTspUrl() {
         try {
-            return tspCache.get(TSP_URL, super::getTspUrl);
+            return tspCache.get(TSP_URL);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof CodedException) {
                 throw (CodedException) e.getCause();
@@ -217,11 +274,10 @@ public class CachingServerConfImpl extends ServerConfImpl {
         final AclCacheKey key = new AclCacheKey(client, service);
         try {
             /*
-             * Implementation note. It seems that the loader function is executed in the same thread, in which case the
-             * transaction simply joins the current one. However, this is not explicitly promised by the API,
-             * so we start a transaction if necessary.
+             * Implementation note. The first load of an item is executed in the requesting thread, in which case
+             * the transaction simply joins the current one. Background reloads start their own transaction.
              */
-            return aclCache.get(key, () -> tx(s -> super.getEndpoints(s, client, service)));
+            return aclCache.get(key);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof CodedException) {
                 throw (CodedException) e.getCause();
@@ -233,8 +289,7 @@ public class CachingServerConfImpl extends ServerConfImpl {
 
     private Optional<ServiceType> getService(ServiceId serviceId) {
         try {
-            return serviceCache
-                    .get(serviceId, () -> tx(session -> Optional.ofNullable(super.getService(session, serviceId))));
+            return serviceCache.get(serviceId);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof CodedException) {
                 throw (CodedException) e.getCause();
@@ -246,8 +301,7 @@ public class CachingServerConfImpl extends ServerConfImpl {
 
     private Optional<ClientType> getClient(ClientId clientId) {
         try {
-            return clientCache.get(clientId,
-                    () -> tx(session -> Optional.ofNullable(super.getClient(session, clientId))));
+            return clientCache.get(clientId);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof CodedException) {
                 throw (CodedException) e.getCause();
@@ -257,6 +311,86 @@ public class CachingServerConfImpl extends ServerConfImpl {
         }
     }
 
+    @Override
+    public synchronized void checkForChanges() {
+        final Map<String, Long> versions;
+        try {
+            versions = tx(changeVersionDao::getChangeVersions);
+        } catch (Exception e) {
+            log.debug("Failed to check server configuration for changes", e);
+            return;
+        }
+
+        final Map<String, Long> previous = changeVersions;
+        changeVersions = versions;
+
+        // Items cached before the first check may be older than the versions read now
+        final Set<String> changedTables = previous == null ? null : getChangedTables(previous, versions);
+
+        if (changedTables != null && changedTables.isEmpty()) {
+            return;
+        }
+
+        log.debug("Server configuration tables changed: {}", changedTables);
+
+        tablesChanged(changedTables);
+    }
+
+    /**
+     * Marks the cached items depending on the changed tables for a background reload
+     * @param changedTables names of the changed tables, or null if all tables are considered changed
+     */
+    protected void tablesChanged(Set<String> changedTables) {
+        if (affects(changedTables, CLIENT_TABLES)) {
+            clientCache.invalidate();
+        }
+
+        if (affects(changedTables, SERVICE_TABLES)) {
+            serviceCache.invalidate();
+        }
+
+        if (affects(changedTables, ACL_TABLES)) {
+            aclCache.invalidate();
+        }
+
+        if (affects(changedTables, TSP_TABLES)) {
+            tspCache.invalidate();
+        }
+
+        final SecurityServerId id = serverId;
+        if (id != null && affects(changedTables, SERVER_ID_TABLES)) {
+            refreshExecutor.execute(() -> {
+                try {
+                    getAndCacheServerId(id);
+                } catch (Exception e) {
+                    log.warn("Failed to reload security server identifier", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return executor of the background reloads
+     */
+    protected Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    private static Set<String> getChangedTables(Map<String, Long> previous, Map<String, Long> current) {
+        final Set<String> tables = new HashSet<>(previous.keySet());
+        tables.addAll(current.keySet());
+        tables.removeIf(table -> Objects.equals(previous.get(table), current.get(table)));
+        return tables;
+    }
+
+    private static boolean affects(Set<String> changedTables, Set<String> tables) {
+        return changedTables == null || !Collections.disjoint(changedTables, tables);
+    }
+
+    private static Set<String> tables(String... names) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+    }
+
     @Override
     public void logStatistics() {
         if (log.isTraceEnabled()) {
@@ -274,4 +408,52 @@ public class CachingServerConfImpl extends ServerConfImpl {
         final ClientId client;
         final ServiceId serviceId;
     }
+
+    @Value
+    private static class Generational<V> {
+        final long generation;
+        final V value;
+    }
+
+    /**
+     * Cache whose items are reloaded in the background. Every item remembers the generation of the cache at the
+     * start of its load. Invalidation only increments the generation, and the next use of an item of an older
+     * generation returns the cached value and schedules a reload. Because the generation is read before the
+     * database, an item whose reload was already running when a change was detected is reloaded once more.
+     */
+    private static final class RefreshingCache<K, V> {
+        private final AtomicLong generation = new AtomicLong();
+        private final LoadingCache<K, Generational<V>> cache;
+
+        RefreshingCache(CacheBuilder<? super K, ? super Generational<V>> builder, Function<K, V> loader,
+                Executor refreshExecutor) {
+            this.cache = builder.build(CacheLoader.asyncReloading(new CacheLoader<K, Generational<V>>() {
+                @Override
+                public Generational<V> load(K key) {
+                    final long loadGeneration = generation.get();
+                    return new Generational<>(loadGeneration, loader.apply(key));
+                }
+            }, refreshExecutor));
+        }
+
+        V get(K key) throws ExecutionException {
+            final Generational<V> item = cache.get(key);
+            if (item.getGeneration() != generation.get()) {
+                cache.refresh(key);
+            }
+            return item.getValue();
+        }
+
+        void invalidate() {
+            generation.incrementAndGet();
+        }
+
+        long size() {
+            return cache.size();
+        }
+
+        CacheStats stats() {
+            return cache.stats();
+        }
+    }
 }
@@ -303,6 +303,13 @@ public class ServerConf {
         return getInstance().getServiceDescriptionURL(service);
     }
 
+    /**
+     * Checks the server configuration for changes made after the previous check.
+     */
+    public static void checkForChanges() {
+        getInstance().checkForChanges();
+    }
+
     public static void logStatistics() {
         getInstance().logStatistics();
     }
@@ -179,6 +179,13 @@ public interface ServerConfProvider {
      */
     String getServiceDescriptionURL(ServiceId service);
 
+    /**
+     * Checks the server configuration for changes made after the previous check
+     */
+    default void checkForChanges() {
+        //NOP
+    }
+
     /**
      * Log serverconf statistics
      */
@@ -0,0 +1,296 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.dao.ServerConfDAOImpl;
+import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
+import ee.ria.xroad.common.conf.serverconf.model.ClientType;
+import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
+import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
+import ee.ria.xroad.common.conf.serverconf.model.ServerConfType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceType;
+import ee.ria.xroad.common.conf.serverconf.model.TspType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.GlobalGroupId;
+import ee.ria.xroad.common.identifier.LocalGroupId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.identifier.XRoadId;
+
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_SERVERCONF;
+import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
+import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
+
+/**
+ * In-memory copy of the server configuration, loaded with a few bulk queries. Clients, services and access
+ * rights are indexed by their identifiers, so that the lookups do not need the database. The snapshot is not
+ * modified after it has been loaded.
+ */
+final class ServerConfSnapshot {
+
+    private static final String CLIENTS_QUERY = "select c from ClientType c join fetch c.identifier";
+
+    private static final String SERVICES_QUERY = "select distinct s from ServiceType s"
+            + " join fetch s.serviceDescription d"
+            + " join fetch d.client"
+            + " left join fetch s.requiredSecurityCategory";
+
+    private static final String ACL_QUERY = "select c.id, a from ClientType c join c.acl a"
+            + " join fetch a.endpoint"
+            + " join fetch a.subjectId";
+
+    private static final String LOCAL_GROUP_MEMBERS_QUERY = "select c.id, g.groupCode, m.groupMemberId"
+            + " from ClientType c join c.localGroup g join g.groupMember m";
+
+    private static final String IS_CERTS_QUERY = "select c.id, cert.data from ClientType c join c.isCert cert";
+
+    private final SecurityServerId identifier;
+    private final List<String> tspUrls;
+    private final Map<ClientId, Client> clients = new HashMap<>();
+    private final Map<ServiceId, ServiceType> services = new HashMap<>();
+    private final List<X509Certificate> isCerts = new ArrayList<>();
+
+    private ServerConfSnapshot(SecurityServerId identifier, List<String> tspUrls) {
+        this.identifier = identifier;
+        this.tspUrls = Collections.unmodifiableList(tspUrls);
+    }
+
+    /**
+     * Loads the whole server configuration
+     * @param session the session
+     * @return the snapshot
+     */
+    static ServerConfSnapshot load(Session session) {
+        final ServerConfType conf = new ServerConfDAOImpl().getConf(session);
+        final ClientType owner = conf.getOwner();
+
+        final ServerConfSnapshot snapshot = new ServerConfSnapshot(
+                owner == null ? null : SecurityServerId.create(owner.getIdentifier(), conf.getServerCode()),
+                conf.getTsp().stream()
+                        .map(TspType::getUrl)
+                        .filter(StringUtils::isNotBlank)
+                        .collect(Collectors.toList()));
+
+        final Map<Long, Client> clientsById = new HashMap<>();
+
+        for (ClientType clientType : list(session, CLIENTS_QUERY, ClientType.class)) {
+            final Client client = new Client(clientType);
+            clientsById.put(clientType.getId(), client);
+            snapshot.clients.put(client.id, client);
+        }
+
+        for (ServiceType service : list(session, SERVICES_QUERY, ServiceType.class)) {
+            final Client provider = clientsById.get(service.getServiceDescription().getClient().getId());
+            final ServiceId serviceId = ServiceId.create(provider.id, service.getServiceCode(),
+                    service.getServiceVersion());
+
+            snapshot.services.put(serviceId, service);
+            provider.services.add(serviceId);
+        }
+
+        for (Object[] row : list(session, ACL_QUERY, Object[].class)) {
+            clientsById.get((Long) row[0]).addAccessRight((AccessRightType) row[1]);
+        }
+
+        for (Object[] row : list(session, LOCAL_GROUP_MEMBERS_QUERY, Object[].class)) {
+            clientsById.get((Long) row[0]).localGroups.computeIfAbsent((String) row[1], code -> new HashSet<>())
+                    .add(unproxy((ClientId) row[2]));
+        }
+
+        for (Object[] row : list(session, IS_CERTS_QUERY, Object[].class)) {
+            final X509Certificate cert = readCertificate((byte[]) row[1]);
+            clientsById.get((Long) row[0]).isCerts.add(cert);
+            snapshot.isCerts.add(cert);
+        }
+
+        return snapshot;
+    }
+
+    SecurityServerId getIdentifier() {
+        if (identifier == null) {
+            throw new CodedException(X_MALFORMED_SERVERCONF, "Owner is not set");
+        }
+        return identifier;
+    }
+
+    List<String> getTspUrl() {
+        return tspUrls;
+    }
+
+    Optional<ServiceType> getService(ServiceId service) {
+        return Optional.ofNullable(services.get(service));
+    }
+
+    /**
+     * @param serviceProvider the service provider
+     * @param descriptionType filter results by description type, or null for all services
+     * @return services of the specified service provider
+     */
+    List<ServiceId> getServices(ClientId serviceProvider, DescriptionType descriptionType) {
+        final Client provider = clients.get(serviceProvider);
+        if (provider == null) {
+            return new ArrayList<>();
+        }
+
+        return provider.services.stream()
+                .filter(s -> descriptionType == null
+                        || descriptionType == services.get(s).getServiceDescription().getType())
+                .collect(Collectors.toList());
+    }
+
+    List<ClientId> getMembers() {
+        return new ArrayList<>(clients.keySet());
+    }
+
+    String getMemberStatus(ClientId clientId) {
+        final Client client = clients.get(clientId);
+        return client != null ? client.status : null;
+    }
+
+    IsAuthentication getIsAuthentication(ClientId clientId) {
+        final Client client = clients.get(clientId);
+        if (client == null) {
+            return null;
+        }
+        return client.isAuthentication != null ? IsAuthentication.valueOf(client.isAuthentication)
+                : IsAuthentication.NOSSL;
+    }
+
+    List<X509Certificate> getIsCerts(ClientId clientId) {
+        final Client client = clients.get(clientId);
+        return client != null ? Collections.unmodifiableList(client.isCerts) : Collections.emptyList();
+    }
+
+    List<X509Certificate> getAllIsCerts() {
+        return Collections.unmodifiableList(isCerts);
+    }
+
+    /**
+     * Checks the access rights of the client to the service
+     * @param client the client
+     * @param service the service
+     * @param method request method, or null
+     * @param normalizedPath normalized request path, or null
+     * @return true, if the client is allowed to use the service
+     */
+    boolean isQueryAllowed(ClientId client, ServiceId service, String method, String normalizedPath) {
+        final Client owner = clients.get(service.getClientId());
+        if (owner == null) {
+            throw new CodedException(X_UNKNOWN_SERVICE, "Service '%s' owner not found", service);
+        }
+
+        final String serviceCode = service.getServiceCode();
+
+        if (owner.memberAcl.getOrDefault(new AclKey(serviceCode, client), Collections.emptyList()).stream()
+                .anyMatch(ep -> ep.matches(method, normalizedPath))) {
+            return true;
+        }
+
+        return owner.groupAcl.getOrDefault(serviceCode, Collections.emptyList()).stream()
+                .anyMatch(right -> right.getEndpoint().matches(method, normalizedPath)
+                        && owner.isInGroup(client, right.getGroup()));
+    }
+
+    private static <T> List<T> list(Session session, String query, Class<T> resultType) {
+        return session.createQuery(query, resultType).setReadOnly(true).list();
+    }
+
+    /**
+     * Identifiers referenced from other entities may be Hibernate proxies, which can not be compared with
+     * the identifiers of the requests.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends XRoadId> T unproxy(T id) {
+        return (T) Hibernate.unproxy(id);
+    }
+
+    private static final class Client {
+        private final ClientId id;
+        private final String status;
+        private final String isAuthentication;
+        private final List<ServiceId> services = new ArrayList<>();
+        private final List<X509Certificate> isCerts = new ArrayList<>();
+        private final Map<String, Set<ClientId>> localGroups = new HashMap<>();
+        private final Map<AclKey, List<EndpointType>> memberAcl = new HashMap<>();
+        private final Map<String, List<GroupAccessRight>> groupAcl = new HashMap<>();
+
+        Client(ClientType clientType) {
+            this.id = unproxy(clientType.getIdentifier());
+            this.status = clientType.getClientStatus();
+            this.isAuthentication = clientType.getIsAuthentication();
+        }
+
+        void addAccessRight(AccessRightType accessRight) {
+            final XRoadId subject = unproxy(accessRight.getSubjectId());
+            final EndpointType endpoint = accessRight.getEndpoint();
+
+            if (subject instanceof GlobalGroupId || subject instanceof LocalGroupId) {
+                groupAcl.computeIfAbsent(endpoint.getServiceCode(), code -> new ArrayList<>())
+                        .add(new GroupAccessRight(subject, endpoint));
+            } else {
+                memberAcl.computeIfAbsent(new AclKey(endpoint.getServiceCode(), subject), key -> new ArrayList<>())
+                        .add(endpoint);
+            }
+        }
+
+        boolean isInGroup(ClientId client, XRoadId group) {
+            if (group instanceof GlobalGroupId) {
+                return GlobalConf.isSubjectInGlobalGroup(client, (GlobalGroupId) group);
+            }
+            return localGroups.getOrDefault(((LocalGroupId) group).getGroupCode(), Collections.emptySet())
+                    .contains(client);
+        }
+    }
+
+    @Value
+    private static class AclKey {
+        final String serviceCode;
+        final XRoadId subject;
+    }
+
+    @Value
+    private static class GroupAccessRight {
+        final XRoadId group;
+        final EndpointType endpoint;
+    }
+}
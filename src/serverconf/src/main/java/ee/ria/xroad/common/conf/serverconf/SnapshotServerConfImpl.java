@@ -0,0 +1,249 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceDescriptionType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityCategoryId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ObjectUtils;
+
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
+
+/**
+ * Server configuration that answers the lookups of the message exchange from an in-memory snapshot of the whole
+ * configuration, without using the database.
+ *
+ * The snapshot is loaded in the background whenever {@link #checkForChanges()} detects a change, and the lookups
+ * are answered from the previous snapshot until the new one has been loaded. Until the first snapshot has been
+ * loaded, or if loading it fails, the lookups are answered by {@link CachingServerConfImpl}.
+ */
+@Slf4j
+public class SnapshotServerConfImpl extends CachingServerConfImpl {
+
+    private final AtomicBoolean loadScheduled = new AtomicBoolean();
+    private volatile ServerConfSnapshot snapshot;
+
+    /**
+     * Constructor
+     */
+    public SnapshotServerConfImpl() {
+        super();
+    }
+
+    /**
+     * Constructor, uses the given executor for loading the snapshot and reloading cached items in the background.
+     * The executor must run the tasks one at a time in submission order.
+     * @param refreshExecutor executor of the background loads
+     */
+    protected SnapshotServerConfImpl(Executor refreshExecutor) {
+        super(refreshExecutor);
+    }
+
+    @Override
+    public SecurityServerId getIdentifier() {
+        return fromSnapshot(ServerConfSnapshot::getIdentifier, super::getIdentifier);
+    }
+
+    @Override
+    public boolean serviceExists(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service).isPresent(), () -> super.serviceExists(service));
+    }
+
+    @Override
+    public String getServiceAddress(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service).map(ServiceType::getUrl).orElse(null),
+                () -> super.getServiceAddress(service));
+    }
+
+    @Override
+    public int getServiceTimeout(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service).map(ServiceType::getTimeout).orElse(DEFAULT_SERVICE_TIMEOUT),
+                () -> super.getServiceTimeout(service));
+    }
+
+    @Override
+    public List<ServiceId> getAllServices(ClientId serviceProvider) {
+        return fromSnapshot(s -> s.getServices(serviceProvider, null), () -> super.getAllServices(serviceProvider));
+    }
+
+    @Override
+    public List<ServiceId> getServicesByDescriptionType(ClientId serviceProvider, DescriptionType descriptionType) {
+        return fromSnapshot(s -> s.getServices(serviceProvider, descriptionType),
+                () -> super.getServicesByDescriptionType(serviceProvider, descriptionType));
+    }
+
+    @Override
+    public List<ServiceId> getAllowedServices(ClientId serviceProvider, ClientId client) {
+        return fromSnapshot(s -> getAllowedServices(s, s.getServices(serviceProvider, null), client),
+                () -> super.getAllowedServices(serviceProvider, client));
+    }
+
+    @Override
+    public List<ServiceId> getAllowedServicesByDescriptionType(ClientId serviceProvider, ClientId client,
+            DescriptionType descriptionType) {
+        return fromSnapshot(s -> getAllowedServices(s, s.getServices(serviceProvider, descriptionType), client),
+                () -> super.getAllowedServicesByDescriptionType(serviceProvider, client, descriptionType));
+    }
+
+    @Override
+    public boolean isSslAuthentication(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service)
+                        .map(it -> ObjectUtils.defaultIfNull(it.getSslAuthentication(), true))
+                        .orElseThrow(() -> new CodedException(X_UNKNOWN_SERVICE, "Service '%s' not found", service)),
+                () -> super.isSslAuthentication(service));
+    }
+
+    @Override
+    public List<ClientId> getMembers() {
+        return fromSnapshot(ServerConfSnapshot::getMembers, super::getMembers);
+    }
+
+    @Override
+    public String getMemberStatus(ClientId memberId) {
+        return fromSnapshot(s -> s.getMemberStatus(memberId), () -> super.getMemberStatus(memberId));
+    }
+
+    @Override
+    public IsAuthentication getIsAuthentication(ClientId client) {
+        return fromSnapshot(s -> s.getIsAuthentication(client), () -> super.getIsAuthentication(client));
+    }
+
+    @Override
+    public List<X509Certificate> getIsCerts(ClientId client) throws Exception {
+        final ServerConfSnapshot current = snapshot;
+        return current != null ? current.getIsCerts(client) : super.getIsCerts(client);
+    }
+
+    @Override
+    public List<X509Certificate> getAllIsCerts() {
+        return fromSnapshot(ServerConfSnapshot::getAllIsCerts, super::getAllIsCerts);
+    }
+
+    @Override
+    public String getDisabledNotice(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service)
+                        .map(ServiceType::getServiceDescription)
+                        .filter(ServiceDescriptionType::isDisabled)
+                        .map(it -> ObjectUtils.defaultIfNull(it.getDisabledNotice(),
+                                String.format("Service '%s' is disabled", service)))
+                        .orElse(null),
+                () -> super.getDisabledNotice(service));
+    }
+
+    @Override
+    public boolean isQueryAllowed(ClientId client, ServiceId service, String method, String path) {
+        return fromSnapshot(s -> client != null && s.isQueryAllowed(client, service, method, normalizePath(path)),
+                () -> super.isQueryAllowed(client, service, method, path));
+    }
+
+    @Override
+    public List<SecurityCategoryId> getRequiredCategories(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service).map(ServiceType::getRequiredSecurityCategory)
+                        .orElse(Collections.emptyList()),
+                () -> super.getRequiredCategories(service));
+    }
+
+    @Override
+    public List<String> getTspUrl() {
+        return fromSnapshot(ServerConfSnapshot::getTspUrl, super::getTspUrl);
+    }
+
+    @Override
+    public DescriptionType getDescriptionType(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service).map(it -> it.getServiceDescription().getType()).orElse(null),
+                () -> super.getDescriptionType(service));
+    }
+
+    @Override
+    public String getServiceDescriptionURL(ServiceId service) {
+        return fromSnapshot(s -> s.getService(service).map(it -> it.getServiceDescription().getUrl()).orElse(null),
+                () -> super.getServiceDescriptionURL(service));
+    }
+
+    @Override
+    public void checkForChanges() {
+        super.checkForChanges();
+
+        if (snapshot == null) {
+            // the first load has not finished yet or the previous load failed
+            scheduleLoad();
+        }
+    }
+
+    @Override
+    protected void tablesChanged(Set<String> changedTables) {
+        super.tablesChanged(changedTables);
+        scheduleLoad();
+    }
+
+    private void scheduleLoad() {
+        if (loadScheduled.compareAndSet(false, true)) {
+            getRefreshExecutor().execute(this::loadSnapshot);
+        }
+    }
+
+    private void loadSnapshot() {
+        // Cleared before reading the database, so that a change detected during the load schedules another one
+        loadScheduled.set(false);
+
+        try {
+            snapshot = tx(ServerConfSnapshot::load);
+            log.debug("Loaded server configuration snapshot");
+        } catch (Exception e) {
+            // The caches have been invalidated by the change, the outdated snapshot is not used anymore
+            snapshot = null;
+            log.warn("Failed to load server configuration snapshot", e);
+        }
+    }
+
+    private <T> T fromSnapshot(Function<ServerConfSnapshot, T> lookup, Supplier<T> fallback) {
+        final ServerConfSnapshot current = snapshot;
+        return current != null ? lookup.apply(current) : fallback.get();
+    }
+
+    private static List<ServiceId> getAllowedServices(ServerConfSnapshot snapshot, List<ServiceId> services,
+            ClientId client) {
+        return services.stream()
+                .filter(s -> client != null && snapshot.isQueryAllowed(client, s, null, null))
+                .collect(Collectors.toList());
+    }
+}
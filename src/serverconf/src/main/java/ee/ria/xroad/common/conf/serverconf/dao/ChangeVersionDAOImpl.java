@@ -0,0 +1,54 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf.dao;
+
+import ee.ria.xroad.common.conf.serverconf.model.ChangeVersionType;
+
+import org.hibernate.Session;
+
+import javax.persistence.criteria.CriteriaQuery;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Change version data access object implementation.
+ */
+public class ChangeVersionDAOImpl {
+
+    /**
+     * Returns the change counters of the server configuration tables.
+     * @param session the session
+     * @return the change counters keyed by table name
+     */
+    public Map<String, Long> getChangeVersions(Session session) {
+        final CriteriaQuery<ChangeVersionType> query = session.getCriteriaBuilder()
+                .createQuery(ChangeVersionType.class);
+        query.select(query.from(ChangeVersionType.class));
+
+        return session.createQuery(query).setReadOnly(true).list().stream()
+                .collect(Collectors.toMap(ChangeVersionType::getTableName, ChangeVersionType::getVersion));
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.conf.serverconf.CachingServerConfImpl;
+import ee.ria.xroad.common.conf.serverconf.model.ChangeVersionType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceType;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.ToIntFunction;
+
+import static ee.ria.xroad.common.conf.serverconf.ServerConfDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.proxy.conf.TestUtil.MEMBER_CLASS;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_URL;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_VERSION;
+import static ee.ria.xroad.proxy.conf.TestUtil.XROAD_INSTANCE;
+import static ee.ria.xroad.proxy.conf.TestUtil.client;
+import static ee.ria.xroad.proxy.conf.TestUtil.prepareDB;
+import static ee.ria.xroad.proxy.conf.TestUtil.service;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the change version based invalidation of {@link CachingServerConfImpl}.
+ */
+public class CachingServerConfChangeTest {
+
+    private static final ServiceId SERVICE = ServiceId.create(XROAD_INSTANCE, MEMBER_CLASS,
+            client(1), null, service(1, 1), SERVICE_VERSION);
+
+    private static final String URL_0 = SERVICE_URL + 1;
+    private static final String URL_1 = "http://changed-once";
+    private static final String URL_2 = "http://changed-twice";
+
+    private final Queue<Runnable> reloads = new ArrayDeque<>();
+
+    private TestCachingServerConfImpl serverConf;
+
+    /**
+     * Creates the test database and the change counters.
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        prepareDB();
+
+        doInTransaction(session -> {
+            for (String table : new String[] {"service", "tsp"}) {
+                ChangeVersionType version = new ChangeVersionType();
+                version.setTableName(table);
+                session.save(version);
+            }
+            return null;
+        });
+
+        serverConf = new TestCachingServerConfImpl(reloads);
+    }
+
+    /**
+     * Items cached before the first check are reloaded, since the first check has nothing to compare with.
+     */
+    @Test
+    public void firstCheckReloadsItemsCachedBeforeIt() throws Exception {
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+
+        setServiceUrl(URL_1);
+        serverConf.checkForChanges();
+
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+        runReloads();
+        assertEquals(URL_1, serverConf.getServiceAddress(SERVICE));
+    }
+
+    /**
+     * A detected change is served after the background reload, and the requests in between get the cached item.
+     */
+    @Test
+    public void changedItemIsReloadedInBackground() throws Exception {
+        serverConf.checkForChanges();
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+
+        setServiceUrl(URL_1);
+        incrementVersion("service");
+        serverConf.checkForChanges();
+
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+        assertEquals(1, reloads.size());
+
+        runReloads();
+        assertEquals(URL_1, serverConf.getServiceAddress(SERVICE));
+        assertTrue(reloads.isEmpty());
+    }
+
+    /**
+     * Changes of tables the item does not depend on do not reload the item.
+     */
+    @Test
+    public void unrelatedChangeKeepsCachedItem() throws Exception {
+        serverConf.checkForChanges();
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+
+        setServiceUrl(URL_1);
+        incrementVersion("tsp");
+        serverConf.checkForChanges();
+
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+        assertTrue(reloads.isEmpty());
+    }
+
+    /**
+     * A change detected while a reload of the item is running (after it has read the database) must cause
+     * another reload, instead of the running reload leaving the older value in the cache.
+     */
+    @Test
+    public void changeDuringReloadCausesAnotherReload() throws Exception {
+        serverConf.checkForChanges();
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+
+        setServiceUrl(URL_1);
+        incrementVersion("service");
+        serverConf.checkForChanges();
+        assertEquals(URL_0, serverConf.getServiceAddress(SERVICE));
+
+        serverConf.afterServiceLoad = () -> {
+            setServiceUrl(URL_2);
+            incrementVersion("service");
+            serverConf.checkForChanges();
+        };
+        runReloads();
+
+        assertEquals(URL_1, serverConf.getServiceAddress(SERVICE));
+        assertEquals(1, reloads.size());
+
+        runReloads();
+        assertEquals(URL_2, serverConf.getServiceAddress(SERVICE));
+        assertTrue(reloads.isEmpty());
+    }
+
+    private void runReloads() {
+        Runnable reload;
+        while ((reload = reloads.poll()) != null) {
+            reload.run();
+        }
+    }
+
+    private static void setServiceUrl(String url) {
+        update(session -> session.createQuery("update ServiceType s set s.url = :url where s.serviceCode = :code")
+                .setParameter("url", url)
+                .setParameter("code", SERVICE.getServiceCode())
+                .executeUpdate());
+    }
+
+    private static void incrementVersion(String table) {
+        update(session -> session.createQuery(
+                "update ChangeVersionType v set v.version = v.version + 1 where v.tableName = :table")
+                .setParameter("table", table)
+                .executeUpdate());
+    }
+
+    private static void update(ToIntFunction<Session> statement) {
+        try {
+            doInTransaction(session -> statement.applyAsInt(session));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class TestCachingServerConfImpl extends CachingServerConfImpl {
+        private Runnable afterServiceLoad;
+
+        TestCachingServerConfImpl(Queue<Runnable> reloads) {
+            super(reloads::add);
+        }
+
+        @Override
+        protected ServiceType getService(Session session, ServiceId service) {
+            ServiceType result = super.getService(session, service);
+
+            Runnable hook = afterServiceLoad;
+            afterServiceLoad = null;
+            if (hook != null) {
+                hook.run();
+            }
+
+            return result;
+        }
+    }
+}
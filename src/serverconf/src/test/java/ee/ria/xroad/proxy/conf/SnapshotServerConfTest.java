@@ -0,0 +1,270 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.conf.serverconf.ServerConfImpl;
+import ee.ria.xroad.common.conf.serverconf.SnapshotServerConfImpl;
+import ee.ria.xroad.common.conf.serverconf.model.ChangeVersionType;
+import ee.ria.xroad.common.conf.serverconf.model.GroupMemberType;
+import ee.ria.xroad.common.conf.serverconf.model.LocalGroupType;
+import ee.ria.xroad.common.db.TransactionCallback;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.ToIntFunction;
+
+import static ee.ria.xroad.common.conf.serverconf.ServerConfDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.proxy.conf.TestUtil.CLIENT_CODE;
+import static ee.ria.xroad.proxy.conf.TestUtil.NUM_CLIENTS;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_URL;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_VERSION;
+import static ee.ria.xroad.proxy.conf.TestUtil.client;
+import static ee.ria.xroad.proxy.conf.TestUtil.createTestClientId;
+import static ee.ria.xroad.proxy.conf.TestUtil.createTestServiceId;
+import static ee.ria.xroad.proxy.conf.TestUtil.prepareDB;
+import static ee.ria.xroad.proxy.conf.TestUtil.service;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link SnapshotServerConfImpl}.
+ */
+public class SnapshotServerConfTest {
+
+    private static final ServiceId SERVICE = createTestServiceId(client(1), service(1, 1), SERVICE_VERSION);
+    private static final String CHANGED_URL = "http://changed";
+    private static final String GROUP_MEMBER = "groupMember";
+
+    private static final String[][] REQUESTS = {
+            {null, null},
+            {"GET", "/api/foo"},
+            {"POST", "/api/test/foo"},
+            {"POST", "/api/t%65st/foo"},
+            {"POST", "/api/test/../bar"},
+            {"DELETE", "/api/test"}
+    };
+
+    private final Queue<Runnable> loads = new ArrayDeque<>();
+    private final ServerConfImpl database = new ServerConfImpl();
+
+    private TestSnapshotServerConfImpl serverConf;
+
+    /**
+     * Creates the test database and the change counters. The local groups of the test data are renamed and
+     * given a member without other access rights, so that the local group access right of the first client applies.
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        prepareDB();
+
+        doInTransaction(session -> {
+            final ClientId groupMember = groupMember();
+            for (LocalGroupType group : session.createQuery("from LocalGroupType", LocalGroupType.class).list()) {
+                GroupMemberType member = new GroupMemberType();
+                member.setGroupMemberId(groupMember);
+                member.setAdded(new Date());
+                group.getGroupMember().add(member);
+                group.setGroupCode("testGroup1");
+            }
+
+            for (String table : new String[] {"service", "tsp"}) {
+                ChangeVersionType version = new ChangeVersionType();
+                version.setTableName(table);
+                session.save(version);
+            }
+            return null;
+        });
+
+        serverConf = new TestSnapshotServerConfImpl(loads);
+    }
+
+    /**
+     * Lookups are answered from the database until the first snapshot has been loaded.
+     */
+    @Test
+    public void lookupsUseDatabaseBeforeFirstLoad() {
+        assertEquals(SERVICE_URL + 1, serverConf.getServiceAddress(SERVICE));
+        assertTrue(serverConf.transactions > 0);
+
+        serverConf.checkForChanges();
+        assertEquals(1, loads.size());
+    }
+
+    /**
+     * The snapshot answers the lookups like the database, and without using the database.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void snapshotAnswersLikeDatabase() throws Exception {
+        loadSnapshot();
+        final int transactions = serverConf.transactions;
+
+        assertEquals(database.getIdentifier(), serverConf.getIdentifier());
+        assertEquals(database.getTspUrl(), serverConf.getTspUrl());
+        assertEquals(new HashSet<>(database.getMembers()), new HashSet<>(serverConf.getMembers()));
+        assertEquals(database.getAllIsCerts(), serverConf.getAllIsCerts());
+
+        for (ClientId client : clients()) {
+            assertEquals(database.getMemberStatus(client), serverConf.getMemberStatus(client));
+            assertEquals(database.getIsAuthentication(client), serverConf.getIsAuthentication(client));
+            assertEquals(database.getIsCerts(client), serverConf.getIsCerts(client));
+        }
+
+        for (ClientId provider : database.getMembers()) {
+            assertEquals(new HashSet<>(database.getAllServices(provider)),
+                    new HashSet<>(serverConf.getAllServices(provider)));
+
+            for (ServiceId service : database.getAllServices(provider)) {
+                assertEquals(database.getServiceAddress(service), serverConf.getServiceAddress(service));
+                assertEquals(database.getServiceTimeout(service), serverConf.getServiceTimeout(service));
+                assertEquals(database.isSslAuthentication(service), serverConf.isSslAuthentication(service));
+                assertEquals(database.getDisabledNotice(service), serverConf.getDisabledNotice(service));
+                assertEquals(new ArrayList<>(database.getRequiredCategories(service)),
+                        new ArrayList<>(serverConf.getRequiredCategories(service)));
+                assertEquals(database.getDescriptionType(service), serverConf.getDescriptionType(service));
+                assertEquals(database.getServiceDescriptionURL(service),
+                        serverConf.getServiceDescriptionURL(service));
+
+                for (ClientId client : clients()) {
+                    for (String[] request : REQUESTS) {
+                        assertEquals(client + " " + service + " " + request[0] + " " + request[1],
+                                database.isQueryAllowed(client, service, request[0], request[1]),
+                                serverConf.isQueryAllowed(client, service, request[0], request[1]));
+                    }
+                }
+            }
+
+            for (ClientId client : clients()) {
+                assertEquals(new HashSet<>(database.getAllowedServices(provider, client)),
+                        new HashSet<>(serverConf.getAllowedServices(provider, client)));
+            }
+        }
+
+        final ServiceId unknown = createTestServiceId("foo", "bar");
+        assertFalse(serverConf.serviceExists(unknown));
+        assertEquals(database.getServiceAddress(unknown), serverConf.getServiceAddress(unknown));
+        assertEquals(database.getServiceTimeout(unknown), serverConf.getServiceTimeout(unknown));
+
+        assertEquals(transactions, serverConf.transactions);
+    }
+
+    /**
+     * Access rights given to a local group apply to the members of the group.
+     */
+    @Test
+    public void localGroupMemberIsAllowed() {
+        loadSnapshot();
+
+        final ServiceId otherService = createTestServiceId(client(2), service(1, 1), SERVICE_VERSION);
+
+        assertTrue(serverConf.isQueryAllowed(groupMember(), SERVICE, null, null));
+        assertFalse(serverConf.isQueryAllowed(groupMember(), otherService, null, null));
+    }
+
+    /**
+     * A detected change is served after the next snapshot has been loaded in the background, and the lookups in
+     * between are answered from the previous snapshot.
+     */
+    @Test
+    public void changeIsServedAfterBackgroundLoad() {
+        loadSnapshot();
+
+        update(session -> session.createQuery("update ServiceType s set s.url = :url where s.serviceCode = :code")
+                .setParameter("url", CHANGED_URL)
+                .setParameter("code", SERVICE.getServiceCode())
+                .executeUpdate());
+        update(session -> session.createQuery(
+                "update ChangeVersionType v set v.version = v.version + 1 where v.tableName = 'service'")
+                .executeUpdate());
+        serverConf.checkForChanges();
+
+        assertEquals(SERVICE_URL + 1, serverConf.getServiceAddress(SERVICE));
+        assertEquals(1, loads.size());
+
+        runLoads();
+        assertEquals(CHANGED_URL, serverConf.getServiceAddress(SERVICE));
+    }
+
+    private void loadSnapshot() {
+        serverConf.checkForChanges();
+        runLoads();
+    }
+
+    private void runLoads() {
+        Runnable load;
+        while ((load = loads.poll()) != null) {
+            load.run();
+        }
+    }
+
+    private static List<ClientId> clients() {
+        final List<ClientId> clients = new ArrayList<>();
+        for (int i = 1; i < NUM_CLIENTS; i++) {
+            clients.add(createTestClientId(client(i)));
+            clients.add(ClientId.create("XX", "memberClass", "memberCode" + i));
+        }
+        clients.add(createTestClientId(CLIENT_CODE + "X"));
+        clients.add(groupMember());
+        return clients;
+    }
+
+    private static ClientId groupMember() {
+        return ClientId.create("XX", "memberClass", GROUP_MEMBER);
+    }
+
+    private static void update(ToIntFunction<Session> statement) {
+        try {
+            doInTransaction(session -> statement.applyAsInt(session));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class TestSnapshotServerConfImpl extends SnapshotServerConfImpl {
+        private int transactions;
+
+        TestSnapshotServerConfImpl(Queue<Runnable> loads) {
+            super(loads::add);
+        }
+
+        @Override
+        protected <T> T tx(TransactionCallback<T> t) {
+            transactions++;
+            return super.tx(t);
+        }
+    }
+}
@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.signer.certmanager;
 
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.common.util.MimeTypes;
@@ -31,7 +32,17 @@ import ee.ria.xroad.common.util.MimeUtils;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.bouncycastle.asn1.ocsp.OCSPResponseStatus;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.ocsp.CertificateID;
@@ -41,13 +52,8 @@ import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.operator.ContentSigner;
 
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.ConnectException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.List;
@@ -66,6 +72,14 @@ final class OcspClient {
     private static final String DIGEST_ALGORITHM_ID = CryptoUtils.SHA512_ID;
     private static final String SIGN_MECHANISM_NAME = CryptoUtils.CKM_RSA_PKCS_NAME;
 
+    private static final int VALIDATE_CONNECTIONS_AFTER_INACTIVITY_MS = 2000;
+
+    /**
+     * HTTP client with a pool of keep-alive connections to the OCSP responders, shared by the parallel
+     * OCSP-response refresh tasks.
+     */
+    private static final CloseableHttpClient HTTP_CLIENT = createHttpClient();
+
     private OcspClient() {
     }
 
@@ -118,26 +132,33 @@ final class OcspClient {
 
     static OCSPResp fetchResponse(String responderURI, X509Certificate subject, X509Certificate issuer,
             PrivateKey signerKey, X509Certificate signer, String signAlgoId) throws Exception {
-        HttpURLConnection connection = createConnection(responderURI);
-
         OCSPReq ocspRequest = createRequest(subject, issuer, signerKey, signer, signAlgoId);
 
         log.debug("Fetching certificate '{}' status from responder: {}", subject.getIssuerX500Principal(),
-                connection.getURL());
+                responderURI);
 
-        sendRequest(connection, ocspRequest);
-        verifyResponseCode(connection);
+        HttpPost request = new HttpPost(responderURI);
+        request.setHeader(MimeUtils.HEADER_CONTENT_TYPE, MimeTypes.OCSP_REQUEST);
+        request.setHeader("Accept", MimeTypes.OCSP_RESPONSE);
+        request.setEntity(new ByteArrayEntity(ocspRequest.getEncoded()));
 
-        byte[] responseData = getResponseData(connection);
-        OCSPResp response = parseResponse(responseData);
+        try (CloseableHttpResponse httpResponse = HTTP_CLIENT.execute(request)) {
+            verifyResponseCode(httpResponse);
 
-        verifyResponse(response);
+            byte[] responseData = getResponseData(httpResponse);
+            OCSPResp response = parseResponse(responseData);
 
-        return response;
+            verifyResponse(response);
+
+            return response;
+        }
     }
 
-    private static byte[] getResponseData(HttpURLConnection connection) throws IOException {
-        byte[] responseData = IOUtils.toByteArray((InputStream) connection.getContent());
+    private static byte[] getResponseData(CloseableHttpResponse httpResponse) throws IOException {
+        HttpEntity entity = httpResponse.getEntity();
+
+        // reading the entity fully releases the connection back to the pool
+        byte[] responseData = entity != null ? EntityUtils.toByteArray(entity) : null;
 
         if (responseData == null || responseData.length == 0) {
             throw new IOException("No response from responder");
@@ -146,16 +167,11 @@ final class OcspClient {
         return responseData;
     }
 
-    private static void verifyResponseCode(HttpURLConnection connection) throws IOException {
-        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Invalid http response code from responder: " + connection.getResponseCode());
-        }
-    }
+    private static void verifyResponseCode(CloseableHttpResponse httpResponse) throws IOException {
+        int responseCode = httpResponse.getStatusLine().getStatusCode();
 
-    private static void sendRequest(HttpURLConnection connection, OCSPReq ocspRequest) throws IOException {
-        try (DataOutputStream outStream = new DataOutputStream(
-                new BufferedOutputStream(connection.getOutputStream()))) {
-            outStream.write(ocspRequest.getEncoded());
+        if (responseCode != HttpStatus.SC_OK) {
+            throw new IOException("Invalid http response code from responder: " + responseCode);
         }
     }
 
@@ -180,20 +196,27 @@ final class OcspClient {
         }
     }
 
-    private static HttpURLConnection createConnection(String destination) throws IOException {
-        return createConnection(new URL(destination));
-    }
-
-    private static HttpURLConnection createConnection(URL url) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty(MimeUtils.HEADER_CONTENT_TYPE, MimeTypes.OCSP_REQUEST);
-        connection.setRequestProperty("Accept", MimeTypes.OCSP_RESPONSE);
-        connection.setDoOutput(true);
-        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
-        connection.setReadTimeout(READ_TIMEOUT_MS);
-        connection.connect();
-
-        return connection;
+    private static CloseableHttpClient createHttpClient() {
+        int maxConnections = SystemProperties.getOcspFetchThreads();
+
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+        cm.setMaxTotal(maxConnections);
+        cm.setDefaultMaxPerRoute(maxConnections);
+        cm.setValidateAfterInactivity(VALIDATE_CONNECTIONS_AFTER_INACTIVITY_MS);
+
+        RequestConfig.Builder rb = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MS)
+                .setConnectionRequestTimeout(CONNECT_TIMEOUT_MS)
+                .setSocketTimeout(READ_TIMEOUT_MS);
+
+        return HttpClients.custom()
+                // Honour the JVM proxy settings (http.proxyHost etc.) like the URL connections used before
+                .useSystemProperties()
+                .setConnectionManager(cm)
+                .setDefaultRequestConfig(rb.build())
+                // Failover to the next responder is done by the caller
+                .setRetryHandler(new DefaultHttpRequestRetryHandler(0, false))
+                .build();
     }
 
     private static OCSPReq createRequest(X509Certificate subjectCert, X509Certificate issuerCert, PrivateKey signerKey,
@@ -28,6 +28,7 @@ import ee.ria.xroad.common.CertificationServiceDiagnostics;
 import ee.ria.xroad.common.CertificationServiceStatus;
 import ee.ria.xroad.common.DiagnosticsErrorCodes;
 import ee.ria.xroad.common.OcspResponderStatus;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
@@ -57,12 +58,17 @@ import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
@@ -77,6 +83,8 @@ import static java.util.Collections.emptyList;
  * server and providing the responses to the message signer.
  *
  * The certificate status is queried from the server at a fixed interval.
+ * Certificates are grouped by their OCSP responders and the groups are
+ * queried in parallel.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -99,11 +107,22 @@ public class OcspClientWorker extends AbstractSignerActor {
 
     private CertificationServiceDiagnostics certServDiagnostics;
 
+    private ExecutorService fetchExecutor;
+
+    private final OcspResponderMetrics responderMetrics = new OcspResponderMetrics();
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
         changeChecker = new GlobalConfChangeChecker();
         certServDiagnostics = new CertificationServiceDiagnostics();
+        fetchExecutor = Executors.newFixedThreadPool(SystemProperties.getOcspFetchThreads());
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        fetchExecutor.shutdownNow();
+        super.postStop();
     }
 
     @Override
@@ -210,26 +229,35 @@ public class OcspClientWorker extends AbstractSignerActor {
 
         log.info("Fetching OCSP responses for {} certificates", certs.size());
 
-        Boolean failed = false;
-        Map<String, OCSPResp> statuses = new HashMap<>();
+        OcspVerifierOptions verifierOptions = new OcspVerifierOptions(
+                GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate());
+        Map<String, OCSPResp> statuses = new ConcurrentHashMap<>();
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        groupByResponders(certs).forEach((responderURIs, subjects) -> results.add(fetchExecutor.submit(
+                () -> queryCertStatuses(subjects, verifierOptions, new ArrayList<>(responderURIs), statuses))));
+
+        boolean failed = false;
 
-        for (X509Certificate subject : certs) {
+        for (Future<Boolean> result : results) {
             try {
-                OCSPResp status = queryCertStatus(subject, new OcspVerifierOptions(
-                        GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
-                if (status != null) {
-                    String subjectHash = calculateCertHexHash(subject);
-                    statuses.put(subjectHash, status);
-                } else {
-                    failed = true;
-                }
-            } catch (Exception e) {
+                failed |= !result.get();
+            } catch (ExecutionException e) {
                 failed = true;
 
-                log.error("Error when querying certificate '{}'", subject.getSerialNumber(), e);
+                log.error("Error when querying certificate statuses", e.getCause());
+            } catch (InterruptedException e) {
+                failed = true;
+
+                log.error("Interrupted while querying certificate statuses");
+                Thread.currentThread().interrupt();
+
+                break;
             }
         }
 
+        responderMetrics.logAndReset();
+
         if (failed) {
             getSender().tell(FAILED, getSelf());
         } else {
@@ -284,15 +312,75 @@ public class OcspClientWorker extends AbstractSignerActor {
         return new ArrayList<>(certs);
     }
 
+    /**
+     * Groups the certificates by their OCSP responders, so that the groups can be queried in parallel.
+     */
+    Map<List<String>, List<X509Certificate>> groupByResponders(List<X509Certificate> certs) {
+        Map<List<String>, List<X509Certificate>> groups = new LinkedHashMap<>();
+
+        for (X509Certificate cert : certs) {
+            List<String> responderURIs;
+
+            try {
+                responderURIs = GlobalConf.getOcspResponderAddresses(cert);
+            } catch (Exception e) {
+                log.error("Unable to get OCSP responders for certificate '{}'", cert.getSerialNumber(), e);
+
+                responderURIs = emptyList();
+            }
+
+            groups.computeIfAbsent(responderURIs, uris -> new ArrayList<>()).add(cert);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Queries the statuses of certificates sharing the same OCSP responders and puts the verified
+     * responses to the given map.
+     * @return true if the statuses of all the certificates were received
+     */
+    boolean queryCertStatuses(List<X509Certificate> subjects, OcspVerifierOptions verifierOptions,
+            List<String> responderURIs, Map<String, OCSPResp> statuses) {
+        boolean success = true;
+
+        for (X509Certificate subject : subjects) {
+            try {
+                OCSPResp status = queryCertStatus(subject, verifierOptions, responderURIs);
+
+                if (status != null) {
+                    statuses.put(calculateCertHexHash(subject), status);
+                } else {
+                    success = false;
+                }
+            } catch (Exception e) {
+                success = false;
+
+                log.error("Error when querying certificate '{}'", subject.getSerialNumber(), e);
+            }
+        }
+
+        return success;
+    }
+
     OCSPResp queryCertStatus(X509Certificate subject, OcspVerifierOptions verifierOptions) throws Exception {
+        return queryCertStatus(subject, verifierOptions,
+                new ArrayList<>(GlobalConf.getOcspResponderAddresses(subject)));
+    }
+
+    /**
+     * Queries the certificate status from the given responders in order. The responder that returned
+     * the response is moved to the front of the list, so that the following queries using the same
+     * list try it first.
+     */
+    OCSPResp queryCertStatus(X509Certificate subject, OcspVerifierOptions verifierOptions,
+            List<String> responderURIs) throws Exception {
         X509Certificate issuer = GlobalConf.getCaCert(GlobalConf.getInstanceIdentifier(), subject);
 
         PrivateKey signerKey = OcspClient.getOcspRequestKey(subject);
         X509Certificate signer = OcspClient.getOcspSignerCert();
         String signAlgoId = OcspClient.getSignAlgorithmId();
 
-        List<String> responderURIs = GlobalConf.getOcspResponderAddresses(subject);
-
         log.debug("responder URIs: {}", responderURIs);
 
         if (responderURIs.isEmpty()) {
@@ -300,8 +388,11 @@ public class OcspClientWorker extends AbstractSignerActor {
         }
 
         OCSPResp response = null;
+        String respondedURI = null;
 
         for (String responderURI : responderURIs) {
+            long start = System.currentTimeMillis();
+
             try {
                 log.debug("Fetching response from: {}", responderURI);
 
@@ -311,6 +402,8 @@ public class OcspClientWorker extends AbstractSignerActor {
                     reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.RETURN_SUCCESS, LocalTime.now(),
                             LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
 
+                    respondedURI = responderURI;
+
                     break;
                 }
             } catch (OCSPException e) {
@@ -331,8 +424,22 @@ public class OcspClientWorker extends AbstractSignerActor {
                 reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.ERROR_CODE_OCSP_FAILED,
                         LocalTime.now(),
                         LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
+            } finally {
+                long duration = System.currentTimeMillis() - start;
+
+                if (responderURI.equals(respondedURI)) {
+                    responderMetrics.success(responderURI, duration);
+                } else {
+                    responderMetrics.failure(responderURI, duration);
+                }
             }
         }
+
+        if (respondedURI != null) {
+            responderURIs.remove(respondedURI);
+            responderURIs.add(0, respondedURI);
+        }
+
         try {
             log.debug("Verifying response: {}", response);
 
@@ -359,17 +466,24 @@ public class OcspClientWorker extends AbstractSignerActor {
 
         CertificationServiceStatus serviceStatus;
 
-        Map<String, CertificationServiceStatus> serviceStatusMap =
-                certServDiagnostics.getCertificationServiceStatusMap();
+        // responders are queried in parallel
+        synchronized (certServDiagnostics) {
+            Map<String, CertificationServiceStatus> serviceStatusMap =
+                    certServDiagnostics.getCertificationServiceStatusMap();
 
-        if (!serviceStatusMap.containsKey(subjectName)) {
-            serviceStatus = new CertificationServiceStatus(subjectName);
-            serviceStatusMap.put(subjectName, serviceStatus);
-        } else {
-            serviceStatus = serviceStatusMap.get(subjectName);
+            if (!serviceStatusMap.containsKey(subjectName)) {
+                serviceStatus = new CertificationServiceStatus(subjectName);
+                serviceStatusMap.put(subjectName, serviceStatus);
+            } else {
+                serviceStatus = serviceStatusMap.get(subjectName);
+            }
+
+            serviceStatus.getOcspResponderStatusMap().put(responderURI, responderStatus);
         }
+    }
 
-        serviceStatus.getOcspResponderStatusMap().put(responderURI, responderStatus);
+    OcspResponderMetrics getResponderMetrics() {
+        return responderMetrics;
     }
 
     void updateCertStatuses(Map<String, OCSPResp> statuses) throws Exception {
@@ -0,0 +1,117 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects request counts, failures and latencies of the OCSP responders during
+ * an OCSP-response refresh cycle. Safe to use from the parallel refresh tasks.
+ */
+@Slf4j
+class OcspResponderMetrics {
+
+    private final Map<String, ResponderStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Records a successful query to the responder.
+     * @param responderURI the responder URI
+     * @param durationMillis duration of the query in milliseconds
+     */
+    void success(String responderURI, long durationMillis) {
+        getStats(responderURI).record(durationMillis, false);
+    }
+
+    /**
+     * Records a failed query to the responder.
+     * @param responderURI the responder URI
+     * @param durationMillis duration of the query in milliseconds
+     */
+    void failure(String responderURI, long durationMillis) {
+        getStats(responderURI).record(durationMillis, true);
+    }
+
+    /**
+     * @param responderURI the responder URI
+     * @return number of queries made to the responder during the current cycle
+     */
+    long getRequestCount(String responderURI) {
+        ResponderStats responderStats = stats.get(responderURI);
+
+        return responderStats != null ? responderStats.requests.sum() : 0;
+    }
+
+    /**
+     * @param responderURI the responder URI
+     * @return number of failed queries to the responder during the current cycle
+     */
+    long getFailureCount(String responderURI) {
+        ResponderStats responderStats = stats.get(responderURI);
+
+        return responderStats != null ? responderStats.failures.sum() : 0;
+    }
+
+    /**
+     * Logs the statistics of the finished cycle and starts a new one.
+     */
+    void logAndReset() {
+        stats.forEach((responderURI, responderStats) -> {
+            long requests = responderStats.requests.sum();
+
+            log.info("OCSP responder {}: {} requests, {} failed, average latency {} ms, max latency {} ms",
+                    responderURI, requests, responderStats.failures.sum(),
+                    requests > 0 ? responderStats.totalMillis.sum() / requests : 0,
+                    responderStats.maxMillis.get());
+        });
+
+        stats.clear();
+    }
+
+    private ResponderStats getStats(String responderURI) {
+        return stats.computeIfAbsent(responderURI, uri -> new ResponderStats());
+    }
+
+    private static final class ResponderStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+
+        void record(long durationMillis, boolean failed) {
+            requests.increment();
+            totalMillis.add(durationMillis);
+            maxMillis.accumulate(durationMillis);
+
+            if (failed) {
+                failures.increment();
+            }
+        }
+    }
+}
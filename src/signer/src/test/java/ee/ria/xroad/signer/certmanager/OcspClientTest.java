@@ -65,9 +65,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -150,6 +152,54 @@ public class OcspClientTest {
         verifier.verifyValidityAndStatus(ocsp, subject, GlobalConf.getCaCert("EE", subject));
     }
 
+    /**
+     * Test that the responder that returned a response is tried first by the following queries.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void respondingResponderIsTriedFirst() throws Exception {
+        X509Certificate subject = getDefaultClientCert();
+
+        GlobalConf.reload(getTestGlobalConf());
+
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+
+        responseData = OcspTestUtils.createOCSPResponse(subject, GlobalConf.getCaCert("EE", subject), ocspResponderCert,
+                getOcspSignerKey(), CertificateStatus.GOOD, thisUpdate, null).getEncoded();
+
+        String unavailableResponder = "http://127.0.0.1:1234";
+        List<String> responderURIs = new ArrayList<>(Arrays.asList(unavailableResponder, RESPONDER_URI));
+
+        assertNotNull(ocspClient.queryCertStatus(subject, new OcspVerifierOptions(true), responderURIs));
+        assertNotNull(ocspClient.queryCertStatus(subject, new OcspVerifierOptions(true), responderURIs));
+
+        assertEquals(Arrays.asList(RESPONDER_URI, unavailableResponder), responderURIs);
+        assertEquals(1, ocspClient.getResponderMetrics().getFailureCount(unavailableResponder));
+        assertEquals(2, ocspClient.getResponderMetrics().getRequestCount(RESPONDER_URI));
+        assertEquals(0, ocspClient.getResponderMetrics().getFailureCount(RESPONDER_URI));
+    }
+
+    /**
+     * Test that the statuses of certificates sharing the same responders are queried together.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void certificatesGroupedByResponders() throws Exception {
+        X509Certificate subject = getDefaultClientCert();
+        X509Certificate otherSubject = TestCertUtil.getProducer().certChain[0];
+
+        GlobalConfProvider conf = getTestGlobalConf();
+        when(conf.getOcspResponderAddresses(otherSubject)).thenReturn(Arrays.asList("http://127.0.0.1:1234"));
+        GlobalConf.reload(conf);
+
+        Map<List<String>, List<X509Certificate>> groups =
+                ocspClient.groupByResponders(Arrays.asList(subject, otherSubject, subject));
+
+        assertEquals(2, groups.size());
+        assertEquals(Arrays.asList(subject, subject), groups.get(Arrays.asList(RESPONDER_URI)));
+        assertEquals(Arrays.asList(otherSubject), groups.get(Arrays.asList("http://127.0.0.1:1234")));
+    }
+
     /**
      * Test.
      * @throws Exception if an error occurs